@@ -0,0 +1,7 @@
+set targetdir=target
+
+IF NOT EXIST "%targetdir%" mkdir %targetdir%
+
+javac -sourcepath src -d %targetdir% -cp lib/ECLA.jar;lib/DTNConsoleConnection.jar src/benchmark/*.java
+
+java -Xmx2G -cp %targetdir%;lib/ECLA.jar;lib/DTNConsoleConnection.jar benchmark.BenchmarkRunner %*
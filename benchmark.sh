@@ -0,0 +1,13 @@
+#! /bin/sh
+# Compiles and runs the benchmarks. Options are passed to the benchmark
+# runner, e.g., "./benchmark.sh -b benchmark/baseline.txt" compares the
+# results to the committed baseline.
+targetdir=target
+
+if [ ! -d "$targetdir" ]; then mkdir $targetdir; fi
+
+# the scenarios load their modules by name, so compile the same packages as
+# compile.sh and not only the classes the benchmarks refer to
+javac -encoding UTF-8 -sourcepath src -d $targetdir -cp lib/ECLA.jar:lib/DTNConsoleConnection.jar src/core/*.java src/movement/*.java src/report/*.java src/routing/*.java src/input/*.java src/applications/*.java src/interfaces/*.java src/benchmark/*.java || exit 1
+
+java -Xmx2G -cp $targetdir:lib/ECLA.jar:lib/DTNConsoleConnection.jar benchmark.BenchmarkRunner $*
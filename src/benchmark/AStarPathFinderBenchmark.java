@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import movement.map.AStarPathFinder;
+import movement.map.MapNode;
+
+/**
+ * Benchmarks {@link AStarPathFinder#getShortestPath(MapNode, MapNode)}
+ * (with or without contraction hierarchies) between the same random nodes
+ * of the Helsinki map as {@link DijkstraPathFinderBenchmark}.
+ */
+public class AStarPathFinderBenchmark extends Benchmark {
+	private AStarPathFinder pathFinder;
+	private boolean useContractionHierarchy;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	/**
+	 * Constructor.
+	 * @param useContractionHierarchy If true, the path finder uses
+	 * contraction hierarchies
+	 */
+	public AStarPathFinderBenchmark(boolean useContractionHierarchy) {
+		super(useContractionHierarchy ?
+				"AStarPathFinder.getShortestPath-ch" :
+				"AStarPathFinder.getShortestPath");
+		this.useContractionHierarchy = useContractionHierarchy;
+	}
+
+	@Override
+	public void setUp() {
+		int nrofPairs = DijkstraPathFinderBenchmark.NROF_PAIRS;
+		List<MapNode> nodes = createScenario(HOSTS_100).getMap().getNodes();
+		Random rng = new Random(DijkstraPathFinderBenchmark.SEED);
+
+		this.from = new MapNode[nrofPairs];
+		this.to = new MapNode[nrofPairs];
+		for (int i=0; i<nrofPairs; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		this.pathFinder = new AStarPathFinder(null, useContractionHierarchy);
+		this.pathFinder.getShortestPath(from[0], to[0]); // preprocessing
+		this.next = 0;
+	}
+
+	@Override
+	public int runOperation() {
+		int i = next;
+		next = (next + 1) % from.length;
+		return pathFinder.getShortestPath(from[i], to[i]).size();
+	}
+
+	@Override
+	public void tearDown() {
+		this.from = null;
+		this.to = null;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import core.DTNSim;
+import core.Settings;
+import core.SimScenario;
+
+/**
+ * Superclass for all micro benchmarks run by {@link BenchmarkRunner}.
+ * A benchmark prepares its data in {@link #setUp()} and then the runner
+ * calls {@link #runOperation()} repeatedly and measures how long one call
+ * takes on average.
+ */
+public abstract class Benchmark {
+	/** Settings file of the benchmark scenarios ({@value}) */
+	public static final String SCENARIO_SETTINGS_FILE =
+		"benchmark/benchmark_settings.txt";
+	/** Run index of the scenario with 100 hosts */
+	public static final int HOSTS_100 = 0;
+	/** Run index of the scenario with 1000 hosts */
+	public static final int HOSTS_1K = 1;
+	/** Run index of the scenario with 10000 hosts */
+	public static final int HOSTS_10K = 2;
+
+	private String name;
+
+	/**
+	 * Constructor.
+	 * @param name Name of the benchmark (shown in the results)
+	 */
+	public Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the benchmark
+	 * @return the name of the benchmark
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Prepares the benchmark. Called once before any operations are run.
+	 * @throws Exception if preparing the benchmark fails
+	 */
+	public abstract void setUp() throws Exception;
+
+	/**
+	 * Runs the measured operation once. The return value should depend on
+	 * the result of the operation so that the JIT compiler can't remove
+	 * the operation as dead code.
+	 * @return A value computed from the result of the operation
+	 */
+	public abstract int runOperation();
+
+	/**
+	 * Releases all the resources used by the benchmark. Called after all
+	 * operations have been run.
+	 */
+	public void tearDown() {}
+
+	/**
+	 * Creates a new scenario using the benchmark scenario settings file
+	 * ({@link #SCENARIO_SETTINGS_FILE}) and the given run index. All the
+	 * simulator's classes are reset first so any previously created
+	 * scenario is discarded.
+	 * @param runIndex The run index (e.g., {@link #HOSTS_1K})
+	 * @return The new scenario
+	 */
+	protected static SimScenario createScenario(int runIndex) {
+		return createScenario(runIndex, new String[0]);
+	}
+
+	/**
+	 * Creates a new scenario like {@link #createScenario(int)} but reads
+	 * also the given settings files after the benchmark scenario settings
+	 * file. The settings in the files override the earlier settings.
+	 * @param runIndex The run index (e.g., {@link #HOSTS_1K})
+	 * @param settingsFiles The additional settings files
+	 * @return The new scenario
+	 */
+	protected static SimScenario createScenario(int runIndex,
+			String... settingsFiles) {
+		Settings.init(SCENARIO_SETTINGS_FILE);
+		for (String file : settingsFiles) {
+			Settings.addSettings(file);
+		}
+		Settings.setRunIndex(runIndex);
+		DTNSim.resetForNextRun();
+		return SimScenario.getInstance();
+	}
+
+	public String toString() {
+		return this.name;
+	}
+}
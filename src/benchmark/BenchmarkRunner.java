@@ -0,0 +1,333 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the simulator's micro benchmarks and optionally compares the results
+ * to baseline results.
+ * <P>Every benchmark is first run for a number of warm-up iterations whose
+ * results are discarded (to let the JIT compiler do its job) and then for a
+ * number of measurement iterations. One iteration runs the benchmark's
+ * operation repeatedly until the iteration's time has elapsed. The result is
+ * the mean time of one operation over the measurement iterations (with the
+ * standard deviation of the iterations' means).</P>
+ * <P>Usage: <CODE>BenchmarkRunner [options] [name filter...]</CODE>
+ * <BR>Options:
+ * <UL>
+ * <LI><CODE>-w N</CODE> number of warm-up iterations (default 5)</LI>
+ * <LI><CODE>-i N</CODE> number of measurement iterations (default 10)</LI>
+ * <LI><CODE>-t N</CODE> length of one iteration in milliseconds
+ * (default 1000)</LI>
+ * <LI><CODE>-o FILE</CODE> write the results to a file (can be used as
+ * a baseline file later)</LI>
+ * <LI><CODE>-b FILE</CODE> compare the results to a baseline file</LI>
+ * <LI><CODE>-r N</CODE> allowed slowdown compared to the baseline in
+ * percents (default 20)</LI>
+ * </UL>
+ * Only the benchmarks whose name contains any of the filter strings are run
+ * (all benchmarks are run if no filters are given). Exit status is 1 if any
+ * of the benchmarks was slower than allowed by the baseline.</P>
+ */
+public class BenchmarkRunner {
+	/** Number of warm-up iterations -option ({@value}) */
+	public static final String WARMUP_FLAG = "-w";
+	/** Number of measurement iterations -option ({@value}) */
+	public static final String ITERATIONS_FLAG = "-i";
+	/** Iteration length -option ({@value}) */
+	public static final String TIME_FLAG = "-t";
+	/** Output file -option ({@value}) */
+	public static final String OUTPUT_FLAG = "-o";
+	/** Baseline file -option ({@value}) */
+	public static final String BASELINE_FLAG = "-b";
+	/** Allowed regression -option ({@value}) */
+	public static final String REGRESSION_FLAG = "-r";
+
+	private int warmupIterations = 5;
+	private int iterations = 10;
+	private long iterationMillis = 1000;
+	private double allowedRegression = 20;
+	private Map<String, Double> baseline;
+	private PrintWriter out;
+
+	/** sum of the operations' return values (keeps the results alive) */
+	private long sink;
+
+	/**
+	 * Returns all the available benchmarks
+	 * @return all the available benchmarks
+	 */
+	public static List<Benchmark> getBenchmarks() {
+		List<Benchmark> list = new ArrayList<Benchmark>();
+		list.add(new WorldUpdateBenchmark(Benchmark.HOSTS_100));
+		list.add(new WorldUpdateBenchmark(Benchmark.HOSTS_1K));
+		list.add(new WorldUpdateBenchmark(Benchmark.HOSTS_10K));
+		list.add(new WorldUpdateBenchmark(Benchmark.HOSTS_1K, true));
+		list.add(new WorldUpdateBenchmark(Benchmark.HOSTS_10K, true));
+		list.add(new MovementBenchmark(false));
+		list.add(new MovementBenchmark(true));
+		list.add(new ConnectivityGridBenchmark(false));
+		list.add(new ConnectivityGridBenchmark(true));
+		list.add(new DijkstraPathFinderBenchmark());
+		list.add(new AStarPathFinderBenchmark(false));
+		list.add(new AStarPathFinderBenchmark(true));
+		list.add(new MaxPropDijkstraBenchmark());
+		list.add(new MaxPropCostEngineBenchmark());
+		list.add(new MessagesForConnectedBenchmark());
+		list.add(new EventsReaderBenchmark(false));
+		list.add(new EventsReaderBenchmark(true));
+		return list;
+	}
+
+	/**
+	 * Runs all the given benchmarks
+	 * @param benchmarks The benchmarks to run
+	 * @return The number of benchmarks that were slower than allowed by
+	 * the baseline
+	 * @throws Exception if any of the benchmarks fails
+	 */
+	public int runAll(List<Benchmark> benchmarks) throws Exception {
+		int regressions = 0;
+		String header = String.format("# %-38s %14s %12s", "benchmark",
+				"ns/op", "stddev");
+		System.out.println(header + (baseline != null ?
+				String.format(" %14s %8s", "baseline", "change") : ""));
+		if (out != null) {
+			out.println("# " + System.getProperty("java.vm.name") + " " +
+					System.getProperty("java.version") + ", " +
+					Runtime.getRuntime().availableProcessors() +
+					" processors, " + iterations + "x" + iterationMillis +
+					" ms iterations");
+			out.println(header);
+		}
+
+		for (Benchmark b : benchmarks) {
+			double[] result = run(b);
+			String line = String.format("%-40s %14.1f %12.1f", b.getName(),
+					result[0], result[1]);
+
+			if (out != null) {
+				out.println(line);
+				out.flush();
+			}
+
+			Double base = (baseline != null ? baseline.get(b.getName()) :
+				null);
+			if (base != null) {
+				double change = 100 * (result[0] - base) / base;
+				line += String.format(" %14.1f %+7.1f%%", base, change);
+				if (change > allowedRegression) {
+					line += " SLOWER";
+					regressions++;
+				}
+			}
+			System.out.println(line);
+		}
+
+		return regressions;
+	}
+
+	/**
+	 * Runs a single benchmark
+	 * @param b The benchmark to run
+	 * @return Mean time of one operation in nanoseconds and the standard
+	 * deviation of the iterations' means
+	 * @throws Exception if the benchmark fails
+	 */
+	private double[] run(Benchmark b) throws Exception {
+		b.setUp();
+		try {
+			for (int i=0; i<warmupIterations; i++) {
+				runIteration(b);
+			}
+
+			double[] means = new double[iterations];
+			double sum = 0;
+			for (int i=0; i<iterations; i++) {
+				means[i] = runIteration(b);
+				sum += means[i];
+			}
+
+			double mean = sum / iterations;
+			double var = 0;
+			for (double m : means) {
+				var += (m - mean) * (m - mean);
+			}
+
+			return new double[] {mean, Math.sqrt(var / iterations)};
+		} finally {
+			b.tearDown();
+			System.gc();
+		}
+	}
+
+	/**
+	 * Runs the benchmark's operation until the iteration time has elapsed
+	 * @param b The benchmark
+	 * @return Mean time of one operation in nanoseconds
+	 */
+	private double runIteration(Benchmark b) {
+		long iterationNanos = iterationMillis * 1000000L;
+		long start = System.nanoTime();
+		long elapsed;
+		int ops = 0;
+
+		do {
+			sink += b.runOperation();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+
+		return (double)elapsed / ops;
+	}
+
+	/**
+	 * Reads results of an earlier run from a file
+	 * @param file The file to read
+	 * @return Mean operation times mapped by the benchmarks' names
+	 * @throws IOException if the file can't be read
+	 */
+	public static Map<String, Double> readResults(File file)
+			throws IOException {
+		Map<String, Double> results = new HashMap<String, Double>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue; /* skip comments and empty lines */
+				}
+				String[] parts = line.split("\\s+");
+				try {
+					results.put(parts[0], Double.parseDouble(parts[1]));
+				} catch (RuntimeException e) {
+					throw new IOException("Invalid line in " + file + ": " +
+							line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return results;
+	}
+
+	/**
+	 * Parses an integer option value or exits with an error message
+	 * @param args All arguments
+	 * @param i Index of the option's value
+	 * @return The value
+	 */
+	private static int parseValue(String[] args, int i) {
+		if (i >= args.length) {
+			exit("Missing value for option " + args[i-1]);
+		}
+		try {
+			return Integer.parseInt(args[i]);
+		} catch (NumberFormatException e) {
+			exit("Invalid value for option " + args[i-1] + ": " + args[i]);
+			return -1;
+		}
+	}
+
+	private static void exit(String msg) {
+		System.err.println(msg);
+		System.exit(-1);
+	}
+
+	/**
+	 * Starts the benchmarks
+	 * @param args Command line arguments
+	 */
+	public static void main(String[] args) {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		List<String> filters = new ArrayList<String>();
+		String outFile = null;
+
+		// use the same decimal separator in all results and baselines
+		Locale.setDefault(Locale.US);
+
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals(WARMUP_FLAG)) {
+				runner.warmupIterations = parseValue(args, ++i);
+			} else if (args[i].equals(ITERATIONS_FLAG)) {
+				runner.iterations = parseValue(args, ++i);
+			} else if (args[i].equals(TIME_FLAG)) {
+				runner.iterationMillis = parseValue(args, ++i);
+			} else if (args[i].equals(REGRESSION_FLAG)) {
+				runner.allowedRegression = parseValue(args, ++i);
+			} else if (args[i].equals(OUTPUT_FLAG) && i+1 < args.length) {
+				outFile = args[++i];
+			} else if (args[i].equals(BASELINE_FLAG) && i+1 < args.length) {
+				File f = new File(args[++i]);
+				try {
+					runner.baseline = readResults(f);
+				} catch (IOException e) {
+					exit("Can't read baseline: " + e.getMessage());
+				}
+			} else if (args[i].startsWith("-")) {
+				exit("Unknown option " + args[i]);
+			} else {
+				filters.add(args[i]);
+			}
+		}
+
+		if (runner.iterations < 1) {
+			exit("At least one measurement iteration is needed");
+		}
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (Benchmark b : getBenchmarks()) {
+			boolean match = filters.isEmpty();
+			for (String f : filters) {
+				match |= b.getName().contains(f);
+			}
+			if (match) {
+				benchmarks.add(b);
+			}
+		}
+
+		int regressions = 0;
+		try {
+			if (outFile != null) {
+				runner.out = new PrintWriter(outFile);
+			}
+			regressions = runner.runAll(benchmarks);
+		} catch (FileNotFoundException e) {
+			exit("Can't create output file: " + e.getMessage());
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(-1);
+		} finally {
+			if (runner.out != null) {
+				runner.out.close();
+			}
+		}
+
+		if (runner.sink == 42) { /* practically never true */
+			System.out.println();
+		}
+
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmark(s) slower than " +
+					"the baseline");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+}
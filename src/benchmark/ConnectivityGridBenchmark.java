@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.IndexedConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Benchmarks finding the near interfaces of an interface from a
+ * {@link ConnectivityGrid} (or an {@link IndexedConnectivityGrid}) that
+ * contains the interfaces of the hosts of the 1000 host benchmark scenario.
+ */
+public class ConnectivityGridBenchmark extends Benchmark {
+	/** Grid key that is not used by any interface of the scenario */
+	private static final int GRID_KEY = -1;
+
+	private boolean indexed;
+	private ConnectivityOptimizer grid;
+	private List<NetworkInterface> interfaces;
+	private int next;
+
+	/**
+	 * Constructor.
+	 * @param indexed If true, {@link IndexedConnectivityGrid} is used
+	 * instead of {@link ConnectivityGrid}
+	 */
+	public ConnectivityGridBenchmark(boolean indexed) {
+		super((indexed ? "IndexedConnectivityGrid" : "ConnectivityGrid") +
+				".getNearInterfaces");
+		this.indexed = indexed;
+	}
+
+	@Override
+	public void setUp() {
+		List<DTNHost> hosts = createScenario(HOSTS_1K).getWorld().getHosts();
+		this.interfaces = new ArrayList<NetworkInterface>();
+		for (DTNHost h : hosts) {
+			interfaces.addAll(h.getInterfaces());
+		}
+
+		double range = interfaces.get(0).getTransmitRange();
+		if (indexed) {
+			this.grid = IndexedConnectivityGrid.
+				IndexedConnectivityGridFactory(GRID_KEY, range);
+		} else {
+			this.grid = ConnectivityGrid.ConnectivityGridFactory(GRID_KEY,
+					range);
+		}
+		grid.addInterfaces(interfaces);
+		this.next = 0;
+	}
+
+	@Override
+	public int runOperation() {
+		NetworkInterface ni = interfaces.get(next);
+		next = (next + 1) % interfaces.size();
+		return grid.getNearInterfaces(ni).size();
+	}
+
+	@Override
+	public void tearDown() {
+		this.grid = null;
+		this.interfaces = null;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+
+/**
+ * Benchmarks {@link DijkstraPathFinder#getShortestPath(MapNode, MapNode)}
+ * between random nodes of the Helsinki map (the map of the default
+ * settings).
+ */
+public class DijkstraPathFinderBenchmark extends Benchmark {
+	/** Number of different source-destination pairs */
+	public static final int NROF_PAIRS = 256;
+	/** Seed for selecting the pairs */
+	public static final int SEED = 1;
+
+	private DijkstraPathFinder pathFinder;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	public DijkstraPathFinderBenchmark() {
+		super("DijkstraPathFinder.getShortestPath");
+	}
+
+	@Override
+	public void setUp() {
+		List<MapNode> nodes = createScenario(HOSTS_100).getMap().getNodes();
+		Random rng = new Random(SEED);
+
+		this.from = new MapNode[NROF_PAIRS];
+		this.to = new MapNode[NROF_PAIRS];
+		for (int i=0; i<NROF_PAIRS; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		this.pathFinder = new DijkstraPathFinder(null);
+		this.next = 0;
+	}
+
+	@Override
+	public int runOperation() {
+		int i = next;
+		next = (next + 1) % NROF_PAIRS;
+		return pathFinder.getShortestPath(from[i], to[i]).size();
+	}
+
+	@Override
+	public void tearDown() {
+		this.from = null;
+		this.to = null;
+	}
+}
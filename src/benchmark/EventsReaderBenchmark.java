@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.ExternalEventsReader;
+import input.MappedEventsReader;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmarks reading an external events file of {@value #NROF_EVENTS}
+ * connection and message events with
+ * {@link StandardEventsReader#readEvents(int)} or, from a converted file,
+ * with {@link MappedEventsReader#readEvents(int)}.
+ */
+public class EventsReaderBenchmark extends Benchmark {
+	/** Number of events in the file */
+	public static final int NROF_EVENTS = 2000;
+	/** Number of hosts in the events */
+	public static final int NROF_HOSTS = 100;
+	/** Seed for the random events */
+	public static final int SEED = 1;
+
+	private File eventsFile;
+	private File mappedFile;
+	private boolean mapped;
+
+	/**
+	 * Constructor.
+	 * @param mapped If true, the events are read from a memory mapped file
+	 */
+	public EventsReaderBenchmark(boolean mapped) {
+		super(mapped ? "MappedEventsReader.readEvents" :
+			"StandardEventsReader.readEvents");
+		this.mapped = mapped;
+	}
+
+	@Override
+	public void setUp() throws IOException {
+		Random rng = new Random(SEED);
+		this.eventsFile = File.createTempFile("benchmark", "events.txt");
+		PrintWriter out = new PrintWriter(eventsFile);
+		double time = 0;
+
+		for (int i=0; i<NROF_EVENTS; i++) {
+			int from = rng.nextInt(NROF_HOSTS);
+			int to = rng.nextInt(NROF_HOSTS);
+			time += rng.nextDouble();
+			if (i % 4 == 0) {
+				out.println(String.format(Locale.US, "%.2f %s M%d %d %d %d",
+						time, StandardEventsReader.CREATE, i, from, to,
+						1000 + rng.nextInt(100000)));
+			} else {
+				out.println(String.format(Locale.US, "%.2f %s %d %d %s",
+						time, StandardEventsReader.CONNECTION, from, to,
+						(i % 2 == 0 ? StandardEventsReader.CONNECTION_UP :
+							StandardEventsReader.CONNECTION_DOWN)));
+			}
+		}
+		out.close();
+
+		if (mapped) {
+			this.mappedFile = File.createTempFile("benchmark",
+					MappedEventsReader.MAPPED_EXT);
+			MappedEventsReader.convert(eventsFile, mappedFile);
+		}
+	}
+
+	@Override
+	public int runOperation() {
+		ExternalEventsReader reader = (mapped ?
+				new MappedEventsReader(mappedFile) :
+				new StandardEventsReader(eventsFile));
+		int count = reader.readEvents(NROF_EVENTS).size();
+		reader.close();
+		return count;
+	}
+
+	@Override
+	public void tearDown() {
+		eventsFile.delete();
+		if (mappedFile != null) {
+			mappedFile.delete();
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import routing.maxprop.MaxPropCostEngine;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Benchmarks {@link MaxPropCostEngine#getCost(int, int)} with the same
+ * meeting probability sets and destinations as
+ * {@link MaxPropDijkstraBenchmark}. Every operation calculates the costs
+ * from a new source to all the destinations, so the cached searches are
+ * never reused.
+ */
+public class MaxPropCostEngineBenchmark extends Benchmark {
+	private MaxPropCostEngine engine;
+	private int[] destinations;
+	private int next;
+
+	public MaxPropCostEngineBenchmark() {
+		super("MaxPropCostEngine.getCost");
+	}
+
+	@Override
+	public void setUp() {
+		Random rng = new Random(MaxPropDijkstraBenchmark.SEED);
+		Map<Integer, MeetingProbabilitySet> probs =
+			MaxPropDijkstraBenchmark.createProbs(rng);
+		Set<Integer> dest = MaxPropDijkstraBenchmark.createDestinations(rng);
+
+		this.engine = new MaxPropCostEngine();
+		for (Map.Entry<Integer, MeetingProbabilitySet> e : probs.entrySet()) {
+			engine.setProbs(e.getKey(), e.getValue());
+		}
+		this.destinations = new int[dest.size()];
+		int i = 0;
+		for (Integer d : dest) {
+			destinations[i++] = d;
+		}
+		this.next = 0;
+	}
+
+	@Override
+	public int runOperation() {
+		int from = next;
+		next = (next + 1) % MaxPropDijkstraBenchmark.NROF_NODES;
+		int nrofReachable = 0;
+		for (int to : destinations) {
+			if (engine.getCost(from, to) != Double.MAX_VALUE) {
+				nrofReachable++;
+			}
+		}
+		return nrofReachable;
+	}
+
+	@Override
+	public void tearDown() {
+		this.engine = null;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Benchmarks {@link MaxPropDijkstra#getCosts(Integer, Set)} with random
+ * meeting probability sets of {@value #NROF_NODES} nodes.
+ */
+public class MaxPropDijkstraBenchmark extends Benchmark {
+	/** Number of nodes in the network */
+	public static final int NROF_NODES = 1000;
+	/** Number of meetings per node used to create the probability sets */
+	public static final int NROF_MEETINGS = 50;
+	/** Number of distinct nodes each node meets */
+	public static final int NROF_MET_NODES = 20;
+	/** Number of destinations whose costs are calculated */
+	public static final int NROF_DESTINATIONS = 30;
+	/** Seed for the random meetings */
+	public static final int SEED = 1;
+
+	private MaxPropDijkstra dijkstra;
+	private Set<Integer> destinations;
+	private int next;
+
+	public MaxPropDijkstraBenchmark() {
+		super("MaxPropDijkstra.getCosts");
+	}
+
+	@Override
+	public void setUp() {
+		Random rng = new Random(SEED);
+		Map<Integer, MeetingProbabilitySet> probs = createProbs(rng);
+		this.destinations = createDestinations(rng);
+		this.dijkstra = new MaxPropDijkstra(probs);
+		this.next = 0;
+	}
+
+	/**
+	 * Creates the random meeting probability sets of all the nodes
+	 * @param rng The random number generator to use
+	 * @return The sets mapped by node addresses
+	 */
+	static Map<Integer, MeetingProbabilitySet> createProbs(Random rng) {
+		Map<Integer, MeetingProbabilitySet> probs =
+			new HashMap<Integer, MeetingProbabilitySet>();
+
+		for (int i=0; i<NROF_NODES; i++) {
+			MeetingProbabilitySet set = new MeetingProbabilitySet(
+					MeetingProbabilitySet.INFINITE_SET_SIZE, 1);
+			int[] met = new int[NROF_MET_NODES];
+			for (int j=0; j<NROF_MET_NODES; j++) {
+				met[j] = rng.nextInt(NROF_NODES);
+			}
+			for (int j=0; j<NROF_MEETINGS; j++) {
+				set.updateMeetingProbFor(met[rng.nextInt(NROF_MET_NODES)]);
+			}
+			probs.put(i, set);
+		}
+		return probs;
+	}
+
+	/**
+	 * Selects the random destinations
+	 * @param rng The random number generator to use (after
+	 * {@link #createProbs(Random)})
+	 * @return The destination addresses
+	 */
+	static Set<Integer> createDestinations(Random rng) {
+		Set<Integer> destinations = new HashSet<Integer>();
+		while (destinations.size() < NROF_DESTINATIONS) {
+			destinations.add(rng.nextInt(NROF_NODES));
+		}
+		return destinations;
+	}
+
+	@Override
+	public int runOperation() {
+		int from = next;
+		next = (next + 1) % NROF_NODES;
+		return dijkstra.getCosts(from, destinations).size();
+	}
+
+	@Override
+	public void tearDown() {
+		this.dijkstra = null;
+	}
+}
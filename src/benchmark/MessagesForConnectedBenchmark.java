@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import routing.ActiveRouter;
+import core.DTNHost;
+import core.SimClock;
+import core.SimError;
+import core.World;
+
+/**
+ * Benchmarks {@link ActiveRouter}'s getMessagesForConnected method (that
+ * pairs all the messages with all the connections) using the host with the
+ * most message-connection pairs after {@value #SETUP_TIME} seconds of the
+ * 100 host benchmark scenario.
+ */
+public class MessagesForConnectedBenchmark extends Benchmark {
+	/** How many seconds the scenario is run before the measurements */
+	public static final double SETUP_TIME = 1500;
+	/** How many seconds more the scenario may be run if no host has
+	 * both messages and connections */
+	public static final double MAX_SETUP_TIME = 10000;
+
+	private ActiveRouter router;
+	private Method method;
+
+	public MessagesForConnectedBenchmark() {
+		super("ActiveRouter.getMessagesForConnected");
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		World world = createScenario(HOSTS_100).getWorld();
+		/* the method is protected; it's called the same way as from the
+		 * router's update but using reflection */
+		this.method = ActiveRouter.class.getDeclaredMethod(
+				"getMessagesForConnected");
+		method.setAccessible(true);
+
+		DTNHost best = null;
+		while (best == null || SimClock.getTime() < SETUP_TIME) {
+			if (SimClock.getTime() > MAX_SETUP_TIME) {
+				throw new SimError("No host with messages and connections " +
+						"after " + MAX_SETUP_TIME + " seconds");
+			}
+			world.update();
+			best = findBest(world.getHosts());
+		}
+
+		this.router = (ActiveRouter)best.getRouter();
+	}
+
+	/**
+	 * Returns the host with the most message-connection pairs
+	 * @param hosts The hosts to search from
+	 * @return the host with the most message-connection pairs or null if
+	 * no host has both messages and connections
+	 */
+	private DTNHost findBest(List<DTNHost> hosts) {
+		DTNHost best = null;
+		int bestPairs = 0;
+		for (DTNHost h : hosts) {
+			int pairs = h.getNrofMessages() * h.getConnections().size();
+			if (pairs > bestPairs) {
+				best = h;
+				bestPairs = pairs;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public int runOperation() {
+		try {
+			return ((List<?>)method.invoke(router)).size();
+		} catch (Exception e) {
+			throw new SimError(e);
+		}
+	}
+
+	@Override
+	public void tearDown() {
+		this.router = null;
+	}
+}
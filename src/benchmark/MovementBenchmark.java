@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+
+import core.BulkMover;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Benchmarks moving all the hosts of the 10k host benchmark scenario with
+ * random waypoint movement for one update interval, either one by one
+ * (like {@link core.World} does by default) or in bulk (see
+ * {@link BulkMover}).
+ */
+public class MovementBenchmark extends Benchmark {
+	/** Settings file of the movement benchmark ({@value}) */
+	public static final String MOVEMENT_SETTINGS_FILE =
+		"benchmark/movement_settings.txt";
+	/** Update interval of the moves */
+	public static final double UPDATE_INTERVAL = 0.1;
+
+	private boolean bulk;
+	private List<DTNHost> hosts;
+	private BulkMover mover;
+
+	/**
+	 * Constructor.
+	 * @param bulk If true, the hosts are moved in bulk
+	 */
+	public MovementBenchmark(boolean bulk) {
+		super("DTNHost.move-10k" + (bulk ? "-bulk" : ""));
+		this.bulk = bulk;
+	}
+
+	@Override
+	public void setUp() {
+		this.hosts = createScenario(HOSTS_10K,
+				MOVEMENT_SETTINGS_FILE).getHosts();
+		if (bulk) {
+			this.mover = new BulkMover(hosts);
+		}
+		for (int i=0; i<WorldUpdateBenchmark.SETUP_UPDATES; i++) {
+			runOperation();
+		}
+	}
+
+	@Override
+	public int runOperation() {
+		if (bulk) {
+			mover.moveBulk(UPDATE_INTERVAL);
+			mover.moveRest(hosts, UPDATE_INTERVAL);
+		} else {
+			for (int i=0, n=hosts.size(); i<n; i++) {
+				hosts.get(i).move(UPDATE_INTERVAL);
+			}
+		}
+		SimClock.getInstance().advance(UPDATE_INTERVAL);
+		return hosts.size();
+	}
+
+	@Override
+	public void tearDown() {
+		this.hosts = null;
+		this.mover = null;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import core.World;
+
+/**
+ * Benchmarks one {@link World#update()} (i.e., moving the hosts, checking
+ * the connectivity and updating the routers for one update interval) in
+ * the benchmark scenario, optionally with the parallel update
+ * ({@link World#PARALLEL_UPDATE_S}) on.
+ */
+public class WorldUpdateBenchmark extends Benchmark {
+	/** How many updates are run before the measurements (to get the
+	 * hosts moving and connected) */
+	public static final int SETUP_UPDATES = 100;
+	/** Settings file of the parallel update benchmarks ({@value}) */
+	public static final String PARALLEL_SETTINGS_FILE =
+		"benchmark/parallel_settings.txt";
+
+	private int runIndex;
+	private boolean parallel;
+	private World world;
+
+	/**
+	 * Constructor.
+	 * @param runIndex Run index of the scenario (e.g., {@link #HOSTS_1K})
+	 */
+	public WorldUpdateBenchmark(int runIndex) {
+		this(runIndex, false);
+	}
+
+	/**
+	 * Constructor.
+	 * @param runIndex Run index of the scenario (e.g., {@link #HOSTS_1K})
+	 * @param parallel If true, the parallel update is used
+	 */
+	public WorldUpdateBenchmark(int runIndex, boolean parallel) {
+		super("World.update-" + new String[] {"100", "1k", "10k"}[runIndex] +
+				(parallel ? "-parallel" : ""));
+		this.runIndex = runIndex;
+		this.parallel = parallel;
+	}
+
+	@Override
+	public void setUp() {
+		if (parallel) {
+			this.world = createScenario(runIndex,
+					PARALLEL_SETTINGS_FILE).getWorld();
+		} else {
+			this.world = createScenario(runIndex).getWorld();
+		}
+		for (int i=0; i<SETUP_UPDATES; i++) {
+			world.update();
+		}
+	}
+
+	@Override
+	public int runOperation() {
+		world.update();
+		return world.getHosts().size();
+	}
+
+	@Override
+	public void tearDown() {
+		this.world.done();
+		this.world = null;
+	}
+}
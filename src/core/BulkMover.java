@@ -0,0 +1,188 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+import movement.MovementModel;
+
+/**
+ * Moves the hosts whose movement model allows it
+ * (see {@link MovementModel#isBulkMovable()}) in bulk. The locations,
+ * destinations and speeds of the hosts are kept in primitive arrays, and
+ * the moves of all the hosts that stay on their current path segment are
+ * computed in one loop over the arrays and then written to the hosts'
+ * location objects. The hosts that reach a waypoint (or are waiting for a
+ * path) are moved with {@link DTNHost#move(double)} as usual, in their
+ * normal update order, so the movement models' random number generators are
+ * used exactly like without bulk movement and the results are the same.
+ * <P>The hosts inform the mover when their location object is replaced
+ * with {@link DTNHost#setLocation(Coord)}. The hosts that are moved in bulk
+ * move before the other hosts, so the paths of the other hosts should not
+ * depend on the locations of these hosts.</P>
+ */
+public class BulkMover {
+	/** Bulk movement -setting id ({@value}). Boolean. If true, the hosts
+	 * whose movement models allow it are moved in bulk. Not used with the
+	 * parallel update. Default = false. Read from the
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} namespace. */
+	public static final String BULK_MOVEMENT_S = "bulkMovement";
+
+	/** the hosts that are moved in bulk */
+	private DTNHost[] hosts;
+	/** index of each host (in the update order) in the arrays or -1 */
+	private int[] indexOf;
+	/** the location objects of the hosts */
+	private Coord[] locations;
+	private double[] x;
+	private double[] y;
+	private double[] destX;
+	private double[] destY;
+	private double[] speed;
+	/** sim time when the host can move (or NaN if it has no destination) */
+	private double[] moveTime;
+	/** the locations after the current move (if the host is on a segment) */
+	private double[] newX;
+	private double[] newY;
+	/** does the host stay on its path segment during the current move */
+	private boolean[] onSegment;
+
+	/**
+	 * Constructor.
+	 * @param allHosts All the hosts of the world in their update order
+	 */
+	public BulkMover(List<DTNHost> allHosts) {
+		int n = 0;
+		for (DTNHost h : allHosts) {
+			if (h.isBulkMovable()) {
+				n++;
+			}
+		}
+
+		this.hosts = new DTNHost[n];
+		this.indexOf = new int[allHosts.size()];
+		this.locations = new Coord[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.destX = new double[n];
+		this.destY = new double[n];
+		this.speed = new double[n];
+		this.moveTime = new double[n];
+		this.newX = new double[n];
+		this.newY = new double[n];
+		this.onSegment = new boolean[n];
+
+		n = 0;
+		for (int i=0; i<allHosts.size(); i++) {
+			DTNHost h = allHosts.get(i);
+			if (h.isBulkMovable()) {
+				hosts[n] = h;
+				indexOf[i] = n;
+				h.setBulkMover(this, n);
+				sync(n);
+				n++;
+			} else {
+				indexOf[i] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of hosts that are moved in bulk
+	 * @return the number of hosts that are moved in bulk
+	 */
+	public int getNrofHosts() {
+		return hosts.length;
+	}
+
+	/**
+	 * Moves all the hosts that stay on their current path segment. The
+	 * rest of the hosts must be moved with {@link #moveRest(List, double)}.
+	 * @param timeIncrement How long time the hosts move
+	 */
+	public void moveBulk(double timeIncrement) {
+		double now = SimClock.getTime();
+		int n = hosts.length;
+
+		/* the same computations as in DTNHost.move() */
+		for (int i=0; i<n; i++) {
+			double possibleMovement = timeIncrement * speed[i];
+			double dx = destX[i] - x[i];
+			double dy = destY[i] - y[i];
+			double distance = Math.sqrt(dx*dx + dy*dy);
+			onSegment[i] = now >= moveTime[i] && possibleMovement < distance;
+			newX[i] = x[i] + (possibleMovement/distance) * dx;
+			newY[i] = y[i] + (possibleMovement/distance) * dy;
+		}
+
+		for (int i=0; i<n; i++) {
+			if (onSegment[i]) {
+				x[i] = newX[i];
+				y[i] = newY[i];
+				locations[i].setLocation(x[i], y[i]);
+			}
+		}
+	}
+
+	/**
+	 * Moves the hosts that were not moved by {@link #moveBulk(double)},
+	 * in the order of the list
+	 * @param allHosts All the hosts of the world
+	 * @param timeIncrement How long time the hosts move
+	 */
+	public void moveRest(List<DTNHost> allHosts, double timeIncrement) {
+		for (int i=0, n=allHosts.size(); i<n; i++) {
+			int index = indexOf[i];
+			if (index < 0) {
+				allHosts.get(i).move(timeIncrement);
+			} else if (!onSegment[index]) {
+				hosts[index].move(timeIncrement);
+				sync(index);
+			}
+		}
+	}
+
+	/**
+	 * Informs the mover that the location object of a host was replaced
+	 * (see {@link DTNHost#setLocation(Coord)})
+	 * @param index Index of the host in the mover
+	 */
+	void locationChanged(int index) {
+		sync(index);
+	}
+
+	/**
+	 * Reads the state of all the hosts to the arrays again. Must be called
+	 * if the hosts were moved by some other means than this mover (e.g.,
+	 * by {@link WarmupMover}).
+	 */
+	void syncAll() {
+		for (int i=0; i<hosts.length; i++) {
+			sync(i);
+		}
+	}
+
+	/**
+	 * Reads a host's location, destination and speed to the arrays
+	 * @param index Index of the host in the arrays
+	 */
+	private void sync(int index) {
+		DTNHost h = hosts[index];
+		Coord loc = h.getLocation();
+		Coord dest = h.getDestination();
+
+		locations[index] = loc;
+		x[index] = loc.getX();
+		y[index] = loc.getY();
+		speed[index] = h.getSpeed();
+		if (dest != null) {
+			destX[index] = dest.getX();
+			destY[index] = dest.getY();
+			moveTime[index] = h.getNextTimeToMove();
+		} else {
+			moveTime[index] = Double.NaN; // never on a segment
+		}
+	}
+}
@@ -4,6 +4,11 @@
  */
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
 import routing.MessageRouter;
 
 /**
@@ -113,6 +118,20 @@ public class CBRConnection extends Connection {
 		return (remaining > 0 ? remaining : 0);
 	}
 
+	@Override
+	void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeInt(this.speed);
+		out.writeDouble(this.transferDoneTime);
+	}
+
+	@Override
+	void readState(DataInput in, List<DTNHost> hosts) throws IOException {
+		super.readState(in, hosts);
+		this.speed = in.readInt();
+		this.transferDoneTime = in.readDouble();
+	}
+
 	/**
 	 * Returns a String presentation of the connection.
 	 */
@@ -4,6 +4,11 @@
  */
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
 import routing.MessageRouter;
 
 /**
@@ -216,6 +221,38 @@ public abstract class Connection {
 		}
 	}
 
+	/**
+	 * Writes the state (up or down and the transfer state) of this
+	 * connection to a snapshot (see {@link Snapshot}). The hosts and
+	 * interfaces are written by the snapshot. Subclasses that have more state must override this and
+	 * {@link #readState(DataInput, List)} and call the superclass' methods
+	 * first.
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeBoolean(this.isUp);
+		out.writeInt(this.msgFromNode == null ? -1 :
+			this.msgFromNode.getAddress());
+		Snapshot.writeMessage(out, this.msgOnFly);
+		out.writeInt(this.bytesTransferred);
+	}
+
+	/**
+	 * Reads the transfer state of this connection from a snapshot written
+	 * by {@link #writeState(DataOutput)}
+	 * @param in Where to read the state from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @throws IOException if reading fails
+	 */
+	void readState(DataInput in, List<DTNHost> hosts) throws IOException {
+		this.isUp = in.readBoolean();
+		int from = in.readInt();
+		this.msgFromNode = (from < 0 ? null : hosts.get(from));
+		this.msgOnFly = Snapshot.readMessage(in, hosts);
+		this.bytesTransferred = in.readInt();
+	}
+
 	/**
 	 * Returns a String presentation of the connection.
 	 */
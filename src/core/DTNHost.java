@@ -4,6 +4,9 @@
  */
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -24,15 +27,27 @@ public class DTNHost implements Comparable<DTNHost> {
 
 	private Coord location; 	// where is the host
 	private Coord destination;	// where is it going
+	/** the Coord object that is reused for the destinations */
+	private Coord nextWaypoint;
 
 	private MessageRouter router;
 	private MovementModel movement;
 	private Path path;
 	private double speed;
 	private double nextTimeToMove;
+	/** the bulk mover that moves this node (or null) */
+	private BulkMover bulkMover;
+	/** index of this node in the bulk mover */
+	private int bulkIndex;
+	/** is there a move computed by {@link #prepareMove(double)} */
+	private boolean movePrepared;
+	/** x and y translation computed by {@link #prepareMove(double)} */
+	private double preparedDx, preparedDy;
 	private String name;
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
+	/** are the movement listeners informed about new destinations */
+	private boolean movListenersEnabled = true;
 	private List<NetworkInterface> net;
 	private ModuleCommunicationBus comBus;
 
@@ -57,6 +72,7 @@ public class DTNHost implements Comparable<DTNHost> {
 			MovementModel mmProto, MessageRouter mRouterProto) {
 		this.comBus = comBus;
 		this.location = new Coord(0,0);
+		this.nextWaypoint = new Coord(0,0);
 		this.address = getNextAddress();
 		this.name = groupId+address;
 		this.net = new ArrayList<NetworkInterface>();
@@ -115,6 +131,35 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.movement.isActive();
 	}
 
+	/**
+	 * Returns true if this node's movement model allows moving the node
+	 * in bulk (see {@link BulkMover}) and the node is always active
+	 * @return true if the node can be moved in bulk
+	 */
+	boolean isBulkMovable() {
+		return this.movement.isBulkMovable() &&
+			this.movement.isAlwaysActive();
+	}
+
+	/**
+	 * Sets the bulk mover that moves this node. The mover is informed
+	 * about the location changes by {@link #setLocation(Coord)}.
+	 * @param bulkMover The bulk mover
+	 * @param index Index of the node in the bulk mover
+	 */
+	void setBulkMover(BulkMover bulkMover, int index) {
+		this.bulkMover = bulkMover;
+		this.bulkIndex = index;
+	}
+
+	/**
+	 * Returns the sim time when the node can move again
+	 * @return the sim time when the node can move again
+	 */
+	double getNextTimeToMove() {
+		return this.nextTimeToMove;
+	}
+
 	/**
 	 * Returns true if this node's radio is active (false if not)
 	 * @return true if this node's radio is active (false if not)
@@ -136,6 +181,14 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router = router;
 	}
 
+	/**
+	 * Returns the movement model of this host
+	 * @return the movement model of this host
+	 */
+	public MovementModel getMovement() {
+		return this.movement;
+	}
+
 	/**
 	 * Returns the router of this host
 	 * @return the router of this host
@@ -194,6 +247,24 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.location;
 	}
 
+	/**
+	 * Returns the waypoint the node is currently moving towards, or null if
+	 * the node is not moving. The same Coord object is updated every time
+	 * the node gets a new destination.
+	 * @return The current destination
+	 */
+	public Coord getDestination() {
+		return this.destination;
+	}
+
+	/**
+	 * Returns the speed the node moves towards its current destination
+	 * @return The current speed
+	 */
+	public double getSpeed() {
+		return this.speed;
+	}
+
 	/**
 	 * Returns the Path this node is currently traveling or null if no
 	 * path is in use at the moment.
@@ -210,6 +281,112 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void setLocation(Coord location) {
 		this.location = location.clone();
+		if (this.bulkMover != null) {
+			this.bulkMover.locationChanged(this.bulkIndex);
+		}
+	}
+
+	/**
+	 * Writes the movement state of this host (location, destination,
+	 * speed, path and the state of the movement model) to a snapshot
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 * @throws SimError if the movement model doesn't support snapshots
+	 * @see Snapshot
+	 */
+	void writeMovementState(DataOutput out) throws IOException {
+		if (!this.movement.isSnapshotSupported()) {
+			throw new SimError("Movement model " + this.movement + " of " +
+					this + " doesn't support snapshots");
+		}
+		out.writeUTF(this.movement.getClass().getName());
+		Snapshot.writeCoord(out, this.location);
+		Snapshot.writeCoord(out, this.destination);
+		out.writeDouble(this.speed);
+		out.writeDouble(this.nextTimeToMove);
+		Snapshot.writePath(out, this.path);
+		this.movement.writeState(out);
+	}
+
+	/**
+	 * Reads the movement state of this host from a snapshot written by
+	 * {@link #writeMovementState(DataOutput)}
+	 * @param in Where to read the state from
+	 * @throws IOException if reading fails
+	 * @throws SettingsError if the host had different movement model
+	 */
+	void readMovementState(DataInput in) throws IOException {
+		String model = in.readUTF();
+		if (!model.equals(this.movement.getClass().getName())) {
+			throw new SettingsError("Movement model " + model + " of " +
+					this + " in the snapshot doesn't match the scenario's " +
+					this.movement);
+		}
+		Coord loc = Snapshot.readCoord(in);
+		Coord dest = Snapshot.readCoord(in);
+		if (dest != null) {
+			this.nextWaypoint.setLocation(dest.getX(), dest.getY());
+			this.destination = this.nextWaypoint;
+		}
+		else {
+			this.destination = null;
+		}
+		this.speed = in.readDouble();
+		this.nextTimeToMove = in.readDouble();
+		this.path = Snapshot.readPath(in);
+		this.movement.readState(in);
+		this.movePrepared = false;
+		setLocation(loc); // last, so the bulk mover reads the new state
+	}
+
+	/**
+	 * Writes the state of the router, the network interfaces and the
+	 * communication bus of this host to a checkpoint. The connections are
+	 * written by the {@link Snapshot}.
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 * @throws SimError if the router or some interface doesn't support
+	 * checkpoints
+	 */
+	void writeNetworkState(DataOutput out) throws IOException {
+		if (!this.router.isSnapshotSupported()) {
+			throw new SimError("Router " +
+					this.router.getClass().getSimpleName() + " of " + this +
+					" doesn't support checkpoints");
+		}
+		out.writeUTF(this.router.getClass().getName());
+		this.router.writeState(out);
+		for (NetworkInterface ni : this.net) {
+			if (!ni.isSnapshotSupported()) {
+				throw new SimError("Interface " + ni.getInterfaceType() +
+						" of " + this + " doesn't support checkpoints");
+			}
+			ni.writeState(out);
+		}
+		this.comBus.writeState(out);
+	}
+
+	/**
+	 * Reads the state written by {@link #writeNetworkState(DataOutput)}.
+	 * The connections of the interfaces must have been read already.
+	 * @param in Where to read the state from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @throws IOException if reading fails
+	 * @throws SettingsError if the host had a different router
+	 */
+	void readNetworkState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		String router = in.readUTF();
+		if (!router.equals(this.router.getClass().getName())) {
+			throw new SettingsError("Router " + router + " of " + this +
+					" in the checkpoint doesn't match the scenario's " +
+					this.router.getClass().getName());
+		}
+		this.router.readState(in, hosts);
+		for (NetworkInterface ni : this.net) {
+			ni.readState(in);
+		}
+		this.comBus.readState(in);
 	}
 
 	/**
@@ -408,6 +585,90 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location.translate(dx, dy);
 	}
 
+	/**
+	 * Moves the node to the destination it is moving towards (if any) and
+	 * sets the next waypoint of the path as the new destination. If there
+	 * are no more waypoints, a new path is requested from the movement
+	 * model. Used by the {@link WarmupMover}, which sets the SimClock to
+	 * the time when the node reaches its destination (or can move again).
+	 * @return The sim time when the node reaches its new destination or,
+	 * if it has no destination, the time when it can move again
+	 */
+	double moveToNextWaypoint() {
+		double now = SimClock.getTime();
+		if (this.destination != null) {
+			this.location.setLocation(this.destination);
+		}
+		if (!setNextWaypoint()) {
+			this.destination = null;
+			return this.nextTimeToMove;
+		}
+
+		double distance = this.location.distance(this.destination);
+		if (distance == 0) {
+			return now;
+		}
+		return now + distance / this.speed;
+	}
+
+	/**
+	 * Sets whether the movement listeners are informed about the node's new
+	 * destinations
+	 * @param enabled If false, the listeners are not informed
+	 */
+	void setMovementListenersEnabled(boolean enabled) {
+		this.movListenersEnabled = enabled;
+	}
+
+	/**
+	 * Computes the result of {@link #move(double)} for the common case where
+	 * the node stays on its current path segment. Only the state of this host
+	 * is read, so this method can be called for several hosts concurrently.
+	 * The result is applied by {@link #commitMove(double)}.
+	 * @param timeIncrement How long time the node moves
+	 */
+	public void prepareMove(double timeIncrement) {
+		double possibleMovement;
+		double distance;
+
+		this.movePrepared = false;
+		if (this.destination == null ||
+				SimClock.getTime() < this.nextTimeToMove) {
+			return; /* must be handled by move() */
+		}
+
+		possibleMovement = timeIncrement * speed;
+		distance = this.location.distance(this.destination);
+		if (possibleMovement >= distance) {
+			return; /* waypoint is reached; needs a new one from the path */
+		}
+
+		this.preparedDx = (possibleMovement/distance) *
+			(this.destination.getX() - this.location.getX());
+		this.preparedDy = (possibleMovement/distance) *
+			(this.destination.getY() - this.location.getY());
+		this.movePrepared = true;
+	}
+
+	/**
+	 * Moves the node using the result of {@link #prepareMove(double)} or, if
+	 * no move was prepared, using {@link #move(double)}. The end result is
+	 * always the same as calling only {@link #move(double)}.
+	 * @param timeIncrement How long time the node moves
+	 */
+	public void commitMove(double timeIncrement) {
+		if (!this.movePrepared) {
+			move(timeIncrement);
+			return;
+		}
+
+		this.movePrepared = false;
+		if (!isMovementActive()) {
+			return;
+		}
+		this.location.translate(this.preparedDx, this.preparedDy);
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
@@ -425,12 +686,15 @@ public class DTNHost implements Comparable<DTNHost> {
 			return false;
 		}
 
-		this.destination = path.getNextWaypoint();
+		path.nextWaypoint();
+		this.nextWaypoint.setLocation(path.getWaypointX(),
+				path.getWaypointY());
+		this.destination = this.nextWaypoint;
 		this.speed = path.getSpeed();
 
-		if (this.movListeners != null) {
+		if (this.movListeners != null && this.movListenersEnabled) {
 			for (MovementListener l : this.movListeners) {
-				l.newDestination(this, this.destination, this.speed);
+				l.newDestination(this, this.destination.clone(), this.speed);
 			}
 		}
 
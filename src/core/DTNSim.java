@@ -20,12 +20,19 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode's number of runs,
+	 * the runs are run concurrently. The option must be followed by the
+	 * number of concurrent runs (0 = number of available processors).
+	 * @see ParallelBatchRunner */
+	public static final String PARALLEL_FLAG = "-p";
 
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
 	public static final String RESET_METHOD_NAME = "reset";
 	/** List of class names that should be reset between batch runs */
 	private static List<Class<?>> resetList = new ArrayList<Class<?>>();
+	/** is this run started by {@link #runIsolated(String[], int, int)} */
+	private static boolean isolatedRun = false;
 
 	/**
 	 * Starts the user interface with given arguments.
@@ -34,7 +41,9 @@ public class DTNSim {
 	 * or a with a combination of starting run and the number of runs,
 	 * delimited with a {@value #RANGE_DELIMETER}. Different settings from run
 	 * arrays are used for different runs (see
-	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings
+	 * {@link Settings#setRunIndex(int)}). The number of runs can be followed
+	 * by {@link #PARALLEL_FLAG} and the number of concurrent runs to run the
+	 * runs concurrently. Following arguments are the settings
 	 * files for the simulation run (if any). For GUI mode, the number before
 	 * settings files (if given) is the run index to use for that run.
 	 * @param args Command line arguments
@@ -45,6 +54,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofWorkers = -1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -59,6 +69,10 @@ public class DTNSim {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
                 }
+				if (args.length > 3 && args[2].equals(PARALLEL_FLAG)) {
+					nrofWorkers = parseNrofWorkers(args[3]);
+					firstConfIndex = 4;
+				}
 			}
 			else { /* GUI mode */
 				try { /* is there a run index for the GUI mode ? */
@@ -78,11 +92,22 @@ public class DTNSim {
 
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			if (nrofWorkers > 0) {
+				print("Running runs " + (nrofRuns[0]+1) + "-" + nrofRuns[1] +
+						" using " + nrofWorkers + " concurrent runs");
+				int failed = new ParallelBatchRunner(confFiles, firstConfIndex,
+						nrofRuns[0], nrofRuns[1], nrofWorkers).run();
+				if (failed > 0) {
+					print(failed + " run(s) failed");
+				}
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +118,28 @@ public class DTNSim {
 		}
 	}
 
+	/**
+	 * Runs a single batch mode run without the run's progress output. This
+	 * method is called by {@link ParallelBatchRunner} in a separate class
+	 * loader for every run, so the settings are read again for every run.
+	 * @param confFiles The command line arguments containing the settings
+	 * files
+	 * @param firstConfIndex Index of the first settings file in confFiles
+	 * @param runIndex The run index
+	 */
+	public static void runIsolated(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		isolatedRun = true;
+		initSettings(confFiles, firstConfIndex);
+		Settings.setRunIndex(runIndex);
+		try {
+			new DTNSimTextUI(false).start();
+		} finally {
+			/* releases the run's resources (e.g., background threads) */
+			resetForNextRun();
+		}
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings
@@ -119,16 +166,31 @@ public class DTNSim {
 				/* was not a numeric value */
 				System.err.println("Failed to load settings: " + er);
 				System.err.println("Caught at " + er.getStackTrace()[0]);
-				System.exit(-1);
+				abort(er);
 			}
 			System.err.println("Warning: using deprecated way of " +
 					"expressing run indexes. Run index should be the " +
 					"first option, or right after -b option (optionally " +
 					"as a range of start and end values).");
-			System.exit(-1);
+			abort(er);
 		}
 	}
 
+	/**
+	 * Stops the simulator after an error that has already been reported.
+	 * A run started by {@link #runIsolated(String[], int, int)} is stopped by
+	 * throwing the error, so that the other concurrent runs continue and the
+	 * {@link ParallelBatchRunner} counts the run as failed. Otherwise the
+	 * simulator exits.
+	 * @param error The error
+	 */
+	public static void abort(SimError error) {
+		if (isolatedRun) {
+			throw error;
+		}
+		System.exit(-1);
+	}
+
 	/**
 	 * Registers a class for resetting. Reset is performed after every
 	 * batch run of the simulator to reset the class' state to initial
@@ -148,13 +210,12 @@ public class DTNSim {
 		} catch (ClassNotFoundException e) {
 			System.err.println("Can't register class " + className +
 					" for resetting; class not found");
-			System.exit(-1);
-
+			abort(new SimError(e));
 		}
 		catch (NoSuchMethodException e) {
 			System.err.println("Can't register class " + className +
 			" for resetting; class doesn't contain resetting method");
-			System.exit(-1);
+			abort(new SimError(e));
 		}
 		resetList.add(c);
 	}
@@ -162,7 +223,7 @@ public class DTNSim {
 	/**
 	 * Resets all registered classes.
 	 */
-	private static void resetForNextRun() {
+	public static void resetForNextRun() {
 		for (Class<?> c : resetList) {
 			try {
 				Method m = c.getMethod(RESET_METHOD_NAME);
@@ -170,7 +231,7 @@ public class DTNSim {
 			} catch (Exception e) {
 				System.err.println("Failed to reset class " + c.getName());
 				e.printStackTrace();
-				System.exit(-1);
+				abort(new SimError(e));
 			}
 		}
 	}
@@ -216,6 +277,32 @@ public class DTNSim {
 		return val;
 	}
 
+	/**
+	 * Parses the number of concurrent batch runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of concurrent runs
+	 */
+	private static int parseNrofWorkers(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of concurrent runs");
+			System.exit(-1);
+		}
+
+		if (val < 0) {
+			System.err.println("Number of concurrent runs can't be negative");
+			System.exit(-1);
+		}
+		if (val == 0) {
+			val = Runtime.getRuntime().availableProcessors();
+		}
+
+		return val;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
@@ -4,6 +4,9 @@
  */
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +31,13 @@ public class Message implements Comparable<Message> {
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
+	/** Indexes of the message identifiers that are in use (see
+	 * {@link #retainIdIndex(Message)}) */
+	private static HashMap<String, IdIndex> idIndexes;
+	/** Next message identifier index to be given */
+	private static int nextIdIndex;
+	/** Index of this message's identifier (same for all replicates) */
+	private int idIndex;
 	/** The time this message was received */
 	private double timeReceived;
 	/** The time when this message was created */
@@ -68,12 +78,21 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the message (in bytes)
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size) {
+		this(from, to, id, size, indexId(id));
+	}
+
+	/**
+	 * Creates a new Message with the given ID index
+	 */
+	private Message(DTNHost from, DTNHost to, String id, int size,
+			int idIndex) {
 		this.from = from;
 		this.to = to;
 		this.id = id;
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
 		this.uniqueId = nextUniqueId;
+		this.idIndex = idIndex;
 
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -136,6 +155,73 @@ public class Message implements Comparable<Message> {
 		return this.uniqueId;
 	}
 
+	/**
+	 * Returns a non-negative index of the message's ID. All messages with
+	 * the same ID (i.e., the replicates of a message) have the same index
+	 * and messages with different IDs have different indexes.
+	 * @return The ID's index
+	 */
+	public int getIdIndex() {
+		return this.idIndex;
+	}
+
+	/**
+	 * Returns the index of a message ID (see {@link #getIdIndex()})
+	 * @param id The message ID
+	 * @return The ID's index or -1 if the ID is not in use, i.e., no message
+	 * with the ID is in any router's message or incoming buffer (and no
+	 * message with the ID has been created after it was last in one)
+	 */
+	public static int getIdIndex(String id) {
+		IdIndex index = idIndexes.get(id);
+		return index == null ? -1 : index.index;
+	}
+
+	/**
+	 * Returns the index of a message ID. A new index is given for IDs that
+	 * are not in use. Indexes are never given again, so a released index
+	 * can't be mistaken for another message's index.
+	 * @param id The message ID
+	 * @return The ID's index
+	 */
+	private static int indexId(String id) {
+		IdIndex index = idIndexes.get(id);
+		if (index == null) {
+			index = new IdIndex(nextIdIndex++);
+			idIndexes.put(id, index);
+		}
+		return index.index;
+	}
+
+	/**
+	 * Tells that a message has been put to a router's buffer. The message's
+	 * ID index can be found with {@link #getIdIndex(String)} until all the
+	 * messages with the ID that were put to buffers have been released
+	 * (see {@link #releaseIdIndex(Message)}).
+	 * @param m The message
+	 */
+	public static void retainIdIndex(Message m) {
+		IdIndex index = idIndexes.get(m.id);
+		if (index == null) {
+			index = new IdIndex(m.idIndex);
+			idIndexes.put(m.id, index);
+		}
+		index.refs++;
+	}
+
+	/**
+	 * Tells that a message retained with {@link #retainIdIndex(Message)} has
+	 * been removed from a buffer. When no buffer has a message with the ID
+	 * anymore, the ID is forgotten (but the messages keep their index).
+	 * @param m The message
+	 */
+	public static void releaseIdIndex(Message m) {
+		IdIndex index = idIndexes.get(m.id);
+		if (index != null && --index.refs <= 0) {
+			idIndexes.remove(m.id);
+		}
+	}
+
 	/**
 	 * Returns the size of the message (in bytes)
 	 * @return the size of the message
@@ -185,6 +271,17 @@ public class Message implements Comparable<Message> {
 		}
 	}
 
+	/**
+	 * Returns the simulation time when the message's initial TTL runs out
+	 * (i.e., creation time + initial TTL)
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + this.initTtl * 60;
+	}
 
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
@@ -348,7 +445,7 @@ public class Message implements Comparable<Message> {
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
+		Message m = new Message(from, to, id, size, this.idIndex);
 		m.copyFrom(this);
 		return m;
 	}
@@ -361,11 +458,120 @@ public class Message implements Comparable<Message> {
 		return toString().compareTo(m.toString());
 	}
 
+	/**
+	 * Writes the state of this message to a snapshot (see {@link Snapshot}).
+	 * The hosts are written as their addresses. Only property values of
+	 * the types supported by {@link Snapshot#writeValue(DataOutput, Object)}
+	 * can be written.
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeInt(this.from.getAddress());
+		out.writeInt(this.to.getAddress());
+		out.writeUTF(this.id);
+		out.writeInt(this.size);
+		out.writeInt(this.idIndex);
+		out.writeInt(this.path.size());
+		for (DTNHost h : this.path) {
+			out.writeInt(h.getAddress());
+		}
+		out.writeInt(this.uniqueId);
+		out.writeDouble(this.timeReceived);
+		out.writeDouble(this.timeCreated);
+		out.writeInt(this.initTtl);
+		out.writeInt(this.responseSize);
+		Snapshot.writeMessage(out, this.requestMsg);
+		out.writeInt(this.properties == null ? -1 : this.properties.size());
+		if (this.properties != null) {
+			for (Map.Entry<String, Object> e : this.properties.entrySet()) {
+				out.writeUTF(e.getKey());
+				Snapshot.writeValue(out, e.getValue());
+			}
+		}
+		Snapshot.writeValue(out, this.appID);
+		Snapshot.writeCoord(out, this.previousNodeCoords);
+		out.writeDouble(this.distanceTravelled);
+	}
+
+	/**
+	 * Reads a message written by {@link #writeState(DataOutput)}. The
+	 * message gets the ID index it had when it was written, but the index
+	 * is not retained (see {@link #retainIdIndex(Message)}).
+	 * @param in Where to read the state from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @return The message
+	 * @throws IOException if reading fails
+	 */
+	static Message readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		DTNHost from = hosts.get(in.readInt());
+		DTNHost to = hosts.get(in.readInt());
+		String id = in.readUTF();
+		int size = in.readInt();
+		Message m = new Message(from, to, id, size, in.readInt());
+		m.path.clear();
+		for (int i=0, n=in.readInt(); i<n; i++) {
+			m.path.add(hosts.get(in.readInt()));
+		}
+		m.uniqueId = in.readInt();
+		m.timeReceived = in.readDouble();
+		m.timeCreated = in.readDouble();
+		m.initTtl = in.readInt();
+		m.responseSize = in.readInt();
+		m.requestMsg = Snapshot.readMessage(in, hosts);
+		int nrofProperties = in.readInt();
+		for (int i=0; i<nrofProperties; i++) {
+			m.updateProperty(in.readUTF(), Snapshot.readValue(in));
+		}
+		m.appID = (String)Snapshot.readValue(in);
+		m.previousNodeCoords = Snapshot.readCoord(in);
+		m.distanceTravelled = in.readDouble();
+		return m;
+	}
+
+	/**
+	 * Writes the state that all messages share (the next unique ID and the
+	 * next ID index) to a snapshot
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	static void writeSharedState(DataOutput out) throws IOException {
+		out.writeInt(nextUniqueId);
+		out.writeInt(nextIdIndex);
+	}
+
+	/**
+	 * Reads the state written by {@link #writeSharedState(DataOutput)}. The
+	 * IDs in use are forgotten; the routers retain the IDs of the messages
+	 * they read to their buffers.
+	 * @param in Where to read the state from
+	 * @return The next unique ID. It must be set with
+	 * {@link #setNextUniqueId(int)} after all the messages have been read.
+	 * @throws IOException if reading fails
+	 */
+	static int readSharedState(DataInput in) throws IOException {
+		int nextId = in.readInt();
+		nextIdIndex = in.readInt();
+		idIndexes = new HashMap<String, IdIndex>();
+		return nextId;
+	}
+
+	/**
+	 * Sets the unique ID that is given to the next message
+	 * @param nextId The next unique ID
+	 */
+	static void setNextUniqueId(int nextId) {
+		nextUniqueId = nextId;
+	}
+
 	/**
 	 * Resets all static fields to default values
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		nextIdIndex = 0;
+		idIndexes = new HashMap<String, IdIndex>();
 	}
 
 	/**
@@ -382,4 +588,15 @@ public class Message implements Comparable<Message> {
 		this.appID = appID;
 	}
 
+	/**
+	 * Index of a message ID and the number of buffered messages with the ID
+	 */
+	private static class IdIndex {
+		private final int index;
+		private int refs;
+
+		private IdIndex(int index) {
+			this.index = index;
+		}
+	}
 }
@@ -4,9 +4,13 @@
  */
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Intermodule communication bus. Works as a blackboard where modules can
@@ -221,6 +225,39 @@ public class ModuleCommunicationBus {
 	}
 
 
+	/**
+	 * Writes the values of the bus to a snapshot (see {@link Snapshot}).
+	 * The subscriptions are not written; the modules subscribe again when
+	 * their own state is read.
+	 * @param out Where to write the values
+	 * @throws IOException if writing fails
+	 * @throws SimError if some value's type is not supported by
+	 * {@link Snapshot#writeValue(DataOutput, Object)}
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeInt(this.values == null ? -1 : this.values.size());
+		if (this.values != null) {
+			for (Map.Entry<String, Object> e : this.values.entrySet()) {
+				out.writeUTF(e.getKey());
+				Snapshot.writeValue(out, e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Reads the values written by {@link #writeState(DataOutput)}. The
+	 * listeners are not notified of the values.
+	 * @param in Where to read the values from
+	 * @throws IOException if reading fails
+	 */
+	void readState(DataInput in) throws IOException {
+		int nrofValues = in.readInt();
+		this.values = (nrofValues < 0 ? null : new HashMap<String, Object>());
+		for (int i=0; i<nrofValues; i++) {
+			this.values.put(in.readUTF(), Snapshot.readValue(in));
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "ComBus with mapping: " + (this.values != null ?
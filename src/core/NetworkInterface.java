@@ -6,7 +6,11 @@ package core;
 
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.IndexedConnectivityGrid;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -60,6 +64,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** index of this interface in the connectivity optimizer (if used) */
+	private int optimizerIndex = -1;
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -117,6 +123,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.scanInterval = ni.scanInterval;
 		this.ah = ni.ah;
 
+		Random rng = NetworkInterface.rng;
+		if (RandomStream.isEnabled()) {
+			rng = RandomStream.nextStream(RandomStream.INTERFACE_DOMAIN);
+		}
+
 		if (ni.activenessJitterMax > 0) {
 			this.activenessJitterValue = rng.nextInt(ni.activenessJitterMax);
 		} else {
@@ -155,8 +166,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 
 		if (transmitRange > 0) {
-			optimizer = ConnectivityGrid.ConnectivityGridFactory(
-					this.interfacetype.hashCode(), transmitRange);
+			if (IndexedConnectivityGrid.isInUse()) {
+				optimizer = IndexedConnectivityGrid.
+					IndexedConnectivityGridFactory(
+							this.interfacetype.hashCode(), transmitRange);
+			} else {
+				optimizer = ConnectivityGrid.ConnectivityGridFactory(
+						this.interfacetype.hashCode(), transmitRange);
+			}
 			optimizer.addInterface(this);
 		} else {
 			optimizer = null;
@@ -183,6 +200,24 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		s.restoreSubNameSpace();
 	}
 
+	/**
+	 * Returns the index the connectivity optimizer has given to this
+	 * interface, or -1 if no index is set
+	 * @return The optimizer index of this interface
+	 */
+	public int getOptimizerIndex() {
+		return this.optimizerIndex;
+	}
+
+	/**
+	 * Sets the index of this interface in the connectivity optimizer. Should
+	 * only be called by the optimizer.
+	 * @param index The index to set
+	 */
+	public void setOptimizerIndex(int index) {
+		this.optimizerIndex = index;
+	}
+
 	/**
 	 * For checking what interface type this interface is
 	 */
@@ -392,6 +427,66 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 	}
 
+	/**
+	 * Returns true if the contacts of this interface can be detected by the
+	 * {@link interfaces.KineticContactDetector}, i.e., a connection exists
+	 * exactly when the interfaces are within range. This implementation
+	 * returns false.
+	 * @return true if the interface supports kinetic contact detection
+	 */
+	public boolean isKineticContactsSupported() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the interface scans for other interfaces all the time,
+	 * i.e., it has no scan interval and it is always active
+	 * @return true if the interface is always scanning
+	 */
+	protected boolean isAlwaysScanning() {
+		return this.scanInterval == 0 && (ah == null || ah.isAlwaysActive());
+	}
+
+	/**
+	 * Returns true if the interface supports checkpoints, i.e., all of its
+	 * state is written by {@link #writeState(DataOutput)}. The connections
+	 * are written by the {@link Snapshot}. This implementation returns
+	 * false.
+	 * @return true if the interface supports checkpoints
+	 */
+	public boolean isSnapshotSupported() {
+		return false;
+	}
+
+	/**
+	 * Writes the state of this interface that changes during the simulation
+	 * to a snapshot. Subclasses that have more state must override this and
+	 * {@link #readState(DataInput)} and call the superclass' methods first.
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(this.lastScanTime);
+		out.writeDouble(this.scanInterval);
+		out.writeDouble(this.transmitRange);
+		out.writeDouble(this.oldTransmitRange);
+		out.writeInt(this.transmitSpeed);
+	}
+
+	/**
+	 * Reads the state of this interface from a snapshot written by
+	 * {@link #writeState(DataOutput)}
+	 * @param in Where the state is read from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException {
+		this.lastScanTime = in.readDouble();
+		this.scanInterval = in.readDouble();
+		this.transmitRange = in.readDouble();
+		this.oldTransmitRange = in.readDouble();
+		this.transmitSpeed = in.readInt();
+	}
+
 	/**
 	 * Updates the state of current connections (ie tears down connections
 	 * that are out of range, recalculates transmission speeds etc.).
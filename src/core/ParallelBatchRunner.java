@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batch mode runs concurrently using a pool of worker threads.
+ * Since most of the simulator's state is in static fields (see
+ * {@link DTNSim#registerForReset(String)}), every run is executed in its own
+ * class loader which loads all the simulator's classes again from the class
+ * path. This way the runs don't share any state and the results are the
+ * same as if the runs were run one after another.
+ * <P>A run that fails (e.g., because of an error in its settings) is
+ * reported and counted as failed, and the other runs continue (see
+ * {@link DTNSim#abort(SimError)}).</P>
+ * <P>Instead of every run's own progress output, a merged progress line of
+ * all the runs is printed every {@link ui.DTNSimTextUI#UI_UP_INTERVAL}
+ * milliseconds.</P>
+ */
+public class ParallelBatchRunner {
+	/** Name of the class whose {@value #RUN_METHOD_NAME} method is called
+	 * to start a run in the run's class loader */
+	public static final String MAIN_CLASS = "core.DTNSim";
+	/** Name of the method that starts a single run */
+	public static final String RUN_METHOD_NAME = "runIsolated";
+	/** Name of the class whose time is polled for the progress output */
+	public static final String CLOCK_CLASS = "core.SimClock";
+
+	private String[] confFiles;
+	private int firstConfIndex;
+	private int firstRun;
+	private int lastRun;
+	private int nrofWorkers;
+	private URL[] classPath;
+
+	/** simulation end times of the runs */
+	private double[] endTimes;
+	/** clock classes of the running runs, mapped by run index */
+	private Map<Integer, Class<?>> runningClocks;
+	private AtomicInteger runsDone;
+	private AtomicInteger runsFailed;
+
+	/**
+	 * Constructor.
+	 * @param confFiles The command line arguments containing the settings
+	 * files
+	 * @param firstConfIndex Index of the first settings file in confFiles
+	 * @param firstRun Index of the first run
+	 * @param lastRun Index of the last run + 1
+	 * @param nrofWorkers How many runs are run concurrently
+	 */
+	public ParallelBatchRunner(String[] confFiles, int firstConfIndex,
+			int firstRun, int lastRun, int nrofWorkers) {
+		this.confFiles = confFiles;
+		this.firstConfIndex = firstConfIndex;
+		this.firstRun = firstRun;
+		this.lastRun = lastRun;
+		this.nrofWorkers = nrofWorkers;
+		this.classPath = parseClassPath(System.getProperty("java.class.path"));
+
+		this.runningClocks = new ConcurrentHashMap<Integer, Class<?>>();
+		this.runsDone = new AtomicInteger(0);
+		this.runsFailed = new AtomicInteger(0);
+
+		/* read the runs' end times for the progress output (settings have
+		 * been read already in this class loader) */
+		this.endTimes = new double[lastRun];
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		for (int i=firstRun; i<lastRun; i++) {
+			Settings.setRunIndex(i);
+			endTimes[i] = s.getDouble(SimScenario.END_TIME_S);
+		}
+	}
+
+	/**
+	 * Converts a class path string to URLs
+	 * @param path The class path
+	 * @return URLs of the class path's entries
+	 */
+	private static URL[] parseClassPath(String path) {
+		String[] entries = path.split(File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		for (int i=0; i<entries.length; i++) {
+			try {
+				urls[i] = new File(entries[i]).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new SimError("Invalid class path entry " + entries[i], e);
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Runs all the runs and returns when they are done
+	 * @return The number of runs that failed
+	 */
+	public int run() {
+		ExecutorService pool = Executors.newFixedThreadPool(nrofWorkers);
+		long startTime = System.currentTimeMillis();
+
+		for (int i=firstRun; i<lastRun; i++) {
+			final int runIndex = i;
+			pool.execute(new Runnable() {
+				public void run() {
+					runSingle(runIndex);
+				}
+			});
+		}
+		pool.shutdown();
+
+		try {
+			while (!pool.awaitTermination(ui.DTNSimTextUI.UI_UP_INTERVAL,
+					TimeUnit.MILLISECONDS)) {
+				printProgress(startTime);
+			}
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			throw new SimError("Batch run interrupted");
+		}
+
+		return runsFailed.get();
+	}
+
+	/**
+	 * Runs a single run in a new class loader
+	 * @param runIndex Index of the run
+	 */
+	private void runSingle(int runIndex) {
+		long startTime = System.currentTimeMillis();
+		Thread thread = Thread.currentThread();
+		ClassLoader oldLoader = thread.getContextClassLoader();
+		/* the parent loader has only the platform classes so all the
+		 * simulator's classes (and their static state) are loaded again */
+		URLClassLoader loader = new URLClassLoader(classPath,
+				ClassLoader.getSystemClassLoader().getParent());
+
+		try {
+			thread.setContextClassLoader(loader);
+			Class<?> clock = Class.forName(CLOCK_CLASS, true, loader);
+			Method runMethod = loader.loadClass(MAIN_CLASS).getMethod(
+					RUN_METHOD_NAME, String[].class, int.class, int.class);
+
+			runningClocks.put(runIndex, clock);
+			runMethod.invoke(null, confFiles, firstConfIndex, runIndex);
+			double duration = (System.currentTimeMillis() - startTime)/1000.0;
+			print("Run " + (runIndex + 1) + "/" + lastRun + " done in " +
+					String.format("%.2f", duration) + "s");
+		} catch (InvocationTargetException e) {
+			runsFailed.incrementAndGet();
+			System.err.println("Run " + (runIndex + 1) + " failed:");
+			e.getCause().printStackTrace();
+		} catch (Exception e) {
+			runsFailed.incrementAndGet();
+			System.err.println("Can't start run " + (runIndex + 1) + ": " + e);
+		} finally {
+			runningClocks.remove(runIndex);
+			runsDone.incrementAndGet();
+			thread.setContextClassLoader(oldLoader);
+			try {
+				loader.close();
+			} catch (IOException e) {
+				/* nothing to do; the loader is not used anymore */
+			}
+		}
+	}
+
+	/**
+	 * Prints a progress line of all the runs
+	 * @param startTime The (real) time when the batch was started
+	 */
+	private void printProgress(long startTime) {
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		double progressSum = 0;
+		int running = 0;
+
+		for (Map.Entry<Integer, Class<?>> e : runningClocks.entrySet()) {
+			double simTime;
+			try {
+				simTime = (Double)e.getValue().getMethod("getTime").
+					invoke(null);
+			} catch (Exception ex) {
+				continue; /* run ended while querying its time */
+			}
+			double endTime = endTimes[e.getKey()];
+			progressSum += Math.max(0, Math.min(1, simTime / endTime));
+			running++;
+		}
+
+		print(String.format("%.1f: %d/%d runs done, %d running " +
+				"(%.1f%% done on average)", duration, runsDone.get(),
+				lastRun - firstRun, running,
+				running > 0 ? 100 * progressSum / running : 0.0));
+	}
+
+	private void print(String txt) {
+		System.out.println(txt);
+	}
+}
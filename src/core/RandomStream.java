@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import movement.MovementModel;
+
+/**
+ * Splittable random number generator that gives every simulation entity
+ * (movement model, network interface, router, etc.) its own stream of
+ * random numbers. The streams are derived from the scenario seed (the
+ * {@link MovementModel#RNG_SEED} setting), the stream's domain and the
+ * entity's number, so the numbers an entity draws don't depend on what the
+ * other entities do or in which order the entities are updated.
+ * <P>The generator is SplitMix64: the state is a counter that is advanced
+ * by a constant and the output is a mix of the counter. Setting the seed
+ * of a stream ({@link #setSeed(long)}) moves the stream to the position
+ * given by the seed (e.g., the current simulation time) without allocating
+ * a new generator, and the same key and position always give the same
+ * numbers.</P>
+ * <P>The streams are used only if the {@link #RNG_STREAMS_S} setting is
+ * true; otherwise the entities use the common generators like before.</P>
+ */
+public class RandomStream extends RestorableRandom {
+	private static final long serialVersionUID = 1L;
+	/** Per entity random number streams -setting id ({@value}). Boolean.
+	 * If true, entities draw their random numbers from their own streams
+	 * instead of the common generators. Default = false. Read from the
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} namespace. */
+	public static final String RNG_STREAMS_S = "rngStreams";
+
+	/** stream domain of the movement models */
+	public static final int MOVEMENT_DOMAIN = 1;
+	/** stream domain of the network interfaces */
+	public static final int INTERFACE_DOMAIN = 2;
+	/** stream domain of the energy models */
+	public static final int ENERGY_DOMAIN = 3;
+	/** stream domain of the routers */
+	public static final int ROUTER_DOMAIN = 4;
+	/** stream domain of the world */
+	public static final int WORLD_DOMAIN = 5;
+	/** number of stream domains */
+	private static final int NROF_DOMAINS = 6;
+
+	/** increment of the generator's counter (odd, the golden ratio) */
+	private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+	/** are the streams used */
+	private static boolean enabled;
+	/** seed that all the streams are derived from */
+	private static long scenarioSeed;
+	/** number of streams given out with nextStream per domain */
+	private static int[] nextIds;
+
+	/** key of this stream */
+	private long key;
+	/** current state (counter) of this stream */
+	private long state;
+
+	static {
+		DTNSim.registerForReset(RandomStream.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Resets the static fields of the class and reads the settings
+	 */
+	public static void reset() {
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		enabled = s.getBoolean(RNG_STREAMS_S, false);
+		s.setNameSpace(MovementModel.MOVEMENT_MODEL_NS);
+		scenarioSeed = s.getInt(MovementModel.RNG_SEED, 0);
+		nextIds = new int[NROF_DOMAINS];
+	}
+
+	/**
+	 * Returns true if the entities should use their own random number
+	 * streams
+	 * @return true if the streams are used
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Creates the stream of an entity
+	 * @param domain The stream domain of the entity (e.g.,
+	 * {@link #ROUTER_DOMAIN})
+	 * @param id The number of the entity in the domain (e.g., the address
+	 * of the host)
+	 * @return A new stream
+	 */
+	public static RandomStream getStream(int domain, long id) {
+		return new RandomStream(mix(mix(scenarioSeed + domain * GAMMA) +
+				id * GAMMA));
+	}
+
+	/**
+	 * Creates the stream of the next entity of a domain. The entities get
+	 * the same streams as long as they are created in the same order.
+	 * @param domain The stream domain of the entity
+	 * @return A new stream
+	 */
+	public static synchronized RandomStream nextStream(int domain) {
+		return getStream(domain, nextIds[domain]++);
+	}
+
+	/**
+	 * Creates a stream with the given key
+	 * @param key The key of the stream
+	 */
+	public RandomStream(long key) {
+		super(0);
+		this.key = key;
+		this.state = key;
+	}
+
+	/**
+	 * Creates a new stream that is independent of this stream
+	 * @param id The number of the new stream (streams with different
+	 * numbers are independent)
+	 * @return The new stream
+	 */
+	public RandomStream split(long id) {
+		return new RandomStream(mix(this.key + (id + 1) * GAMMA));
+	}
+
+	/**
+	 * Moves the stream to the position given by the seed. The stream's key
+	 * is not changed, so streams of different entities stay independent
+	 * even if they are given the same seed.
+	 * @param seed The position (e.g., the current simulation time)
+	 */
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed); // clears the cached gaussian
+		this.state = this.key ^ mix(seed * GAMMA);
+	}
+
+	@Override
+	public long getState() {
+		return this.state;
+	}
+
+	@Override
+	public void setState(long state) {
+		super.setState(state);
+		this.state = state;
+	}
+
+	@Override
+	public long nextLong() {
+		this.state += GAMMA;
+		return mix(this.state);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int)(nextLong() >>> (64 - bits));
+	}
+
+	/**
+	 * The SplitMix64 finalizer: mixes the bits of the value
+	 * @param z The value
+	 * @return The mixed value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Random;
+
+/**
+ * Random number generator that gives exactly the same numbers as
+ * {@link java.util.Random} with the same seed, but whose state can be read
+ * and set, e.g., for snapshots (see {@link Snapshot}).
+ * <P>The cached value of {@link #nextGaussian()} is not part of the state,
+ * so the state should be saved only between pairs of gaussian values.</P>
+ */
+public class RestorableRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	/** the state of the linear congruential generator */
+	private long state;
+
+	/**
+	 * Creates a generator with the given seed
+	 * @param seed The seed
+	 */
+	public RestorableRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed); // clears the cached gaussian
+		this.state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		this.state = (this.state * MULTIPLIER + ADDEND) & MASK;
+		return (int)(this.state >>> (48 - bits));
+	}
+
+	/**
+	 * Returns the current state of the generator
+	 * @return The state
+	 */
+	public long getState() {
+		return this.state;
+	}
+
+	/**
+	 * Sets the state of the generator. After this the generator gives the
+	 * same numbers as the generator whose state was read with
+	 * {@link #getState()}.
+	 * @param state The state
+	 */
+	public void setState(long state) {
+		super.setSeed(0); // clears the cached gaussian
+		this.state = state;
+	}
+}
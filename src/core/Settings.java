@@ -440,7 +440,7 @@ public class Settings {
 	 * @param value The String to parse
 	 * @return The runIndex % arrayLength'th value of the run array
 	 */
-	private static String parseRunSetting(String value) {
+	static String parseRunSetting(String value) {
 		final String RUN_ARRAY_START = "[";
 		final String RUN_ARRAY_END = "]";
 		final String RUN_ARRAY_DELIM = ";";
@@ -381,7 +381,7 @@ public class SimScenario implements Serializable {
 					// Failed to create an application for this group
 					System.err.println("Failed to setup an application: " + se);
 					System.err.println("Caught at " + se.getStackTrace()[0]);
-					System.exit(-1);
+					DTNSim.abort(se);
 				}
 			}
 
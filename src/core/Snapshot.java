@@ -0,0 +1,858 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import input.RestorableEventQueue;
+import interfaces.ConnectivityOptimizer;
+import movement.MovementModel;
+import movement.Path;
+import report.Report;
+import routing.MessageRouter;
+
+/**
+ * Snapshots of the state of a simulation. There are two kinds of
+ * snapshots:
+ * <UL>
+ * <LI>Movement snapshots ({@link #write(World, File)}) contain the
+ * simulation time, the state of the movement models' shared random number
+ * generator and, for every host, the location, destination, speed, path and
+ * the state of the host's movement model (see
+ * {@link MovementModel#writeState(java.io.DataOutput)}). They are meant for
+ * saving the state after the movement model warm-up (see
+ * {@link #WARMUP_SNAPSHOT_S}) so that runs that differ only in their other
+ * settings (e.g., routing) don't have to run the same warm-up again.</LI>
+ * <LI>Checkpoints ({@link #writeCheckpoint(World, File)}) contain also the
+ * rest of the simulation state: the messages in the routers' buffers and
+ * in transfer, the routers' own state (e.g., delivery predictabilities),
+ * the connections, the network interfaces, the connectivity optimizers,
+ * the hosts' communication buses, the update order and the positions of
+ * the event queues (including their random number generators) and the
+ * state of the reports. A checkpoint is written every
+ * {@link #CHECKPOINT_INTERVAL_S} seconds of simulated time, and a
+ * simulation with {@link #CHECKPOINT_RESUME_S} set resumes from it, e.g.,
+ * after a crash. The checkpoint is deleted when the simulation reaches its
+ * end time.</LI>
+ * </UL>
+ * Reading a snapshot to a world that was created using the same settings
+ * continues the simulation exactly from where the snapshot was written.
+ * All the hosts' movement models must support snapshots (see
+ * {@link MovementModel#isSnapshotSupported()}) and, for checkpoints, also
+ * the routers ({@link MessageRouter#isSnapshotSupported()}), network
+ * interfaces ({@link NetworkInterface#isSnapshotSupported()}), event
+ * queues ({@link RestorableEventQueue}) and reports
+ * ({@link Report#isSnapshotSupported()}). This is checked when the
+ * simulation starts (see {@link #checkCheckpointSupport(World)}).</P>
+ * <P>The header of the snapshot contains the warm-up time and a hash of the
+ * settings that affect the saved state (see {@link #getSettingsHash(List)}
+ * and {@link #getCheckpointSettingsHash()}), and a snapshot is only read to
+ * a world whose settings give the same hash.</P>
+ * <P>The file is a compact binary file; coordinates and times are written
+ * as doubles, so no precision is lost.</P>
+ */
+public class Snapshot {
+	/**
+	 * Movement model warm-up snapshot file -setting id ({@value}). If the
+	 * file exists, the movement state is read from it instead of running the
+	 * warm-up. If it doesn't exist, the state is written to it after the
+	 * warm-up. Read from the {@link MovementModel#MOVEMENT_MODEL_NS}
+	 * namespace.
+	 */
+	public static final String WARMUP_SNAPSHOT_S = "warmupSnapshot";
+
+	/** name space of the checkpoint settings ({@value}) */
+	public static final String CHECKPOINT_NS = "Checkpoint";
+	/**
+	 * Checkpoint file -setting id ({@value}). The file where the checkpoints
+	 * are written and where they are resumed from. Deleted when the
+	 * simulation reaches its end time. Supports value filling (e.g.,
+	 * %%Scenario.name%%).
+	 */
+	public static final String CHECKPOINT_FILE_S = "file";
+	/**
+	 * Resume from checkpoint -setting id ({@value}). Boolean. If true, the
+	 * simulation resumes from the checkpoint in {@link #CHECKPOINT_FILE_S}
+	 * instead of starting from the beginning. Default = false.
+	 */
+	public static final String CHECKPOINT_RESUME_S = "resume";
+	/**
+	 * Checkpoint interval -setting id ({@value}). Simulated seconds between
+	 * writing the checkpoints to the {@link #CHECKPOINT_FILE_S}. If not
+	 * defined, checkpoints are not written.
+	 */
+	public static final String CHECKPOINT_INTERVAL_S = "interval";
+
+	/** identifier in the beginning of the file */
+	private static final int MAGIC = 0x4F4E4553;
+	/** version of the file format */
+	private static final int VERSION = 3;
+	/** connection type tags */
+	private static final int CBR_CONNECTION = 1;
+	private static final int VBR_CONNECTION = 2;
+	/** value type tags */
+	private static final int NULL_VALUE = 0;
+	private static final int INTEGER_VALUE = 1;
+	private static final int LONG_VALUE = 2;
+	private static final int DOUBLE_VALUE = 3;
+	private static final int BOOLEAN_VALUE = 4;
+	private static final int STRING_VALUE = 5;
+	/** length of the settings hash (bytes) */
+	private static final int HASH_LENGTH = 32;
+	/** settings of the host group namespaces that don't affect the
+	 * movement (the names of the settings that start with these) */
+	private static final String[] NON_MOVEMENT_GROUP_SETTINGS = {
+		SimScenario.ROUTER_S, SimScenario.NROF_INTERF_S,
+		SimScenario.INTERFACENAME_S, SimScenario.APPCOUNT_S,
+		SimScenario.GAPPNAME_S, MessageRouter.B_SIZE_S,
+		MessageRouter.MSG_TTL_S, MessageRouter.SEND_QUEUE_MODE_S};
+
+	/**
+	 * Writes a snapshot of the world's movement state to a file. The file is
+	 * first written to a temporary file and then renamed, so a file that
+	 * exists is always complete.
+	 * @param world The world whose state to write
+	 * @param file The file to write
+	 * @throws SimError if writing the file fails or some movement model
+	 * doesn't support snapshots
+	 */
+	public static void write(World world, File file) {
+		write(world, file, false);
+	}
+
+	/**
+	 * Writes a checkpoint of the world's whole state to a file. Like with
+	 * {@link #write(World, File)}, a file that exists is always complete, so
+	 * a crash while writing the checkpoint leaves the previous one intact.
+	 * @param world The world whose state to write
+	 * @param file The file to write
+	 * @throws SimError if writing the file fails or some part of the
+	 * simulation doesn't support checkpoints
+	 */
+	public static void writeCheckpoint(World world, File file) {
+		write(world, file, true);
+	}
+
+	/**
+	 * Checks that every part of the world supports checkpoints by writing
+	 * a checkpoint that is discarded. This way an unsupported movement
+	 * model, router, interface, event queue or report is found when the
+	 * simulation starts instead of when the first checkpoint is written.
+	 * @param world The world to check
+	 * @throws SettingsError if some part of the simulation doesn't support
+	 * checkpoints
+	 */
+	public static void checkCheckpointSupport(World world) {
+		DataOutputStream out = new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) { /* discard */ }
+			@Override
+			public void write(byte[] b, int off, int len) { /* discard */ }
+		});
+		try {
+			write(world, out, true);
+		} catch (SimError e) {
+			throw new SettingsError("Checkpoints can't be used: " +
+					e.getMessage());
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot or a checkpoint to a file via a temporary file
+	 */
+	private static void write(World world, File file, boolean checkpoint) {
+		File tmp = new File(file.getPath() + ".tmp" + System.nanoTime());
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				write(world, out, checkpoint);
+			}
+			finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			throw new SimError("Can't write snapshot " + file + ": " +
+					e.getMessage(), e);
+		} catch (SimError e) {
+			tmp.delete();
+			throw e;
+		}
+
+		if (!tmp.renameTo(file) && checkpoint) {
+			/* the platform doesn't replace files when renaming */
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+				throw new SimError("Can't write checkpoint " + file);
+			}
+		}
+		else if (tmp.exists()) {
+			tmp.delete();
+			if (!file.exists()) { /* not written by another run either */
+				throw new SimError("Can't write snapshot " + file);
+			}
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the world's movement state
+	 * @param world The world whose state to write
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	public static void write(World world, DataOutput out) throws IOException {
+		write(world, out, false);
+	}
+
+	/**
+	 * Writes a checkpoint of the world's whole state
+	 * @param world The world whose state to write
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	public static void writeCheckpoint(World world, DataOutput out)
+			throws IOException {
+		write(world, out, true);
+	}
+
+	/**
+	 * Writes a snapshot or, if checkpoint is true, a checkpoint
+	 */
+	private static void write(World world, DataOutput out,
+			boolean checkpoint) throws IOException {
+		List<DTNHost> hosts = world.getHosts();
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeBoolean(checkpoint);
+		out.writeInt(getRngSeed());
+		out.writeBoolean(RandomStream.isEnabled());
+		out.writeInt(hosts.size());
+		out.writeDouble(getWarmupTime());
+		out.write(checkpoint ? getCheckpointSettingsHash() :
+			getSettingsHash(hosts));
+		out.writeDouble(SimClock.getTime());
+		MovementModel.writeSharedState(out);
+
+		for (DTNHost host : hosts) {
+			host.writeMovementState(out);
+		}
+
+		if (!checkpoint) {
+			return;
+		}
+
+		Message.writeSharedState(out);
+		writeConnections(hosts, out);
+		for (DTNHost host : hosts) {
+			host.writeNetworkState(out);
+		}
+		List<ConnectivityOptimizer> optimizers = getOptimizers(hosts);
+		out.writeInt(optimizers.size());
+		for (ConnectivityOptimizer optimizer : optimizers) {
+			optimizer.writeState(out);
+		}
+		world.writeState(out);
+	}
+
+	/**
+	 * Reads a snapshot or a checkpoint from a file to the world
+	 * @param world The world to read the state to. Must have been created
+	 * using the same settings as the world whose snapshot was written and
+	 * not updated yet.
+	 * @param file The file to read
+	 * @throws SimError if reading the file fails
+	 * @throws SettingsError if the snapshot doesn't match the world
+	 */
+	public static void read(World world, File file) {
+		try {
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				read(world, in);
+			}
+			finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read snapshot " + file + ": " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads a snapshot or a checkpoint to the world
+	 * @param world The world to read the state to
+	 * @param in Where to read the state from
+	 * @throws IOException if reading fails
+	 * @throws SettingsError if the snapshot doesn't match the world
+	 */
+	public static void read(World world, DataInput in) throws IOException {
+		List<DTNHost> hosts = world.getHosts();
+
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new SimError("Not a snapshot file (or unknown version)");
+		}
+		boolean checkpoint = in.readBoolean();
+		int rngSeed = in.readInt();
+		boolean rngStreams = in.readBoolean();
+		int nrofHosts = in.readInt();
+		if (rngSeed != getRngSeed() || rngStreams != RandomStream.isEnabled()
+				|| nrofHosts != hosts.size()) {
+			throw new SettingsError("Snapshot (rng seed " + rngSeed +
+					", rng streams " + rngStreams + ", " + nrofHosts +
+					" hosts) doesn't match the scenario. Use another " +
+					"snapshot file for different movement settings.");
+		}
+		double warmupTime = in.readDouble();
+		if (warmupTime != getWarmupTime()) {
+			throw new SettingsError("Snapshot of " + warmupTime + " s " +
+					"warm-up doesn't match the scenario's warm-up time " +
+					getWarmupTime() + ". Use another snapshot file for " +
+					"different movement settings.");
+		}
+		byte[] hash = new byte[HASH_LENGTH];
+		in.readFully(hash);
+		if (checkpoint && !Arrays.equals(hash, getCheckpointSettingsHash())) {
+			throw new SettingsError("Checkpoint was written with different " +
+					"settings than the scenario has. Use another checkpoint " +
+					"file for different settings.");
+		}
+		if (!checkpoint && !Arrays.equals(hash, getSettingsHash(hosts))) {
+			throw new SettingsError("Snapshot was written with different " +
+					"movement settings than the scenario has. Use another " +
+					"snapshot file for different movement settings.");
+		}
+
+		SimClock.getInstance().setTime(in.readDouble());
+		MovementModel.readSharedState(in);
+
+		for (DTNHost host : hosts) {
+			host.readMovementState(in);
+		}
+
+		if (!checkpoint) {
+			return;
+		}
+
+		int nextMessageId = Message.readSharedState(in);
+		readConnections(hosts, in);
+		for (DTNHost host : hosts) {
+			host.readNetworkState(in, hosts);
+		}
+		List<ConnectivityOptimizer> optimizers = getOptimizers(hosts);
+		if (in.readInt() != optimizers.size()) {
+			throw new SimError("Checkpoint's connectivity optimizers don't " +
+					"match the scenario's");
+		}
+		for (ConnectivityOptimizer optimizer : optimizers) {
+			optimizer.readState(in, hosts);
+		}
+		world.readState(in);
+		Message.setNextUniqueId(nextMessageId);
+	}
+
+	/**
+	 * Writes the connections of all the hosts' interfaces. Every
+	 * connection is written (by value) the first time it is found and
+	 * after that as the order number of the first time.
+	 */
+	private static void writeConnections(List<DTNHost> hosts,
+			DataOutput out) throws IOException {
+		Map<Connection, Integer> ids = new IdentityHashMap<Connection,
+			Integer>();
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				List<Connection> connections = ni.getConnections();
+				out.writeInt(connections.size());
+				for (Connection con : connections) {
+					Integer id = ids.get(con);
+					if (id != null) {
+						out.writeInt(id);
+					}
+					else {
+						ids.put(con, ids.size());
+						out.writeInt(-1);
+						writeConnection(out, con);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the connections written by
+	 * {@link #writeConnections(List, DataOutput)} directly to the
+	 * interfaces' connection lists (i.e., without informing the
+	 * connection listeners or routers)
+	 */
+	private static void readConnections(List<DTNHost> hosts, DataInput in)
+			throws IOException {
+		List<Connection> read = new ArrayList<Connection>();
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				List<Connection> connections = ni.getConnections();
+				connections.clear();
+				for (int i=0, n=in.readInt(); i<n; i++) {
+					int id = in.readInt();
+					if (id < 0) {
+						read.add(readConnection(in, hosts));
+						id = read.size() - 1;
+					}
+					connections.add(read.get(id));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the distinct connectivity optimizers of the hosts'
+	 * interfaces in the order of the hosts and interfaces
+	 */
+	private static List<ConnectivityOptimizer> getOptimizers(
+			List<DTNHost> hosts) {
+		Set<ConnectivityOptimizer> optimizers =
+			new LinkedHashSet<ConnectivityOptimizer>();
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (ni.optimizer != null) {
+					optimizers.add(ni.optimizer);
+				}
+			}
+		}
+		return new ArrayList<ConnectivityOptimizer>(optimizers);
+	}
+
+	/**
+	 * Returns the movement models' rng seed setting's value
+	 */
+	private static int getRngSeed() {
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		return s.getInt(MovementModel.RNG_SEED, 0);
+	}
+
+	/**
+	 * Returns the movement model warm-up time setting's value
+	 */
+	private static double getWarmupTime() {
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		return s.getDouble(MovementModel.WARMUP, 0);
+	}
+
+	/**
+	 * Returns a hash of the settings that may affect the movement of the
+	 * hosts: the settings of the {@link MovementModel#MOVEMENT_MODEL_NS}
+	 * namespace (except the snapshot file), the namespaces of the hosts'
+	 * movement model classes (and their superclasses), and the host group
+	 * namespaces (except the routing, interface and application settings).
+	 * Run specific settings are hashed with the current run's value.
+	 * @param hosts The hosts whose movement models' settings are hashed
+	 * @return The hash
+	 */
+	public static byte[] getSettingsHash(List<DTNHost> hosts) {
+		Set<String> namespaces = new HashSet<String>();
+		namespaces.add(MovementModel.MOVEMENT_MODEL_NS);
+		for (DTNHost host : hosts) {
+			for (Class<?> c = host.getMovement().getClass();
+					MovementModel.class.isAssignableFrom(c);
+					c = c.getSuperclass()) {
+				namespaces.add(c.getSimpleName());
+			}
+		}
+
+		Map<String, String> movementSettings = new TreeMap<String, String>();
+		for (String key : Settings.props.stringPropertyNames()) {
+			int dot = key.indexOf('.');
+			if (dot < 0) {
+				continue;
+			}
+			String ns = key.substring(0, dot);
+			String name = key.substring(dot + 1);
+			if (isGroupNamespace(ns)) {
+				if (!isMovementGroupSetting(name)) {
+					continue;
+				}
+			} else if (!namespaces.contains(ns) ||
+					(ns.equals(MovementModel.MOVEMENT_MODEL_NS) &&
+					name.equals(WARMUP_SNAPSHOT_S))) {
+				continue;
+			}
+			movementSettings.put(key, Settings.parseRunSetting(
+					Settings.props.getProperty(key)));
+		}
+
+		return hash(movementSettings);
+	}
+
+	/**
+	 * Returns a hash of the settings that may affect the state of the
+	 * simulation: all the settings except the report settings, the
+	 * checkpoint settings, the warm-up snapshot file and the scenario's end
+	 * time (so that a simulation can be resumed with a longer end time).
+	 * Run specific settings are hashed with the current run's value.
+	 * @return The hash
+	 */
+	public static byte[] getCheckpointSettingsHash() {
+		Map<String, String> settings = new TreeMap<String, String>();
+		for (String key : Settings.props.stringPropertyNames()) {
+			if (key.startsWith(Report.REPORT_NS + ".") ||
+					key.startsWith(CHECKPOINT_NS + ".") ||
+					key.equals(MovementModel.MOVEMENT_MODEL_NS + "." +
+							WARMUP_SNAPSHOT_S) ||
+					key.equals(SimScenario.SCENARIO_NS + "." +
+							SimScenario.END_TIME_S)) {
+				continue;
+			}
+			settings.put(key, Settings.parseRunSetting(
+					Settings.props.getProperty(key)));
+		}
+		return hash(settings);
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the settings' keys and values
+	 */
+	private static byte[] hash(Map<String, String> settings) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, String> e : settings.entrySet()) {
+			text.append(e.getKey()).append('=').append(e.getValue());
+			text.append('\n');
+		}
+		try {
+			return md.digest(text.toString().getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Returns true if the namespace is a host group namespace (e.g.,
+	 * "Group" or "Group1")
+	 */
+	private static boolean isGroupNamespace(String ns) {
+		if (!ns.startsWith(SimScenario.GROUP_NS)) {
+			return false;
+		}
+		for (int i=SimScenario.GROUP_NS.length(); i<ns.length(); i++) {
+			if (!Character.isDigit(ns.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a host group setting may affect the movement
+	 */
+	private static boolean isMovementGroupSetting(String name) {
+		for (String s : NON_MOVEMENT_GROUP_SETTINGS) {
+			if (name.startsWith(s)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a coordinate (or null) to a snapshot
+	 * @param out Where to write the coordinate
+	 * @param c The coordinate (can be null)
+	 * @throws IOException if writing fails
+	 */
+	public static void writeCoord(DataOutput out, Coord c)
+			throws IOException {
+		out.writeBoolean(c != null);
+		if (c != null) {
+			out.writeDouble(c.getX());
+			out.writeDouble(c.getY());
+		}
+	}
+
+	/**
+	 * Reads a coordinate written with {@link #writeCoord(DataOutput, Coord)}
+	 * @param in Where to read the coordinate from
+	 * @return The coordinate (or null)
+	 * @throws IOException if reading fails
+	 */
+	public static Coord readCoord(DataInput in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		double x = in.readDouble();
+		return new Coord(x, in.readDouble());
+	}
+
+	/**
+	 * Writes a path (or null) to a snapshot
+	 * @param out Where to write the path
+	 * @param path The path (can be null)
+	 * @throws IOException if writing fails
+	 */
+	public static void writePath(DataOutput out, Path path)
+			throws IOException {
+		out.writeBoolean(path != null);
+		if (path != null) {
+			path.writeState(out);
+		}
+	}
+
+	/**
+	 * Reads a path written with {@link #writePath(DataOutput, Path)}
+	 * @param in Where to read the path from
+	 * @return The path (or null)
+	 * @throws IOException if reading fails
+	 */
+	public static Path readPath(DataInput in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		Path path = new Path();
+		path.readState(in);
+		return path;
+	}
+
+	/**
+	 * Writes a host-keyed map of doubles (e.g. last encounter times) to a
+	 * checkpoint. Hosts are stored by their address.
+	 * @param out Where to write the map
+	 * @param values The map to write
+	 * @throws IOException if writing fails
+	 */
+	public static void writeHostValues(DataOutput out,
+			Map<DTNHost, Double> values) throws IOException {
+		out.writeInt(values.size());
+		for (Map.Entry<DTNHost, Double> e : values.entrySet()) {
+			out.writeInt(e.getKey().getAddress());
+			out.writeDouble(e.getValue());
+		}
+	}
+
+	/**
+	 * Reads a map written with {@link #writeHostValues(DataOutput, Map)}
+	 * into the given (cleared) map
+	 * @param in Where to read the map from
+	 * @param hosts All hosts of the world, indexed by address
+	 * @param values The map to fill
+	 * @throws IOException if reading fails
+	 */
+	public static void readHostValues(DataInput in, List<DTNHost> hosts,
+			Map<DTNHost, Double> values) throws IOException {
+		values.clear();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			DTNHost host = hosts.get(in.readInt());
+			values.put(host, in.readDouble());
+		}
+	}
+
+	/**
+	 * Writes a message (or null) to a checkpoint
+	 * @param out Where to write the message
+	 * @param m The message (can be null)
+	 * @throws IOException if writing fails
+	 */
+	public static void writeMessage(DataOutput out, Message m)
+			throws IOException {
+		out.writeBoolean(m != null);
+		if (m != null) {
+			m.writeState(out);
+		}
+	}
+
+	/**
+	 * Reads a message written with {@link #writeMessage(DataOutput, Message)}
+	 * @param in Where to read the message from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @return The message (or null)
+	 * @throws IOException if reading fails
+	 */
+	public static Message readMessage(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		return Message.readState(in, hosts);
+	}
+
+	/**
+	 * Writes a connection to a checkpoint. The connection's interfaces are
+	 * written as references (see
+	 * {@link #writeInterface(DataOutput, NetworkInterface)}), so reading the
+	 * connection creates a new connection between the same interfaces.
+	 * @param out Where to write the connection
+	 * @param con The connection
+	 * @throws IOException if writing fails
+	 * @throws SimError if the type of the connection is not supported
+	 */
+	public static void writeConnection(DataOutput out, Connection con)
+			throws IOException {
+		if (con.getClass() == CBRConnection.class) {
+			out.writeByte(CBR_CONNECTION);
+		}
+		else if (con.getClass() == VBRConnection.class) {
+			out.writeByte(VBR_CONNECTION);
+		}
+		else {
+			throw new SimError(con.getClass().getSimpleName() +
+					" doesn't support checkpoints");
+		}
+		writeInterface(out, con.fromInterface);
+		writeInterface(out, con.toInterface);
+		con.writeState(out);
+	}
+
+	/**
+	 * Reads a connection written with
+	 * {@link #writeConnection(DataOutput, Connection)}
+	 * @param in Where to read the connection from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @return The connection
+	 * @throws IOException if reading fails
+	 */
+	public static Connection readConnection(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		int type = in.readByte();
+		NetworkInterface from = readInterface(in, hosts);
+		NetworkInterface to = readInterface(in, hosts);
+		Connection con;
+		switch (type) {
+		case CBR_CONNECTION:
+			con = new CBRConnection(from.getHost(), from, to.getHost(), to, 0);
+			break;
+		case VBR_CONNECTION:
+			con = new VBRConnection(from.getHost(), from, to.getHost(), to);
+			break;
+		default:
+			throw new SimError("Unknown connection type " + type);
+		}
+		con.readState(in, hosts);
+		return con;
+	}
+
+	/**
+	 * Writes a reference to a network interface (the address of its host
+	 * and its index in the host's interfaces)
+	 * @param out Where to write the reference
+	 * @param ni The interface
+	 * @throws IOException if writing fails
+	 */
+	public static void writeInterface(DataOutput out, NetworkInterface ni)
+			throws IOException {
+		DTNHost host = ni.getHost();
+		out.writeInt(host.getAddress());
+		out.writeInt(host.getInterfaces().indexOf(ni));
+	}
+
+	/**
+	 * Reads a reference written with
+	 * {@link #writeInterface(DataOutput, NetworkInterface)}
+	 * @param in Where to read the reference from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @return The interface
+	 * @throws IOException if reading fails
+	 */
+	public static NetworkInterface readInterface(DataInput in,
+			List<DTNHost> hosts) throws IOException {
+		DTNHost host = hosts.get(in.readInt());
+		return host.getInterfaces().get(in.readInt());
+	}
+
+	/**
+	 * Writes a value (e.g., a message property) to a checkpoint. The value
+	 * can be null, Integer, Long, Double, Boolean or String.
+	 * @param out Where to write the value
+	 * @param value The value
+	 * @throws IOException if writing fails
+	 * @throws SimError if the value's type is not supported
+	 */
+	public static void writeValue(DataOutput out, Object value)
+			throws IOException {
+		if (value == null) {
+			out.writeByte(NULL_VALUE);
+		}
+		else if (value instanceof Integer) {
+			out.writeByte(INTEGER_VALUE);
+			out.writeInt((Integer)value);
+		}
+		else if (value instanceof Long) {
+			out.writeByte(LONG_VALUE);
+			out.writeLong((Long)value);
+		}
+		else if (value instanceof Double) {
+			out.writeByte(DOUBLE_VALUE);
+			out.writeDouble((Double)value);
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN_VALUE);
+			out.writeBoolean((Boolean)value);
+		}
+		else if (value instanceof String) {
+			out.writeByte(STRING_VALUE);
+			out.writeUTF((String)value);
+		}
+		else {
+			throw new SimError("Can't write a value of type " +
+					value.getClass().getName() + " to a checkpoint");
+		}
+	}
+
+	/**
+	 * Reads a value written with {@link #writeValue(DataOutput, Object)}
+	 * @param in Where to read the value from
+	 * @return The value
+	 * @throws IOException if reading fails
+	 */
+	public static Object readValue(DataInput in) throws IOException {
+		int type = in.readByte();
+		switch (type) {
+		case NULL_VALUE:
+			return null;
+		case INTEGER_VALUE:
+			return in.readInt();
+		case LONG_VALUE:
+			return in.readLong();
+		case DOUBLE_VALUE:
+			return in.readDouble();
+		case BOOLEAN_VALUE:
+			return in.readBoolean();
+		case STRING_VALUE:
+			return in.readUTF();
+		default:
+			throw new SimError("Unknown value type " + type);
+		}
+	}
+}
@@ -4,6 +4,11 @@
  */
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
 import routing.MessageRouter;
 
 /**
@@ -110,4 +115,22 @@ public class VBRConnection extends Connection {
 		}
 	}
 
+	@Override
+	void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeInt(this.msgsize);
+		out.writeInt(this.msgsent);
+		out.writeInt(this.currentspeed);
+		out.writeDouble(this.lastUpdate);
+	}
+
+	@Override
+	void readState(DataInput in, List<DTNHost> hosts) throws IOException {
+		super.readState(in, hosts);
+		this.msgsize = in.readInt();
+		this.msgsent = in.readInt();
+		this.currentspeed = in.readInt();
+		this.lastUpdate = in.readDouble();
+	}
+
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Event driven movement model warm-up. Instead of moving all the hosts
+ * update interval by update interval, the hosts are moved from waypoint to
+ * waypoint: every host is an event whose time is the time when the host
+ * reaches its next waypoint (or can start its next path), and the events
+ * are processed in time order with the SimClock set to the event's time.
+ * In the end, the hosts that are between waypoints are moved along their
+ * current path segments to the time 0. Movement listeners are not informed
+ * about the new destinations during the warm-up.
+ * <P>Hosts whose movement models are not always active (see
+ * {@link movement.MovementModel#isAlwaysActive()}) are moved update interval
+ * by update interval, as in the normal warm-up, but in the same time order
+ * with the others.</P>
+ * <P>The hosts start their paths exactly when the movement models allow
+ * (instead of at the next update interval) and their paths are requested
+ * in a different order than in the normal warm-up, so the locations after
+ * the warm-up differ from the normal warm-up.</P>
+ */
+public class WarmupMover {
+	/** Event driven warm-up -setting id ({@value}). Boolean. If true, the
+	 * movement model warm-up is done by {@link WarmupMover}.
+	 * Default = false. Read from the {@link World#OPTIMIZATION_SETTINGS_NS}
+	 * namespace. */
+	public static final String FAST_WARMUP_S = "fastWarmup";
+
+	private List<DTNHost> hosts;
+	private double updateInterval;
+	/** sim time of each host's next event */
+	private double[] eventTime;
+	/** sim time when each host started its current path segment */
+	private double[] segmentStart;
+	/** is the host moved update interval by update interval */
+	private boolean[] ticked;
+	/** the always active hosts ordered by their event times */
+	private PriorityQueue<Integer> events;
+
+	/**
+	 * Constructor.
+	 * @param hosts The hosts to move
+	 * @param updateInterval Update interval for the hosts that are not
+	 * always active
+	 */
+	public WarmupMover(List<DTNHost> hosts, double updateInterval) {
+		this.hosts = hosts;
+		this.updateInterval = updateInterval;
+	}
+
+	/**
+	 * Moves the hosts from the current sim time (which must be negative) to
+	 * the time 0. The SimClock's time is 0 after this.
+	 */
+	public void warmup() {
+		SimClock clock = SimClock.getInstance();
+		double start = SimClock.getTime();
+		int n = hosts.size();
+
+		this.eventTime = new double[n];
+		this.segmentStart = new double[n];
+		this.ticked = new boolean[n];
+		boolean anyTicked = false;
+		this.events = new PriorityQueue<Integer>(
+				Math.max(n, 1), new EventComparator());
+
+		for (int i=0; i<n; i++) {
+			DTNHost host = hosts.get(i);
+			host.setMovementListenersEnabled(false);
+			segmentStart[i] = start;
+			if (!host.getMovement().isAlwaysActive()) {
+				ticked[i] = true;
+				anyTicked = true;
+				continue;
+			}
+			if (host.getDestination() == null) {
+				eventTime[i] = Math.max(start, host.getNextTimeToMove());
+			} else { /* already moving towards a destination */
+				eventTime[i] = start + host.getLocation().distance(
+						host.getDestination()) / host.getSpeed();
+			}
+			events.add(i);
+		}
+
+		/* the hosts that are not always active are moved at every update
+		 * interval (ticks) in their normal order */
+		double tickTime = anyTicked ? start : 0;
+		while (true) {
+			double next = events.isEmpty() ? 0 :
+				Math.min(eventTime[events.peek()], 0);
+			if (tickTime < 0 && tickTime <= next) {
+				clock.setTime(tickTime);
+				double step = Math.min(updateInterval, -tickTime);
+				for (int i=0; i<n; i++) {
+					if (ticked[i]) {
+						hosts.get(i).move(step);
+					}
+				}
+				tickTime += step;
+			} else if (next < 0) {
+				moveToNextWaypoint(events.poll());
+			} else {
+				break;
+			}
+		}
+
+		/* move the hosts along their current segments to the time 0 */
+		clock.setTime(0);
+		for (int i=0; i<n; i++) {
+			DTNHost host = hosts.get(i);
+			if (!ticked[i] && host.getDestination() != null) {
+				host.move(-segmentStart[i]);
+			}
+			host.setMovementListenersEnabled(true);
+		}
+	}
+
+	/**
+	 * Moves a host to its next waypoint at the host's event time and
+	 * puts the host back to the event queue with its new event time
+	 * @param i Index of the host
+	 */
+	private void moveToNextWaypoint(int i) {
+		DTNHost host = hosts.get(i);
+		double now = eventTime[i];
+		boolean waiting = host.getDestination() == null;
+
+		SimClock.getInstance().setTime(now);
+		segmentStart[i] = now;
+		double next = host.moveToNextWaypoint();
+		if (waiting && next <= now && host.getDestination() == null) {
+			/* no path yet; try again after an update interval */
+			next = now + updateInterval;
+		}
+
+		eventTime[i] = next;
+		events.add(i);
+	}
+
+	/**
+	 * Orders the hosts by their event times (and indexes)
+	 */
+	private class EventComparator implements Comparator<Integer> {
+		public int compare(Integer i1, Integer i2) {
+			int c = Double.compare(eventTime[i1], eventTime[i2]);
+			if (c == 0) {
+				c = i1.compareTo(i2);
+			}
+			return c;
+		}
+	}
+}
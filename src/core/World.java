@@ -6,12 +6,22 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.RestorableEventQueue;
 import input.ScheduledUpdatesQueue;
+import interfaces.KineticContactDetector;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import report.Report;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -48,6 +58,20 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Parallel host update -setting id ({@value}). Boolean (true/false)
+	 * variable. If true, the moves of the hosts are computed by several
+	 * threads and committed in the normal update order. Default = false.
+	 */
+	public static final String PARALLEL_UPDATE_S = "parallelUpdate";
+	/**
+	 * Number of threads for the parallel host update -setting id ({@value}).
+	 * Integer. Default = the number of available processors.
+	 */
+	public static final String PARALLEL_THREADS_S = "parallelUpdateThreads";
+	/** smallest number of hosts a parallel update task is split to */
+	private static final int MIN_PARALLEL_CHUNK = 64;
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
@@ -61,6 +85,8 @@ public class World {
 	/** nodes in the order they should be updated (if the order should be
 	 * randomized; null value means that the order should not be randomized) */
 	private ArrayList<DTNHost> updateOrder;
+	/** rng for shuffling the update order (reseeded on every update) */
+	private Random updateOrderRng;
 	/** is cancellation of simulation requested from UI */
 	private boolean isCancelled;
 	private List<UpdateListener> updateListeners;
@@ -71,6 +97,27 @@ public class World {
 	private boolean realtimeSimulation;
 	private long simStartRealtime;
 
+	/** thread pool for parallel updates (null if parallel update is off) */
+	private ForkJoinPool parallelPool;
+	/** number of hosts a parallel update task processes without splitting */
+	private int parallelChunkSize;
+	/** kinetic contact detector (null if not in use) */
+	private KineticContactDetector kineticContacts;
+	/** mover of the hosts that are moved in bulk (null if not in use) */
+	private BulkMover bulkMover;
+	/** is the movement model warm-up done by {@link WarmupMover} */
+	private boolean fastWarmup;
+	/** file where checkpoints are written and read from (null if not set) */
+	private File checkpointFile;
+	/** simulated time between checkpoints (-1 if they are not written) */
+	private double checkpointInterval;
+	/** end time of the scenario; a complete run deletes the checkpoint */
+	private double endTime;
+	/** simulation time when the next checkpoint is written */
+	private double nextCheckpoint;
+	/** reports whose state is saved in the checkpoints */
+	private List<Report> reports;
+
 	/**
 	 * Constructor.
 	 */
@@ -90,6 +137,7 @@ public class World {
 		this.isCancelled = false;
 
 		this.simStartRealtime = -1;
+		this.reports = Collections.emptyList();
 		
 		setNextEventQueue();
 		initSettings();
@@ -107,9 +155,74 @@ public class World {
 		
 		this.realtimeSimulation = s.getBoolean(REALTIME_SIM_S ,false);
 
+		if (s.getBoolean(PARALLEL_UPDATE_S, false)) {
+			int threads = s.getInt(PARALLEL_THREADS_S,
+					Runtime.getRuntime().availableProcessors());
+			s.ensurePositiveValue(threads, PARALLEL_THREADS_S);
+			this.parallelPool = new ForkJoinPool(Math.max(threads, 1));
+			this.parallelChunkSize = Math.max(MIN_PARALLEL_CHUNK,
+					this.hosts.size() / (4 * threads));
+		}
+		else {
+			this.parallelPool = null;
+		}
+
+		this.bulkMover = null;
+		if (this.parallelPool == null &&
+				s.getBoolean(BulkMover.BULK_MOVEMENT_S, false)) {
+			BulkMover bm = new BulkMover(this.hosts);
+			if (bm.getNrofHosts() > 0) {
+				this.bulkMover = bm;
+			}
+		}
+
+		this.fastWarmup = s.getBoolean(WarmupMover.FAST_WARMUP_S, false);
+
+		this.kineticContacts = null;
+		if (s.getBoolean(KineticContactDetector.KINETIC_CONTACTS_S, false)) {
+			NetworkInterface ni = KineticContactDetector.findUnsupported(
+					this.hosts);
+			if (ni == null) {
+				this.kineticContacts = new KineticContactDetector(this.hosts);
+				this.eventQueues = new ArrayList<EventQueue>(this.eventQueues);
+				this.eventQueues.add(this.kineticContacts);
+			}
+			else {
+				System.err.println("Warning: " + ni.getClass().getSimpleName() +
+						" of " + ni.getHost() + " doesn't support kinetic " +
+						"contact detection; using the connectivity " +
+						"optimizer instead");
+			}
+		}
+
+		Settings cs = new Settings(Snapshot.CHECKPOINT_NS);
+		this.checkpointFile = null;
+		this.checkpointInterval = -1;
+		if (cs.contains(Snapshot.CHECKPOINT_INTERVAL_S)) {
+			this.checkpointInterval = cs.getDouble(
+					Snapshot.CHECKPOINT_INTERVAL_S);
+			cs.ensurePositiveValue(this.checkpointInterval,
+					Snapshot.CHECKPOINT_INTERVAL_S);
+			this.nextCheckpoint = this.checkpointInterval;
+		}
+		if (this.checkpointInterval > 0 ||
+				cs.contains(Snapshot.CHECKPOINT_FILE_S)) {
+			this.checkpointFile = new File(cs.valueFillString(
+					cs.getSetting(Snapshot.CHECKPOINT_FILE_S)));
+			this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S);
+		}
+
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
+			if (RandomStream.isEnabled()) {
+				this.updateOrderRng = RandomStream.getStream(
+						RandomStream.WORLD_DOMAIN, 0);
+			}
+			else {
+				this.updateOrderRng = new Random();
+			}
 		}
 		else { // null pointer means "don't randomize"
 			this.updateOrder = null;
@@ -121,12 +234,21 @@ public class World {
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
 	 * calling this method.
 	 * @param time The total time (seconds) to move
+	 * @see WarmupMover
 	 */
 	public void warmupMovementModel(double time) {
 		if (time <= 0) {
 			return;
 		}
 
+		if (this.fastWarmup) {
+			new WarmupMover(this.hosts, updateInterval).warmup();
+			if (this.bulkMover != null) {
+				this.bulkMover.syncAll();
+			}
+			return;
+		}
+
 		while(SimClock.getTime() < -updateInterval) {
 			moveHosts(updateInterval);
 			simClock.advance(updateInterval);
@@ -183,6 +305,10 @@ public class World {
 			}
 		}
 		
+		if (this.kineticContacts != null && simulateConnections) {
+			this.kineticContacts.predict(SimClock.getTime(), runUntil);
+		}
+
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
@@ -190,7 +316,9 @@ public class World {
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			if (this.nextEventQueue != this.kineticContacts) {
+				updateHosts(); // update all hosts after every event
+			} /* contact events update the hosts they concern */
 			setNextEventQueue();
 		}
 
@@ -203,7 +331,12 @@ public class World {
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
 		}
-		
+
+		if (this.checkpointInterval > 0 &&
+				SimClock.getTime() >= this.nextCheckpoint) {
+			Snapshot.writeCheckpoint(this, this.checkpointFile);
+			this.nextCheckpoint = SimClock.getTime() + this.checkpointInterval;
+		}
 	}
 
 	/**
@@ -212,25 +345,28 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		List<DTNHost> order;
+
 		if (this.updateOrder == null) { // randomizing is off
-			for (int i=0, n = hosts.size();i < n; i++) {
-				if (this.isCancelled) {
-					break;
-				}
-				hosts.get(i).update(simulateConnections);
-			}
+			order = this.hosts;
 		}
 		else { // update order randomizing is on
 			assert this.updateOrder.size() == this.hosts.size() :
 				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng);
-			for (int i=0, n = hosts.size();i < n; i++) {
-				if (this.isCancelled) {
-					break;
-				}
-				this.updateOrder.get(i).update(simulateConnections);
+			this.updateOrderRng.setSeed(SimClock.getIntTime());
+			Collections.shuffle(this.updateOrder, this.updateOrderRng);
+			order = this.updateOrder;
+		}
+
+		/* with kinetic contacts, the detector's events (dis)connect hosts */
+		boolean updateInterfaces = simulateConnections &&
+			this.kineticContacts == null;
+
+		for (int i=0, n = hosts.size();i < n; i++) {
+			if (this.isCancelled) {
+				break;
 			}
+			order.get(i).update(updateInterfaces);
 		}
 
 		if (simulateConOnce && simulateConnections) {
@@ -243,12 +379,56 @@ public class World {
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.parallelPool != null) {
+			/* compute the simple moves in parallel; the rest, which may
+			 * use shared state (e.g., movement models' rng), in order */
+			this.parallelPool.invoke(new ParallelMoveTask(timeIncrement,
+					0, this.hosts.size()));
+			for (int i=0,n = hosts.size(); i<n; i++) {
+				hosts.get(i).commitMove(timeIncrement);
+			}
+			return;
+		}
+		if (this.bulkMover != null) {
+			/* move the hosts that stay on their path segments at once and
+			 * then the rest in order */
+			this.bulkMover.moveBulk(timeIncrement);
+			this.bulkMover.moveRest(this.hosts, timeIncrement);
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);
 		}
 	}
 
+	/**
+	 * Releases the resources of the world that are not needed after the
+	 * simulation has ended (i.e., stops the parallel update threads). If the
+	 * world is updated after this, the updates are done in a single thread.
+	 * If the simulation reached its end time, the checkpoint file is deleted
+	 * so that a later run doesn't resume from a finished simulation.
+	 */
+	public void done() {
+		if (this.parallelPool != null) {
+			this.parallelPool.shutdown();
+			this.parallelPool = null;
+		}
+		if (this.checkpointFile != null && SimClock.getTime() >= this.endTime) {
+			this.checkpointFile.delete();
+		}
+	}
+
+	/**
+	 * Sets the reports whose state is written to (and read from) the
+	 * checkpoints
+	 * @param reports The reports of the simulation
+	 */
+	public void setReports(List<Report> reports) {
+		this.reports = reports;
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -306,4 +486,134 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Writes the state of the world (the update order, the scheduled updates,
+	 * the positions of the event queues and the state of the reports) to a
+	 * checkpoint
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 * @throws SimError if some event queue or report doesn't support
+	 * checkpoints
+	 * @see Snapshot
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeBoolean(this.updateOrder != null);
+		if (this.updateOrder != null) {
+			for (DTNHost host : this.updateOrder) {
+				out.writeInt(host.getAddress());
+			}
+		}
+		out.writeBoolean(this.simulateConnections);
+		this.scheduledUpdates.writeState(out);
+
+		out.writeInt(this.eventQueues.size());
+		for (EventQueue eq : this.eventQueues) {
+			if (!(eq instanceof RestorableEventQueue)) {
+				throw new SimError("Event queue " +
+						eq.getClass().getSimpleName() + " doesn't support " +
+						"checkpoints");
+			}
+			out.writeUTF(eq.getClass().getName());
+			((RestorableEventQueue)eq).writeState(out);
+		}
+
+		out.writeInt(this.reports.size());
+		for (Report r : this.reports) {
+			if (!r.isSnapshotSupported()) {
+				throw new SimError("Report " + r.getClass().getSimpleName() +
+						" doesn't support checkpoints");
+			}
+			out.writeUTF(r.getClass().getName());
+			r.writeState(out);
+		}
+	}
+
+	/**
+	 * Reads the state written by {@link #writeState(DataOutput)}. The next
+	 * checkpoint is written one checkpoint interval after the current time.
+	 * @param in Where to read the state from
+	 * @throws IOException if reading fails
+	 */
+	void readState(DataInput in) throws IOException {
+		if (in.readBoolean() != (this.updateOrder != null)) {
+			throw new SettingsError("Update order randomizing of the " +
+					"checkpoint doesn't match the scenario's");
+		}
+		if (this.updateOrder != null) {
+			for (int i=0, n=this.updateOrder.size(); i<n; i++) {
+				this.updateOrder.set(i, this.hosts.get(in.readInt()));
+			}
+		}
+		this.simulateConnections = in.readBoolean();
+		this.scheduledUpdates.readState(in);
+
+		if (in.readInt() != this.eventQueues.size()) {
+			throw new SettingsError("Event queues of the checkpoint don't " +
+					"match the scenario's");
+		}
+		for (EventQueue eq : this.eventQueues) {
+			String name = in.readUTF();
+			if (!name.equals(eq.getClass().getName())) {
+				throw new SettingsError("Event queue " + name + " of the " +
+						"checkpoint doesn't match the scenario's " +
+						eq.getClass().getName());
+			}
+			((RestorableEventQueue)eq).readState(in);
+		}
+
+		if (in.readInt() != this.reports.size()) {
+			throw new SettingsError("Reports of the checkpoint don't match " +
+					"the scenario's");
+		}
+		for (Report r : this.reports) {
+			String name = in.readUTF();
+			if (!name.equals(r.getClass().getName())) {
+				throw new SettingsError("Report " + name + " of the " +
+						"checkpoint doesn't match the scenario's " +
+						r.getClass().getName());
+			}
+			r.readState(in, this.hosts);
+		}
+
+		setNextEventQueue();
+		this.nextCheckpoint = SimClock.getTime() + this.checkpointInterval;
+	}
+
+	/**
+	 * Fork-join task that prepares the moves of a range of hosts. Ranges
+	 * larger than the chunk size are split in halves.
+	 */
+	private class ParallelMoveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double timeIncrement;
+		private final int start;
+		private final int end;
+
+		/**
+		 * Constructor.
+		 * @param timeIncrement Time increment of the moves
+		 * @param start Index of the first host to process
+		 * @param end Index of the host after the last one to process
+		 */
+		public ParallelMoveTask(double timeIncrement, int start, int end) {
+			this.timeIncrement = timeIncrement;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > parallelChunkSize) {
+				int mid = (start + end) >>> 1;
+				invokeAll(new ParallelMoveTask(timeIncrement, start, mid),
+						new ParallelMoveTask(timeIncrement, mid, end));
+				return;
+			}
+
+			for (int i=start; i<end; i++) {
+				hosts.get(i).prepareMove(timeIncrement);
+			}
+		}
+	}
 }
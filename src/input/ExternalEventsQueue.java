@@ -4,7 +4,10 @@
  */
 package input;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,13 +17,17 @@ import core.Settings;
  * Queue of external events. This class also takes care of buffering
  * the events and preloading only a proper amount of them.
  */
-public class ExternalEventsQueue implements EventQueue {
+public class ExternalEventsQueue implements RestorableEventQueue {
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** number of preloaded event batches to read ahead in a background
+	 * thread -setting id ({@value}). Integer. 0 = no background reading
+	 * (default). See {@link PrefetchingEventsReader}. */
+	public static final String PREFETCH_SETTING = "nrofPrefetch";
 
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
@@ -29,26 +36,47 @@ public class ExternalEventsQueue implements EventQueue {
 	private ExternalEventsReader reader;
 	private int nextEventIndex;
 	private int nrofPreload;
+	private int nrofPrefetch;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	/** number of events returned by {@link #nextEvent()} */
+	private long nrofEventsReturned = 0;
 
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file and if it ends with extension
+	 * defined in {@link MappedEventsReader#MAPPED_EXT}, a memory mapped file.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
+	 * @see MappedEventsReader#convert(java.io.File, java.io.File)
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, 0);
+	}
+
+	/**
+	 * Creates a new Queue from a file and reads the events in a background
+	 * thread
+	 * @param filePath Path to the file where the events are read from
+	 * @param nrofPreload How many events to preload
+	 * @param nrofPrefetch How many preloads are read ahead in the background
+	 * (0 = events are read only when needed, without a background thread)
+	 * @see #ExternalEventsQueue(String, int)
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			int nrofPrefetch) {
 		setNrofPreload(nrofPreload);
+		this.nrofPrefetch = nrofPrefetch;
 		init(filePath);
 	}
 
 	/**
-	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING}
-	 * and {@link #PATH_SETTING}. The path setting supports value filling.
+	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING},
+	 * {@link #PATH_SETTING}, and {@link #PREFETCH_SETTING}. The path setting
+	 * supports value filling.
 	 * @param s The settings
 	 */
 	public ExternalEventsQueue(Settings s) {
@@ -58,6 +86,9 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		if (s.contains(PREFETCH_SETTING)) {
+			this.nrofPrefetch = s.getInt(PREFETCH_SETTING);
+		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -77,13 +108,21 @@ public class ExternalEventsQueue implements EventQueue {
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
 
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+		if (MappedEventsReader.isMappedEeFile(eventsFile)) {
+			this.reader = new MappedEventsReader(eventsFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
 
+		if (nrofPrefetch > 0) {
+			this.reader = new PrefetchingEventsReader(reader, nrofPreload,
+					nrofPrefetch);
+		}
+
 		this.queue = readEvents(nrofPreload);
 		this.nextEventIndex = 0;
 	}
@@ -115,6 +154,7 @@ public class ExternalEventsQueue implements EventQueue {
 
 		ExternalEvent ee = queue.get(nextEventIndex);
 		nextEventIndex++;
+		nrofEventsReturned++;
 
 		if (nextEventIndex >= queue.size()) { // ran out of events
 			queue = readEvents(nrofPreload);
@@ -124,6 +164,28 @@ public class ExternalEventsQueue implements EventQueue {
 		return ee;
 	}
 
+	/**
+	 * Writes the number of events that have been returned
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(this.nrofEventsReturned);
+	}
+
+	/**
+	 * Reads the number of returned events and skips as many events from
+	 * the beginning of the file
+	 */
+	public void readState(DataInput in) throws IOException {
+		long nrofEvents = in.readLong();
+		while (this.nrofEventsReturned < nrofEvents) {
+			if (nextEventsTime() == Double.MAX_VALUE) {
+				throw new IOException("Only " + this.nrofEventsReturned +
+						" of " + nrofEvents + " events in " + eventsFile);
+			}
+			nextEvent();
+		}
+	}
+
 	/**
 	 * Returns the amount of events left in the buffer at the moment
 	 * (the amount can increase later if more events are read).
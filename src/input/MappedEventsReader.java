@@ -0,0 +1,413 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * <P>External events reader for memory mapped binary events files. The
+ * files are created from standard-format events files (see
+ * {@link StandardEventsReader}) with {@link #convert(File, File)} or from
+ * the command line:<BR>
+ * <CODE>java -cp target input.MappedEventsReader &lt;events file&gt;
+ * &lt;output file&gt;{@value #MAPPED_EXT}</CODE></P>
+ * <P>The file has a header, fixed size records of all the events (in time
+ * order) and a table of the message and interface ID strings. Every record
+ * has the event's time, type, host addresses, string table index, and
+ * message and response sizes. The records are read directly from the
+ * memory mapped file, so no parsing is needed and the strings are shared
+ * between the events that have the same ID. Since the records have fixed
+ * size and are sorted by time, the records work as a time index: reading
+ * can be started from any time with a binary search
+ * (see {@link #seekTime(double)}).</P>
+ */
+public class MappedEventsReader implements ExternalEventsReader {
+	/** Extension of memory mapped external events files */
+	public static final String MAPPED_EXT = ".mee";
+	/** Identifier in the beginning of the files ("ONEE") */
+	public static final int MAGIC = 0x4F4E4545;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+	/** Size of the header (bytes) */
+	public static final int HEADER_SIZE = 32;
+	/** Size of an event record (bytes) */
+	public static final int RECORD_SIZE = 32;
+
+	/** how many records are mapped in one buffer (as a power of two);
+	 * a single mapping can't be larger than 2GB */
+	private static final int CHUNK_BITS = 24;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	/** how many events are converted at a time */
+	private static final int CONVERSION_BATCH = 10000;
+
+	private static final int TYPE_CREATE = 1;
+	private static final int TYPE_SEND = 2;
+	private static final int TYPE_DELIVERED = 3;
+	private static final int TYPE_ABORT = 4;
+	private static final int TYPE_DROP = 5;
+	private static final int TYPE_REMOVE = 6;
+	private static final int TYPE_CONN_UP = 7;
+	private static final int TYPE_CONN_DOWN = 8;
+
+	/** the mapped records */
+	private ByteBuffer[] chunks;
+	private long nrofRecords;
+	/** index of the next record to read */
+	private long nextRecord;
+	/** message and interface IDs */
+	private String[] strings;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public MappedEventsReader(File eventsFile) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(eventsFile, "r");
+			if (file.length() < HEADER_SIZE || file.readInt() != MAGIC) {
+				throw new SimError("Invalid memory mapped events file " +
+						eventsFile.getAbsolutePath());
+			}
+			int version = file.readInt();
+			if (version != VERSION) {
+				throw new SimError("Unsupported version " + version +
+						" of memory mapped events file " +
+						eventsFile.getAbsolutePath());
+			}
+			this.nrofRecords = file.readLong();
+			int nrofStrings = file.readInt();
+
+			/* the mappings stay valid after the file is closed */
+			FileChannel channel = file.getChannel();
+			int nrofChunks = (int)((nrofRecords + CHUNK_MASK) >>> CHUNK_BITS);
+			this.chunks = new ByteBuffer[nrofChunks];
+			for (int i=0; i<nrofChunks; i++) {
+				long first = (long)i << CHUNK_BITS;
+				long count = Math.min(nrofRecords - first, CHUNK_MASK + 1);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + first * RECORD_SIZE, count * RECORD_SIZE);
+			}
+
+			channel.position(HEADER_SIZE + nrofRecords * RECORD_SIZE);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					Channels.newInputStream(channel)));
+			this.strings = new String[nrofStrings];
+			for (int i=0; i<nrofStrings; i++) {
+				strings[i] = in.readUTF();
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read memory mapped events file " +
+					eventsFile.getAbsolutePath(), e);
+		} finally {
+			if (file != null) {
+				try {
+					file.close();
+				} catch (IOException e) {}
+			}
+		}
+
+		this.nextRecord = 0;
+	}
+
+	/**
+	 * Reads events from the memory mapped file
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		int count = (int)Math.max(0, Math.min(nrof, nrofRecords - nextRecord));
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(count);
+
+		for (int i=0; i<count; i++) {
+			events.add(readRecord(nextRecord++));
+		}
+
+		return events;
+	}
+
+	/**
+	 * Moves the reading position to the first event whose time is equal to
+	 * or larger than the given time. Takes O(log n) time.
+	 * @param time The time to move to
+	 */
+	public void seekTime(double time) {
+		long lo = 0;
+		long hi = nrofRecords;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (getTime(mid) < time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		this.nextRecord = lo;
+	}
+
+	/**
+	 * Returns the total number of events in the file
+	 * @return the total number of events in the file
+	 */
+	public long getNrofEvents() {
+		return this.nrofRecords;
+	}
+
+	/**
+	 * Releases the mappings. The mapped memory is freed when the buffers are
+	 * garbage collected.
+	 */
+	public void close() {
+		this.chunks = new ByteBuffer[0];
+		this.nrofRecords = 0;
+		this.nextRecord = 0;
+	}
+
+	private ByteBuffer getChunk(long index) {
+		return chunks[(int)(index >>> CHUNK_BITS)];
+	}
+
+	private static int getOffset(long index) {
+		return (int)(index & CHUNK_MASK) * RECORD_SIZE;
+	}
+
+	private double getTime(long index) {
+		return getChunk(index).getDouble(getOffset(index));
+	}
+
+	/**
+	 * Creates the event of a record
+	 * @param index Index of the record
+	 * @return The event
+	 */
+	private ExternalEvent readRecord(long index) {
+		ByteBuffer b = getChunk(index);
+		int off = getOffset(index);
+		double time = b.getDouble(off);
+		int type = b.getInt(off + 8);
+		int host1 = b.getInt(off + 12);
+		int host2 = b.getInt(off + 16);
+		int stringIndex = b.getInt(off + 20);
+		String str = (stringIndex >= 0 ? strings[stringIndex] : null);
+
+		switch (type) {
+		case TYPE_CREATE:
+			return new MessageCreateEvent(host1, host2, str,
+					b.getInt(off + 24), b.getInt(off + 28), time);
+		case TYPE_SEND:
+			return new MessageRelayEvent(host1, host2, str, time,
+					MessageRelayEvent.SENDING);
+		case TYPE_DELIVERED:
+			return new MessageRelayEvent(host1, host2, str, time,
+					MessageRelayEvent.TRANSFERRED);
+		case TYPE_ABORT:
+			return new MessageRelayEvent(host1, host2, str, time,
+					MessageRelayEvent.ABORTED);
+		case TYPE_DROP:
+			return new MessageDeleteEvent(host1, str, time, true);
+		case TYPE_REMOVE:
+			return new MessageDeleteEvent(host1, str, time, false);
+		case TYPE_CONN_UP:
+			return new ConnectionEvent(host1, host2, str, true, time);
+		case TYPE_CONN_DOWN:
+			return new ConnectionEvent(host1, host2, str, false, time);
+		default:
+			throw new SimError("Invalid event type " + type + " in record " +
+					index + " of memory mapped events file");
+		}
+	}
+
+	/**
+	 * Checks if the given file is a memory mapped external events file
+	 * @param file The file to check
+	 * @return True if the file is a memory mapped ee file, false if not
+	 */
+	public static boolean isMappedEeFile(File file) {
+		if (!file.getName().endsWith(MAPPED_EXT)) {
+			return false;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {}
+			}
+		}
+	}
+
+	/**
+	 * Converts a standard-format external events file to a memory mapped
+	 * events file. The events must be in time order.
+	 * @param eventsFile The standard-format events file
+	 * @param mappedFile The file where the memory mapped events are written
+	 * @return The number of converted events
+	 * @throws IOException if the mapped file can't be written
+	 * @throws SimError if the events file is invalid
+	 */
+	public static long convert(File eventsFile, File mappedFile)
+			throws IOException {
+		StandardEventsReader reader = new StandardEventsReader(eventsFile);
+		Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(mappedFile)));
+		long nrofRecords = 0;
+		double lastTime = -Double.MAX_VALUE;
+
+		try {
+			out.write(new byte[HEADER_SIZE]); /* header is written last */
+			List<ExternalEvent> events;
+			while ((events = reader.readEvents(CONVERSION_BATCH)).size() > 0) {
+				for (ExternalEvent ee : events) {
+					if (ee.getTime() < lastTime) {
+						throw new SimError("Event " + ee + " is not in time " +
+								"order in " + eventsFile.getAbsolutePath());
+					}
+					lastTime = ee.getTime();
+					writeRecord(out, ee, stringIndexes, strings);
+					nrofRecords++;
+				}
+			}
+			for (String s : strings) {
+				out.writeUTF(s);
+			}
+		} finally {
+			reader.close();
+			out.close();
+		}
+
+		RandomAccessFile file = new RandomAccessFile(mappedFile, "rw");
+		try {
+			file.writeInt(MAGIC);
+			file.writeInt(VERSION);
+			file.writeLong(nrofRecords);
+			file.writeInt(strings.size());
+		} finally {
+			file.close();
+		}
+
+		return nrofRecords;
+	}
+
+	/**
+	 * Writes the record of an event
+	 * @param out Where to write the record
+	 * @param ee The event
+	 * @param stringIndexes Indexes of the strings written so far
+	 * @param strings The strings written so far
+	 * @throws IOException if writing fails
+	 */
+	private static void writeRecord(DataOutputStream out, ExternalEvent ee,
+			Map<String, Integer> stringIndexes, List<String> strings)
+			throws IOException {
+		int type;
+		int host1;
+		int host2;
+		String str;
+		int size = 0;
+		int respSize = 0;
+
+		if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			type = ce.isUp ? TYPE_CONN_UP : TYPE_CONN_DOWN;
+			host1 = ce.fromAddr;
+			host2 = ce.toAddr;
+			str = ce.interfaceId;
+		} else if (ee instanceof MessageEvent) {
+			MessageEvent me = (MessageEvent)ee;
+			host1 = me.fromAddr;
+			host2 = me.toAddr;
+			str = me.id;
+
+			if (ee instanceof MessageCreateEvent) {
+				type = TYPE_CREATE;
+				size = ((MessageCreateEvent)ee).getSize();
+				respSize = ((MessageCreateEvent)ee).getResponseSize();
+			} else if (ee instanceof MessageDeleteEvent) {
+				type = ((MessageDeleteEvent)ee).isDrop() ? TYPE_DROP :
+					TYPE_REMOVE;
+			} else if (ee instanceof MessageRelayEvent) {
+				switch (((MessageRelayEvent)ee).getStage()) {
+				case MessageRelayEvent.SENDING:
+					type = TYPE_SEND;
+					break;
+				case MessageRelayEvent.TRANSFERRED:
+					type = TYPE_DELIVERED;
+					break;
+				default:
+					type = TYPE_ABORT;
+				}
+			} else {
+				throw new SimError("Unsupported event " + ee);
+			}
+		} else {
+			throw new SimError("Unsupported event " + ee);
+		}
+
+		int stringIndex = -1;
+		if (str != null) {
+			Integer index = stringIndexes.get(str);
+			if (index == null) {
+				index = strings.size();
+				stringIndexes.put(str, index);
+				strings.add(str);
+			}
+			stringIndex = index;
+		}
+
+		out.writeDouble(ee.getTime());
+		out.writeInt(type);
+		out.writeInt(host1);
+		out.writeInt(host2);
+		out.writeInt(stringIndex);
+		out.writeInt(size);
+		out.writeInt(respSize);
+	}
+
+	/**
+	 * Converts a standard-format events file to a memory mapped events file
+	 * @param args The events file and the output file
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: MappedEventsReader <events file> " +
+					"<output file>" + MAPPED_EXT);
+			System.exit(-1);
+		}
+
+		try {
+			long count = convert(new File(args[0]), new File(args[1]));
+			System.out.println("Converted " + count + " events to " + args[1]);
+		} catch (IOException e) {
+			System.err.println("Can't write " + args[1] + ": " +
+					e.getMessage());
+			System.exit(-1);
+		}
+	}
+}
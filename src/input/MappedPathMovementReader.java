@@ -0,0 +1,609 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import core.SimError;
+
+/**
+ * <P>Reader for memory mapped binary path traces. The files are created
+ * from the text trace and activity files of {@link ExternalPathMovementReader}
+ * with {@link #convert(File, File, File)} or from the command line:<BR>
+ * <CODE>java -cp target input.MappedPathMovementReader &lt;trace file&gt;
+ * &lt;activity file&gt; &lt;output file&gt;{@value #MAPPED_EXT}</CODE></P>
+ * <P>Unlike the text reader, which loads the whole trace into memory, this
+ * reader maps the file and reads the points of a path only when they are
+ * needed, so traces much larger than the available memory can be used. The
+ * file has a header (with the offsets of the trace), an index of the
+ * first path of each node, an index of the first point of each path, the
+ * times, x and y coordinates of all the points in separate columns and the
+ * activity times of the nodes. The points are sorted by node; the paths of
+ * a node (and their points) are in the same order as in the trace file.</P>
+ * <P>The times and coordinates are normalized (the minimum values of the
+ * offsets are subtracted) when they are read, like the text reader does.</P>
+ */
+public class MappedPathMovementReader {
+	/** Extension of memory mapped path trace files */
+	public static final String MAPPED_EXT = ".mpt";
+	/** Identifier in the beginning of the files ("ONEP") */
+	public static final int MAGIC = 0x4F4E4550;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+	/** Size of the header (8-byte words) */
+	public static final int HEADER_WORDS = 11;
+
+	/** how many 8-byte words are mapped in one buffer (as a power of two);
+	 * a single mapping can't be larger than 2GB */
+	private static final int CHUNK_BITS = 27;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private static Map<String, MappedPathMovementReader> instances =
+		new HashMap<String, MappedPathMovementReader>();
+
+	private ByteBuffer[] chunks;
+	private int maxID;
+	private long nrofPaths;
+	private long nrofPoints;
+	private long nrofActiveTimes;
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+
+	/* offsets of the file's sections (in words) */
+	private long nodePathsOffset;
+	private long pathPointsOffset;
+	private long nodeActiveOffset;
+	private long timesOffset;
+	private long xOffset;
+	private long yOffset;
+	private long activeStartOffset;
+	private long activeEndOffset;
+
+	/**
+	 * Constructor.
+	 * @param traceFile The memory mapped trace file
+	 */
+	public MappedPathMovementReader(File traceFile) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(traceFile, "r");
+			if (file.length() < HEADER_WORDS * 8 || file.readInt() != MAGIC) {
+				throw new SimError("Invalid memory mapped path trace file " +
+						traceFile.getAbsolutePath());
+			}
+			int version = file.readInt();
+			if (version != VERSION) {
+				throw new SimError("Unsupported version " + version +
+						" of memory mapped path trace file " +
+						traceFile.getAbsolutePath());
+			}
+			this.maxID = file.readInt();
+			file.readInt(); // unused
+			this.nrofPaths = file.readLong();
+			this.nrofPoints = file.readLong();
+			this.nrofActiveTimes = file.readLong();
+			this.minTime = file.readDouble();
+			this.maxTime = file.readDouble();
+			this.minX = file.readDouble();
+			this.maxX = file.readDouble();
+			this.minY = file.readDouble();
+			this.maxY = file.readDouble();
+
+			computeOffsets();
+			/* the mappings stay valid after the file is closed */
+			this.chunks = map(file.getChannel(), FileChannel.MapMode.READ_ONLY,
+					activeEndOffset + nrofActiveTimes);
+		} catch (IOException e) {
+			throw new SimError("Can't read memory mapped path trace file " +
+					traceFile.getAbsolutePath(), e);
+		} finally {
+			if (file != null) {
+				try {
+					file.close();
+				} catch (IOException e) {}
+			}
+		}
+	}
+
+	/**
+	 * Computes the offsets of the sections from the header values
+	 */
+	private void computeOffsets() {
+		this.nodePathsOffset = HEADER_WORDS;
+		this.pathPointsOffset = nodePathsOffset + maxID + 2;
+		this.nodeActiveOffset = pathPointsOffset + nrofPaths + 1;
+		this.timesOffset = nodeActiveOffset + maxID + 2;
+		this.xOffset = timesOffset + nrofPoints;
+		this.yOffset = xOffset + nrofPoints;
+		this.activeStartOffset = yOffset + nrofPoints;
+		this.activeEndOffset = activeStartOffset + nrofActiveTimes;
+	}
+
+	/**
+	 * Maps a file in chunks
+	 * @param channel Channel of the file
+	 * @param mode The mapping mode
+	 * @param nrofWords Size of the file (8-byte words)
+	 * @return The mapped chunks
+	 * @throws IOException if mapping fails
+	 */
+	private static ByteBuffer[] map(FileChannel channel,
+			FileChannel.MapMode mode, long nrofWords) throws IOException {
+		int nrofChunks = (int)((nrofWords + CHUNK_MASK) >>> CHUNK_BITS);
+		ByteBuffer[] chunks = new ByteBuffer[nrofChunks];
+		for (int i=0; i<nrofChunks; i++) {
+			long first = (long)i << CHUNK_BITS;
+			long count = Math.min(nrofWords - first, CHUNK_MASK + 1);
+			chunks[i] = channel.map(mode, first * 8, count * 8);
+		}
+		return chunks;
+	}
+
+	private long getLong(long word) {
+		return chunks[(int)(word >>> CHUNK_BITS)].getLong(
+				(int)(word & CHUNK_MASK) * 8);
+	}
+
+	private double getDouble(long word) {
+		return chunks[(int)(word >>> CHUNK_BITS)].getDouble(
+				(int)(word & CHUNK_MASK) * 8);
+	}
+
+	private void putLong(long word, long value) {
+		chunks[(int)(word >>> CHUNK_BITS)].putLong(
+				(int)(word & CHUNK_MASK) * 8, value);
+	}
+
+	private void putDouble(long word, double value) {
+		chunks[(int)(word >>> CHUNK_BITS)].putDouble(
+				(int)(word & CHUNK_MASK) * 8, value);
+	}
+
+	/**
+	 * Returns the number of paths of a node
+	 * @param id ID of the node
+	 * @return The number of paths (0 if the node is not in the trace)
+	 */
+	public int getNrofPaths(int id) {
+		if (id < 0 || id > maxID) {
+			return 0;
+		}
+		return (int)(getLong(nodePathsOffset + id + 1) -
+				getLong(nodePathsOffset + id));
+	}
+
+	/**
+	 * Returns the index of the first point of a node's path
+	 * @param id ID of the node
+	 * @param path Index of the path among the node's paths
+	 * @return The index of the path's first point
+	 */
+	public long getFirstPoint(int id, int path) {
+		return getLong(pathPointsOffset + getLong(nodePathsOffset + id) + path);
+	}
+
+	/**
+	 * Returns the index after the last point of a node's path
+	 * @param id ID of the node
+	 * @param path Index of the path among the node's paths
+	 * @return The index after the path's last point
+	 */
+	public long getEndPoint(int id, int path) {
+		return getFirstPoint(id, path + 1);
+	}
+
+	/**
+	 * Returns the (normalized) time of a point
+	 * @param point Index of the point
+	 * @return The time of the point
+	 */
+	public double getTime(long point) {
+		return getDouble(timesOffset + point) - minTime;
+	}
+
+	/**
+	 * Returns the (normalized) x coordinate of a point
+	 * @param point Index of the point
+	 * @return The x coordinate of the point
+	 */
+	public double getX(long point) {
+		return getDouble(xOffset + point) - minX;
+	}
+
+	/**
+	 * Returns the (normalized) y coordinate of a point
+	 * @param point Index of the point
+	 * @return The y coordinate of the point
+	 */
+	public double getY(long point) {
+		return getDouble(yOffset + point) - minY;
+	}
+
+	/**
+	 * Returns the number of activity times of a node
+	 * @param id ID of the node
+	 * @return The number of activity times (0 if the node is not in the
+	 * trace)
+	 */
+	public int getNrofActiveTimes(int id) {
+		if (id < 0 || id > maxID) {
+			return 0;
+		}
+		return (int)(getLong(nodeActiveOffset + id + 1) -
+				getLong(nodeActiveOffset + id));
+	}
+
+	/**
+	 * Returns the (normalized) start time of a node's activity time
+	 * @param id ID of the node
+	 * @param index Index of the activity time among the node's times
+	 * @return The start time
+	 */
+	public double getActiveStart(int id, int index) {
+		return getDouble(activeStartOffset +
+				getLong(nodeActiveOffset + id) + index) - minTime;
+	}
+
+	/**
+	 * Returns the (normalized) end time of a node's activity time
+	 * @param id ID of the node
+	 * @param index Index of the activity time among the node's times
+	 * @return The end time
+	 */
+	public double getActiveEnd(int id, int index) {
+		return getDouble(activeEndOffset +
+				getLong(nodeActiveOffset + id) + index) - minTime;
+	}
+
+	/**
+	 * Returns the largest node ID of the trace
+	 * @return the largest node ID
+	 */
+	public int getMaxID() {
+		return maxID;
+	}
+
+	/**
+	 * Returns the total number of points in the trace
+	 * @return the total number of points
+	 */
+	public long getNrofPoints() {
+		return nrofPoints;
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Returns a reader of the given file. The file is mapped only once;
+	 * later calls return the same reader.
+	 * @param traceFilePath Path of the memory mapped trace file
+	 * @return The reader
+	 */
+	public static synchronized MappedPathMovementReader getInstance(
+			String traceFilePath) {
+		MappedPathMovementReader reader = instances.get(traceFilePath);
+		if (reader == null) {
+			reader = new MappedPathMovementReader(new File(traceFilePath));
+			instances.put(traceFilePath, reader);
+		}
+		return reader;
+	}
+
+	/**
+	 * Opens a text file (or the first entry of a zip file) for reading
+	 * @param file The file
+	 * @return Reader of the file
+	 * @throws IOException if the file can't be opened
+	 */
+	private static BufferedReader open(File file) throws IOException {
+		if (file.getName().endsWith(".zip")) {
+			final ZipFile zf = new ZipFile(file);
+			ZipEntry ze = zf.entries().nextElement();
+			return new BufferedReader(new InputStreamReader(
+					zf.getInputStream(ze))) {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					zf.close();
+				}
+			};
+		}
+		return new BufferedReader(new FileReader(file));
+	}
+
+	/**
+	 * Checks that a node ID is within the range of the header
+	 * @param id The ID
+	 * @param maxID The largest ID
+	 * @param file The file where the ID was read
+	 */
+	private static void checkID(int id, int maxID, File file) {
+		if (id < 0 || id > maxID) {
+			throw new SimError("Invalid node ID " + id + " in " +
+					file.getAbsolutePath() + " (max ID is " + maxID + ")");
+		}
+	}
+
+	/**
+	 * Converts a path trace file and an activity file (of the format
+	 * {@link ExternalPathMovementReader} reads) to a memory mapped trace
+	 * file. The trace file is read twice: first to count the paths and
+	 * points of each node and then to write them to their places in the
+	 * file, so only a few numbers per node are kept in memory.
+	 * @param traceFile The path trace file
+	 * @param activityFile The activity file
+	 * @param mappedFile The file where the memory mapped trace is written
+	 * @return The number of converted points
+	 * @throws IOException if a file can't be read or written
+	 * @throws SimError if the trace or activity file is invalid
+	 */
+	public static long convert(File traceFile, File activityFile,
+			File mappedFile) throws IOException {
+		MappedPathMovementReader r = new MappedPathMovementReader();
+
+		/* first pass: the header and the number of paths and points */
+		BufferedReader in = open(traceFile);
+		int[] nrofPaths;
+		long[] nrofPoints;
+		try {
+			String header = in.readLine();
+			StringTokenizer st = new StringTokenizer(header == null ? "" :
+				header);
+			try {
+				r.maxID = Integer.parseInt(st.nextToken());
+				r.minTime = Double.parseDouble(st.nextToken());
+				r.maxTime = Double.parseDouble(st.nextToken());
+				r.minX = Double.parseDouble(st.nextToken());
+				r.maxX = Double.parseDouble(st.nextToken());
+				r.minY = Double.parseDouble(st.nextToken());
+				r.maxY = Double.parseDouble(st.nextToken());
+			} catch (RuntimeException e) {
+				throw new SimError("Invalid offset line '" + header + "' in " +
+						traceFile.getAbsolutePath());
+			}
+
+			nrofPaths = new int[r.maxID + 1];
+			nrofPoints = new long[r.maxID + 1];
+			String line;
+			while ((line = in.readLine()) != null) {
+				st = new StringTokenizer(line);
+				if (!st.hasMoreTokens()) {
+					continue; // Skip empty lines
+				}
+				int id = Integer.parseInt(st.nextToken());
+				checkID(id, r.maxID, traceFile);
+				int count = st.countTokens();
+				if (count == 0) {
+					throw new SimError("Path without points for node " + id +
+							" in " + traceFile.getAbsolutePath());
+				}
+				nrofPaths[id]++;
+				nrofPoints[id] += count;
+				r.nrofPaths++;
+				r.nrofPoints += count;
+			}
+		} finally {
+			in.close();
+		}
+
+		int[] nrofActive = new int[r.maxID + 1];
+		in = open(activityFile);
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				StringTokenizer st = new StringTokenizer(line);
+				if (!st.hasMoreTokens()) {
+					continue;
+				}
+				int id = Integer.parseInt(st.nextToken());
+				checkID(id, r.maxID, activityFile);
+				nrofActive[id]++;
+				r.nrofActiveTimes++;
+			}
+		} finally {
+			in.close();
+		}
+
+		r.computeOffsets();
+		long nrofWords = r.activeEndOffset + r.nrofActiveTimes;
+		if (mappedFile.exists()) {
+			mappedFile.delete();
+		}
+		RandomAccessFile file = new RandomAccessFile(mappedFile, "rw");
+		try {
+			file.setLength(nrofWords * 8);
+			r.chunks = map(file.getChannel(), FileChannel.MapMode.READ_WRITE,
+					nrofWords);
+		} finally {
+			file.close();
+		}
+
+		/* the header and the node indexes */
+		ByteBuffer head = r.chunks[0];
+		head.putInt(0, MAGIC);
+		head.putInt(4, VERSION);
+		head.putInt(8, r.maxID);
+		r.putLong(2, r.nrofPaths);
+		r.putLong(3, r.nrofPoints);
+		r.putLong(4, r.nrofActiveTimes);
+		r.putDouble(5, r.minTime);
+		r.putDouble(6, r.maxTime);
+		r.putDouble(7, r.minX);
+		r.putDouble(8, r.maxX);
+		r.putDouble(9, r.minY);
+		r.putDouble(10, r.maxY);
+
+		/* next free path, point and activity time index of each node */
+		long[] nextPath = new long[r.maxID + 1];
+		long[] nextPoint = new long[r.maxID + 1];
+		long[] nextActive = new long[r.maxID + 1];
+		long paths = 0;
+		long points = 0;
+		long active = 0;
+		for (int i=0; i<=r.maxID; i++) {
+			r.putLong(r.nodePathsOffset + i, paths);
+			r.putLong(r.nodeActiveOffset + i, active);
+			nextPath[i] = paths;
+			nextPoint[i] = points;
+			nextActive[i] = active;
+			paths += nrofPaths[i];
+			points += nrofPoints[i];
+			active += nrofActive[i];
+		}
+		r.putLong(r.nodePathsOffset + r.maxID + 1, paths);
+		r.putLong(r.nodeActiveOffset + r.maxID + 1, active);
+		r.putLong(r.pathPointsOffset + r.nrofPaths, points);
+
+		/* second pass: the points */
+		in = open(traceFile);
+		try {
+			in.readLine(); // header
+			String line;
+			while ((line = in.readLine()) != null) {
+				StringTokenizer st = new StringTokenizer(line);
+				if (!st.hasMoreTokens()) {
+					continue;
+				}
+				int id = Integer.parseInt(st.nextToken());
+				r.putLong(r.pathPointsOffset + nextPath[id]++, nextPoint[id]);
+				while (st.hasMoreTokens()) {
+					String dataPoint = st.nextToken();
+					int d1 = dataPoint.indexOf(',');
+					int d2 = dataPoint.indexOf(',', d1+1);
+					long p = nextPoint[id]++;
+					try {
+						r.putDouble(r.timesOffset + p, Double.parseDouble(
+								dataPoint.substring(0, d1)));
+						r.putDouble(r.xOffset + p, Double.parseDouble(
+								dataPoint.substring(d1+1, d2)));
+						r.putDouble(r.yOffset + p, Double.parseDouble(
+								dataPoint.substring(d2+1)));
+					} catch (RuntimeException e) {
+						throw new SimError("Invalid point '" + dataPoint +
+								"' for node " + id + " in " +
+								traceFile.getAbsolutePath());
+					}
+				}
+			}
+		} finally {
+			in.close();
+		}
+
+		in = open(activityFile);
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				StringTokenizer st = new StringTokenizer(line);
+				if (!st.hasMoreTokens()) {
+					continue;
+				}
+				int id = Integer.parseInt(st.nextToken());
+				long a = nextActive[id]++;
+				r.putDouble(r.activeStartOffset + a,
+						Double.parseDouble(st.nextToken()));
+				r.putDouble(r.activeEndOffset + a,
+						Double.parseDouble(st.nextToken()));
+			}
+		} finally {
+			in.close();
+		}
+
+		for (ByteBuffer chunk : r.chunks) {
+			((MappedByteBuffer)chunk).force();
+		}
+		return r.nrofPoints;
+	}
+
+	/**
+	 * Constructor for the converter
+	 */
+	private MappedPathMovementReader() {}
+
+	/**
+	 * Converts a path trace file and an activity file to a memory mapped
+	 * path trace file
+	 * @param args The trace file, the activity file and the output file
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("Usage: MappedPathMovementReader <trace file> " +
+					"<activity file> <output file>" + MAPPED_EXT);
+			System.exit(-1);
+		}
+
+		try {
+			long count = convert(new File(args[0]), new File(args[1]),
+					new File(args[2]));
+			System.out.println("Converted " + count + " points to " + args[2]);
+		} catch (IOException e) {
+			System.err.println("Can't convert " + args[0] + ": " +
+					e.getMessage());
+			System.exit(-1);
+		}
+	}
+}
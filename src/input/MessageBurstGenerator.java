@@ -4,6 +4,10 @@
  */
 package input;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import core.Settings;
 
 /**
@@ -89,4 +93,18 @@ public class MessageBurstGenerator extends MessageEventGenerator {
 		return mce;
 	}
 
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeInt(this.nextFromOffset);
+		out.writeInt(this.nextToOffset);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		this.nextFromOffset = in.readInt();
+		this.nextToOffset = in.readInt();
+	}
+
 }
@@ -4,8 +4,12 @@
  */
 package input;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
+import core.RestorableRandom;
 import core.Settings;
 import core.SettingsError;
 
@@ -14,7 +18,7 @@ import core.SettingsError;
  * message creation patterns whose message size and inter-message intervals can
  * be configured.
  */
-public class MessageEventGenerator implements EventQueue {
+public class MessageEventGenerator implements RestorableEventQueue {
 	/** Message size range -setting id ({@value}). Can be either a single
 	 * value or a range (min, max) of uniformly distributed random values.
 	 * Defines the message size (bytes). */
@@ -91,7 +95,7 @@ public class MessageEventGenerator implements EventQueue {
 		}
 
 		/* if prefix is unique, so will be the rng's sequence */
-		this.rng = new Random(idPrefix.hashCode());
+		this.rng = new RestorableRandom(idPrefix.hashCode());
 
 		if (this.sizeRange.length == 1) {
 			/* convert single value to range with 0 length */
@@ -220,6 +224,24 @@ public class MessageEventGenerator implements EventQueue {
 		return this.nextEventsTime;
 	}
 
+	/**
+	 * Writes the next event's time, the message counter and the state of
+	 * the random number generator. Subclasses that have more state must
+	 * override this and {@link #readState(DataInput)} and call the
+	 * superclass' methods first.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(this.nextEventsTime);
+		out.writeInt(this.id);
+		out.writeLong(((RestorableRandom)this.rng).getState());
+	}
+
+	public void readState(DataInput in) throws IOException {
+		this.nextEventsTime = in.readDouble();
+		this.id = in.readInt();
+		((RestorableRandom)this.rng).setState(in.readLong());
+	}
+
 	/**
 	 * Returns a next free message ID
 	 * @return next globally unique message ID
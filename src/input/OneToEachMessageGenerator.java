@@ -4,6 +4,9 @@
  */
 package input;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -72,4 +75,22 @@ public class OneToEachMessageGenerator extends MessageEventGenerator {
 		return mce;
 	}
 
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeInt(this.toIds.size());
+		for (int address : this.toIds) {
+			out.writeInt(address);
+		}
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		this.toIds.clear();
+		for (int i=0, n=in.readInt(); i<n; i++) {
+			this.toIds.add(in.readInt());
+		}
+	}
+
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.DTNSim;
+import core.SimError;
+
+/**
+ * External events reader that reads events from another reader in a
+ * background thread. The thread reads batches of events ahead into a
+ * bounded queue (e.g., with two batches, the next batch is read while the
+ * current one is processed) and waits when the queue is full, so reading and
+ * parsing the events overlaps with the simulation but only a limited number
+ * of events is kept in memory. The events are returned in the same order as
+ * the other reader returns them.
+ */
+public class PrefetchingEventsReader implements ExternalEventsReader {
+	/** prefetching readers that haven't been closed yet */
+	private static List<PrefetchingEventsReader> activeReaders;
+
+	private ExternalEventsReader reader;
+	private int batchSize;
+	/** batches read by the thread; an empty batch marks the end */
+	private BlockingQueue<List<ExternalEvent>> batches;
+	private Thread thread;
+	/** error that stopped the thread (if any) */
+	private volatile RuntimeException error;
+
+	/** the batch whose events are being returned */
+	private List<ExternalEvent> current;
+	/** index of the next event to return from the current batch */
+	private int currentIndex;
+	private boolean allEventsRead;
+	private boolean closed;
+
+	static {
+		DTNSim.registerForReset(PrefetchingEventsReader.class.
+				getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Constructor. Starts the background thread.
+	 * @param reader The reader whose events are prefetched. The reader
+	 * must not be used by others after this.
+	 * @param batchSize How many events are read from the reader at a time
+	 * @param nrofBatches Maximum number of batches that are read ahead
+	 */
+	public PrefetchingEventsReader(ExternalEventsReader reader,
+			int batchSize, int nrofBatches) {
+		this.reader = reader;
+		this.batchSize = batchSize;
+		this.batches = new ArrayBlockingQueue<List<ExternalEvent>>(
+				nrofBatches);
+
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				prefetch();
+			}
+		}, "ExternalEventsPrefetcher");
+		this.thread.setDaemon(true);
+
+		synchronized (PrefetchingEventsReader.class) {
+			activeReaders.add(this);
+		}
+		this.thread.start();
+	}
+
+	/**
+	 * Reads batches from the reader until all events have been read or
+	 * the thread is interrupted. Run by the background thread.
+	 */
+	private void prefetch() {
+		try {
+			List<ExternalEvent> batch;
+			do {
+				try {
+					batch = reader.readEvents(batchSize);
+				} catch (RuntimeException e) {
+					this.error = e;
+					batch = new ArrayList<ExternalEvent>(0);
+				}
+				batches.put(batch);
+			} while (batch.size() > 0);
+		} catch (InterruptedException e) {
+			/* reader was closed */
+		}
+	}
+
+	/**
+	 * Returns events read by the background thread. Waits if the thread
+	 * hasn't read the events yet.
+	 * @param nrof Maximum number of events to read
+	 * @return Events in a List (empty list if all events have been read)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		if (current == null || currentIndex >= current.size()) {
+			current = takeBatch();
+			currentIndex = 0;
+		}
+
+		if (currentIndex == 0 && current.size() <= nrof) {
+			List<ExternalEvent> events = current;
+			current = null;
+			return events;
+		}
+
+		int end = Math.min(current.size(), currentIndex + nrof);
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(
+				current.subList(currentIndex, end));
+		currentIndex = end;
+		return events;
+	}
+
+	/**
+	 * Returns the next batch read by the background thread
+	 * @return The next batch or an empty list if all events have been read
+	 */
+	private List<ExternalEvent> takeBatch() {
+		if (allEventsRead) {
+			return new ArrayList<ExternalEvent>(0);
+		}
+
+		List<ExternalEvent> batch;
+		try {
+			batch = batches.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while waiting for external events");
+		}
+
+		if (batch.size() == 0) {
+			allEventsRead = true;
+			if (error != null) {
+				throw new SimError("Reading external events failed: " +
+						error.getMessage(), error);
+			}
+		}
+
+		return batch;
+	}
+
+	/**
+	 * Stops the background thread and closes the reader.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			/* the thread stops after the current batch anyway */
+		}
+		reader.close();
+
+		synchronized (PrefetchingEventsReader.class) {
+			activeReaders.remove(this);
+		}
+	}
+
+	/**
+	 * Closes all prefetching readers that haven't been closed yet (so that
+	 * their threads don't wait for space in the queue forever).
+	 */
+	public static void reset() {
+		List<PrefetchingEventsReader> readers;
+		synchronized (PrefetchingEventsReader.class) {
+			readers = activeReaders;
+			activeReaders = new ArrayList<PrefetchingEventsReader>();
+		}
+
+		if (readers != null) {
+			for (PrefetchingEventsReader r : readers) {
+				r.close();
+			}
+		}
+	}
+}
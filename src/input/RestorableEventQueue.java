@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Event queue whose position can be written to a checkpoint and read back
+ * (see {@link core.Snapshot}). The state is read to a queue that was created
+ * using the same settings, so only the state that changes while the events
+ * are read must be written.
+ */
+public interface RestorableEventQueue extends EventQueue {
+
+	/**
+	 * Writes the state of the queue
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException;
+
+	/**
+	 * Reads the state written by {@link #writeState(DataOutput)}. After
+	 * this the queue returns the same events as the queue whose state was
+	 * written.
+	 * @param in Where the state is read from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException;
+
+}
@@ -4,6 +4,9 @@
  */
 package input;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,7 +15,7 @@ import java.util.List;
  * at the specified simulation time. Multiple updates at the same time
  * are merged to a single update.
  */
-public class ScheduledUpdatesQueue implements EventQueue {
+public class ScheduledUpdatesQueue implements RestorableEventQueue {
 	/** Time of the event (simulated seconds) */
 	private ExternalEvent nextEvent;
 	private List<ExternalEvent> updates;
@@ -93,6 +96,26 @@ public class ScheduledUpdatesQueue implements EventQueue {
 		this.updates.add(ee);
 	}
 
+	/**
+	 * Writes the times of the scheduled updates
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(this.updates.size());
+		out.writeDouble(this.nextEvent.getTime());
+		for (ExternalEvent ee : this.updates) {
+			out.writeDouble(ee.getTime());
+		}
+	}
+
+	public void readState(DataInput in) throws IOException {
+		int nrofUpdates = in.readInt();
+		this.nextEvent = new ExternalEvent(in.readDouble());
+		this.updates.clear();
+		for (int i=0; i<nrofUpdates; i++) {
+			this.updates.add(new ExternalEvent(in.readDouble()));
+		}
+	}
+
 	public String toString() {
 		String times = "updates @ " + this.nextEvent.getTime();
 
@@ -231,19 +231,26 @@ public class StandardEventsReader implements ExternalEventsReader {
 	 * @throws SimError if no address could be parsed from the id
 	 */
 	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
+		int addrStart = hostId.length();
+		while (addrStart > 0 && isDigit(hostId.charAt(addrStart - 1))) {
+			addrStart--;
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
-		}
-		else {
+		if (addrStart == hostId.length()) {
 			throw new SimError("Invalid host ID '" + hostId + "'");
 		}
+		/* the non-numeric prefix (if any) must not contain digits */
+		for (int i=0; i<addrStart; i++) {
+			if (isDigit(hostId.charAt(i))) {
+				throw new SimError("Invalid host ID '" + hostId + "'");
+			}
+		}
+
+		return Integer.parseInt(addrStart == 0 ? hostId :
+			hostId.substring(addrStart));
+	}
 
-		return Integer.parseInt(addressPart);
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
 	}
 
 	public void close() {
@@ -4,17 +4,23 @@
  */
 package interfaces;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
 import core.Coord;
+import core.DTNHost;
 import core.DTNSim;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
+import core.Snapshot;
 import core.World;
 
 /**
@@ -250,6 +256,74 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		return niList;
 	}
 
+	/**
+	 * Calls the visitor for the same interfaces, and in the same order, as
+	 * {@link #getNearInterfaces(NetworkInterface)} returns but without
+	 * creating a new list.
+	 * @param ni The interface whose neighboring interfaces are visited
+	 * @param visitor The visitor to call
+	 */
+	@Override
+	public void forEachNearInterface(NetworkInterface ni,
+			NearInterfaceVisitor visitor) {
+		if (!ginterfaces.containsKey(ni)) {
+			return;
+		}
+
+		Coord c = ni.getLocation();
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+		for (int i = row-1; i <= row+1; i++) {
+			for (int j = col-1; j <= col+1; j++) {
+				ArrayList<NetworkInterface> cellInterfaces =
+					cells[i][j].getInterfaces();
+				for (int k=0, n = cellInterfaces.size(); k < n; k++) {
+					visitor.visit(cellInterfaces.get(k));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		for (int i=0; i<rows+2; i++) {
+			for (int j=0; j<cols+2; j++) {
+				ArrayList<NetworkInterface> members =
+					cells[i][j].getInterfaces();
+				if (members.isEmpty()) {
+					continue;
+				}
+				out.writeInt(i);
+				out.writeInt(j);
+				out.writeInt(members.size());
+				for (NetworkInterface ni : members) {
+					Snapshot.writeInterface(out, ni);
+				}
+			}
+		}
+		out.writeInt(-1);
+	}
+
+	@Override
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		for (int i=0; i<rows+2; i++) {
+			for (int j=0; j<cols+2; j++) {
+				cells[i][j].getInterfaces().clear();
+			}
+		}
+		ginterfaces.clear();
+
+		for (int row = in.readInt(); row >= 0; row = in.readInt()) {
+			GridCell c = cells[row][in.readInt()];
+			for (int k=0, n=in.readInt(); k<n; k++) {
+				NetworkInterface ni = Snapshot.readInterface(in, hosts);
+				c.addInterface(ni);
+				ginterfaces.put(ni, c);
+			}
+		}
+	}
 
 	/**
 	 * Returns a string representation of the ConnectivityCells object
@@ -4,9 +4,15 @@
  */
 package interfaces;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
+import core.DTNHost;
 import core.NetworkInterface;
+import core.SimError;
 
 /**
  * A superclass for schemes for optimizing the location of possible contacts
@@ -40,9 +46,66 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Calls the visitor for all network interfaces that might be located so
+	 * that they can be connected with the network interface. This
+	 * implementation iterates over {@link #getNearInterfaces(NetworkInterface)}
+	 * but optimizers can override it to avoid allocating a collection.
+	 *
+	 * @param ni network interface that needs to be connected
+	 * @param visitor The visitor to call for every near interface
+	 */
+	public void forEachNearInterface(NetworkInterface ni,
+			NearInterfaceVisitor visitor) {
+		for (NetworkInterface near : getNearInterfaces(ni)) {
+			visitor.visit(near);
+		}
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
 	 */
 	abstract public Collection<NetworkInterface> getAllInterfaces();
+
+	/**
+	 * Writes the locations of the interfaces in the optimizer to a snapshot
+	 * (see {@link core.Snapshot}). The order of the interfaces affects the
+	 * order in which near interfaces are found, so it must be written too.
+	 * This implementation throws an error; optimizers that support
+	 * checkpoints must override this and
+	 * {@link #readState(DataInput, List)}.
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		throw new SimError(getClass().getSimpleName() + " doesn't support " +
+				"checkpoints");
+	}
+
+	/**
+	 * Reads the state written by {@link #writeState(DataOutput)}. The
+	 * optimizer must already contain the same interfaces.
+	 * @param in Where the state is read from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		throw new SimError(getClass().getSimpleName() + " doesn't support " +
+				"checkpoints");
+	}
+
+	/**
+	 * Visitor for the near interfaces of a network interface
+	 * @see ConnectivityOptimizer#forEachNearInterface(NetworkInterface,
+	 * NearInterfaceVisitor)
+	 */
+	public interface NearInterfaceVisitor {
+		/**
+		 * Called for every near interface
+		 * @param ni The near interface
+		 */
+		public void visit(NetworkInterface ni);
+	}
 }
@@ -4,7 +4,8 @@
  */
 package interfaces;
 
-import java.util.Collection;
+import interfaces.ConnectivityOptimizer.NearInterfaceVisitor;
+
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
@@ -28,6 +29,12 @@ public class DistanceCapacityInterface extends NetworkInterface {
 	public static final String TRANSMIT_SPEEDS_S = "transmitSpeeds";
 
 	protected final int[] transmitSpeeds;
+	/** visitor that tries to connect to every visited interface */
+	private final NearInterfaceVisitor connector = new NearInterfaceVisitor() {
+		public void visit(NetworkInterface ni) {
+			connect(ni);
+		}
+	};
 
 	/**
 	 * Reads the interface settings from the Settings file
@@ -95,11 +102,7 @@ public class DistanceCapacityInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		optimizer.forEachNearInterface(this, this.connector);
 
 		/* update all connections */
 		for (Connection con : getConnections()) {
@@ -152,6 +155,11 @@ public class DistanceCapacityInterface extends NetworkInterface {
 		return (int)speed;
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
 	/**
 	 * Returns a string representation of the object.
 	 * @return a string representation of the object.
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+import core.World;
+
+/**
+ * <P>
+ * Overlay grid of the world that works like {@link ConnectivityGrid} but
+ * uses only int-indexed arrays in its bookkeeping. Each interface gets a
+ * dense index (stored in the interface, see
+ * {@link NetworkInterface#getOptimizerIndex()}) and the grid keeps the
+ * interfaces' cell and slot indexes in int arrays. Cells are int arrays of
+ * interface indexes where interfaces are removed by moving the last
+ * member of the cell to the removed slot, so moving between cells is O(1).
+ * </P>
+ * <P>
+ * Near interfaces can be iterated without any allocations using
+ * {@link #forEachNearInterface(NetworkInterface, NearInterfaceVisitor)}.
+ * The grid is used instead of {@link ConnectivityGrid} if setting
+ * {@link #INDEXED_GRID_S} is true.
+ * </P>
+ * <P>
+ * <strong>Note:</strong> this class does NOT support negative
+ * coordinates.
+ * </P>
+ */
+public class IndexedConnectivityGrid extends ConnectivityOptimizer {
+
+	/**
+	 * Use the indexed connectivity grid -setting id ({@value}). Boolean.
+	 * Used in {@link World#OPTIMIZATION_SETTINGS_NS} name space.
+	 * Default = false (i.e., {@link ConnectivityGrid} is used). The cell size
+	 * is defined with {@link ConnectivityGrid#CELL_SIZE_MULT_S}.
+	 */
+	public static final String INDEXED_GRID_S = "indexedConnectivityGrid";
+
+	/** initial capacity of cell's member array */
+	private static final int EXPECTED_INTERFACE_COUNT = 4;
+
+	private static boolean inUse;
+	private static int worldSizeX;
+	private static int worldSizeY;
+	private static int cellSizeMultiplier;
+	private static HashMap<Integer, IndexedConnectivityGrid> gridobjects;
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+	/** number of columns including the empty border columns */
+	private int rowLength;
+
+	/** member interface indexes of each cell */
+	private int[][] cellMembers;
+	/** number of members in each cell */
+	private int[] cellCounts;
+
+	/** all interfaces by their index */
+	private ArrayList<NetworkInterface> interfaces;
+	/** cell index of each interface */
+	private int[] cellOf;
+	/** index of each interface in its cell's member array */
+	private int[] slotOf;
+
+	static {
+		DTNSim.registerForReset(
+				IndexedConnectivityGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer, IndexedConnectivityGrid>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+
+		s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
+		inUse = s.getBoolean(INDEXED_GRID_S, false);
+		cellSizeMultiplier = s.getInt(ConnectivityGrid.CELL_SIZE_MULT_S,
+				ConnectivityGrid.DEF_CON_CELL_SIZE_MULT);
+		if (cellSizeMultiplier < 1) {
+			throw new SettingsError("Too small value (" + cellSizeMultiplier +
+					") for " + World.OPTIMIZATION_SETTINGS_NS +
+					"." + ConnectivityGrid.CELL_SIZE_MULT_S);
+		}
+	}
+
+	/**
+	 * Creates a new indexed overlay connectivity grid
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter)
+	 */
+	private IndexedConnectivityGrid(int cellSize) {
+		this.cellSize = cellSize;
+		this.rows = worldSizeY/cellSize + 1;
+		this.cols = worldSizeX/cellSize + 1;
+		// leave empty cells on both sides to make neighbor search easier
+		this.rowLength = cols + 2;
+		int nrofCells = (rows + 2) * rowLength;
+
+		this.cellMembers = new int[nrofCells][];
+		this.cellCounts = new int[nrofCells];
+		for (int i=0; i<nrofCells; i++) {
+			this.cellMembers[i] = new int[EXPECTED_INTERFACE_COUNT];
+		}
+
+		this.interfaces = new ArrayList<NetworkInterface>();
+		this.cellOf = new int[EXPECTED_INTERFACE_COUNT];
+		this.slotOf = new int[EXPECTED_INTERFACE_COUNT];
+	}
+
+	/**
+	 * Returns true if the indexed grid should be used instead of
+	 * {@link ConnectivityGrid} (see {@link #INDEXED_GRID_S}).
+	 * @return true if the indexed grid should be used
+	 */
+	public static boolean isInUse() {
+		return inUse;
+	}
+
+	/**
+	 * Returns an indexed connectivity grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param maxRange Maximum range used by the radio technology using this
+	 *  connectivity grid.
+	 * @return The connectivity grid object for a specific interface
+	 */
+	public static IndexedConnectivityGrid IndexedConnectivityGridFactory(
+			int key, double maxRange) {
+		IndexedConnectivityGrid grid = gridobjects.get(key);
+		if (grid == null) {
+			grid = new IndexedConnectivityGrid((int)Math.ceil(maxRange *
+					cellSizeMultiplier));
+			gridobjects.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Adds a network interface to the overlay grid (unless it is already
+	 * present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int index = ni.getOptimizerIndex();
+		if (index >= 0 && index < interfaces.size() &&
+				interfaces.get(index) == ni) {
+			return; /* already added */
+		}
+
+		index = interfaces.size();
+		interfaces.add(ni);
+		ni.setOptimizerIndex(index);
+		if (index == cellOf.length) {
+			int newLength = cellOf.length * 2;
+			cellOf = Arrays.copyOf(cellOf, newLength);
+			slotOf = Arrays.copyOf(slotOf, newLength);
+		}
+
+		addToCell(index, cellIndex(ni.getLocation()));
+	}
+
+	/**
+	 * Adds interfaces to overlay grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's position in the grid
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int index = ni.getOptimizerIndex();
+		int newCell = cellIndex(ni.getLocation());
+		int oldCell = cellOf[index];
+
+		if (newCell != oldCell) {
+			removeFromCell(index, oldCell);
+			addToCell(index, newCell);
+		}
+	}
+
+	/**
+	 * Calls the visitor for all interfaces in the same or neighboring cells
+	 * as the given interface (including the interface itself). No objects
+	 * are allocated.
+	 * @param ni The interface whose neighboring interfaces are visited
+	 * @param visitor The visitor to call
+	 */
+	@Override
+	public void forEachNearInterface(NetworkInterface ni,
+			NearInterfaceVisitor visitor) {
+		int index = ni.getOptimizerIndex();
+		if (index < 0 || index >= interfaces.size() ||
+				interfaces.get(index) != ni) {
+			return; /* not in this grid */
+		}
+
+		int center = cellOf[index];
+		for (int r = center - rowLength; r <= center + rowLength;
+				r += rowLength) {
+			for (int c = r - 1; c <= r + 1; c++) {
+				int[] members = cellMembers[c];
+				for (int i=0, n = cellCounts[c]; i < n; i++) {
+					visitor.visit(interfaces.get(members[i]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns all interfaces that are "near" (i.e., in neighboring grid cells)
+	 * and use the same technology and channel as the given interface.
+	 * Prefer {@link #forEachNearInterface(NetworkInterface,
+	 * NearInterfaceVisitor)} which does not allocate a new list.
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @return List of near interfaces
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		final ArrayList<NetworkInterface> niList =
+			new ArrayList<NetworkInterface>();
+		forEachNearInterface(ni, new NearInterfaceVisitor() {
+			public void visit(NetworkInterface near) {
+				niList.add(near);
+			}
+		});
+		return niList;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return Collections.unmodifiableList(interfaces);
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(interfaces.size());
+		for (int c=0; c<cellCounts.length; c++) {
+			if (cellCounts[c] == 0) {
+				continue;
+			}
+			out.writeInt(c);
+			out.writeInt(cellCounts[c]);
+			for (int i=0; i<cellCounts[c]; i++) {
+				out.writeInt(cellMembers[c][i]);
+			}
+		}
+		out.writeInt(-1);
+	}
+
+	@Override
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		int nrofInterfaces = in.readInt();
+		if (nrofInterfaces != interfaces.size()) {
+			throw new SimError("Snapshot has " + nrofInterfaces +
+					" interfaces for " + this + " but it has " +
+					interfaces.size());
+		}
+		Arrays.fill(cellCounts, 0);
+		for (int c = in.readInt(); c >= 0; c = in.readInt()) {
+			for (int i=0, n=in.readInt(); i<n; i++) {
+				addToCell(in.readInt(), c);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the cell of the given coordinates
+	 * @param c Coordinates
+	 * @return The cell index
+	 */
+	private int cellIndex(Coord c) {
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " +
+		c + " is out of world's bounds";
+
+		return row * rowLength + col;
+	}
+
+	/**
+	 * Appends an interface to the end of a cell's member array
+	 * @param index Index of the interface
+	 * @param cell Index of the cell
+	 */
+	private void addToCell(int index, int cell) {
+		int count = cellCounts[cell];
+		if (count == cellMembers[cell].length) {
+			cellMembers[cell] = Arrays.copyOf(cellMembers[cell],
+					count * 2);
+		}
+		cellMembers[cell][count] = index;
+		cellCounts[cell] = count + 1;
+		cellOf[index] = cell;
+		slotOf[index] = count;
+	}
+
+	/**
+	 * Removes an interface from a cell by moving the cell's last member to
+	 * the interface's slot
+	 * @param index Index of the interface
+	 * @param cell Index of the cell
+	 */
+	private void removeFromCell(int index, int cell) {
+		int last = --cellCounts[cell];
+		int slot = slotOf[index];
+		assert cellMembers[cell][slot] == index : "interface " +
+			interfaces.get(index) + " not found from cell " + cell;
+
+		int moved = cellMembers[cell][last];
+		cellMembers[cell][slot] = moved;
+		slotOf[moved] = slot;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+}
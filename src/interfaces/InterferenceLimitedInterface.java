@@ -4,7 +4,7 @@
  */
 package interfaces;
 
-import java.util.Collection;
+import interfaces.ConnectivityOptimizer.NearInterfaceVisitor;
 
 import core.Connection;
 import core.NetworkInterface;
@@ -20,6 +20,12 @@ import core.VBRConnection;
 public class InterferenceLimitedInterface extends NetworkInterface {
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
+	/** visitor that tries to connect to every visited interface */
+	private final NearInterfaceVisitor connector = new NearInterfaceVisitor() {
+		public void visit(NetworkInterface ni) {
+			connect(ni);
+		}
+	};
 
 	public InterferenceLimitedInterface(Settings s) {
 		super(s);
@@ -98,10 +104,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces)
-			connect(i);
+		optimizer.forEachNearInterface(this, this.connector);
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
@@ -0,0 +1,525 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import input.ExternalEvent;
+import input.RestorableEventQueue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import movement.Path;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.Snapshot;
+import core.World;
+
+/**
+ * <P>
+ * Event-driven (kinetic) contact detection. At the start of every update
+ * interval the detector computes each host's trajectory for the interval
+ * from its current location, destination, speed and the remaining waypoints
+ * of its path. For every pair of interfaces whose trajectories come close
+ * enough, the exact times when the interfaces get in and out of range are
+ * solved and given to the {@link World} as events. This way contacts start
+ * and end at the right time, and even contacts shorter than the update
+ * interval are found, so a large update interval can be used.
+ * </P>
+ * <P>
+ * Hosts that are about to ask a new path from their movement model are
+ * expected to stay still for the interval; any error is corrected at the
+ * start of the next interval. When the detector is in use, it replaces the
+ * network interfaces' own range checks (see {@link NetworkInterface#update()}).
+ * Interfaces whose contacts depend on something else than the range (e.g.,
+ * scanning intervals, active times or distance based transmit speeds) can't
+ * be handled; see {@link #findUnsupported(List)}.
+ * </P>
+ */
+public class KineticContactDetector implements RestorableEventQueue {
+	/**
+	 * Kinetic contact detection -setting id ({@value}). Boolean. Used in
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} name space. Default = false.
+	 */
+	public static final String KINETIC_CONTACTS_S = "kineticContacts";
+
+	/** initial number of trajectory points per host */
+	private static final int INITIAL_POINTS = 4;
+
+	private List<DTNHost> hosts;
+	/** the predicted events of the current interval in time order */
+	private List<ContactEvent> events;
+	/** index of the next event to return */
+	private int nextEventIndex;
+
+	/** trajectory point times, x and y coordinates for each host */
+	private double[][] trajT;
+	private double[][] trajX;
+	private double[][] trajY;
+	/** number of trajectory points for each host */
+	private int[] trajLen;
+	/** bounding box (min x, max x, min y, max y) of each host's trajectory */
+	private double[][] hostBox;
+
+	/** swept bounding box entries of the interfaces (reused) */
+	private List<Entry> entries;
+	/** entries whose x-range is still overlapping during the sweep */
+	private List<Entry> active;
+	/** number of entries in use */
+	private int nrofEntries;
+
+	/**
+	 * Creates a new detector for the given hosts
+	 * @param hosts The hosts; host's address must be its index in the list
+	 */
+	public KineticContactDetector(List<DTNHost> hosts) {
+		this.hosts = hosts;
+		this.events = new ArrayList<ContactEvent>();
+		this.entries = new ArrayList<Entry>();
+		this.active = new ArrayList<Entry>();
+
+		int n = hosts.size();
+		this.trajT = new double[n][INITIAL_POINTS];
+		this.trajX = new double[n][INITIAL_POINTS];
+		this.trajY = new double[n][INITIAL_POINTS];
+		this.trajLen = new int[n];
+		this.hostBox = new double[n][4];
+	}
+
+	/**
+	 * Returns the first interface of the hosts whose contacts the detector
+	 * can't reproduce (see
+	 * {@link NetworkInterface#isKineticContactsSupported()})
+	 * @param hosts The hosts whose interfaces are checked
+	 * @return The interface or null if all interfaces are supported
+	 */
+	public static NetworkInterface findUnsupported(List<DTNHost> hosts) {
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (!ni.isKineticContactsSupported()) {
+					return ni;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Predicts the contact events between the given times. All events
+	 * predicted earlier and not yet returned are discarded.
+	 * @param start Start time of the interval (current sim time)
+	 * @param end End time of the interval
+	 */
+	public void predict(double start, double end) {
+		this.events.clear();
+		this.nextEventIndex = 0;
+		if (end <= start) {
+			return;
+		}
+
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			buildTrajectory(i, start, end);
+		}
+		collectEntries();
+		sweep(start, end);
+
+		/* stable sort: simultaneous events keep the generation order */
+		Collections.sort(this.events);
+	}
+
+	/**
+	 * Computes the trajectory of a host for the interval. The host follows
+	 * its path with the current speed (like {@link DTNHost#move(double)} does)
+	 * and stops at the end of the path.
+	 * @param index Index of the host
+	 * @param start Start time of the interval
+	 * @param end End time of the interval
+	 */
+	private void buildTrajectory(int index, double start, double end) {
+		DTNHost host = hosts.get(index);
+		Coord loc = host.getLocation();
+		Coord target = host.getDestination();
+		Path path = host.getPath();
+		double speed = host.getSpeed();
+
+		trajLen[index] = 0;
+		addPoint(index, start, loc.getX(), loc.getY());
+		if (target == null || speed <= 0) {
+			addPoint(index, end, loc.getX(), loc.getY());
+			return;
+		}
+
+		double x = loc.getX();
+		double y = loc.getY();
+		double tx = target.getX();
+		double ty = target.getY();
+		double time = start;
+		double budget = (end - start) * speed;
+		int waypoint = 0;
+		int nrofWaypoints = (path == null ? 0 : path.getNrofWaypointsLeft());
+
+		while (true) {
+			double dx = tx - x;
+			double dy = ty - y;
+			double dist = Math.sqrt(dx*dx + dy*dy);
+
+			if (budget < dist) {
+				x += (budget/dist) * dx;
+				y += (budget/dist) * dy;
+				break;
+			}
+
+			/* reaches the waypoint during the interval */
+			budget -= dist;
+			time += dist / speed;
+			x = tx;
+			y = ty;
+			addPoint(index, time, x, y);
+			if (waypoint == nrofWaypoints) {
+				break; // end of the path
+			}
+			tx = path.peekX(waypoint);
+			ty = path.peekY(waypoint);
+			waypoint++;
+		}
+		addPoint(index, end, x, y);
+	}
+
+	/**
+	 * Adds a point to a host's trajectory. A point that does not advance
+	 * time replaces the location of the previous point.
+	 */
+	private void addPoint(int index, double time, double x, double y) {
+		int len = trajLen[index];
+		if (len > 0 && time <= trajT[index][len-1]) {
+			trajX[index][len-1] = x;
+			trajY[index][len-1] = y;
+			return;
+		}
+
+		if (len == trajT[index].length) {
+			trajT[index] = Arrays.copyOf(trajT[index], len * 2);
+			trajX[index] = Arrays.copyOf(trajX[index], len * 2);
+			trajY[index] = Arrays.copyOf(trajY[index], len * 2);
+		}
+		trajT[index][len] = time;
+		trajX[index][len] = x;
+		trajY[index][len] = y;
+		trajLen[index] = len + 1;
+	}
+
+	/**
+	 * Computes the bounding boxes of the hosts' trajectories and creates the
+	 * entries of all interfaces
+	 */
+	private void collectEntries() {
+		this.nrofEntries = 0;
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+			double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			for (int k=0; k < trajLen[i]; k++) {
+				minX = Math.min(minX, trajX[i][k]);
+				maxX = Math.max(maxX, trajX[i][k]);
+				minY = Math.min(minY, trajY[i][k]);
+				maxY = Math.max(maxY, trajY[i][k]);
+			}
+			hostBox[i][0] = minX;
+			hostBox[i][1] = maxX;
+			hostBox[i][2] = minY;
+			hostBox[i][3] = maxY;
+
+			for (NetworkInterface ni : hosts.get(i).getInterfaces()) {
+				if (nrofEntries == entries.size()) {
+					entries.add(new Entry());
+				}
+				Entry e = entries.get(nrofEntries++);
+				double margin = ni.getTransmitRange() / 2;
+				e.ni = ni;
+				e.host = i;
+				e.minX = minX - margin;
+				e.maxX = maxX + margin;
+				e.minY = minY - margin;
+				e.maxY = maxY + margin;
+			}
+		}
+	}
+
+	/**
+	 * Sweeps the entries in x-order and checks all pairs whose bounding boxes
+	 * overlap. Connections between interfaces whose boxes do not overlap are
+	 * torn down at the start of the interval.
+	 */
+	private void sweep(double start, double end) {
+		List<Entry> sorted = entries.subList(0, nrofEntries);
+		Collections.sort(sorted, ENTRY_COMPARATOR);
+		active.clear();
+
+		for (int i=0; i < nrofEntries; i++) {
+			Entry e = sorted.get(i);
+			for (int j=0; j < active.size(); ) {
+				Entry a = active.get(j);
+				if (a.maxX < e.minX) {
+					/* swap-remove; the order of active entries doesn't
+					 * matter since all events are sorted by time later */
+					active.set(j, active.get(active.size()-1));
+					active.remove(active.size()-1);
+					continue;
+				}
+				if (a.host != e.host && a.minY <= e.maxY && e.minY <= a.maxY &&
+						a.ni.getInterfaceType().equals(
+								e.ni.getInterfaceType())) {
+					checkPair(a, e, start, end);
+				}
+				j++;
+			}
+			active.add(e);
+		}
+
+		/* connections whose ends can't be in range during the interval */
+		for (int i=0; i < nrofEntries; i++) {
+			Entry e = sorted.get(i);
+			for (Connection con : e.ni.getConnections()) {
+				NetworkInterface other = con.getOtherInterface(e.ni);
+				int otherHost = other.getHost().getAddress();
+				if (otherHost > e.host && !overlaps(e, otherHost,
+						other.getTransmitRange() / 2)) {
+					addEvent(e.ni, other, false, start);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the entry's box overlaps with a host's trajectory box
+	 * @param e The entry
+	 * @param host Index of the host
+	 * @param margin How much the host's box is expanded
+	 */
+	private boolean overlaps(Entry e, int host, double margin) {
+		double[] box = hostBox[host];
+		return e.minX <= box[1] + margin && box[0] - margin <= e.maxX &&
+			e.minY <= box[3] + margin && box[2] - margin <= e.maxY;
+	}
+
+	/**
+	 * Solves the times when two interfaces get in and out of range during
+	 * the interval and adds the events. If the current connection state does
+	 * not match the distance at the start of the interval, it is corrected.
+	 */
+	private void checkPair(Entry a, Entry b, double start, double end) {
+		double range = Math.min(a.ni.getTransmitRange(),
+				b.ni.getTransmitRange());
+		double r2 = range * range;
+		boolean inRange = isConnected(a.ni, b.ni);
+		int ha = a.host;
+		int hb = b.host;
+		int ia = 0;
+		int ib = 0;
+		double s = start;
+
+		while (true) {
+			/* advance to the segments that contain time s */
+			while (ia < trajLen[ha] - 2 && trajT[ha][ia+1] <= s) {
+				ia++;
+			}
+			while (ib < trajLen[hb] - 2 && trajT[hb][ib+1] <= s) {
+				ib++;
+			}
+			double e = Math.min(end,
+					Math.min(trajT[ha][ia+1], trajT[hb][ib+1]));
+
+			/* relative location at s and relative velocity */
+			double vax = velocity(trajX[ha], trajT[ha], ia);
+			double vay = velocity(trajY[ha], trajT[ha], ia);
+			double vbx = velocity(trajX[hb], trajT[hb], ib);
+			double vby = velocity(trajY[hb], trajT[hb], ib);
+			double dx = (trajX[hb][ib] + vbx * (s - trajT[hb][ib])) -
+				(trajX[ha][ia] + vax * (s - trajT[ha][ia]));
+			double dy = (trajY[hb][ib] + vby * (s - trajT[hb][ib])) -
+				(trajY[ha][ia] + vay * (s - trajT[ha][ia]));
+			double wx = vbx - vax;
+			double wy = vby - vay;
+
+			/* |d + w*t|^2 - r^2 = qa*t^2 + qb*t + qc */
+			double qa = wx*wx + wy*wy;
+			double qb = 2 * (dx*wx + dy*wy);
+			double qc = dx*dx + dy*dy - r2;
+
+			boolean inside = qc <= 0;
+			if (inside != inRange) {
+				addEvent(a.ni, b.ni, inside, s);
+				inRange = inside;
+			}
+
+			double disc = qb*qb - 4*qa*qc;
+			if (qa > 0 && disc > 0) {
+				double sq = Math.sqrt(disc);
+				double enter = s + (-qb - sq) / (2*qa);
+				double leave = s + (-qb + sq) / (2*qa);
+				if (!inRange && enter > s && enter <= e) {
+					addEvent(a.ni, b.ni, true, enter);
+					inRange = true;
+				}
+				if (inRange && leave > s && leave <= e) {
+					addEvent(a.ni, b.ni, false, leave);
+					inRange = false;
+				}
+			}
+
+			if (e >= end) {
+				break;
+			}
+			s = e;
+		}
+	}
+
+	/**
+	 * Returns the velocity along one axis on a trajectory segment
+	 * @param pos Positions (along the axis) of the trajectory points
+	 * @param t Times of the trajectory points
+	 * @param seg Index of the segment
+	 * @return The velocity
+	 */
+	private double velocity(double[] pos, double[] t, int seg) {
+		double dt = t[seg+1] - t[seg];
+		return dt > 0 ? (pos[seg+1] - pos[seg]) / dt : 0;
+	}
+
+	/**
+	 * Returns true if two interfaces are connected to each other
+	 */
+	private boolean isConnected(NetworkInterface a, NetworkInterface b) {
+		for (Connection con : a.getConnections()) {
+			if (con.getOtherInterface(a) == b) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addEvent(NetworkInterface a, NetworkInterface b,
+			boolean up, double time) {
+		events.add(new ContactEvent(a, b, up, time));
+	}
+
+	/**
+	 * Returns the next predicted contact event or ExternalEvent with time of
+	 * Double.MAX_VALUE if there are no events left.
+	 */
+	public ExternalEvent nextEvent() {
+		if (nextEventIndex < events.size()) {
+			return events.get(nextEventIndex++);
+		}
+		return new ExternalEvent(Double.MAX_VALUE);
+	}
+
+	/**
+	 * Returns next predicted event's time or Double.MAX_VALUE if there are
+	 * no events left.
+	 */
+	public double nextEventsTime() {
+		if (nextEventIndex < events.size()) {
+			return events.get(nextEventIndex).getTime();
+		}
+		return Double.MAX_VALUE;
+	}
+
+	/**
+	 * Writes the events that have not been returned yet. The trajectories
+	 * are rebuilt at the start of every interval, so they are not written.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(events.size() - nextEventIndex);
+		for (int i = nextEventIndex, n = events.size(); i < n; i++) {
+			ContactEvent ce = events.get(i);
+			out.writeDouble(ce.getTime());
+			out.writeBoolean(ce.isUp);
+			Snapshot.writeInterface(out, ce.from);
+			Snapshot.writeInterface(out, ce.to);
+		}
+	}
+
+	public void readState(DataInput in) throws IOException {
+		this.events.clear();
+		this.nextEventIndex = 0;
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			double time = in.readDouble();
+			boolean up = in.readBoolean();
+			NetworkInterface from = Snapshot.readInterface(in, hosts);
+			NetworkInterface to = Snapshot.readInterface(in, hosts);
+			this.events.add(new ContactEvent(from, to, up, time));
+		}
+	}
+
+	/** Orders entries by the smaller x-coordinate of their boxes */
+	private static final Comparator<Entry> ENTRY_COMPARATOR =
+		new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			return Double.compare(e1.minX, e2.minX);
+		}
+	};
+
+	/**
+	 * Swept bounding box of an interface's trajectory, expanded by half of
+	 * the interface's range
+	 */
+	private static class Entry {
+		private NetworkInterface ni;
+		private int host;
+		private double minX, maxX, minY, maxY;
+	}
+
+	/**
+	 * Predicted change of connectivity between two interfaces. When
+	 * processed, the connection is created (if both hosts' radios are
+	 * active) or torn down, and the routers of the two hosts are updated.
+	 */
+	private static class ContactEvent extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+		private transient NetworkInterface from;
+		private transient NetworkInterface to;
+		private boolean isUp;
+
+		public ContactEvent(NetworkInterface from, NetworkInterface to,
+				boolean up, double time) {
+			super(time);
+			this.from = from;
+			this.to = to;
+			this.isUp = up;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			DTNHost fromHost = from.getHost();
+			DTNHost toHost = to.getHost();
+
+			if (isUp) {
+				if (fromHost.isRadioActive() && toHost.isRadioActive()) {
+					from.createConnection(to);
+				}
+			} else {
+				from.destroyConnection(to);
+			}
+
+			fromHost.update(false);
+			toHost.update(false);
+		}
+
+		@Override
+		public String toString() {
+			return "Contact " + (isUp ? "up" : "down") + " @" + this.time +
+				" " + from.getHost() + "<->" + to.getHost();
+		}
+	}
+}
@@ -4,7 +4,7 @@
  */
 package interfaces;
 
-import java.util.Collection;
+import interfaces.ConnectivityOptimizer.NearInterfaceVisitor;
 
 import core.CBRConnection;
 import core.Connection;
@@ -16,6 +16,12 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	/** visitor that tries to connect to every visited interface */
+	private final NearInterfaceVisitor connector = new NearInterfaceVisitor() {
+		public void visit(NetworkInterface ni) {
+			connect(ni);
+		}
+	};
 
 	/**
 	 * Reads the interface settings from the Settings file
@@ -87,11 +93,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		optimizer.forEachNearInterface(this, this.connector);
 	}
 
 	/**
@@ -113,6 +115,16 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 		}
 	}
 
+	@Override
+	public boolean isKineticContactsSupported() {
+		return isAlwaysScanning();
+	}
+
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
 	/**
 	 * Returns a string representation of the object.
 	 * @return a string representation of the object.
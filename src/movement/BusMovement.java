@@ -73,6 +73,11 @@ public class BusMovement extends MapRouteMovement {
 		return path;
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return false; // shares state with the bus control system
+	}
+
 	@Override
 	public BusMovement replicate() {
 		return new BusMovement(this);
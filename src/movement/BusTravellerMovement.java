@@ -7,7 +7,7 @@ package movement;
 import java.util.List;
 import java.util.Random;
 
-import movement.map.DijkstraPathFinder;
+import movement.map.AStarPathFinder;
 import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
@@ -45,7 +45,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	private ContinueBusTripDecider cbtd;
 	private double[] probabilities;
 	private double probTakeOtherBus;
-	private DijkstraPathFinder pathFinder;
+	private AStarPathFinder pathFinder;
 
 	private Coord startBusStop;
 	private Coord endBusStop;
@@ -73,7 +73,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			probTakeOtherBus = settings.getDouble(PROBABILITY_TAKE_OTHER_BUS);
 		}
 		cbtd = new ContinueBusTripDecider(rng, probabilities);
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = createPathFinder(null);
 		takeBus = true;
 	}
 
@@ -162,6 +162,11 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		return 0;
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return false; // shares state with the bus control system
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new BusTravellerMovement(this);
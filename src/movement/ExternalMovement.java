@@ -21,6 +21,13 @@ import core.SimClock;
 
 /**
  * Movement model that uses external data of node locations.
+ * <P>By default the locations are read from the file a few time instances
+ * ahead of the simulation time (see {@link #NROF_PRELOAD_S}). If the
+ * {@link #SEGMENT_TABLES_S} setting is true, the whole file is read once
+ * and the trace of every node is stored as a {@link SegmentTable}. Then the
+ * nodes move through the segments without creating any objects during the
+ * simulation, and the location of a node at any time can be looked up
+ * (see {@link #getLocation(double)}).</P>
  */
 public class ExternalMovement extends MovementModel {
 	/** Namespace for settings */
@@ -29,6 +36,9 @@ public class ExternalMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** use precomputed segment tables -setting id ({@value}). Boolean.
+	 * Default = false. */
+	public static final String SEGMENT_TABLES_S = "segmentTables";
 
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
@@ -49,6 +59,8 @@ public class ExternalMovement extends MovementModel {
 	private static double nrofPreload = 10;
 	/** minimum number intervals that should be preloaded ahead of sim time */
 	private static final double MIN_AHEAD_INTERVALS = 2;
+	/** segment tables of the nodes by external id (or null if not used) */
+	private static Map<String, SegmentTable> segmentTables;
 
 	/** the very first location of the node */
 	private Coord intialLocation;
@@ -65,6 +77,13 @@ public class ExternalMovement extends MovementModel {
 	/** is this node active */
 	private boolean isActive;
 
+	/** the node's segment table (if segment tables are used) */
+	private SegmentTable segments;
+	/** index of the next segment to give out in a path */
+	private int nextSegment;
+	/** the path that is reused for the segments */
+	private SegmentPath segmentPath;
+
 	static {
 		DTNSim.registerForReset(ExternalMovement.class.getCanonicalName());
 		reset();
@@ -96,6 +115,42 @@ public class ExternalMovement extends MovementModel {
 					nrofPreload = 1;
 				}
 			}
+
+			if (s.getBoolean(SEGMENT_TABLES_S, false)) {
+				readSegmentTables();
+			}
+			else {
+				segmentTables = null;
+			}
+		}
+	}
+
+	/**
+	 * Reads the rest of the file to the segment tables of the nodes
+	 */
+	private static void readSegmentTables() {
+		segmentTables = new HashMap<String, SegmentTable>();
+		for (Tuple<String, Coord> t : initLocations) {
+			SegmentTable table = new SegmentTable();
+			table.addSample(initTime, t.getValue().getX(),
+					t.getValue().getY());
+			segmentTables.put(t.getKey(), table);
+		}
+
+		List<Tuple<String, Coord>> list;
+		while ((list = reader.readNextMovements()).size() > 0) {
+			double time = reader.getLastTimeStamp();
+			for (Tuple<String, Coord> t : list) {
+				SegmentTable table = segmentTables.get(t.getKey());
+				if (table != null) { // skip IDs not mentioned in init phase
+					table.addSample(time, t.getValue().getX(),
+							t.getValue().getY());
+				}
+			}
+		}
+
+		for (SegmentTable table : segmentTables.values()) {
+			table.trim();
 		}
 	}
 
@@ -119,6 +174,12 @@ public class ExternalMovement extends MovementModel {
 			// puts the new model to model map for later updates
 			idMapping.put(initLoc.getKey(), this);
 			isActive = true;
+
+			if (segmentTables != null) {
+				this.segments = segmentTables.get(initLoc.getKey());
+				this.nextSegment = 0;
+				this.segmentPath = new SegmentPath();
+			}
 		}
 		else {
 			// no more location data left for the new node -> set inactive
@@ -193,6 +254,10 @@ public class ExternalMovement extends MovementModel {
 	 */
 	@Override
 	public double nextPathAvailable() {
+		if (segmentTables != null) {
+			return getNextSegmentTime();
+		}
+
 		if (pathQueue.size() == 0) {
 			return latestPathStartTime;
 		}
@@ -205,6 +270,10 @@ public class ExternalMovement extends MovementModel {
 	public Path getPath() {
 		Path p;
 
+		if (segmentTables != null) {
+			return getSegmentPath();
+		}
+
 		checkPathNeed(); // check if we should preload more paths
 
 		if (SimClock.getTime() < this.nextPathAvailable()) {
@@ -222,6 +291,53 @@ public class ExternalMovement extends MovementModel {
 		return p;
 	}
 
+	/**
+	 * Skips the stationary segments and returns the start time of the next
+	 * moving segment
+	 * @return The start time or Double.MAX_VALUE if the node doesn't move
+	 * anymore
+	 */
+	private double getNextSegmentTime() {
+		if (segments == null) {
+			return Double.MAX_VALUE;
+		}
+		while (nextSegment < segments.size() &&
+				!segments.isMoving(nextSegment)) {
+			nextSegment++;
+		}
+		if (nextSegment == segments.size()) {
+			return Double.MAX_VALUE;
+		}
+		return segments.getStartTime(nextSegment);
+	}
+
+	/**
+	 * Returns the path of the next moving segments. The same path object is
+	 * reused for all the paths of this node.
+	 * @return The path or null if the next segment hasn't started yet
+	 */
+	private Path getSegmentPath() {
+		if (SimClock.getTime() < getNextSegmentTime()) {
+			return null;
+		}
+		segmentPath.readNext();
+		return segmentPath;
+	}
+
+	/**
+	 * Returns the location of this node at the given time according to the
+	 * segment table
+	 * @param time The time
+	 * @return The location or null if segment tables are not used or this
+	 * node has no location data
+	 */
+	public Coord getLocation(double time) {
+		if (segments == null) {
+			return null;
+		}
+		return segments.getLocation(time);
+	}
+
 	@Override
 	public int getMaxX() {
 		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
@@ -274,4 +390,37 @@ public class ExternalMovement extends MovementModel {
 		idMapping = null;
 	}
 
+	/**
+	 * Path through consecutive moving segments of the segment table. Has
+	 * one segment's end point as the waypoint at a time and moves to the
+	 * next segment when the previous one has been traveled.
+	 */
+	private class SegmentPath extends Path {
+		private Coord c = new Coord(0, 0);
+
+		/**
+		 * Replaces the waypoint with the end point of the next segment
+		 */
+		private void readNext() {
+			int i = nextSegment++;
+			double x = segments.getStartX(i + 1);
+			double y = segments.getStartY(i + 1);
+			double dx = x - segments.getStartX(i);
+			double dy = y - segments.getStartY(i);
+			double dt = segments.getEndTime(i) - segments.getStartTime(i);
+
+			clear();
+			c.setLocation(x, y);
+			addWaypoint(c, Math.sqrt(dx*dx + dy*dy) / dt);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!super.hasNext() && nextSegment < segments.size() &&
+					segments.isMoving(nextSegment)) {
+				readNext();
+			}
+			return super.hasNext();
+		}
+	}
 }
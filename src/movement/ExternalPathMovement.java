@@ -5,6 +5,7 @@
 package movement;
 
 import input.ExternalPathMovementReader;
+import input.MappedPathMovementReader;
 
 import java.util.List;
 
@@ -16,6 +17,12 @@ import core.SimClock;
 /**
  * External movement trace reader for traces that are in path format.
  * See <code>ExternalPathMovementReader</code> for details.
+ * <P>If the trace file has the extension
+ * {@value input.MappedPathMovementReader#MAPPED_EXT}, it is read with
+ * {@link MappedPathMovementReader} (and the activity times are read from the
+ * same file), so only the paths the nodes are currently traveling are in
+ * memory. With the {@link #LOOK_AHEAD_S} setting, long paths are read from
+ * such a file in parts of the given number of waypoints.</P>
  *
  * @author teemuk
  *
@@ -25,19 +32,34 @@ public class ExternalPathMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "traceFile";
 	/** activity file's path -setting id ({@value})*/
 	public static final String ACTIVITY_FILE_S = "activeFile";
+	/** how many waypoints of a path are read at a time from a memory mapped
+	 * trace file -setting id ({@value}). Default = the whole path. */
+	public static final String LOOK_AHEAD_S = "lookAhead";
 
 	// Settings
 	private String traceFile;
 	private String activeFile;
+	private int lookAhead;
 
 	// Node's paths
 	private List<List<ExternalPathMovementReader.Entry>> paths;
 	private int curPath=0;
 	private List<ExternalPathMovementReader.ActiveTime> active;
 
+	/* node's paths in a memory mapped trace (or null) */
+	private MappedPathMovementReader mappedReader;
+	private int id;
+	private int nrofPaths;
+
 	public ExternalPathMovement(Settings settings) {
 		this.traceFile = settings.getSetting(MOVEMENT_FILE_S);
-		this.activeFile = settings.getSetting(ACTIVITY_FILE_S);
+		if (isMapped()) {
+			this.activeFile = null;
+		} else {
+			this.activeFile = settings.getSetting(ACTIVITY_FILE_S);
+		}
+		this.lookAhead = settings.getInt(LOOK_AHEAD_S, Integer.MAX_VALUE);
+		settings.ensurePositiveValue(lookAhead, LOOK_AHEAD_S);
 	}
 
 	/**
@@ -48,6 +70,14 @@ public class ExternalPathMovement extends MovementModel {
 	public ExternalPathMovement(ExternalPathMovement mm) {
 		this.traceFile = mm.traceFile;
 		this.activeFile = mm.activeFile;
+		this.lookAhead = mm.lookAhead;
+	}
+
+	/**
+	 * Returns true if the trace file is a memory mapped trace file
+	 */
+	private boolean isMapped() {
+		return this.traceFile.endsWith(MappedPathMovementReader.MAPPED_EXT);
 	}
 
 	/**
@@ -55,6 +85,14 @@ public class ExternalPathMovement extends MovementModel {
 	 * host.
 	 */
 	private void init() {
+		if (isMapped()) {
+			this.mappedReader =
+				MappedPathMovementReader.getInstance(this.traceFile);
+			this.id = getHost().getAddress();
+			this.nrofPaths = mappedReader.getNrofPaths(this.id);
+			return;
+		}
+
 		// Get paths for this node
 		ExternalPathMovementReader reader =
 			ExternalPathMovementReader.getInstance(this.traceFile,
@@ -73,6 +111,16 @@ public class ExternalPathMovement extends MovementModel {
 	public boolean isActive() {
 		double t = SimClock.getTime();
 
+		if (this.mappedReader != null) {
+			for (int i=0, n=mappedReader.getNrofActiveTimes(id); i<n; i++) {
+				if (t >= mappedReader.getActiveStart(id, i) &&
+						t <= mappedReader.getActiveEnd(id, i)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
 		// Check whether the current time falls in one of the active periods
 		for (ExternalPathMovementReader.ActiveTime a : this.active) {
 			if (t >= a.start && t <= a.end) return true;
@@ -88,6 +136,10 @@ public class ExternalPathMovement extends MovementModel {
 			return null;
 		}
 
+		if (this.mappedReader != null) {
+			return getMappedPath();
+		}
+
 		// Check whether we're moving or waiting for the next path to start
 		double t = SimClock.getTime();
 		if (t < this.paths.get(this.curPath).get(0).time) {
@@ -134,8 +186,48 @@ public class ExternalPathMovement extends MovementModel {
 		return p;
 	}
 
+	/**
+	 * Returns the next path from the memory mapped trace
+	 * @return The path or null if the next path hasn't started yet
+	 */
+	private Path getMappedPath() {
+		long first = mappedReader.getFirstPoint(id, curPath);
+		if (SimClock.getTime() < mappedReader.getTime(first)) {
+			return null;
+		}
+		long end = mappedReader.getEndPoint(id, curPath);
+		this.curPath++;
+
+		// Drop the node to the the beginning of the new path in case the
+		// previous path ended somewhere else.
+		Coord curPos = super.getHost().getLocation();
+		double startX = mappedReader.getX(first);
+		double startY = mappedReader.getY(first);
+		if (curPos.getX() != startX || curPos.getY() != startY) {
+			super.getHost().setLocation(new Coord(startX, startY));
+		}
+
+		// If this is a stationary path, return only the fist point
+		if (end - first == 1) {
+			Path p = new Path(0);
+			p.addWaypoint(startX, startY);
+			return p;
+		}
+
+		return new TracePath(mappedReader, first + 1, end, lookAhead);
+	}
+
 	@Override
 	public Coord getInitialLocation() {
+		if (this.mappedReader != null) {
+			if (this.nrofPaths > 0) {
+				long first = mappedReader.getFirstPoint(id, 0);
+				return new Coord(mappedReader.getX(first),
+						mappedReader.getY(first));
+			}
+			return new Coord(0.0, 0.0);
+		}
+
 		// Return the first point of the first path
 		if (this.paths.size() > 0 &&
 				this.paths.get(0).size() > 0) {
@@ -154,9 +246,77 @@ public class ExternalPathMovement extends MovementModel {
 
 	@Override
 	public double nextPathAvailable() {
+		if (this.mappedReader != null) {
+			if (this.curPath < this.nrofPaths) {
+				return mappedReader.getTime(
+						mappedReader.getFirstPoint(id, curPath));
+			}
+			return Double.MAX_VALUE;
+		}
+
 		if (this.curPath < this.paths.size())
 			return this.paths.get(this.curPath).get(0).time;
 		else
 			return Double.MAX_VALUE;
 	}
+
+	/**
+	 * Path of a memory mapped trace. Contains at most the look ahead number
+	 * of waypoints at a time and reads the next waypoints when the previous
+	 * ones have been traveled.
+	 */
+	private static class TracePath extends Path {
+		private MappedPathMovementReader reader;
+		/** the next point to read */
+		private long next;
+		/** the index after the last point of the path */
+		private long end;
+		private int lookAhead;
+		private Coord c;
+
+		/**
+		 * Constructor.
+		 * @param reader The reader of the trace
+		 * @param first Index of the first waypoint (the second point of the
+		 * trace path)
+		 * @param end Index after the last waypoint
+		 * @param lookAhead Maximum number of waypoints read at a time
+		 */
+		public TracePath(MappedPathMovementReader reader, long first,
+				long end, int lookAhead) {
+			this.reader = reader;
+			this.next = first;
+			this.end = end;
+			this.lookAhead = lookAhead;
+			this.c = new Coord(0, 0);
+			read();
+		}
+
+		/**
+		 * Replaces the waypoints with the next part of the path
+		 */
+		private void read() {
+			clear();
+			long last = Math.min(end, next + lookAhead);
+			for (; next < last; next++) {
+				double x = reader.getX(next);
+				double y = reader.getY(next);
+				double x2 = reader.getX(next - 1);
+				double y2 = reader.getY(next - 1);
+				double dt = reader.getTime(next) - reader.getTime(next - 1);
+				double ds = Math.sqrt( (x - x2) * (x - x2) +
+						(y - y2) * (y - y2));
+				c.setLocation(x, y);
+				addWaypoint(c, ds/dt);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!super.hasNext() && next < end) {
+				read();
+			}
+			return super.hasNext();
+		}
+	}
 }
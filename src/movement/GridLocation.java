@@ -99,6 +99,11 @@ public class GridLocation extends MovementModel {
 		return Double.MAX_VALUE;	// no new paths available
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true; // the location is set when the model is created
+	}
+
 	@Override
 	public GridLocation replicate() {
 		return new GridLocation(this);
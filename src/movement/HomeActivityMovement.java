@@ -10,7 +10,7 @@ import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
 
-import movement.map.DijkstraPathFinder;
+import movement.map.AStarPathFinder;
 import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
@@ -38,7 +38,7 @@ public class HomeActivityMovement extends MapBasedMovement
 	public static final String STD_FOR_TIME_DIFF_SETTING = "timeDiffSTD";
 
 	private int mode;
-	private DijkstraPathFinder pathFinder;
+	private AStarPathFinder pathFinder;
 
 	private int distance;
 
@@ -57,7 +57,7 @@ public class HomeActivityMovement extends MapBasedMovement
 	public HomeActivityMovement(Settings settings) {
 		super(settings);
 		distance = 100;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = createPathFinder(null);
 		mode = WALKING_HOME_MODE;
 
 		String homeLocationsFile = null;
@@ -212,6 +212,11 @@ public class HomeActivityMovement extends MapBasedMovement
 		}
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return false; // the state isn't written to snapshots
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new HomeActivityMovement(this);
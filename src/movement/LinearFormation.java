@@ -108,6 +108,11 @@ public class LinearFormation extends MovementModel {
 		return Double.MAX_VALUE;	// no new paths available
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true; // the location is set when the model is created
+	}
+
 	@Override
 	public LinearFormation replicate() {
 		return new LinearFormation(this);
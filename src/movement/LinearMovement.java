@@ -4,8 +4,13 @@
  */
 package movement;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import core.Coord;
 import core.Settings;
+import core.Snapshot;
 import movement.MovementModel;
 import movement.Path;
 
@@ -172,6 +177,28 @@ public class LinearMovement extends MovementModel {
 	}
 
 
+	@Override
+	public boolean isBulkMovable() {
+		return true;
+	}
+
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		Snapshot.writePath(out, this.nextPath);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		this.nextPath = Snapshot.readPath(in);
+	}
+
 	@Override
 	public LinearMovement replicate() {
 		return new LinearMovement(this);
@@ -6,6 +6,8 @@ package movement;
 
 import input.WKTMapReader;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -15,14 +17,18 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
-import java.util.Vector;
 
+import movement.map.AStarPathFinder;
+import movement.map.MapCacheFile;
 import movement.map.MapNode;
+import movement.map.PathCache;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
 import core.SettingsError;
 import core.SimError;
+import core.Snapshot;
+import core.World;
 
 /**
  * Map based movement model which gives out Paths that use the
@@ -57,6 +63,8 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 
 	/** the indexes of the OK map files or null if all maps are OK */
 	private int [] okMapNodeTypes;
+	/** should path finders use contraction hierarchies */
+	private boolean useContractionHierarchy;
 
 	/** how many map files are read */
 	private int nrofMapFilesRead = 0;
@@ -73,6 +81,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		super(settings);
 		map = readMap();
 		readOkMapNodeTypes(settings);
+		readPathFinderSettings();
 		maxPathLength = 100;
 		minPathLength = 10;
 		backAllowed = false;
@@ -90,6 +99,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		map = newMap;
 		this.nrofMapFilesRead = nrofMaps;
 		readOkMapNodeTypes(settings);
+		readPathFinderSettings();
 		maxPathLength = 100;
 		minPathLength = 10;
 		backAllowed = false;
@@ -122,6 +132,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		}
 	}
 
+	/**
+	 * Reads the path finder settings from the optimization settings
+	 */
+	private void readPathFinderSettings() {
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		this.useContractionHierarchy = s.getBoolean(
+				AStarPathFinder.CONTRACTION_HIERARCHY_S, false);
+	}
+
 	/**
 	 * Copyconstructor.
 	 * @param mbm The MapBasedMovement object to base the new object to
@@ -129,6 +148,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	protected MapBasedMovement(MapBasedMovement mbm) {
 		super(mbm);
 		this.okMapNodeTypes = mbm.okMapNodeTypes;
+		this.useContractionHierarchy = mbm.useContractionHierarchy;
 		this.map = mbm.map;
 		this.minPathLength = mbm.minPathLength;
 		this.maxPathLength = mbm.maxPathLength;
@@ -177,6 +197,17 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return okMapNodeTypes;
 	}
 
+	/**
+	 * Creates a shortest path finder for map nodes
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @return The path finder
+	 */
+	protected AStarPathFinder createPathFinder(int[] okMapNodes) {
+		return new AStarPathFinder(okMapNodes, useContractionHierarchy,
+				PathCache.getSharedCache());
+	}
+
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
@@ -196,27 +227,24 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 
 		for (int i=0; i<pathLength; i++) {
 			neighbors = curNode.getNeighbors();
-			Vector<MapNode> n2 = new Vector<MapNode>(neighbors);
-			if (!this.backAllowed) {
-				n2.remove(prevNode); // to prevent going back
-			}
-
-			if (okMapNodeTypes != null) { //remove neighbor nodes that aren't ok
-				for (int j=0; j < n2.size(); ){
-					if (!n2.get(j).isType(okMapNodeTypes)) {
-						n2.remove(j);
-					}
-					else {
-						j++;
-					}
+			int nrofOptions = 0;
+			for (int j=0, n=neighbors.size(); j<n; j++) {
+				if (isPathOption(neighbors.get(j), prevNode)) {
+					nrofOptions++;
 				}
 			}
 
-			if (n2.size() == 0) { // only option is to go back
+			if (nrofOptions == 0) { // only option is to go back
 				nextNode = prevNode;
 			}
 			else { // choose a random node from remaining neighbors
-				nextNode = n2.get(rng.nextInt(n2.size()));
+				int choice = rng.nextInt(nrofOptions);
+				for (int j=0; ; j++) {
+					nextNode = neighbors.get(j);
+					if (isPathOption(nextNode, prevNode) && choice-- == 0) {
+						break;
+					}
+				}
 			}
 
 			prevNode = curNode;
@@ -232,6 +260,21 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return p;
 	}
 
+	/**
+	 * Returns true if a random path may continue to the given neighbor node
+	 * (i.e., it's not the previous node, if going back is not allowed, and
+	 * it's of an OK type)
+	 * @param node The neighbor node
+	 * @param prevNode The previous node of the path
+	 * @return true if the path may continue to the node
+	 */
+	private boolean isPathOption(MapNode node, MapNode prevNode) {
+		if (!this.backAllowed && node == prevNode) {
+			return false; // to prevent going back
+		}
+		return okMapNodeTypes == null || node.isType(okMapNodeTypes);
+	}
+
 	/**
 	 * Selects and returns a random node that is OK from a list of nodes.
 	 * Whether node is OK, is determined by the okMapNodeTypes list.
@@ -283,16 +326,34 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 			}
 		}
 
+		Settings optSettings = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		File cacheFile = null;
+		byte[] hash = null;
+
 		try {
 			int nrofMapFiles = settings.getInt(NROF_FILES_S);
 
 			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+				cachedMapFiles.add(settings.getSetting(FILE_S + i));
 			}
-
 			nrofMapFilesRead = nrofMapFiles;
+
+			if (optSettings.contains(MapCacheFile.MAP_CACHE_DIR_S)) {
+				File cacheDir = new File(optSettings.getSetting(
+						MapCacheFile.MAP_CACHE_DIR_S));
+				hash = MapCacheFile.hash(cachedMapFiles);
+				cacheFile = MapCacheFile.getCacheFile(cacheDir, hash);
+				simMap = MapCacheFile.read(cacheFile, hash);
+				if (simMap != null) { // map was already checked when cached
+					checkCoordValidity(simMap.getNodes());
+					cachedMap = simMap;
+					return simMap;
+				}
+			}
+
+			for (int i = 1; i <= nrofMapFiles; i++ ) {
+				r.addPaths(new File(cachedMapFiles.get(i-1)), i);
+			}
 		} catch (IOException e) {
 			throw new SimError(e.toString(),e);
 		}
@@ -305,6 +366,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		simMap.translate(-offset.getX(), -offset.getY());
 		checkCoordValidity(simMap.getNodes());
 
+		if (cacheFile != null) {
+			try {
+				MapCacheFile.write(cacheFile, simMap, hash);
+			} catch (IOException e) {
+				throw new SimError("Can't write map cache file " +
+						cacheFile.getAbsolutePath() + ": " + e, e);
+			}
+		}
+
 		cachedMap = simMap;
 		return simMap;
 	}
@@ -396,6 +466,25 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return cachedMap;
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		Snapshot.writeCoord(out, lastMapNode == null ? null :
+			lastMapNode.getLocation());
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		Coord c = Snapshot.readCoord(in);
+		lastMapNode = (c == null ? null : getMap().getNodeByCoord(c));
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
@@ -4,6 +4,9 @@
  */
 package movement;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
 import util.ActivenessHandler;
@@ -12,6 +15,8 @@ import core.Coord;
 import core.DTNHost;
 import core.DTNSim;
 import core.ModuleCommunicationBus;
+import core.RandomStream;
+import core.RestorableRandom;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -44,9 +49,14 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/** movement model warm-up time -setting id ({@value})*/
+	public static final String WARMUP = "warmup";
 
 	/** common rng for all movement models in the simulation */
-	protected static Random rng;
+	private static RestorableRandom sharedRng;
+	/** rng of this movement model: the common rng, or the model's own
+	 * stream if per entity rng streams are used (see {@link RandomStream}) */
+	protected Random rng;
 
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -93,6 +103,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = sharedRng;
 	}
 
 	/**
@@ -104,6 +115,7 @@ public abstract class MovementModel {
 		double[] times;
 
 		ah = new ActivenessHandler(settings);
+		this.rng = sharedRng;
 
 		if (settings.contains(SPEED)) {
 			speeds = settings.getCsvDoubles(SPEED, 2);
@@ -149,6 +161,12 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		if (RandomStream.isEnabled()) {
+			this.rng = RandomStream.nextStream(RandomStream.MOVEMENT_DOMAIN);
+		}
+		else {
+			this.rng = sharedRng;
+		}
 	}
 
 	/**
@@ -232,6 +250,15 @@ public abstract class MovementModel {
 		return ah.isActive();
 	}
 
+	/**
+	 * Returns true if this node is active all the time (no active times
+	 * nor active periods are defined)
+	 * @return true if this node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return ah.isAlwaysActive();
+	}
+
 	/**
 	 * Returns a sim time when the next path is available. This implementation
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
@@ -241,6 +268,87 @@ public abstract class MovementModel {
 		return SimClock.getTime() + generateWaitTime();
 	}
 
+	/**
+	 * Returns true if the hosts using this movement model can be moved in
+	 * bulk (see {@link core.BulkMover}), i.e., if the model's paths do not
+	 * depend on the other hosts' locations and the host's location object is
+	 * changed only by moving the host along the paths. Only the hosts
+	 * that are also always active (see {@link #isAlwaysActive()}) are moved
+	 * in bulk. This implementation returns false.
+	 * @return true if the hosts can be moved in bulk
+	 */
+	public boolean isBulkMovable() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the state of this movement model can be saved to a
+	 * snapshot (see {@link core.Snapshot}), i.e., if all the state that
+	 * changes during the simulation is written by
+	 * {@link #writeState(DataOutput)} and the model doesn't share state
+	 * with other models. This implementation returns false.
+	 * @return true if the model supports snapshots
+	 */
+	public boolean isSnapshotSupported() {
+		return false;
+	}
+
+	/**
+	 * Writes the state of this movement model that changes during the
+	 * simulation to a snapshot. The state is read to a model that was
+	 * created using the same settings, so the settings are not written.
+	 * This implementation writes the state of the model's own random
+	 * number stream (if it has one). Subclasses that have more state must
+	 * override this and {@link #readState(DataInput)} and call the
+	 * superclass' methods first.
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		boolean ownRng = rng != sharedRng && rng instanceof RestorableRandom;
+		out.writeBoolean(ownRng);
+		if (ownRng) {
+			out.writeLong(((RestorableRandom)rng).getState());
+		}
+	}
+
+	/**
+	 * Reads the state of this movement model from a snapshot written by
+	 * {@link #writeState(DataOutput)}
+	 * @param in Where the state is read from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException {
+		if (in.readBoolean()) {
+			long state = in.readLong();
+			if (rng == sharedRng || !(rng instanceof RestorableRandom)) {
+				throw new SimError("Snapshot has a random number stream " +
+						"for " + this + " but the model doesn't use one");
+			}
+			((RestorableRandom)rng).setState(state);
+		}
+	}
+
+	/**
+	 * Writes the state of the random number generator that the movement
+	 * models share to a snapshot
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public static void writeSharedState(DataOutput out) throws IOException {
+		out.writeLong(sharedRng.getState());
+	}
+
+	/**
+	 * Reads the state of the shared random number generator from a
+	 * snapshot written by {@link #writeSharedState(DataOutput)}
+	 * @param in Where the state is read from
+	 * @throws IOException if reading fails
+	 */
+	public static void readSharedState(DataInput in) throws IOException {
+		sharedRng.setState(in.readLong());
+	}
+
 	/**
 	 * Sets the module communication bus for this movement model
 	 * @param comBus The communications bus to set
@@ -278,10 +386,10 @@ public abstract class MovementModel {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			sharedRng = new RestorableRandom(seed);
 		}
 		else {
-			rng = new Random(0);
+			sharedRng = new RestorableRandom(0);
 		}
 	}
 
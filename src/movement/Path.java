@@ -4,19 +4,40 @@
  */
 package movement;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import core.Coord;
 
 /**
  * A Path between multiple Coordinates.
+ * <P>The coordinates and speeds are stored in primitive arrays. Adding a
+ * waypoint copies the coordinate's values, so the Coord can be reused by the
+ * caller. Hosts move along the path using a cursor
+ * ({@link #nextWaypoint()}, {@link #getWaypointX()},
+ * {@link #getWaypointY()}), which doesn't create any objects; the methods
+ * that return Coords (e.g., {@link #getNextWaypoint()}) create new Coord
+ * objects of the waypoints.</P>
  */
 public class Path  {
-	/** coordinates of the path */
-	private List<Coord> coords;
+	/** initial capacity of the waypoint arrays */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** x coordinates of the path */
+	private double[] xs;
+	/** y coordinates of the path */
+	private double[] ys;
+	/** number of waypoints */
+	private int size;
 	/** speeds in the path legs */
-	private List<Double> speeds;
+	private double[] speeds;
+	/** number of speeds (one for constant speed paths) */
+	private int nrofSpeeds;
 	private int nextWpIndex;
 
 	/**
@@ -24,19 +45,25 @@ public class Path  {
 	 */
 	public Path() {
 		this.nextWpIndex = 0;
-		this.coords = new ArrayList<Coord>();
-		this.speeds = new ArrayList<Double>(1);
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+		this.size = 0;
+		this.speeds = new double[1];
+		this.nrofSpeeds = 0;
 	}
 
 	/**
-	 * Copy constructor. Creates a copy of this path with a shallow copy of
+	 * Copy constructor. Creates a copy of this path with a copy of
 	 * the coordinates and speeds.
 	 * @param path The path to create the copy from
 	 */
 	public Path(Path path) {
 		this.nextWpIndex = path.nextWpIndex;
-		this.coords = new ArrayList<Coord>((ArrayList<Coord>)path.coords);
-		this.speeds = new ArrayList<Double>((ArrayList<Double>)path.speeds);
+		this.xs = path.xs.clone();
+		this.ys = path.ys.clone();
+		this.size = path.size;
+		this.speeds = path.speeds.clone();
+		this.nrofSpeeds = path.nrofSpeeds;
 	}
 
 	/**
@@ -53,16 +80,33 @@ public class Path  {
 	 * is discarded.
 	 */
 	public void setSpeed(double speed) {
-		this.speeds = new ArrayList<Double>(1);
-		speeds.add(speed);
+		this.speeds = new double[1];
+		this.speeds[0] = speed;
+		this.nrofSpeeds = 1;
 	}
 
 	/**
-	 * Returns a reference to the coordinates of this path
+	 * Returns the coordinates of this path. The list is a read-only view of
+	 * the path that creates a new Coord object of a waypoint every time
+	 * an element of the list is requested.
 	 * @return coordinates of the path
 	 */
 	public List<Coord> getCoords() {
-		return this.coords;
+		return new AbstractList<Coord>() {
+			@Override
+			public Coord get(int index) {
+				if (index < 0 || index >= size) {
+					throw new IndexOutOfBoundsException("Index: " + index +
+							", Size: " + size);
+				}
+				return new Coord(xs[index], ys[index]);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
 	}
 
 	/**
@@ -70,9 +114,18 @@ public class Path  {
 	 * @param wp The waypoint to add
 	 */
 	public void addWaypoint(Coord wp) {
-		assert this.speeds.size() <= 1 : "This method should be used only for" +
+		addWaypoint(wp.getX(), wp.getY());
+	}
+
+	/**
+	 * Adds a new waypoint to the end of the path.
+	 * @param x The x coordinate of the waypoint
+	 * @param y The y coordinate of the waypoint
+	 */
+	public void addWaypoint(double x, double y) {
+		assert this.nrofSpeeds <= 1 : "This method should be used only for" +
 			" paths with constant speed";
-		this.coords.add(wp);
+		add(x, y);
 	}
 
 	/**
@@ -81,8 +134,33 @@ public class Path  {
 	 * @param speed The speed towards that waypoint
 	 */
 	public void addWaypoint(Coord wp, double speed) {
-		this.coords.add(wp);
-		this.speeds.add(speed);
+		add(wp.getX(), wp.getY());
+		if (nrofSpeeds == speeds.length) {
+			speeds = Arrays.copyOf(speeds, Math.max(xs.length, 2 * nrofSpeeds));
+		}
+		speeds[nrofSpeeds++] = speed;
+	}
+
+	/**
+	 * Removes all the waypoints and speeds of this path and moves to the
+	 * beginning of the path. Subclasses that read long paths in parts can
+	 * use this to refill the path with the next part when
+	 * {@link #hasNext()} is called.
+	 */
+	protected void clear() {
+		this.size = 0;
+		this.nrofSpeeds = 0;
+		this.nextWpIndex = 0;
+	}
+
+	private void add(double x, double y) {
+		if (size == xs.length) {
+			xs = Arrays.copyOf(xs, 2 * size);
+			ys = Arrays.copyOf(ys, 2 * size);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		size++;
 	}
 
 	/**
@@ -90,8 +168,83 @@ public class Path  {
 	 * @return the next waypoint
 	 */
 	public Coord getNextWaypoint() {
+		nextWaypoint();
+		return new Coord(getWaypointX(), getWaypointY());
+	}
+
+	/**
+	 * Moves to the next waypoint on this path like
+	 * {@link #getNextWaypoint()} does, but without creating a Coord of the
+	 * waypoint. The waypoint's coordinates can be read with
+	 * {@link #getWaypointX()} and {@link #getWaypointY()}.
+	 */
+	public void nextWaypoint() {
 		assert hasNext() : "Path didn't have " + (nextWpIndex+1) + ". waypoint";
-		return coords.get(nextWpIndex++);
+		nextWpIndex++;
+	}
+
+	/**
+	 * Returns the x coordinate of the current waypoint (the one that was
+	 * returned by the latest {@link #getNextWaypoint()} call)
+	 * @return the x coordinate of the current waypoint
+	 */
+	public double getWaypointX() {
+		assert nextWpIndex != 0 : "No waypoint asked";
+		return xs[nextWpIndex - 1];
+	}
+
+	/**
+	 * Returns the y coordinate of the current waypoint (the one that was
+	 * returned by the latest {@link #getNextWaypoint()} call)
+	 * @return the y coordinate of the current waypoint
+	 */
+	public double getWaypointY() {
+		assert nextWpIndex != 0 : "No waypoint asked";
+		return ys[nextWpIndex - 1];
+	}
+
+	/**
+	 * Returns the waypoint that {@link #getNextWaypoint()} would return after
+	 * <code>n</code> other calls, without moving along the path.
+	 * @param n How many waypoints to look ahead (0 = the next waypoint)
+	 * @return The waypoint or null if the path does not have that many
+	 * waypoints left
+	 */
+	public Coord peekWaypoint(int n) {
+		if (n < 0 || n >= getNrofWaypointsLeft()) {
+			return null;
+		}
+		return new Coord(peekX(n), peekY(n));
+	}
+
+	/**
+	 * Returns the x coordinate of the waypoint that
+	 * {@link #peekWaypoint(int)} would return
+	 * @param n How many waypoints to look ahead (0 = the next waypoint,
+	 * must be smaller than {@link #getNrofWaypointsLeft()})
+	 * @return The x coordinate of the waypoint
+	 */
+	public double peekX(int n) {
+		return xs[nextWpIndex + n];
+	}
+
+	/**
+	 * Returns the y coordinate of the waypoint that
+	 * {@link #peekWaypoint(int)} would return
+	 * @param n How many waypoints to look ahead (0 = the next waypoint,
+	 * must be smaller than {@link #getNrofWaypointsLeft()})
+	 * @return The y coordinate of the waypoint
+	 */
+	public double peekY(int n) {
+		return ys[nextWpIndex + n];
+	}
+
+	/**
+	 * Returns how many waypoints the path has left
+	 * @return how many waypoints the path has left
+	 */
+	public int getNrofWaypointsLeft() {
+		return size - nextWpIndex;
 	}
 
 	/**
@@ -99,7 +252,7 @@ public class Path  {
 	 * @return true if the path has more waypoints, false if not
 	 */
 	public boolean hasNext() {
-		return nextWpIndex < this.coords.size();
+		return nextWpIndex < this.size;
 	}
 
 	/**
@@ -108,14 +261,55 @@ public class Path  {
 	 * @return the speed towards the next waypoint
 	 */
 	public double getSpeed() {
-		assert speeds.size() != 0 : "No speed set";
+		assert nrofSpeeds != 0 : "No speed set";
 		assert nextWpIndex != 0 : "No waypoint asked";
 
-		if (speeds.size() == 1) {
-			return speeds.get(0);
+		if (nrofSpeeds == 1) {
+			return speeds[0];
 		}
 		else {
-			return speeds.get(nextWpIndex-1);
+			return speeds[nextWpIndex-1];
+		}
+	}
+
+	/**
+	 * Writes the waypoints, speeds and the position of this path to a
+	 * snapshot (see {@link core.Snapshot})
+	 * @param out Where the path is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(nrofSpeeds);
+		out.writeInt(nextWpIndex);
+		for (int i=0; i<size; i++) {
+			out.writeDouble(xs[i]);
+			out.writeDouble(ys[i]);
+		}
+		for (int i=0; i<nrofSpeeds; i++) {
+			out.writeDouble(speeds[i]);
+		}
+	}
+
+	/**
+	 * Replaces the waypoints, speeds and the position of this path with the
+	 * ones written by {@link #writeState(DataOutput)}
+	 * @param in Where the path is read from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException {
+		this.size = in.readInt();
+		this.nrofSpeeds = in.readInt();
+		this.nextWpIndex = in.readInt();
+		this.xs = new double[Math.max(size, INITIAL_CAPACITY)];
+		this.ys = new double[xs.length];
+		for (int i=0; i<size; i++) {
+			xs[i] = in.readDouble();
+			ys[i] = in.readDouble();
+		}
+		this.speeds = new double[Math.max(nrofSpeeds, 1)];
+		for (int i=0; i<nrofSpeeds; i++) {
+			speeds[i] = in.readDouble();
 		}
 	}
 
@@ -125,17 +319,21 @@ public class Path  {
 	 */
 	public String toString() {
 		String s ="";
-		for (int i=0, n=coords.size(); i<n; i++) {
-			Coord c = coords.get(i);
+		for (int i=0, n=size; i<n; i++) {
+			Coord c = new Coord(xs[i], ys[i]);
 			s+= "->" + c;
-			if (speeds.size() > 1) {
-				s += String.format("@%.2f ",speeds.get(i));
+			if (nrofSpeeds > 1) {
+				s += String.format("@%.2f ",speeds[i]);
 			}
 		}
 		return s;
 	}
 
 	public List<Double> getSpeeds() {
-		return this.speeds;
+		List<Double> list = new ArrayList<Double>(nrofSpeeds);
+		for (int i=0; i<nrofSpeeds; i++) {
+			list.add(speeds[i]);
+		}
+		return list;
 	}
 }
@@ -4,8 +4,13 @@
  */
 package movement;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import core.Coord;
 import core.Settings;
+import core.Snapshot;
 
 /**
  * Random Walk movement model
@@ -76,6 +81,28 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		return p;
 	}
 
+	@Override
+	public boolean isBulkMovable() {
+		return true;
+	}
+
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		Snapshot.writeCoord(out, this.lastWaypoint);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		this.lastWaypoint = Snapshot.readCoord(in);
+	}
+
 	@Override
 	public RandomWalk replicate() {
 		return new RandomWalk(this);
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.util.Arrays;
+
+import core.Coord;
+
+/**
+ * Movement trace of one node as a table of linear segments. Segment
+ * <CODE>i</CODE> starts at time <CODE>t0[i]</CODE> from location
+ * <CODE>(x0[i], y0[i])</CODE> and moves with velocity
+ * <CODE>(vx[i], vy[i])</CODE> until time <CODE>t1[i]</CODE>, where the
+ * next segment starts. The segments cover the whole time from the first
+ * sample: consecutive samples at the same location form one stationary
+ * segment (zero velocity) and the last segment is stationary forever.
+ * The location at any time can be looked up with a binary search
+ * (see {@link #getIndex(double)}).
+ */
+public class SegmentTable {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private double[] t0;
+	private double[] t1;
+	private double[] x0;
+	private double[] y0;
+	private double[] vx;
+	private double[] vy;
+	private int size;
+	/** time of the latest sample */
+	private double lastTime;
+
+	/**
+	 * Creates an empty table
+	 */
+	public SegmentTable() {
+		this.t0 = new double[INITIAL_CAPACITY];
+		this.t1 = new double[INITIAL_CAPACITY];
+		this.x0 = new double[INITIAL_CAPACITY];
+		this.y0 = new double[INITIAL_CAPACITY];
+		this.vx = new double[INITIAL_CAPACITY];
+		this.vy = new double[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a location sample of the node. The samples must be added in
+	 * time order.
+	 * @param time Time of the sample
+	 * @param x The x coordinate of the node at that time
+	 * @param y The y coordinate of the node at that time
+	 */
+	public void addSample(double time, double x, double y) {
+		if (size == 0) {
+			append(time, x, y);
+			this.lastTime = time;
+			return;
+		}
+
+		int last = size - 1; /* the last segment is always stationary */
+		if (x == x0[last] && y == y0[last]) {
+			this.lastTime = time;
+			return; /* didn't move */
+		}
+
+		if (lastTime > t0[last]) {
+			/* the node stayed still until the previous sample */
+			t1[last] = lastTime;
+			append(lastTime, x0[last], y0[last]);
+			last++;
+		}
+
+		double dt = time - t0[last];
+		t1[last] = time;
+		vx[last] = (x - x0[last]) / dt;
+		vy[last] = (y - y0[last]) / dt;
+		append(time, x, y);
+		this.lastTime = time;
+	}
+
+	/**
+	 * Appends a new stationary segment that lasts forever
+	 */
+	private void append(double time, double x, double y) {
+		if (size == t0.length) {
+			int capacity = 2 * size;
+			t0 = Arrays.copyOf(t0, capacity);
+			t1 = Arrays.copyOf(t1, capacity);
+			x0 = Arrays.copyOf(x0, capacity);
+			y0 = Arrays.copyOf(y0, capacity);
+			vx = Arrays.copyOf(vx, capacity);
+			vy = Arrays.copyOf(vy, capacity);
+		}
+		t0[size] = time;
+		t1[size] = Double.POSITIVE_INFINITY;
+		x0[size] = x;
+		y0[size] = y;
+		vx[size] = 0;
+		vy[size] = 0;
+		size++;
+	}
+
+	/**
+	 * Frees the unused capacity of the table. Should be called after all
+	 * the samples have been added.
+	 */
+	public void trim() {
+		t0 = Arrays.copyOf(t0, size);
+		t1 = Arrays.copyOf(t1, size);
+		x0 = Arrays.copyOf(x0, size);
+		y0 = Arrays.copyOf(y0, size);
+		vx = Arrays.copyOf(vx, size);
+		vy = Arrays.copyOf(vy, size);
+	}
+
+	/**
+	 * Returns the number of segments
+	 * @return the number of segments
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the index of the segment that contains the given time, or 0
+	 * if the time is before the first segment. Takes O(log n) time.
+	 * @param time The time
+	 * @return The index of the segment (or -1 if the table is empty)
+	 */
+	public int getIndex(double time) {
+		int lo = 0;
+		int hi = size - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (t0[mid] <= time) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return hi;
+	}
+
+	/**
+	 * Returns the location of the node at the given time. Before the first
+	 * sample the node is at the first sample's location.
+	 * @param time The time
+	 * @return The location (or null if the table is empty)
+	 */
+	public Coord getLocation(double time) {
+		int i = getIndex(time);
+		if (i < 0) {
+			return null;
+		}
+		double dt = Math.max(0, time - t0[i]);
+		return new Coord(x0[i] + vx[i] * dt, y0[i] + vy[i] * dt);
+	}
+
+	/**
+	 * Returns true if the node moves during the segment
+	 * @param i Index of the segment
+	 * @return true if the segment's velocity is not zero
+	 */
+	public boolean isMoving(int i) {
+		return vx[i] != 0 || vy[i] != 0;
+	}
+
+	/**
+	 * Returns the start time of a segment
+	 * @param i Index of the segment
+	 * @return the start time
+	 */
+	public double getStartTime(int i) {
+		return t0[i];
+	}
+
+	/**
+	 * Returns the end time of a segment
+	 * @param i Index of the segment
+	 * @return the end time (infinity for the last segment)
+	 */
+	public double getEndTime(int i) {
+		return t1[i];
+	}
+
+	/**
+	 * Returns the x coordinate where a segment starts
+	 * @param i Index of the segment
+	 * @return the x coordinate
+	 */
+	public double getStartX(int i) {
+		return x0[i];
+	}
+
+	/**
+	 * Returns the y coordinate where a segment starts
+	 * @param i Index of the segment
+	 * @return the y coordinate
+	 */
+	public double getStartY(int i) {
+		return y0[i];
+	}
+
+	/**
+	 * Returns the x component of a segment's velocity
+	 * @param i Index of the segment
+	 * @return the x velocity
+	 */
+	public double getVelocityX(int i) {
+		return vx[i];
+	}
+
+	/**
+	 * Returns the y component of a segment's velocity
+	 * @param i Index of the segment
+	 * @return the y velocity
+	 */
+	public double getVelocityY(int i) {
+		return vy[i];
+	}
+}
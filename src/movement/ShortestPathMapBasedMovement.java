@@ -6,19 +6,20 @@ package movement;
 
 import java.util.List;
 
-import movement.map.DijkstraPathFinder;
+import movement.map.AStarPathFinder;
 import movement.map.MapNode;
 import movement.map.PointsOfInterest;
+import core.RandomStream;
 import core.Settings;
 
 /**
- * Map based movement model that uses Dijkstra's algorithm to find shortest
+ * Map based movement model that uses the A* algorithm to find shortest
  * paths between two random map nodes and Points Of Interest
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	SwitchableMovement {
-	/** the Dijkstra shortest path finder */
-	private DijkstraPathFinder pathFinder;
+	/** the A* shortest path finder */
+	private AStarPathFinder pathFinder;
 
 	/** Points Of Interest handler */
 	private PointsOfInterest pois;
@@ -29,7 +30,7 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	public ShortestPathMapBasedMovement(Settings settings) {
 		super(settings);
-		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		this.pathFinder = createPathFinder(getOkMapNodeTypes());
 		this.pois = new PointsOfInterest(getMap(), getOkMapNodeTypes(),
 				settings, rng);
 	}
@@ -42,7 +43,12 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	protected ShortestPathMapBasedMovement(ShortestPathMapBasedMovement mbm) {
 		super(mbm);
 		this.pathFinder = mbm.pathFinder;
-		this.pois = mbm.pois;
+		if (RandomStream.isEnabled()) { // select destinations with own rng
+			this.pois = new PointsOfInterest(mbm.pois, rng);
+		}
+		else {
+			this.pois = mbm.pois;
+		}
 	}
 
 	@Override
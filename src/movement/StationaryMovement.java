@@ -62,6 +62,11 @@ public class StationaryMovement extends MovementModel {
 		return Double.MAX_VALUE;	// no new paths available
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true; // the location is set when the model is created
+	}
+
 	@Override
 	public StationaryMovement replicate() {
 		return new StationaryMovement(this);
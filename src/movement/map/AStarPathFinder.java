@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A* shortest path finder for map nodes. Uses the Euclidean distance to the
+ * destination as the heuristic, so the paths are as short as the ones
+ * {@link DijkstraPathFinder} finds but fewer nodes are visited. The search
+ * runs on the {@link CompiledMap} of the nodes and reuses per-thread arrays,
+ * so a search doesn't create any objects except the returned path.
+ * Optionally, the paths are searched using a {@link ContractionHierarchy}
+ * of the map, which needs some preprocessing the first time but makes the
+ * searches much faster on large maps. The found paths can also be shared
+ * with other path finders using a {@link PathCache}.
+ */
+public class AStarPathFinder {
+	/** Use contraction hierarchies -setting id ({@value}). Boolean. If true,
+	 * shortest paths on maps are searched using contraction hierarchies.
+	 * Default = false. Read from the
+	 * {@link core.World#OPTIMIZATION_SETTINGS_NS} namespace. */
+	public static final String CONTRACTION_HIERARCHY_S =
+		"contractionHierarchy";
+
+	private static final MapNode[] NO_PATH = new MapNode[0];
+
+	private int[] okMapNodes;
+	private long okTypeMask;
+	private boolean useContractionHierarchy;
+	private PathCache cache;
+
+	/**
+	 * Constructor.
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 */
+	public AStarPathFinder(int[] okMapNodes) {
+		this(okMapNodes, false);
+	}
+
+	/**
+	 * Constructor.
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param useContractionHierarchy If true, the paths are searched using
+	 * contraction hierarchies
+	 */
+	public AStarPathFinder(int[] okMapNodes,
+			boolean useContractionHierarchy) {
+		this(okMapNodes, useContractionHierarchy, null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param useContractionHierarchy If true, the paths are searched using
+	 * contraction hierarchies
+	 * @param cache The cache where the found paths are stored and looked up
+	 * from or null if the paths should not be cached
+	 */
+	public AStarPathFinder(int[] okMapNodes, boolean useContractionHierarchy,
+			PathCache cache) {
+		this.okMapNodes = okMapNodes;
+		this.okTypeMask = PathCache.typeMask(okMapNodes);
+		this.useContractionHierarchy = useContractionHierarchy;
+		this.cache = cache;
+	}
+
+	/**
+	 * Finds and returns a shortest path between two map nodes
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @return a shortest path between the source and destination nodes in
+	 * a list of MapNodes or an empty list if such path is not available
+	 */
+	public List<MapNode> getShortestPath(MapNode from, MapNode to) {
+		List<MapNode> path = new ArrayList<MapNode>();
+
+		if (from.compareTo(to) == 0) { // source and destination are the same
+			path.add(from);
+			return path;
+		}
+
+		MapNode[] nodes = null;
+		if (cache != null) {
+			nodes = cache.get(from, to, okTypeMask, useContractionHierarchy);
+		}
+		if (nodes == null) {
+			nodes = searchPath(from, to);
+			if (cache != null) {
+				cache.put(from, to, okTypeMask, useContractionHierarchy,
+						nodes);
+			}
+		}
+
+		for (MapNode n : nodes) {
+			path.add(n);
+		}
+		return path;
+	}
+
+	/**
+	 * Searches a shortest path between two different map nodes
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @return The nodes of the path or an empty array if there's no path
+	 */
+	private MapNode[] searchPath(MapNode from, MapNode to) {
+		CompiledMap map = CompiledMap.getCompiledMap(from);
+		int source = map.indexOf(from);
+		int dest = map.indexOf(to);
+		if (dest < 0) {
+			return NO_PATH; // destination can't be reached from the source
+		}
+
+		boolean[] ok = map.getOkNodes(okMapNodes);
+		if (useContractionHierarchy &&
+				(ok == null || (ok[source] && ok[dest]))) {
+			int[] indexes = map.getContractionHierarchy(okMapNodes).
+				getShortestPath(source, dest);
+			if (indexes == null) {
+				return NO_PATH;
+			}
+			MapNode[] nodes = new MapNode[indexes.length];
+			for (int i=0; i<indexes.length; i++) {
+				nodes[i] = map.getNode(indexes[i]);
+			}
+			return nodes;
+		}
+
+		SearchSpace s = SearchSpace.get(0);
+		s.init(map.getNrofNodes());
+		s.update(source, 0, -1, -1, map.distance(source, dest));
+
+		while (!s.isEmpty()) {
+			int node = s.poll();
+			if (node == dest) {
+				break; // found the destination -> no need to search further
+			}
+
+			double nodeDist = s.getDist(node);
+			for (int e = map.firstEdge[node]; e < map.firstEdge[node + 1];
+					e++) {
+				int n = map.edgeTarget[e];
+				if (s.isSettled(n) || (ok != null && !ok[n])) {
+					continue; // skip visited nodes and nodes that are not OK
+				}
+
+				double nDist = nodeDist + map.edgeLength[e];
+				if (nDist < s.getDist(n)) {
+					s.update(n, nDist, node, e, nDist + map.distance(n, dest));
+				}
+			}
+		}
+
+		if (!s.isSettled(dest)) {
+			return NO_PATH;
+		}
+
+		int length = 1;
+		for (int n = dest; n != source; n = s.getPrev(n)) {
+			length++;
+		}
+		MapNode[] nodes = new MapNode[length];
+		for (int n = dest; length > 0; n = s.getPrev(n)) {
+			nodes[--length] = map.getNode(n);
+		}
+		return nodes;
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+
+/**
+ * Immutable, compact view of the map nodes that can be reached from a
+ * map node. The nodes have int indexes and their coordinates and
+ * neighbors are stored in arrays (the neighbors in compressed sparse row
+ * format: the edges of node <CODE>i</CODE> are
+ * <CODE>firstEdge[i]...firstEdge[i+1]-1</CODE>), so shortest path
+ * searches can use plain arrays instead of collections of MapNodes.
+ * <P>A compiled map is created (see {@link #getCompiledMap(MapNode)}) when
+ * it's needed for the first time and the nodes remember the map they were
+ * compiled to. The nodes are compiled again after {@link SimMap} has
+ * changed their coordinates.</P>
+ */
+public class CompiledMap {
+	/** the map nodes by their indexes */
+	final MapNode[] nodes;
+	/** x coordinates of the nodes */
+	final double[] x;
+	/** y coordinates of the nodes */
+	final double[] y;
+	/** index of the first edge of the nodes (and the number of edges in
+	 * the last slot) */
+	final int[] firstEdge;
+	/** the node each edge leads to */
+	final int[] edgeTarget;
+	/** lengths of the edges */
+	final double[] edgeLength;
+
+	/** indexes of the nodes that are compiled also to other maps */
+	private Map<MapNode, Integer> indexes;
+	/** OK nodes of different map node type selections */
+	private Map<String, boolean[]> okNodes;
+	/** contraction hierarchies of different map node type selections */
+	private Map<String, ContractionHierarchy> hierarchies;
+
+	/**
+	 * Compiles the nodes that can be reached from the given node
+	 * @param start The node where to start
+	 */
+	private CompiledMap(MapNode start) {
+		List<MapNode> reachable = new ArrayList<MapNode>();
+		this.indexes = new HashMap<MapNode, Integer>();
+
+		/* breadth first order keeps nearby nodes near in the arrays */
+		reachable.add(start);
+		indexes.put(start, 0);
+		for (int i=0; i<reachable.size(); i++) {
+			for (MapNode n : reachable.get(i).getNeighbors()) {
+				if (!indexes.containsKey(n)) {
+					indexes.put(n, reachable.size());
+					reachable.add(n);
+				}
+			}
+		}
+
+		int nrofNodes = reachable.size();
+		int nrofEdges = 0;
+		for (MapNode n : reachable) {
+			nrofEdges += n.getNeighbors().size();
+		}
+
+		this.nodes = reachable.toArray(new MapNode[nrofNodes]);
+		this.x = new double[nrofNodes];
+		this.y = new double[nrofNodes];
+		this.firstEdge = new int[nrofNodes + 1];
+		this.edgeTarget = new int[nrofEdges];
+		this.edgeLength = new double[nrofEdges];
+
+		int e = 0;
+		for (int i=0; i<nrofNodes; i++) {
+			Coord c = nodes[i].getLocation();
+			x[i] = c.getX();
+			y[i] = c.getY();
+			firstEdge[i] = e;
+			for (MapNode n : nodes[i].getNeighbors()) {
+				edgeTarget[e] = indexes.get(n);
+				edgeLength[e] = c.distance(n.getLocation());
+				e++;
+			}
+		}
+		firstEdge[nrofNodes] = e;
+
+		for (int i=0; i<nrofNodes; i++) {
+			nodes[i].compiledMap = this;
+			nodes[i].compiledIndex = i;
+		}
+
+		this.okNodes = new HashMap<String, boolean[]>();
+		this.hierarchies = new HashMap<String, ContractionHierarchy>();
+	}
+
+	/**
+	 * Returns the compiled map of a node. The map contains all the nodes
+	 * that can be reached from the node.
+	 * @param node The node
+	 * @return The compiled map
+	 */
+	public static synchronized CompiledMap getCompiledMap(MapNode node) {
+		if (node.compiledMap == null) {
+			new CompiledMap(node);
+		}
+		return node.compiledMap;
+	}
+
+	/**
+	 * Makes the nodes compile again when their compiled map is requested
+	 * next time (e.g., because their coordinates have changed)
+	 * @param nodes The nodes
+	 */
+	static synchronized void invalidate(List<MapNode> nodes) {
+		for (MapNode n : nodes) {
+			n.compiledMap = null;
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in the map
+	 * @return the number of nodes in the map
+	 */
+	public int getNrofNodes() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the index of a node
+	 * @param node The node
+	 * @return The index or -1 if the node is not in this map
+	 */
+	public int indexOf(MapNode node) {
+		if (node.compiledMap == this) {
+			return node.compiledIndex;
+		}
+		Integer index = indexes.get(node);
+		return index != null ? index : -1;
+	}
+
+	/**
+	 * Returns the node with the given index
+	 * @param index The index
+	 * @return The node
+	 */
+	public MapNode getNode(int index) {
+		return nodes[index];
+	}
+
+	/**
+	 * Returns the Euclidean distance between two nodes
+	 * @param a Index of the first node
+	 * @param b Index of the second node
+	 * @return The distance
+	 */
+	double distance(int a, int b) {
+		double dx = x[a] - x[b];
+		double dy = y[a] - y[b];
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+
+	/**
+	 * Returns which nodes are of the given types
+	 * @param okMapNodes The map node types that are OK or null if all nodes
+	 * are OK
+	 * @return Array where the OK nodes' indexes are true or null if all
+	 * nodes are OK
+	 */
+	synchronized boolean[] getOkNodes(int[] okMapNodes) {
+		if (okMapNodes == null) {
+			return null;
+		}
+
+		String key = Arrays.toString(okMapNodes);
+		boolean[] ok = okNodes.get(key);
+		if (ok == null) {
+			ok = new boolean[nodes.length];
+			for (int i=0; i<nodes.length; i++) {
+				ok[i] = nodes[i].isType(okMapNodes);
+			}
+			okNodes.put(key, ok);
+		}
+		return ok;
+	}
+
+	/**
+	 * Returns a contraction hierarchy of the nodes of the given types.
+	 * The hierarchy is created when it's requested for the first time.
+	 * @param okMapNodes The map node types that are OK or null if all nodes
+	 * are OK
+	 * @return The contraction hierarchy
+	 */
+	synchronized ContractionHierarchy getContractionHierarchy(
+			int[] okMapNodes) {
+		String key = Arrays.toString(okMapNodes);
+		ContractionHierarchy ch = hierarchies.get(key);
+		if (ch == null) {
+			ch = new ContractionHierarchy(this, getOkNodes(okMapNodes));
+			hierarchies.put(key, ch);
+		}
+		return ch;
+	}
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <P>Contraction hierarchy of a {@link CompiledMap} for fast shortest path
+ * queries. In preprocessing, the nodes are removed ("contracted") one by
+ * one in the order of their importance and shortcut edges are added
+ * between the remaining neighbors of the removed node if the shortest path
+ * between them went through the removed node. A query is then a
+ * bidirectional Dijkstra search that only follows edges to nodes that
+ * were contracted later than the current node, so it visits only a small
+ * part of the map. Shortcuts of the found path are unpacked to the
+ * original edges.</P>
+ * <P>The hierarchy only contains the nodes of the selected map node types
+ * and the edges between them. Paths are the same as the ones
+ * {@link AStarPathFinder} finds, except that a different path may be chosen
+ * when there are several paths with exactly the same length.</P>
+ */
+public class ContractionHierarchy {
+	/** Maximum number of nodes a witness search settles */
+	private static final int MAX_WITNESS_SETTLED = 500;
+
+	private CompiledMap map;
+	/** contraction order of the nodes (-1 for nodes not in the hierarchy) */
+	private int[] rank;
+
+	/** upward edges (to higher rank nodes) in CSR format */
+	private int[] upFirst;
+	private int[] upTarget;
+	private double[] upLength;
+	/** the contracted node a shortcut bypasses (-1 for original edges) */
+	private int[] upMiddle;
+
+	/** downward edges (from higher rank nodes) stored at their targets */
+	private int[] downFirst;
+	private int[] downSource;
+	private double[] downLength;
+	private int[] downMiddle;
+
+	/**
+	 * Creates a contraction hierarchy of a map
+	 * @param map The map
+	 * @param ok The nodes that are included in the hierarchy or null if all
+	 * nodes are included
+	 */
+	public ContractionHierarchy(CompiledMap map, boolean[] ok) {
+		this.map = map;
+		new Builder(ok).build();
+	}
+
+	/**
+	 * Returns true if the node is in this hierarchy
+	 * @param node Index of the node
+	 * @return true if the node is in this hierarchy
+	 */
+	public boolean contains(int node) {
+		return rank[node] >= 0;
+	}
+
+	/**
+	 * Finds a shortest path between two nodes of the hierarchy
+	 * @param from Index of the source node
+	 * @param to Index of the destination node
+	 * @return Indexes of the path's nodes (including the source and
+	 * destination) or null if there is no path between the nodes
+	 */
+	public int[] getShortestPath(int from, int to) {
+		int n = map.getNrofNodes();
+		SearchSpace fw = SearchSpace.get(0);
+		SearchSpace bw = SearchSpace.get(1);
+		fw.init(n);
+		bw.init(n);
+		fw.update(from, 0, -1, -1, 0);
+		bw.update(to, 0, -1, -1, 0);
+
+		double best = (from == to ? 0 : Double.MAX_VALUE);
+		int meeting = (from == to ? from : -1);
+
+		while (fw.peekKey() < best || bw.peekKey() < best) {
+			boolean forward = fw.peekKey() <= bw.peekKey();
+			SearchSpace s = forward ? fw : bw;
+			SearchSpace other = forward ? bw : fw;
+			int[] first = forward ? upFirst : downFirst;
+			int[] heads = forward ? upTarget : downSource;
+			double[] length = forward ? upLength : downLength;
+
+			int u = s.poll();
+			double du = s.getDist(u);
+			for (int e = first[u]; e < first[u + 1]; e++) {
+				int v = heads[e];
+				double dv = du + length[e];
+				if (dv < s.getDist(v) && !s.isSettled(v)) {
+					s.update(v, dv, u, e, dv);
+					if (other.isReached(v) && dv + other.getDist(v) < best) {
+						best = dv + other.getDist(v);
+						meeting = v;
+					}
+				}
+			}
+		}
+
+		if (meeting < 0) {
+			return null;
+		}
+
+		/* nodes of the forward search's path (from the meeting node back
+		 * to the source) */
+		List<Integer> forwardNodes = new ArrayList<Integer>();
+		for (int v = meeting; v != from; v = fw.getPrev(v)) {
+			forwardNodes.add(v);
+		}
+
+		List<Integer> path = new ArrayList<Integer>();
+		path.add(from);
+		for (int i = forwardNodes.size() - 1; i >= 0; i--) {
+			int v = forwardNodes.get(i);
+			unpack(fw.getPrev(v), v, upMiddle[fw.getPrevEdge(v)], path);
+		}
+		for (int v = meeting; v != to; v = bw.getPrev(v)) {
+			unpack(v, bw.getPrev(v), downMiddle[bw.getPrevEdge(v)], path);
+		}
+
+		int[] result = new int[path.size()];
+		for (int i=0; i<result.length; i++) {
+			result[i] = path.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the nodes of an edge's original path, excluding the edge's
+	 * source, to a list
+	 * @param from Source of the edge
+	 * @param to Target of the edge
+	 * @param middle The node the edge bypasses or -1 for an original edge
+	 * @param path The list where the nodes are added
+	 */
+	private void unpack(int from, int to, int middle, List<Integer> path) {
+		if (middle < 0) {
+			path.add(to);
+			return;
+		}
+		unpack(from, middle, getMiddle(from, middle), path);
+		unpack(middle, to, getMiddle(middle, to), path);
+	}
+
+	/**
+	 * Returns the middle node of the edge between two nodes
+	 * @param from Source of the edge
+	 * @param to Target of the edge
+	 * @return The middle node (-1 for an original edge)
+	 */
+	private int getMiddle(int from, int to) {
+		if (rank[from] < rank[to]) {
+			for (int e = upFirst[from]; e < upFirst[from + 1]; e++) {
+				if (upTarget[e] == to) {
+					return upMiddle[e];
+				}
+			}
+		} else {
+			for (int e = downFirst[to]; e < downFirst[to + 1]; e++) {
+				if (downSource[e] == from) {
+					return downMiddle[e];
+				}
+			}
+		}
+		throw new IllegalStateException("No edge " + from + "->" + to +
+				" in the contraction hierarchy");
+	}
+
+	/**
+	 * Edge of the graph under contraction
+	 */
+	private static class Edge {
+		private int from;
+		private int to;
+		private double length;
+		private int middle;
+
+		private Edge(int from, int to, double length, int middle) {
+			this.from = from;
+			this.to = to;
+			this.length = length;
+			this.middle = middle;
+		}
+	}
+
+	/**
+	 * Contracts the nodes and creates the hierarchy's edge arrays
+	 */
+	private class Builder {
+		private List<List<Edge>> out;
+		private List<List<Edge>> in;
+		private boolean[] contracted;
+		/** number of contracted neighbors (spreads contraction evenly) */
+		private int[] deletedNeighbors;
+		private SearchSpace witness;
+
+		private Builder(boolean[] ok) {
+			int n = map.getNrofNodes();
+			this.out = new ArrayList<List<Edge>>(n);
+			this.in = new ArrayList<List<Edge>>(n);
+			this.contracted = new boolean[n];
+			this.deletedNeighbors = new int[n];
+			this.witness = SearchSpace.get(2);
+			rank = new int[n];
+
+			for (int i=0; i<n; i++) {
+				out.add(new ArrayList<Edge>());
+				in.add(new ArrayList<Edge>());
+				rank[i] = -1;
+				contracted[i] = (ok != null && !ok[i]);
+			}
+
+			for (int u=0; u<n; u++) {
+				if (contracted[u]) {
+					continue;
+				}
+				for (int e = map.firstEdge[u]; e < map.firstEdge[u+1]; e++) {
+					int v = map.edgeTarget[e];
+					if (!contracted[v] && u != v) {
+						addEdge(u, v, map.edgeLength[e], -1);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds an edge or makes an existing edge shorter
+		 */
+		private void addEdge(int from, int to, double length, int middle) {
+			for (Edge e : out.get(from)) {
+				if (e.to == to) {
+					if (length < e.length) {
+						e.length = length;
+						e.middle = middle;
+					}
+					return;
+				}
+			}
+			Edge e = new Edge(from, to, length, middle);
+			out.get(from).add(e);
+			in.get(to).add(e);
+		}
+
+		/**
+		 * Contracts a node or computes how many shortcuts contracting it
+		 * would need
+		 * @param v The node
+		 * @param simulate If true, only counts the shortcuts
+		 * @return The number of (needed) shortcuts
+		 */
+		private int contract(int v, boolean simulate) {
+			int shortcuts = 0;
+
+			for (Edge inEdge : in.get(v)) {
+				int u = inEdge.from;
+				if (contracted[u]) {
+					continue;
+				}
+
+				double maxOut = -1;
+				for (Edge outEdge : out.get(v)) {
+					if (!contracted[outEdge.to] && outEdge.to != u) {
+						maxOut = Math.max(maxOut, outEdge.length);
+					}
+				}
+				if (maxOut < 0) {
+					continue; /* no other neighbors to connect */
+				}
+
+				searchWitnesses(u, v, inEdge.length + maxOut);
+				for (Edge outEdge : out.get(v)) {
+					int w = outEdge.to;
+					if (contracted[w] || w == u) {
+						continue;
+					}
+					double via = inEdge.length + outEdge.length;
+					if (witness.getDist(w) > via) {
+						shortcuts++;
+						if (!simulate) {
+							addEdge(u, w, via, v);
+						}
+					}
+				}
+			}
+
+			return shortcuts;
+		}
+
+		/**
+		 * Searches shortest paths from a node that don't go through the
+		 * node being contracted
+		 * @param source The node where to start
+		 * @param excluded The node being contracted
+		 * @param maxDist Maximum distance that needs to be searched
+		 */
+		private void searchWitnesses(int source, int excluded,
+				double maxDist) {
+			witness.init(map.getNrofNodes());
+			witness.update(source, 0, -1, -1, 0);
+			int settled = 0;
+
+			while (!witness.isEmpty() && witness.peekKey() <= maxDist &&
+					settled < MAX_WITNESS_SETTLED) {
+				int u = witness.poll();
+				settled++;
+				double du = witness.getDist(u);
+				for (Edge e : out.get(u)) {
+					int w = e.to;
+					if (contracted[w] || w == excluded ||
+							witness.isSettled(w)) {
+						continue;
+					}
+					double dw = du + e.length;
+					if (dw < witness.getDist(w)) {
+						witness.update(w, dw, u, -1, dw);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the contraction priority of a node (smaller is
+		 * contracted first)
+		 */
+		private int getPriority(int v) {
+			int edges = 0;
+			for (Edge e : in.get(v)) {
+				edges += contracted[e.from] ? 0 : 1;
+			}
+			for (Edge e : out.get(v)) {
+				edges += contracted[e.to] ? 0 : 1;
+			}
+			return contract(v, true) - edges + deletedNeighbors[v];
+		}
+
+		private void build() {
+			final int n = map.getNrofNodes();
+			final int[] priority = new int[n];
+			PriorityQueue<Integer> queue = new PriorityQueue<Integer>(
+					Math.max(1, n), new Comparator<Integer>() {
+						public int compare(Integer a, Integer b) {
+							if (priority[a] != priority[b]) {
+								return priority[a] < priority[b] ? -1 : 1;
+							}
+							return a.compareTo(b);
+						}
+					});
+
+			for (int v=0; v<n; v++) {
+				if (!contracted[v]) {
+					priority[v] = getPriority(v);
+					queue.add(v);
+				}
+			}
+
+			int order = 0;
+			while (!queue.isEmpty()) {
+				int v = queue.poll();
+				/* lazy update: contract only if still the least important */
+				int p = getPriority(v);
+				if (!queue.isEmpty() && p > priority[queue.peek()]) {
+					priority[v] = p;
+					queue.add(v);
+					continue;
+				}
+
+				contract(v, false);
+				contracted[v] = true;
+				rank[v] = order++;
+				for (Edge e : in.get(v)) {
+					deletedNeighbors[e.from]++;
+				}
+				for (Edge e : out.get(v)) {
+					deletedNeighbors[e.to]++;
+				}
+			}
+
+			createEdgeArrays(n);
+		}
+
+		/**
+		 * Creates the CSR arrays of the upward and downward edges
+		 */
+		private void createEdgeArrays(int n) {
+			int nrofUp = 0;
+			int nrofDown = 0;
+			for (int v=0; v<n; v++) {
+				for (Edge e : out.get(v)) {
+					if (rank[e.to] > rank[v]) {
+						nrofUp++;
+					} else {
+						nrofDown++;
+					}
+				}
+			}
+
+			upFirst = new int[n + 1];
+			upTarget = new int[nrofUp];
+			upLength = new double[nrofUp];
+			upMiddle = new int[nrofUp];
+			downFirst = new int[n + 1];
+			downSource = new int[nrofDown];
+			downLength = new double[nrofDown];
+			downMiddle = new int[nrofDown];
+
+			int up = 0;
+			int down = 0;
+			for (int v=0; v<n; v++) {
+				upFirst[v] = up;
+				for (Edge e : out.get(v)) {
+					if (rank[e.to] > rank[v]) {
+						upTarget[up] = e.to;
+						upLength[up] = e.length;
+						upMiddle[up] = e.middle;
+						up++;
+					}
+				}
+				downFirst[v] = down;
+				for (Edge e : in.get(v)) {
+					if (rank[e.from] > rank[v]) {
+						downSource[down] = e.from;
+						downLength[down] = e.length;
+						downMiddle[down] = e.middle;
+						down++;
+					}
+				}
+			}
+			upFirst[n] = up;
+			downFirst[n] = down;
+		}
+	}
+}
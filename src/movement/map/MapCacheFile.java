@@ -0,0 +1,303 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.SimError;
+
+/**
+ * <P>Binary cache file of a map that has been read from WKT files, mirrored
+ * and translated (see {@link movement.MapBasedMovement}). Reading the
+ * cache file is much faster than parsing the WKT files and checking the
+ * map again, so large maps load faster on the later runs.</P>
+ * <P>The file has a header (with the map's bounds, offset and mirroring),
+ * the coordinates and type bit masks of the nodes and the neighbors of the
+ * nodes in compressed sparse row format (the neighbor indexes of node
+ * <CODE>i</CODE> are <CODE>neighbor[firstNeighbor[i]...
+ * firstNeighbor[i+1]-1]</CODE>). The nodes and their neighbors are in the
+ * same order as in the map that was written, so a map read from the cache
+ * gives exactly the same simulation results as the original map. The file
+ * is memory mapped for reading.</P>
+ * <P>The header also contains a hash of the map files' names and contents
+ * (see {@link #hash(List)}), and the cache is only used if the hash
+ * matches. The hash is also a part of the cache file's name
+ * (see {@link #getCacheFile(File, byte[])}), so maps of different files
+ * have different cache files.</P>
+ */
+public class MapCacheFile {
+	/** Map cache directory -setting id ({@value}). If defined, the maps
+	 * read from WKT files are cached to binary files in this directory.
+	 * Read from the {@link core.World#OPTIMIZATION_SETTINGS_NS} namespace. */
+	public static final String MAP_CACHE_DIR_S = "mapCacheDir";
+	/** Extension of map cache files */
+	public static final String CACHE_EXT = ".simmap";
+	/** Identifier in the beginning of the files ("ONEM") */
+	public static final int MAGIC = 0x4F4E454D;
+	/** Version of the file format and of the way the map is mirrored and
+	 * translated after reading (a change of either invalidates the old
+	 * cache files) */
+	public static final int VERSION = 1;
+	/** Length of the hash (bytes) */
+	public static final int HASH_LENGTH = 32;
+	/** Size of the header (bytes) */
+	public static final int HEADER_SIZE = 4 + 4 + HASH_LENGTH + 4 + 4 + 4 +
+		4 + 6 * 8;
+
+	/**
+	 * Returns the cache file of a map
+	 * @param cacheDir The directory of the cache files
+	 * @param hash The hash of the map (see {@link #hash(List)})
+	 * @return The cache file
+	 */
+	public static File getCacheFile(File cacheDir, byte[] hash) {
+		StringBuilder name = new StringBuilder("map_");
+		for (int i=0; i<16; i++) {
+			name.append(String.format("%02x", hash[i]));
+		}
+		return new File(cacheDir, name.append(CACHE_EXT).toString());
+	}
+
+	/**
+	 * Computes a hash of the map files' names and contents
+	 * @param mapFiles The map files in the order they are read (the file
+	 * index is the type of the file's nodes)
+	 * @return The hash
+	 * @throws IOException if a file can't be read
+	 */
+	public static byte[] hash(List<String> mapFiles) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+
+		byte[] buf = new byte[64 * 1024];
+		md.update((VERSION + "\n" + mapFiles.size() + "\n").getBytes("UTF-8"));
+		for (String fileName : mapFiles) {
+			File file = new File(fileName);
+			md.update((fileName + "\n" + file.length() + "\n").
+					getBytes("UTF-8"));
+			InputStream in = new FileInputStream(file);
+			try {
+				int n;
+				while ((n = in.read(buf)) > 0) {
+					md.update(buf, 0, n);
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return md.digest();
+	}
+
+	/**
+	 * Reads a map from a cache file
+	 * @param cacheFile The cache file
+	 * @param hash The expected hash of the map (see {@link #hash(List)})
+	 * @return The map or null if the file doesn't exist, it's not a cache
+	 * file of the map with the given hash or it's truncated or corrupt
+	 * @throws IOException if the file can't be read
+	 */
+	public static SimMap read(File cacheFile, byte[] hash) throws IOException {
+		if (!cacheFile.exists() || cacheFile.length() < HEADER_SIZE) {
+			return null;
+		}
+
+		RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+		ByteBuffer buf;
+		try {
+			buf = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					file.length());
+		} finally {
+			file.close(); /* the mapping stays valid */
+		}
+
+		byte[] fileHash = new byte[HASH_LENGTH];
+		if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+			return null;
+		}
+		buf.get(fileHash);
+		if (!Arrays.equals(hash, fileHash)) {
+			return null;
+		}
+
+		int nrofNodes = buf.getInt();
+		int nrofNeighbors = buf.getInt();
+		boolean isMirrored = buf.getInt() != 0;
+		buf.getInt(); // unused
+		Coord minBound = new Coord(buf.getDouble(), buf.getDouble());
+		Coord maxBound = new Coord(buf.getDouble(), buf.getDouble());
+		Coord offset = new Coord(buf.getDouble(), buf.getDouble());
+
+		if (nrofNodes < 0 || nrofNeighbors < 0 ||
+				buf.capacity() != getFileSize(nrofNodes, nrofNeighbors)) {
+			return null; /* truncated or corrupt file */
+		}
+
+		double[] x = new double[nrofNodes];
+		double[] y = new double[nrofNodes];
+		int[] types = new int[nrofNodes];
+		int[] firstNeighbor = new int[nrofNodes + 1];
+		int[] neighbor = new int[nrofNeighbors];
+		buf.asDoubleBuffer().get(x);
+		buf.position(buf.position() + nrofNodes * 8);
+		buf.asDoubleBuffer().get(y);
+		buf.position(buf.position() + nrofNodes * 8);
+		buf.asIntBuffer().get(types);
+		buf.position(buf.position() + nrofNodes * 4);
+		buf.asIntBuffer().get(firstNeighbor);
+		buf.position(buf.position() + (nrofNodes + 1) * 4);
+		buf.asIntBuffer().get(neighbor);
+
+		if (!isValidGraph(firstNeighbor, neighbor)) {
+			return null;
+		}
+
+		List<MapNode> nodes = new ArrayList<MapNode>(nrofNodes);
+		for (int i=0; i<nrofNodes; i++) {
+			MapNode n = new MapNode(new Coord(x[i], y[i]));
+			n.setTypeMask(types[i]);
+			nodes.add(n);
+		}
+		for (int i=0; i<nrofNodes; i++) {
+			List<MapNode> neighbors = nodes.get(i).getNeighbors();
+			for (int j = firstNeighbor[i]; j < firstNeighbor[i + 1]; j++) {
+				neighbors.add(nodes.get(neighbor[j]));
+			}
+		}
+
+		return new SimMap(nodes, minBound, maxBound, offset, isMirrored);
+	}
+
+	/**
+	 * Returns the size of a cache file
+	 * @param nrofNodes Number of nodes in the map
+	 * @param nrofNeighbors Total number of neighbors of all the nodes
+	 * @return The size of the file (bytes)
+	 */
+	private static long getFileSize(int nrofNodes, int nrofNeighbors) {
+		return HEADER_SIZE + (long)nrofNodes * (8 + 8 + 4) +
+			((long)nrofNodes + 1) * 4 + (long)nrofNeighbors * 4;
+	}
+
+	/**
+	 * Checks that the neighbor ranges and indexes read from a file are
+	 * within the bounds of the arrays
+	 * @param firstNeighbor Index of the first neighbor of each node
+	 * @param neighbor The neighbor indexes
+	 * @return true if the arrays are valid
+	 */
+	private static boolean isValidGraph(int[] firstNeighbor, int[] neighbor) {
+		int nrofNodes = firstNeighbor.length - 1;
+		if (firstNeighbor[0] != 0 ||
+				firstNeighbor[nrofNodes] != neighbor.length) {
+			return false;
+		}
+		for (int i=0; i<nrofNodes; i++) {
+			if (firstNeighbor[i] > firstNeighbor[i + 1]) {
+				return false;
+			}
+		}
+		for (int n : neighbor) {
+			if (n < 0 || n >= nrofNodes) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a map to a cache file. The file is first written with a
+	 * temporary name and then renamed, so other simulations reading the
+	 * same cache never see a partially written file.
+	 * @param cacheFile The cache file
+	 * @param map The map to write
+	 * @param hash The hash of the map (see {@link #hash(List)})
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(File cacheFile, SimMap map, byte[] hash)
+			throws IOException {
+		List<MapNode> nodes = map.getNodes();
+		Map<MapNode, Integer> indexes = new HashMap<MapNode, Integer>();
+		int nrofNeighbors = 0;
+		for (MapNode n : nodes) {
+			indexes.put(n, indexes.size());
+			nrofNeighbors += n.getNeighbors().size();
+		}
+
+		File dir = cacheFile.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		File tmpFile = File.createTempFile("map", ".tmp", dir);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.write(hash);
+			out.writeInt(nodes.size());
+			out.writeInt(nrofNeighbors);
+			out.writeInt(map.isMirrored() ? 1 : 0);
+			out.writeInt(0);
+			for (Coord c : new Coord[] {map.getMinBound(), map.getMaxBound(),
+					map.getOffset()}) {
+				out.writeDouble(c.getX());
+				out.writeDouble(c.getY());
+			}
+
+			for (MapNode n : nodes) {
+				out.writeDouble(n.getLocation().getX());
+			}
+			for (MapNode n : nodes) {
+				out.writeDouble(n.getLocation().getY());
+			}
+			for (MapNode n : nodes) {
+				out.writeInt(n.getTypeMask());
+			}
+			int first = 0;
+			for (MapNode n : nodes) {
+				out.writeInt(first);
+				first += n.getNeighbors().size();
+			}
+			out.writeInt(first);
+			for (MapNode n : nodes) {
+				for (MapNode neighbor : n.getNeighbors()) {
+					out.writeInt(indexes.get(neighbor));
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		if (!tmpFile.renameTo(cacheFile)) {
+			cacheFile.delete();
+			if (!tmpFile.renameTo(cacheFile)) {
+				tmpFile.delete();
+				throw new IOException("Can't rename " + tmpFile + " to " +
+						cacheFile);
+			}
+		}
+	}
+}
@@ -25,6 +25,10 @@ public class MapNode implements Comparable<MapNode> {
 	private Vector<MapNode> neighbors;
 	// bit mask of map node's types or 0 if no type's are defined
 	private int type;
+	/** the compiled map of this node (or null if not compiled yet) */
+	CompiledMap compiledMap;
+	/** index of this node in the compiled map */
+	int compiledIndex;
 
 	/**
 	 * Constructor. Creates a map node to a location.
@@ -77,6 +81,22 @@ public class MapNode implements Comparable<MapNode> {
 		return false;
 	}
 
+	/**
+	 * Returns the bit mask of this node's types
+	 * @return the bit mask of this node's types (0 if no types are defined)
+	 */
+	int getTypeMask() {
+		return this.type;
+	}
+
+	/**
+	 * Sets the bit mask of this node's types
+	 * @param typeMask The bit mask (see {@link #getTypeMask()})
+	 */
+	void setTypeMask(int typeMask) {
+		this.type = typeMask;
+	}
+
 	/**
 	 * Converts type integer to a bit mask for setting & checking type
 	 * @param type The type to convert
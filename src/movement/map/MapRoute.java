@@ -6,6 +6,8 @@ package movement.map;
 
 import input.WKTReader;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -102,6 +104,28 @@ public class MapRoute {
 		return next;
 	}
 
+	/**
+	 * Writes the position on this route to a snapshot
+	 * (see {@link core.Snapshot})
+	 * @param out Where to write the position
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(index);
+		out.writeBoolean(comingBack);
+	}
+
+	/**
+	 * Reads the position on this route written by
+	 * {@link #writeState(DataOutput)}
+	 * @param in Where to read the position from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException {
+		this.index = in.readInt();
+		this.comingBack = in.readBoolean();
+	}
+
 	/**
 	 * Returns a new route with the same settings
 	 * @return a replicate of this route
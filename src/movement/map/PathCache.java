@@ -0,0 +1,288 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import core.DTNSim;
+import core.Settings;
+import core.World;
+
+/**
+ * Bounded cache of shortest paths that is shared by all the path finders
+ * of a scenario. Many hosts of the same movement model travel between the
+ * same places, so the same paths are searched again and again; with the
+ * cache, each path is searched only once (as long as it's not evicted).
+ * <P>The paths are keyed by their source and destination nodes, the
+ * selection of OK map node types and the search method, and the least
+ * recently used paths are evicted when the cache is full. To let
+ * concurrently moving hosts use the cache without waiting for each other,
+ * the cache is divided into segments that are locked separately (so the
+ * eviction order is LRU per segment).</P>
+ */
+public class PathCache {
+	/** Path cache size -setting id ({@value}). Integer. Maximum number of
+	 * shortest paths in the scenario wide path cache. Zero disables the
+	 * cache. Default = {@value #DEF_CACHE_SIZE}. Read from the
+	 * {@link core.World#OPTIMIZATION_SETTINGS_NS} namespace. */
+	public static final String PATH_CACHE_SIZE_S = "pathCacheSize";
+	/** Default path cache size ({@value}) */
+	public static final int DEF_CACHE_SIZE = 10000;
+	/** Maximum number of separately locked segments ({@value}) */
+	public static final int NROF_SEGMENTS = 16;
+
+	private static PathCache sharedCache;
+
+	static {
+		DTNSim.registerForReset(PathCache.class.getCanonicalName());
+		reset();
+	}
+
+	private Segment[] segments;
+	private int capacity;
+
+	/**
+	 * Creates a new, empty cache
+	 * @param capacity Maximum number of paths in the cache
+	 */
+	public PathCache(int capacity) {
+		int nrofSegments = Math.max(1, Math.min(NROF_SEGMENTS, capacity));
+		int segmentCapacity = (capacity + nrofSegments - 1) / nrofSegments;
+
+		this.capacity = capacity;
+		this.segments = new Segment[nrofSegments];
+		for (int i=0; i<nrofSegments; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	/**
+	 * Returns the scenario wide path cache. The cache is created when it's
+	 * requested for the first time.
+	 * @return The cache or null if the cache is disabled
+	 */
+	public static synchronized PathCache getSharedCache() {
+		if (sharedCache == null) {
+			Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+			int size = s.getInt(PATH_CACHE_SIZE_S, DEF_CACHE_SIZE);
+			if (size <= 0) {
+				return null;
+			}
+			sharedCache = new PathCache(size);
+		}
+		return sharedCache;
+	}
+
+	/**
+	 * Discards the scenario wide path cache
+	 */
+	public static synchronized void reset() {
+		sharedCache = null;
+	}
+
+	/**
+	 * Returns the cached path between two nodes
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @param okTypes Bit mask of the OK map node types
+	 * (see {@link #typeMask(int[])})
+	 * @param contracted True if the path is searched using contraction
+	 * hierarchies
+	 * @return The path's nodes or null if the path is not in the cache
+	 */
+	public MapNode[] get(MapNode from, MapNode to, long okTypes,
+			boolean contracted) {
+		Key key = new Key(from, to, okTypes, contracted);
+		return segmentFor(key).get(key);
+	}
+
+	/**
+	 * Adds a path to the cache. The least recently used path of the same
+	 * segment is evicted if the segment is full.
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @param okTypes Bit mask of the OK map node types
+	 * (see {@link #typeMask(int[])})
+	 * @param contracted True if the path is searched using contraction
+	 * hierarchies
+	 * @param path The path's nodes (must not be modified after this call)
+	 */
+	public void put(MapNode from, MapNode to, long okTypes,
+			boolean contracted, MapNode[] path) {
+		Key key = new Key(from, to, okTypes, contracted);
+		segmentFor(key).put(key, path);
+	}
+
+	/**
+	 * Converts a selection of map node types to a bit mask that can be used
+	 * as a part of the cache key
+	 * @param okMapNodes The map node types that are OK or null if all nodes
+	 * are OK
+	 * @return The bit mask
+	 */
+	public static long typeMask(int[] okMapNodes) {
+		if (okMapNodes == null) {
+			return -1L; // different from all the masks of type selections
+		}
+		long mask = 0;
+		for (int type : okMapNodes) {
+			mask |= 1L << type;
+		}
+		return mask;
+	}
+
+	private Segment segmentFor(Key key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[(h & 0x7fffffff) % segments.length];
+	}
+
+	/**
+	 * Returns the maximum number of paths in the cache
+	 * @return the maximum number of paths in the cache
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns the number of paths in the cache
+	 * @return the number of paths in the cache
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment s : segments) {
+			size += s.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns how many times a requested path was found in the cache
+	 * @return the number of cache hits
+	 */
+	public long getHits() {
+		long hits = 0;
+		for (Segment s : segments) {
+			hits += s.getHits();
+		}
+		return hits;
+	}
+
+	/**
+	 * Returns how many times a requested path was not found in the cache
+	 * @return the number of cache misses
+	 */
+	public long getMisses() {
+		long misses = 0;
+		for (Segment s : segments) {
+			misses += s.getMisses();
+		}
+		return misses;
+	}
+
+	/**
+	 * Returns how many paths have been evicted from the cache
+	 * @return the number of evicted paths
+	 */
+	public long getEvictions() {
+		long evictions = 0;
+		for (Segment s : segments) {
+			evictions += s.getEvictions();
+		}
+		return evictions;
+	}
+
+	/**
+	 * Cache key of a path
+	 */
+	private static class Key {
+		private final MapNode from;
+		private final MapNode to;
+		private final long okTypes;
+		private final boolean contracted;
+
+		public Key(MapNode from, MapNode to, long okTypes,
+				boolean contracted) {
+			this.from = from;
+			this.to = to;
+			this.okTypes = okTypes;
+			this.contracted = contracted;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = System.identityHashCode(from);
+			h = 31 * h + System.identityHashCode(to);
+			h = 31 * h + (int)(okTypes ^ (okTypes >>> 32));
+			return contracted ? ~h : h;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key)o;
+			return from == k.from && to == k.to && okTypes == k.okTypes &&
+				contracted == k.contracted;
+		}
+	}
+
+	/**
+	 * A separately locked part of the cache with its own LRU order
+	 */
+	private static class Segment {
+		private LinkedHashMap<Key, MapNode[]> paths;
+		private long hits;
+		private long misses;
+		private long evictions;
+
+		public Segment(final int capacity) {
+			this.paths = new LinkedHashMap<Key, MapNode[]>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Key, MapNode[]> eldest) {
+					if (size() > capacity) {
+						evictions++;
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		public synchronized MapNode[] get(Key key) {
+			MapNode[] path = paths.get(key);
+			if (path != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+			return path;
+		}
+
+		public synchronized void put(Key key, MapNode[] path) {
+			paths.put(key, path);
+		}
+
+		public synchronized int size() {
+			return paths.size();
+		}
+
+		public synchronized long getHits() {
+			return hits;
+		}
+
+		public synchronized long getMisses() {
+			return misses;
+		}
+
+		public synchronized long getEvictions() {
+			return evictions;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state of a single shortest path search over the int node indexes
+ * of a {@link CompiledMap}: the nodes' distances and previous nodes and a
+ * binary heap of the reached but not yet settled nodes. The arrays are
+ * allocated once per thread (see {@link #get(int)}) and "cleared" for a new
+ * search by increasing a generation counter, so a search doesn't allocate
+ * any objects.
+ */
+class SearchSpace {
+	/** Number of search spaces per thread */
+	public static final int NROF_SPACES = 3;
+
+	private static final ThreadLocal<SearchSpace[]> spaces =
+		new ThreadLocal<SearchSpace[]>() {
+			@Override
+			protected SearchSpace[] initialValue() {
+				SearchSpace[] s = new SearchSpace[NROF_SPACES];
+				for (int i=0; i<s.length; i++) {
+					s[i] = new SearchSpace();
+				}
+				return s;
+			}
+		};
+
+	private double[] dist;
+	private int[] prev;
+	private int[] prevEdge;
+	/** generation when the node was reached (distance set) */
+	private int[] reached;
+	/** generation when the node was settled (removed from the heap) */
+	private int[] settled;
+	private int generation;
+
+	private int[] heap;
+	/** heap keys of the nodes */
+	private double[] keys;
+	/** heap positions of the nodes (valid for reached, unsettled nodes) */
+	private int[] heapPos;
+	private int size;
+
+	private SearchSpace() {
+		allocate(0);
+	}
+
+	/**
+	 * Returns one of the current thread's search spaces. Different searches
+	 * that are needed at the same time must use different spaces.
+	 * @param index Index of the space (0...{@value #NROF_SPACES}-1)
+	 * @return The search space
+	 */
+	static SearchSpace get(int index) {
+		return spaces.get()[index];
+	}
+
+	private void allocate(int nrofNodes) {
+		this.dist = new double[nrofNodes];
+		this.prev = new int[nrofNodes];
+		this.prevEdge = new int[nrofNodes];
+		this.reached = new int[nrofNodes];
+		this.settled = new int[nrofNodes];
+		this.heap = new int[nrofNodes];
+		this.keys = new double[nrofNodes];
+		this.heapPos = new int[nrofNodes];
+		this.generation = 0;
+	}
+
+	/**
+	 * Starts a new search
+	 * @param nrofNodes Number of nodes in the searched graph
+	 */
+	void init(int nrofNodes) {
+		if (dist.length < nrofNodes) {
+			allocate(nrofNodes);
+		}
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			generation = 0;
+		}
+		generation++;
+		size = 0;
+	}
+
+	boolean isReached(int node) {
+		return reached[node] == generation;
+	}
+
+	boolean isSettled(int node) {
+		return settled[node] == generation;
+	}
+
+	/**
+	 * Returns the distance of a node
+	 * @param node The node
+	 * @return The distance or Double.MAX_VALUE if the node hasn't been
+	 * reached
+	 */
+	double getDist(int node) {
+		return reached[node] == generation ? dist[node] : Double.MAX_VALUE;
+	}
+
+	int getPrev(int node) {
+		return prev[node];
+	}
+
+	int getPrevEdge(int node) {
+		return prevEdge[node];
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the smallest key in the heap
+	 * @return the smallest key or Double.MAX_VALUE if the heap is empty
+	 */
+	double peekKey() {
+		return size > 0 ? keys[heap[0]] : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Sets a new distance for an unsettled node and adds it to the heap or
+	 * moves it to its new place in the heap
+	 * @param node The node
+	 * @param distance The node's new distance
+	 * @param prevNode The previous node on the path (or -1)
+	 * @param edge Index of the edge from the previous node (or -1)
+	 * @param key The node's key in the heap (smaller is polled first)
+	 */
+	void update(int node, double distance, int prevNode, int edge,
+			double key) {
+		dist[node] = distance;
+		prev[node] = prevNode;
+		prevEdge[node] = edge;
+		keys[node] = key;
+
+		if (reached[node] != generation) {
+			reached[node] = generation;
+			heap[size] = node;
+			heapPos[node] = size;
+			size++;
+		}
+		siftUp(heapPos[node]);
+	}
+
+	/**
+	 * Removes the node with the smallest key from the heap and marks it
+	 * settled
+	 * @return The node
+	 */
+	int poll() {
+		int node = heap[0];
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		settled[node] = generation;
+		return node;
+	}
+
+	private boolean isBefore(int a, int b) {
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapPos[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], node)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+}
@@ -6,6 +6,7 @@ package movement.map;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +38,29 @@ public class SimMap implements Serializable {
 		setBounds();
 	}
 
+	/**
+	 * Creates a map of nodes whose coordinates are already translated
+	 * and mirrored as requested (used when reading a map from a
+	 * {@link MapCacheFile}).
+	 * @param nodes The nodes of the map
+	 * @param minBound The upper left corner of the map
+	 * @param maxBound The lower right corner of the map
+	 * @param offset The offset of the translations
+	 * @param isMirrored Has the map data been mirrored
+	 */
+	SimMap(List<MapNode> nodes, Coord minBound, Coord maxBound, Coord offset,
+			boolean isMirrored) {
+		this.nodes = new ArrayList<MapNode>(nodes);
+		this.nodesMap = new Hashtable<Coord, MapNode>();
+		for (MapNode node : nodes) {
+			nodesMap.put(node.getLocation(), node);
+		}
+		this.minBound = minBound;
+		this.maxBound = maxBound;
+		this.offset = offset;
+		this.isMirrored = isMirrored;
+	}
+
 	/**
 	 * Returns all the map nodes in a list
 	 * @return all the map nodes in a list
@@ -57,6 +81,7 @@ public class SimMap implements Serializable {
 			for (MapNode node : getNodes()) {
 				nodesMap.put(node.getLocation(), node); // re-hash
 			}
+			needsRehash = false;
 		}
 
 		return nodesMap.get(c);
@@ -111,6 +136,7 @@ public class SimMap implements Serializable {
 		offset.translate(dx, dy);
 
 		needsRehash = true;
+		CompiledMap.invalidate(nodes);
 	}
 
 	/**
@@ -127,6 +153,7 @@ public class SimMap implements Serializable {
 		setBounds();
 		this.isMirrored = true;
 		needsRehash = true;
+		CompiledMap.invalidate(nodes);
 	}
 
 	/**
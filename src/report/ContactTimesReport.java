@@ -4,7 +4,11 @@
  */
 package report;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Vector;
 
 import core.ConnectionListener;
@@ -105,6 +109,48 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 		}
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return !isIntervalled();
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeInt(this.connections.size());
+		for (ConnectionInfo ci : this.connections.keySet()) {
+			out.writeInt(ci.h1.getAddress());
+			out.writeInt(ci.h2.getAddress());
+			out.writeDouble(ci.startTime);
+		}
+		out.writeInt(this.nrofContacts.size());
+		for (Integer contacts : this.nrofContacts) {
+			out.writeInt(contacts == null ? 0 : contacts);
+		}
+	}
+
+	@Override
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		super.readState(in, hosts);
+		this.connections.clear();
+		for (int i = 0, n = in.readInt(); i < n; i++) {
+			DTNHost h1 = hosts.get(in.readInt());
+			ConnectionInfo ci = new ConnectionInfo(h1, hosts.get(in.readInt()));
+			ci.startTime = in.readDouble();
+			this.connections.put(ci, ci);
+		}
+		int size = in.readInt();
+		this.nrofContacts.clear();
+		this.nrofContacts.setSize(size);
+		for (int i = 0; i < size; i++) {
+			int contacts = in.readInt();
+			if (contacts > 0) {
+				this.nrofContacts.set(i, contacts);
+			}
+		}
+	}
+
 	@Override
 	public void done() {
 
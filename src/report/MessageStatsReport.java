@@ -4,6 +4,9 @@
  */
 package report;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -135,6 +138,82 @@ public class MessageStatsReport extends Report implements MessageListener {
 	}
 
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeInt(this.creationTimes.size());
+		for (Map.Entry<String, Double> e : this.creationTimes.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeDouble(e.getValue());
+		}
+		writeDoubles(out, this.latencies);
+		writeDoubles(out, this.msgBufferTime);
+		writeDoubles(out, this.rtt);
+		out.writeInt(this.hopCounts.size());
+		for (int hops : this.hopCounts) {
+			out.writeInt(hops);
+		}
+
+		out.writeInt(this.nrofDropped);
+		out.writeInt(this.nrofRemoved);
+		out.writeInt(this.nrofStarted);
+		out.writeInt(this.nrofAborted);
+		out.writeInt(this.nrofRelayed);
+		out.writeInt(this.nrofCreated);
+		out.writeInt(this.nrofResponseReqCreated);
+		out.writeInt(this.nrofResponseDelivered);
+		out.writeInt(this.nrofDelivered);
+	}
+
+	@Override
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		super.readState(in, hosts);
+		this.creationTimes.clear();
+		for (int i = 0, n = in.readInt(); i < n; i++) {
+			String id = in.readUTF();
+			this.creationTimes.put(id, in.readDouble());
+		}
+		readDoubles(in, this.latencies);
+		readDoubles(in, this.msgBufferTime);
+		readDoubles(in, this.rtt);
+		this.hopCounts.clear();
+		for (int i = 0, n = in.readInt(); i < n; i++) {
+			this.hopCounts.add(in.readInt());
+		}
+
+		this.nrofDropped = in.readInt();
+		this.nrofRemoved = in.readInt();
+		this.nrofStarted = in.readInt();
+		this.nrofAborted = in.readInt();
+		this.nrofRelayed = in.readInt();
+		this.nrofCreated = in.readInt();
+		this.nrofResponseReqCreated = in.readInt();
+		this.nrofResponseDelivered = in.readInt();
+		this.nrofDelivered = in.readInt();
+	}
+
+	private static void writeDoubles(DataOutput out, List<Double> values)
+			throws IOException {
+		out.writeInt(values.size());
+		for (double value : values) {
+			out.writeDouble(value);
+		}
+	}
+
+	private static void readDoubles(DataInput in, List<Double> values)
+			throws IOException {
+		values.clear();
+		for (int i = 0, n = in.readInt(); i < n; i++) {
+			values.add(in.readDouble());
+		}
+	}
+
 	@Override
 	public void done() {
 		write("Message stats for scenario " + getScenarioName() +
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import movement.map.PathCache;
+
+/**
+ * Reports the statistics of the scenario wide shortest path cache
+ * (see {@link PathCache}): how many of the paths the map based movement
+ * models requested were found in the cache and how many had to be searched.
+ * The statistics include the paths requested during the movement warm up.
+ */
+public class PathCacheReport extends Report {
+
+	@Override
+	public void done() {
+		write("Path cache stats for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+
+		PathCache cache = PathCache.getSharedCache();
+		if (cache == null) {
+			write("Path cache is disabled");
+			super.done();
+			return;
+		}
+
+		long hits = cache.getHits();
+		long misses = cache.getMisses();
+		double hitRate = 0;
+		if (hits + misses > 0) {
+			hitRate = (1.0 * hits) / (hits + misses);
+		}
+
+		String statsText = "capacity: " + cache.getCapacity() +
+			"\nsize: " + cache.size() +
+			"\nhits: " + hits +
+			"\nmisses: " + misses +
+			"\nevictions: " + cache.getEvictions() +
+			"\nhit_rate: " + format(hitRate)
+			;
+
+		write(statsText);
+		super.done();
+	}
+}
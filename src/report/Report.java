@@ -4,6 +4,8 @@
  */
 package report;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -14,6 +16,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import core.DTNHost;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -324,6 +327,64 @@ public abstract class Report {
 		return s;
 	}
 
+	/**
+	 * Returns true if the report supports checkpoints, i.e., all of its
+	 * state is written by {@link #writeState(DataOutput)} and it writes its
+	 * output only when the simulation is done. Intervalled reports don't
+	 * support checkpoints because the resumed run would overwrite the
+	 * earlier output files. This implementation returns false.
+	 * @return true if the report supports checkpoints
+	 * @see core.Snapshot
+	 */
+	public boolean isSnapshotSupported() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the report creates a new output file on every
+	 * {@link #INTERVAL_SETTING} seconds
+	 * @return true if the report is intervalled
+	 */
+	protected boolean isIntervalled() {
+		return this.outputInterval > 0;
+	}
+
+	/**
+	 * Writes the state of this report that changes during the simulation
+	 * to a checkpoint: the warm up IDs and the time of the last report
+	 * file. Subclasses that support checkpoints must override this and
+	 * {@link #readState(DataInput, List)} and call the superclass' methods
+	 * first.
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(this.lastReportTime);
+		out.writeInt(this.warmupIDs == null ? -1 : this.warmupIDs.size());
+		if (this.warmupIDs != null) {
+			for (String id : this.warmupIDs) {
+				out.writeUTF(id);
+			}
+		}
+	}
+
+	/**
+	 * Reads the state of this report from a checkpoint written by
+	 * {@link #writeState(DataOutput)}
+	 * @param in Where the state is read from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		this.lastReportTime = in.readDouble();
+		int nrofIDs = in.readInt();
+		this.warmupIDs = (nrofIDs < 0 ? null : new HashSet<String>());
+		for (int i = 0; i < nrofIDs; i++) {
+			this.warmupIDs.add(in.readUTF());
+		}
+	}
+
 	/**
 	 * Called when the simulation is done, user requested
 	 * premature termination or intervalled report generating decided
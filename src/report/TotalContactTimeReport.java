@@ -37,6 +37,14 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 		this.lastWrite = getSimTime();
 	}
 
+	/**
+	 * Returns false: the report writes its output during the simulation.
+	 */
+	@Override
+	public boolean isSnapshotSupported() {
+		return false;
+	}
+
 	@Override
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
@@ -4,15 +4,22 @@
  */
 package routing;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 
+import routing.util.DropPolicy;
 import routing.util.EnergyModel;
+import routing.util.IndexedMessageHeap;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
+import routing.util.SummaryVector;
 import util.Tuple;
 
 import core.Connection;
@@ -21,7 +28,9 @@ import core.Message;
 import core.MessageListener;
 import core.NetworkInterface;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
+import core.Snapshot;
 
 /**
  * Superclass of active routers. Contains convenience methods (e.g.
@@ -39,15 +48,32 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** how often TTL check (discarding old messages) is performed */
+	/** how often TTL check (discarding old messages) was performed
+	 * @deprecated Not used anymore; messages whose TTL has passed are
+	 * dropped on every update (see {@link #dropExpiredMessages()}) */
+	@Deprecated
 	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** messages (with finite TTL) ordered by their expiry time */
+	private IndexedMessageHeap expiryHeap;
 
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
+	/** name of the drop policy (see {@link DropPolicy#DROP_POLICY_S}) */
+	private String dropPolicyName;
+	/** the policy that selects the messages to drop when buffer is full */
+	private DropPolicy dropPolicy;
+	/** cached lists of the messages that can be offered to the other ends of
+	 * the connections (see {@link #getOfferedMessages(Connection)}) */
+	private Map<Connection, OfferedMessages> offeredMessages;
+	/** cached result of {@link #getMessagesForConnected()} (unmodifiable) */
+	private List<Tuple<Message, Connection>> forConnected;
+	/** the pairs of {@link #forConnected} in queue mode order (reused) */
+	private List<Tuple<Message, Connection>> sortedForConnected;
+	/** buffer version and connections of the cached result */
+	private int forConnectedVersion;
+	private Connection[] forConnectedCons;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -61,6 +87,14 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
 
+		this.dropPolicyName = s.getSetting(DropPolicy.DROP_POLICY_S,
+				DropPolicy.FIFO);
+		if (DropPolicy.createPolicy(dropPolicyName) == null) {
+			throw new SettingsError("Unknown drop policy '" + dropPolicyName +
+					"' for setting " +
+					s.getFullPropertyName(DropPolicy.DROP_POLICY_S));
+		}
+
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
 		} else {
@@ -77,13 +111,37 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.deleteDelivered = r.deleteDelivered;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
+		this.dropPolicyName = r.dropPolicyName;
 	}
 
 	@Override
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.expiryHeap = new IndexedMessageHeap();
+		this.dropPolicy = DropPolicy.createPolicy(dropPolicyName);
+		this.offeredMessages = new HashMap<Connection, OfferedMessages>();
+		this.forConnected = null;
+		this.sortedForConnected = new ArrayList<Tuple<Message, Connection>>();
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		this.dropPolicy.messageAdded(m);
+		if (m.getExpiryTime() != Double.MAX_VALUE) {
+			this.expiryHeap.add(m, m.getExpiryTime());
+		}
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			this.dropPolicy.messageRemoved(m);
+			this.expiryHeap.remove(m);
+		}
+		return m;
 	}
 
 	/**
@@ -215,6 +273,16 @@ public abstract class ActiveRouter extends MessageRouter {
 		return true;
 	}
 
+	/**
+	 * Returns true: {@link #checkReceiving(Message, DTNHost)} denies all the
+	 * messages that are in the summary vector (or asks to try later if
+	 * this router is transferring)
+	 */
+	@Override
+	public boolean refusesSeenMessages() {
+		return true;
+	}
+
 	/**
 	 * Checks if router "wants" to start receiving message (i.e. router
 	 * isn't transferring, doesn't have the message and has room for it).
@@ -237,8 +305,10 @@ public abstract class ActiveRouter extends MessageRouter {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 
-		if (m.getTtl() <= 0 && m.getTo() != getHost()) {
-			/* TTL has expired and this host is not the final recipient */
+		if (SimClock.getTime() >= m.getExpiryTime() &&
+				m.getTo() != getHost()) {
+			/* TTL has expired and this host is not the final recipient
+			 * (same definition of expiry as in dropping the messages) */
 			return DENIED_TTL;
 		}
 
@@ -288,16 +358,40 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL has run out, except the messages that are
+	 * being sent. The messages are kept in a heap ordered by their expiry
+	 * time, so only the expired messages are checked.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl();
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		double now = SimClock.getTime();
+		if (!(expiryHeap.peekPriority() <= now)) {
+			return; /* nothing has expired (or no messages with TTL) */
+		}
+
+		List<Message> sending = getMessagesBeingSent();
+		Message m;
+		while ((m = expiryHeap.peekExcluding(sending)) != null &&
+				expiryHeap.getPriority(m) <= now) {
+			deleteMessage(m.getId(), true);
+		}
+	}
+
+	/**
+	 * Returns the messages that are being sent
+	 * @return The messages being sent or null if no message is being sent
+	 */
+	protected List<Message> getMessagesBeingSent() {
+		List<Message> sending = null;
+		for (Connection con : this.sendingConnections) {
+			if (con.getMessage() == null) {
+				continue; // transmission is finalized
 			}
+			if (sending == null) {
+				sending = new ArrayList<Message>(1);
+			}
+			sending.add(con.getMessage());
 		}
+		return sending;
 	}
 
 	/**
@@ -313,58 +407,139 @@ public abstract class ActiveRouter extends MessageRouter {
 
 
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the message that should be removed first from the message
+	 * buffer according to the drop policy (by default the oldest message by
+	 * receive time) and that is not being sent if excludeMsgBeingSent is
+	 * true.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
-	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
+	 * being sent from the check (i.e. if the first message is being sent,
+	 * the second message is returned)
+	 * @return The message to remove or null if no message could be returned
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
+	 * @see DropPolicy
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
+		return this.dropPolicy.getNextMessageToDrop(excludeMsgBeingSent ?
+				getMessagesBeingSent() : null);
+	}
 
-			if (excludeMsgBeingSent && isSending(m.getId())) {
-				continue; // skip the message(s) that router is sending
-			}
+	/**
+	 * Returns a list of message-connections tuples of the messages whose
+	 * recipient is some host that we're connected to at the moment. The
+	 * list is cached and created again only when the messages or the
+	 * connections have changed, so it can't be modified.
+	 * @return an unmodifiable list of message-connections tuples
+	 */
+	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
+		if (getNrofMessages() == 0 || getConnections().size() == 0) {
+			/* no messages -> empty list */
+			return Collections.emptyList();
+		}
 
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
+		List<Connection> connections = getConnections();
+		if (forConnected == null || forConnectedVersion != getBufferVersion()
+				|| !isSameConnections(connections)) {
+			/* messages or connections have changed -> pair again */
+			List<Tuple<Message, Connection>> pairs =
+				new ArrayList<Tuple<Message, Connection>>();
+			for (Message m : getMessageCollection()) {
+				for (Connection con : connections) {
+					DTNHost to = con.getOtherNode(getHost());
+					if (m.getTo() == to) {
+						pairs.add(new Tuple<Message, Connection>(m,con));
+					}
+				}
 			}
+			forConnected = Collections.unmodifiableList(pairs);
+			forConnectedVersion = getBufferVersion();
+			forConnectedCons = connections.toArray(
+					new Connection[connections.size()]);
 		}
 
-		return oldest;
+		return forConnected;
 	}
 
 	/**
-	 * Returns a list of message-connections tuples of the messages whose
-	 * recipient is some host that we're connected to at the moment.
-	 * @return a list of message-connections tuples
+	 * Returns true if the given connections are the same (and in the same
+	 * order) as the ones the cached message-connection pairs were created for
+	 * @param connections The connections to check
+	 * @return true if the connections are the same
 	 */
-	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
-		if (getNrofMessages() == 0 || getConnections().size() == 0) {
-			/* no messages -> empty list */
-			return new ArrayList<Tuple<Message, Connection>>(0);
+	private boolean isSameConnections(List<Connection> connections) {
+		if (forConnectedCons.length != connections.size()) {
+			return false;
+		}
+		for (int i=0; i<forConnectedCons.length; i++) {
+			if (forConnectedCons[i] != connections.get(i)) {
+				return false;
+			}
 		}
+		return true;
+	}
 
-		List<Tuple<Message, Connection>> forTuples =
-			new ArrayList<Tuple<Message, Connection>>();
+	/**
+	 * Returns the messages of this router that could be offered to the host
+	 * at the other end of a connection, in the order of the message
+	 * collection: the messages that the other host doesn't have and that
+	 * {@link #isOfferable(Message, DTNHost)} accepts. The list is cached per
+	 * connection and created again only when messages have been added to or
+	 * removed from either host's buffer, so it must not be modified.
+	 * @param con The connection
+	 * @return The messages that could be offered
+	 */
+	protected List<Message> getOfferedMessages(Connection con) {
+		DTNHost other = con.getOtherNode(getHost());
+		MessageRouter othRouter = other.getRouter();
+		OfferedMessages offered = offeredMessages.get(con);
+
+		if (offered == null) {
+			if (offeredMessages.size() >= getConnections().size()) {
+				removeClosedOffers();
+			}
+			offered = new OfferedMessages();
+			offeredMessages.put(con, offered);
+		}
+		else if (offered.version == getBufferVersion() &&
+				offered.otherVersion == othRouter.getBufferVersion()) {
+			return offered.messages;
+		}
+
+		offered.messages.clear();
 		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+			if (!othRouter.hasMessage(m.getId()) && isOfferable(m, other)) {
+				offered.messages.add(m);
 			}
 		}
+		offered.version = getBufferVersion();
+		offered.otherVersion = othRouter.getBufferVersion();
+		return offered.messages;
+	}
 
-		return forTuples;
+	/**
+	 * Returns true if a message (that the other host doesn't have) could be
+	 * offered to the other host. Used by
+	 * {@link #getOfferedMessages(Connection)}, whose results are cached, so
+	 * the return value may only depend on the message and the host.
+	 * This implementation always returns true.
+	 * @param m The message
+	 * @param other The other host
+	 * @return true if the message could be offered to the other host
+	 */
+	protected boolean isOfferable(Message m, DTNHost other) {
+		return true;
+	}
+
+	/**
+	 * Removes the cached offered messages of the connections that are down
+	 */
+	private void removeClosedOffers() {
+		Iterator<Connection> i = offeredMessages.keySet().iterator();
+		while (i.hasNext()) {
+			if (!i.next().isUp()) {
+				i.remove();
+			}
+		}
 	}
 
 	/**
@@ -396,13 +571,29 @@ public abstract class ActiveRouter extends MessageRouter {
 	  * Goes trough the messages until the other node accepts one
 	  * for receiving (or doesn't accept any). If a transfer is started, the
 	  * connection is included in the list of sending connections.
+	  * Messages that are in the other node's summary vector (see
+	  * {@link MessageRouter#getSummaryVector()}) are not offered if the
+	  * other node would deny them anyway.
 	  * @param con Connection trough which the messages are sent
 	  * @param messages A list of messages to try
 	  * @return The message whose transfer was started or null if no
 	  * transfer was started.
 	  */
 	protected Message tryAllMessages(Connection con, List<Message> messages) {
+		DTNHost other = con.getOtherNode(getHost());
+		SummaryVector seen = null;
+		if (other.getRouter().refusesSeenMessages()) {
+			/* skip the messages the other host would deny as old */
+			seen = other.getRouter().getSummaryVector();
+		}
+
 		for (Message m : messages) {
+			/* messages to the other host are tried anyway since the final
+			 * recipient's denial tells when to delete delivered messages */
+			if (seen != null && seen.contains(m) &&
+					!(deleteDelivered && m.getTo() == other)) {
+				continue;
+			}
 			int retVal = startTransfer(m, con);
 			if (retVal == RCV_OK) {
 				return m;	// accepted a message, don't try others
@@ -475,9 +666,16 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		@SuppressWarnings(value = "unchecked")
-		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));
+		List<Tuple<Message, Connection>> forConnected =
+			getMessagesForConnected();
+		if (forConnected.size() > 1) {
+			/* the cached list can't be sorted -> sort a copy of it */
+			sortedForConnected.clear();
+			sortedForConnected.addAll(forConnected);
+			sortByQueueMode(sortedForConnected);
+			forConnected = sortedForConnected;
+		}
+		Tuple<Message, Connection> t = tryMessagesForConnected(forConnected);
 
 		if (t != null) {
 			return t.getValue(); // started transfer
@@ -504,8 +702,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			return; // nothing to shuffle
 		}
 
-		Random rng = new Random(SimClock.getIntTime());
-		Collections.shuffle(messages, rng);
+		Collections.shuffle(messages, getTimeRng());
 	}
 
 	/**
@@ -574,7 +771,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Checks out all sending connections to finalize the ready ones
 	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * whose TTL <= 0.
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
@@ -590,6 +787,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
+					this.dropPolicy.messageForwarded(con.getMessage());
 					transferDone(con);
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
@@ -617,12 +815,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL &&
-				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
-		}
+		dropExpiredMessages();
 
 		if (energy != null) {
 			/* TODO: add support for other interfaces */
@@ -647,6 +840,58 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	protected void transferDone(Connection con) { }
 
+	/**
+	 * Writes also the drop order and expiry times of the messages, the
+	 * sending connections and the state of the energy model. The sending
+	 * connections that are up are written as their indexes in the host's
+	 * connections and the ones that have gone down (but whose transfer
+	 * has not been aborted yet) by value.
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		this.dropPolicy.writeState(out);
+		this.expiryHeap.writeState(out);
+
+		List<Connection> connections = getHost().getConnections();
+		out.writeInt(this.sendingConnections.size());
+		for (Connection con : this.sendingConnections) {
+			int index = con.isUp() ? connections.indexOf(con) : -1;
+			out.writeInt(index);
+			if (index < 0) {
+				Snapshot.writeConnection(out, con);
+			}
+		}
+
+		if (this.energy != null) {
+			this.energy.writeState(out);
+		}
+	}
+
+	@Override
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		super.readState(in, hosts);
+		this.dropPolicy.readState(in, getMessageCollection());
+		this.expiryHeap.readState(in, getMessageCollection());
+
+		List<Connection> connections = getHost().getConnections();
+		this.sendingConnections.clear();
+		for (int i=0, n=in.readInt(); i<n; i++) {
+			int index = in.readInt();
+			this.sendingConnections.add(index >= 0 ?
+					connections.get(index) :
+					Snapshot.readConnection(in, hosts));
+		}
+
+		if (this.energy != null) {
+			this.energy.readState(in, getHost().getComBus());
+		}
+
+		this.offeredMessages.clear();
+		this.forConnected = null;
+	}
+
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
@@ -657,4 +902,13 @@ public abstract class ActiveRouter extends MessageRouter {
 		return top;
 	}
 
+	/**
+	 * Messages that can be offered to the other end of a connection and the
+	 * buffer versions of both hosts when the list was created
+	 */
+	private static class OfferedMessages {
+		private List<Message> messages = new ArrayList<Message>();
+		private int version;
+		private int otherVersion;
+	}
 }
@@ -103,6 +103,12 @@ public class CustomRouter extends ActiveRouter {
         return new CustomRouter(this);
     }
 
+    @Override
+    public boolean refusesSeenMessages() {
+        // every offered message is saved to the routing table
+        return false;
+    }
+
     @Override
     public int receiveMessage(Message m, DTNHost from) {
         saveToRoutingTable(m, from);
@@ -32,6 +32,11 @@ public class DirectDeliveryRouter extends ActiveRouter {
 		}
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
 	@Override
 	public DirectDeliveryRouter replicate() {
 		return new DirectDeliveryRouter(this);
@@ -7,6 +7,8 @@ package routing;
 import java.util.ArrayList;
 import java.util.List;
 
+import routing.util.SummaryVector;
+
 import core.*;
 
 import static core.Constants.DEBUG;
@@ -54,9 +56,12 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		if (con.isUp()) {
 			DTNHost peer = con.getOtherNode(getHost());
 			List<Message> newMessages = new ArrayList<Message>();
+			SummaryVector seen = getSummaryVector();
 
+			/* only the messages that are not in this router's summary vector
+			   can be accepted */
 			for (Message m : peer.getMessageCollection()) {
-				if (!this.hasMessage(m.getId())) {
+				if (!seen.contains(m)) {
 					newMessages.add(m);
 				}
 			}
@@ -73,6 +78,11 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		DTNHost host = getHost();
 
 		for (Connection c : getConnections()) {
+			MessageRouter peer = c.getOtherNode(host).getRouter();
+			if (peer.refusesSeenMessages() &&
+					peer.getSummaryVector().contains(m)) {
+				continue; /* the peer has already seen the message */
+			}
 			if (c.isReadyForTransfer() && c.startTransfer(host, m) == RCV_OK) {
 				c.finalizeTransfer(); /* and finalize it right away */
 			}
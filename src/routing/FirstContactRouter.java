@@ -66,6 +66,11 @@ public class FirstContactRouter extends ActiveRouter {
 		this.deleteMessage(con.getMessage().getId(), false);
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
 	@Override
 	public FirstContactRouter replicate() {
 		return new FirstContactRouter(this);
@@ -5,7 +5,6 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -14,7 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MaxPropCostEngine;
 import routing.maxprop.MeetingProbabilitySet;
 import routing.util.RoutingInfo;
 import util.Tuple;
@@ -52,15 +51,9 @@ public class MaxPropRouter extends ActiveRouter {
 	 * mapped using host's network address */
 	private Map<Integer, MeetingProbabilitySet> allProbs;
 	/** the cost-to-node calculator */
-	private MaxPropDijkstra dijkstra;
+	private MaxPropCostEngine costs;
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
 
 	/** Map of which messages have been sent to which hosts from this host */
 	private Map<DTNHost, Set<String>> sentMessages;
@@ -114,7 +107,7 @@ public class MaxPropRouter extends ActiveRouter {
 		this.alpha = r.alpha;
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
-		this.dijkstra = new MaxPropDijkstra(this.allProbs);
+		this.costs = new MaxPropCostEngine();
 		this.ackedMessageIds = new HashSet<String>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
 		this.sentMessages = new HashMap<DTNHost, Set<String>>();
@@ -125,8 +118,6 @@ public class MaxPropRouter extends ActiveRouter {
 		super.changedConnection(con);
 
 		if (con.isUp()) { // new connection
-			this.costsForMessages = null; // invalidate old cost estimates
-
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
 				 * other node too (so that the meeting probs are updated
@@ -147,13 +138,15 @@ public class MaxPropRouter extends ActiveRouter {
 				/* update both meeting probabilities */
 				probs.updateMeetingProbFor(otherHost.getAddress());
 				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
+				this.costs.probsChanged(getHost().getAddress());
+				otherRouter.costs.probsChanged(otherHost.getAddress());
 
 				/* exchange the transitive probabilities */
 				this.updateTransitiveProbs(otherRouter.allProbs);
 				otherRouter.updateTransitiveProbs(this.allProbs);
-				this.allProbs.put(otherHost.getAddress(),
+				this.putProbs(otherHost.getAddress(),
 						otherRouter.probs.replicate());
-				otherRouter.allProbs.put(getHost().getAddress(),
+				otherRouter.putProbs(getHost().getAddress(),
 						this.probs.replicate());
 			}
 		}
@@ -174,11 +167,22 @@ public class MaxPropRouter extends ActiveRouter {
 			MeetingProbabilitySet myMps = this.allProbs.get(e.getKey());
 			if (myMps == null ||
 				e.getValue().getLastUpdateTime() > myMps.getLastUpdateTime() ) {
-				this.allProbs.put(e.getKey(), e.getValue().replicate());
+				this.putProbs(e.getKey(), e.getValue().replicate());
 			}
 		}
 	}
 
+	/**
+	 * Sets the meeting probability set of a host and updates the cost
+	 * calculator
+	 * @param address Address of the host
+	 * @param mps The host's meeting probability set
+	 */
+	private void putProbs(int address, MeetingProbabilitySet mps) {
+		this.allProbs.put(address, mps);
+		this.costs.setProbs(address, mps);
+	}
+
 	/**
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
@@ -192,7 +196,6 @@ public class MaxPropRouter extends ActiveRouter {
 
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
@@ -269,20 +272,22 @@ public class MaxPropRouter extends ActiveRouter {
 	 */
     @Override
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		List<Message> validMessages = new ArrayList<Message>();
+		MaxPropComparator comparator =
+			new MaxPropComparator(this.calcThreshold());
+		Message last = null;
 
-		for (Message m : messages) {
+		/* one pass instead of sorting: the last of the messages that are
+		 * ordered last (like the last message of a stable sort) */
+		for (Message m : this.getMessageCollection()) {
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; // skip the message(s) that router is sending
 			}
-			validMessages.add(m);
+			if (last == null || comparator.compare(m, last) >= 0) {
+				last = m;
+			}
 		}
 
-		Collections.sort(validMessages,
-				new MaxPropComparator(this.calcThreshold()));
-
-		return validMessages.get(validMessages.size()-1); // return last message
+		return last;
 	}
 
 	@Override
@@ -303,38 +308,28 @@ public class MaxPropRouter extends ActiveRouter {
 	/**
 	 * Returns the message delivery cost between two hosts from this host's
 	 * point of view. If there is no path between "from" and "to" host,
-	 * Double.MAX_VALUE is returned. Paths are calculated only to hosts
-	 * that this host has messages to.
+	 * Double.MAX_VALUE is returned. The costs are cached until the meeting
+	 * probabilities they depend on change (see {@link MaxPropCostEngine}).
 	 * @param from The host where a message is coming from
 	 * @param to The host where a message would be destined to
 	 * @return The cost of the cheapest path to the destination or
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
-		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
-			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
-
-			/* calculate paths only to nodes we have messages to
-			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
-			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
-			}
-
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
+		int myAddress = getHost().getAddress();
+		if (this.allProbs.get(myAddress) != this.probs) {
+			putProbs(myAddress, this.probs);
 		}
 
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
-		}
+		return costs.getCost(from.getAddress(), to.getAddress());
+	}
+
+	/**
+	 * Messages that have passed the other host are not offered to it
+	 */
+	@Override
+	protected boolean isOfferable(Message m, DTNHost other) {
+		return !m.getHops().contains(other);
 	}
 
 	/**
@@ -346,8 +341,6 @@ public class MaxPropRouter extends ActiveRouter {
 		List<Tuple<Message, Connection>> messages =
 			new ArrayList<Tuple<Message, Connection>>();
 
-		Collection<Message> msgCollection = getMessageCollection();
-
 		/* for all connected hosts that are not transferring at the moment,
 		 * collect all the messages that could be sent */
 		for (Connection con : getConnections()) {
@@ -359,13 +352,9 @@ public class MaxPropRouter extends ActiveRouter {
 				continue; // skip hosts that are transferring
 			}
 
-			for (Message m : msgCollection) {
-				/* skip messages that the other host has or that have
-				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
-					continue;
-				}
+			/* messages that the other host doesn't have and that haven't
+			 * passed the other host */
+			for (Message m : getOfferedMessages(con)) {
 				/* skip message if this host has already sent it to the other
 				   host (regardless of if the other host still has it) */
 				if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
@@ -574,15 +563,13 @@ public class MaxPropRouter extends ActiveRouter {
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
-		RoutingInfo ri = new RoutingInfo(probs.getAllProbs().size() +
+		RoutingInfo ri = new RoutingInfo(probs.size() +
 				" meeting probabilities");
 
 		/* show meeting probabilities for this host */
-		for (Map.Entry<Integer, Double> e : probs.getAllProbs().entrySet()) {
-			Integer host = e.getKey();
-			Double value = e.getValue();
+		for (int i=0; i<probs.size(); i++) {
 			ri.addMoreInfo(new RoutingInfo(String.format("host %d : %.6f",
-					host, value)));
+					probs.getIndexAt(i), probs.getProbAt(i))));
 		}
 
 		top.addMoreInfo(ri);
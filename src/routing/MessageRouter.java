@@ -4,6 +4,9 @@
  */
 package routing;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -16,11 +19,16 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.RandomStream;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.Snapshot;
+import routing.util.IndexTable;
+import routing.util.MessageBuffer;
 import routing.util.RoutingInfo;
+import routing.util.SummaryVector;
 import util.Tuple;
 
 /**
@@ -85,14 +93,26 @@ public abstract class MessageRouter {
 	public static final int MAX_TTL_VALUE = 35791394;
 
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
-	/** The messages this router is carrying */
-	private HashMap<String, Message> messages;
+	/** The messages being transferred with message ID index and
+	 * from host keys (see {@link MessageBuffer#getKey(int, DTNHost)}) */
+	private MessageBuffer incomingMessages;
+	/** number of incoming messages with each ID index (from different
+	 * hosts) */
+	private IndexTable incomingIds;
+	/** The messages this router is carrying with ID index keys */
+	private MessageBuffer messages;
+	/** How many times messages have been added to or removed from the
+	 * buffer */
+	private int bufferVersion;
 	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	private MessageBuffer deliveredMessages;
+	/** The IDs of the messages that Applications on this router have
+	 * blacklisted (mapped to null) */
+	private MessageBuffer blacklistedMessages;
+	/** Summary of the seen messages (see {@link #getSummaryVector()}) */
+	private SummaryVector summaryVector;
+	/** Version of the seen messages the summary was created for */
+	private int summaryVersion;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -101,6 +121,8 @@ public abstract class MessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** rng for shuffling messages (see {@link #getTimeRng()}) */
+	private Random timeRng;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -159,10 +181,12 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.incomingMessages = new MessageBuffer();
+		this.incomingIds = new IndexTable();
+		this.messages = new MessageBuffer();
+		this.deliveredMessages = new MessageBuffer();
+		this.blacklistedMessages = new MessageBuffer();
+		this.summaryVector = null;
 		this.mListeners = mListeners;
 		this.host = host;
 	}
@@ -209,7 +233,7 @@ public abstract class MessageRouter {
 	 * @return The message
 	 */
 	protected Message getMessage(String id) {
-		return this.messages.get(id);
+		return this.messages.get(Message.getIdIndex(id));
 	}
 
 	/**
@@ -218,7 +242,7 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	public boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		return this.messages.containsKey(Message.getIdIndex(id));
 	}
 
 	/**
@@ -230,7 +254,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.containsKey(m.getIdIndex()));
 	}
 
 	/**
@@ -243,7 +267,7 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		return this.blacklistedMessages.containsKey(Message.getIdIndex(id));
 	}
 
 	/**
@@ -258,6 +282,53 @@ public abstract class MessageRouter {
 		return this.messages.values();
 	}
 
+	/**
+	 * Returns a number that changes every time a message is added to or
+	 * removed from the message buffer. Can be used for checking if
+	 * something computed from the buffer's messages is still valid.
+	 * @return The current version of the message buffer
+	 */
+	public int getBufferVersion() {
+		return this.bufferVersion;
+	}
+
+	/**
+	 * Returns the summary vector of the messages this router has seen: the
+	 * messages it carries, has received as the final recipient or has
+	 * blacklisted. The summary is created again only when some of those
+	 * have changed, so the same summary can be used for all the contacts
+	 * until then.
+	 * @return The summary vector of the seen messages
+	 * @see #refusesSeenMessages()
+	 */
+	public SummaryVector getSummaryVector() {
+		/* delivered and blacklisted messages are never removed, so the sum
+		 * changes every time any of the three buffers change */
+		int version = this.bufferVersion + this.deliveredMessages.size() +
+			this.blacklistedMessages.size();
+
+		if (this.summaryVector == null || this.summaryVersion != version) {
+			this.summaryVector = new SummaryVector(this.messages,
+					this.deliveredMessages, this.blacklistedMessages);
+			this.summaryVersion = version;
+		}
+		return this.summaryVector;
+	}
+
+	/**
+	 * Returns true if this router never accepts (see
+	 * {@link #receiveMessage(Message, DTNHost)}) a message that is in its
+	 * summary vector and offering such messages has no side effects. Other
+	 * routers can then skip the messages in the summary vector instead of
+	 * offering them. This implementation returns false.
+	 * @return true if the messages in the summary vector don't need to be
+	 * offered to this router
+	 * @see #getSummaryVector()
+	 */
+	public boolean refusesSeenMessages() {
+		return false;
+	}
+
 	/**
 	 * Returns the number of messages this router has
 	 * @return How many messages this router has
@@ -282,17 +353,11 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public long getFreeBufferSize() {
-		long occupancy = 0;
-
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
-
-		return this.getBufferSize() - occupancy;
+		return this.getBufferSize() - this.messages.getTotalSize();
 	}
 
 	/**
@@ -391,11 +456,11 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.put(incoming.getIdIndex(), aMessage);
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.put(incoming.getIdIndex(), null);
 		}
 
 		for (MessageListener ml : this.mListeners) {
@@ -413,7 +478,12 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		if (this.incomingMessages.put(MessageBuffer.getKey(m.getIdIndex(),
+				from), m) == null) {
+			int count = this.incomingIds.get(m.getIdIndex());
+			this.incomingIds.put(m.getIdIndex(), count < 0 ? 1 : count + 1);
+			Message.retainIdIndex(m);
+		}
 	}
 
 	/**
@@ -424,7 +494,19 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int idIndex = Message.getIdIndex(id);
+		Message m = this.incomingMessages.remove(MessageBuffer.getKey(
+				idIndex, from));
+		if (m != null) {
+			int count = this.incomingIds.get(idIndex);
+			if (count > 1) {
+				this.incomingIds.put(idIndex, count - 1);
+			} else {
+				this.incomingIds.remove(idIndex);
+			}
+			Message.releaseIdIndex(m);
+		}
+		return m;
 	}
 
 	/**
@@ -434,7 +516,7 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		return this.incomingIds.get(Message.getIdIndex(id)) > 0;
 	}
 
 	/**
@@ -445,7 +527,10 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		if (this.messages.put(m.getIdIndex(), m) == null) {
+			Message.retainIdIndex(m);
+		}
+		this.bufferVersion++;
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -460,7 +545,11 @@ public abstract class MessageRouter {
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
 	protected Message removeFromMessages(String id) {
-		Message m = this.messages.remove(id);
+		Message m = this.messages.remove(Message.getIdIndex(id));
+		if (m != null) {
+			Message.releaseIdIndex(m);
+			this.bufferVersion++;
+		}
 		return m;
 	}
 
@@ -514,6 +603,29 @@ public abstract class MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns this router's random number generator seeded with the current
+	 * simulation time (rounded to an integer). The same generator is reused,
+	 * so no new generator is created on every update. If per entity rng
+	 * streams are used (see {@link RandomStream}), every router has its own
+	 * stream; otherwise all routers get the same numbers at the same time.
+	 * @return The random number generator
+	 */
+	protected Random getTimeRng() {
+		if (this.timeRng == null) {
+			if (RandomStream.isEnabled()) {
+				this.timeRng = RandomStream.getStream(
+						RandomStream.ROUTER_DOMAIN,
+						this.host == null ? -1 : this.host.getAddress());
+			}
+			else {
+				this.timeRng = new Random();
+			}
+		}
+		this.timeRng.setSeed(SimClock.getIntTime());
+		return this.timeRng;
+	}
+
 	/**
 	 * Sorts/shuffles the given list according to the current sending queue
 	 * mode. The list can contain either Message or Tuple<Message, Connection>
@@ -525,7 +637,7 @@ public abstract class MessageRouter {
 	protected List sortByQueueMode(List list) {
 		switch (sendQueueMode) {
 		case Q_MODE_RANDOM:
-			Collections.shuffle(list, new Random(SimClock.getIntTime()));
+			Collections.shuffle(list, getTimeRng());
 			break;
 		case Q_MODE_FIFO:
 			Collections.sort(list,
@@ -663,6 +775,98 @@ public abstract class MessageRouter {
 		return apps;
 	}
 
+	/**
+	 * Returns true if the router supports checkpoints, i.e., all of its
+	 * state is written by {@link #writeState(DataOutput)}. This
+	 * implementation returns false.
+	 * @return true if the router supports checkpoints
+	 * @see Snapshot
+	 */
+	public boolean isSnapshotSupported() {
+		return false;
+	}
+
+	/**
+	 * Writes the state of this router that changes during the simulation
+	 * to a snapshot: the incoming, carried, delivered and blacklisted
+	 * messages in their buffers' order. The state is read to a router that
+	 * was created using the same settings, so the settings are not written.
+	 * Subclasses that have more state must override this and
+	 * {@link #readState(DataInput, List)} and call the superclass' methods
+	 * first.
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 * @throws SimError if the router has applications (their state can't
+	 * be written)
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		if (!this.applications.isEmpty()) {
+			throw new SimError("Applications of " + this + " don't " +
+					"support checkpoints");
+		}
+		writeBuffer(out, this.incomingMessages);
+		writeBuffer(out, this.messages);
+		writeBuffer(out, this.deliveredMessages);
+		writeBuffer(out, this.blacklistedMessages);
+		out.writeInt(this.bufferVersion);
+	}
+
+	/**
+	 * Reads the state of this router from a snapshot written by
+	 * {@link #writeState(DataOutput)}. The messages are put directly to
+	 * the buffers (i.e., {@link #addToMessages(Message, boolean)} is not
+	 * called and no listeners are informed).
+	 * @param in Where the state is read from
+	 * @param hosts All the hosts of the simulation (by their addresses)
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		this.incomingMessages = readBuffer(in, hosts);
+		this.messages = readBuffer(in, hosts);
+		this.deliveredMessages = readBuffer(in, hosts);
+		this.blacklistedMessages = readBuffer(in, hosts);
+		this.bufferVersion = in.readInt();
+
+		this.incomingIds = new IndexTable();
+		for (Message m : this.incomingMessages.values()) {
+			int count = this.incomingIds.get(m.getIdIndex());
+			this.incomingIds.put(m.getIdIndex(), count < 0 ? 1 : count + 1);
+			Message.retainIdIndex(m);
+		}
+		for (Message m : this.messages.values()) {
+			Message.retainIdIndex(m);
+		}
+		this.summaryVector = null;
+	}
+
+	/**
+	 * Writes the keys and messages of a buffer in the buffer's order
+	 */
+	private static void writeBuffer(DataOutput out, MessageBuffer buffer)
+			throws IOException {
+		out.writeInt(buffer.size());
+		for (int i=0, n=buffer.size(); i<n; i++) {
+			long key = buffer.getKeyAt(i);
+			out.writeLong(key);
+			Snapshot.writeMessage(out, buffer.get(key));
+		}
+	}
+
+	/**
+	 * Reads a buffer written by {@link #writeBuffer(DataOutput,
+	 * MessageBuffer)}
+	 */
+	private static MessageBuffer readBuffer(DataInput in, List<DTNHost> hosts)
+			throws IOException {
+		MessageBuffer buffer = new MessageBuffer();
+		for (int i=0, n=in.readInt(); i<n; i++) {
+			long key = in.readLong();
+			buffer.put(key, Snapshot.readMessage(in, hosts));
+		}
+		return buffer;
+	}
+
 	/**
 	 * Creates a replicate of this router. The replicate has the same
 	 * settings as this router but empty buffers and routing tables.
@@ -36,6 +36,11 @@ public class PassiveRouter extends MessageRouter {
 		// -"-
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
 	@Override
 	public MessageRouter replicate() {
 		return new PassiveRouter(this);
@@ -157,6 +157,11 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
 	}
 
+	@Override
+	public boolean isSnapshotSupported() {
+		return true;
+	}
+
 	@Override
 	public SprayAndWaitRouter replicate() {
 		return new SprayAndWaitRouter(this);
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.maxprop;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Path cost calculator for the MaxProp router module. Calculates the same
+ * costs as {@link MaxPropDijkstra}, but
+ * <UL>
+ * <LI>the graph is indexed by host addresses: the meeting probability sets
+ * are kept in an array and their probabilities are read directly from the
+ * sets' arrays (see {@link MeetingProbabilitySet#getProbAt(int)})</LI>
+ * <LI>the searches use int arrays and an indexed binary heap that are
+ * reused for the following searches</LI>
+ * <LI>the searches are lazy: a search from a source is only continued until
+ * the requested node is settled, and it is cached so that the next requests
+ * from the same source continue the same search</LI>
+ * <LI>the cached searches are updated incrementally: when the meeting
+ * probabilities of a node change (see {@link #setProbs(int,
+ * MeetingProbabilitySet)} and {@link #probsChanged(int)}), only the
+ * searches that have already settled the node (i.e., used its
+ * probabilities) are discarded. The settled part of the other searches does
+ * not depend on the node, so they can be continued with the new
+ * probabilities and give the same results as a new search.</LI>
+ * </UL>
+ * Searches are cached for at most {@value #MAX_CACHED_SOURCES} sources at a
+ * time; the least recently used search is discarded first.
+ */
+public class MaxPropCostEngine {
+	/** Maximum number of sources whose searches are cached ({@value}) */
+	public static final int MAX_CACHED_SOURCES = 4;
+	/** Value for infinite distance  */
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** Initial number of nodes in the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** meeting probability sets by address (null = not known) */
+	private MeetingProbabilitySet[] sets;
+	/** cached searches by their source address (least recently used
+	 * first) */
+	private Map<Integer, Search> searches;
+	/** a discarded search whose arrays are reused for the next new search */
+	private Search spare;
+
+	/**
+	 * Constructor. Creates an engine with no known meeting probabilities.
+	 */
+	public MaxPropCostEngine() {
+		this.sets = new MeetingProbabilitySet[INITIAL_CAPACITY];
+		this.searches = new LinkedHashMap<Integer, Search>(
+				MAX_CACHED_SOURCES * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, Search> eldest) {
+				if (size() > MAX_CACHED_SOURCES) {
+					spare = eldest.getValue();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Sets the meeting probability set of a node
+	 * @param address Address of the node
+	 * @param set The node's meeting probabilities
+	 */
+	public void setProbs(int address, MeetingProbabilitySet set) {
+		if (address >= sets.length) {
+			int capacity = Math.max(address + 1, sets.length * 2);
+			sets = Arrays.copyOf(sets, capacity);
+		}
+		sets[address] = set;
+		probsChanged(address);
+	}
+
+	/**
+	 * Tells the engine that the probabilities of a node's meeting
+	 * probability set have changed. Must be called every time a set that
+	 * has been given to {@link #setProbs(int, MeetingProbabilitySet)} is
+	 * modified.
+	 * @param address Address of the node
+	 */
+	public void probsChanged(int address) {
+		for (Iterator<Search> i = searches.values().iterator(); i.hasNext();) {
+			Search s = i.next();
+			if (s.isSettled(address)) {
+				/* the search has used the old probabilities */
+				spare = s;
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns the cost of the cheapest path between two nodes. The cost is
+	 * the sum of complements of probabilities that all the links come up as
+	 * the next contact of the nodes.
+	 * @param from Address of the start node
+	 * @param to Address of the destination node
+	 * @return The cost of the cheapest path or Double.MAX_VALUE if there is
+	 * no known path between the nodes
+	 */
+	public double getCost(int from, int to) {
+		Search s = searches.get(from);
+		if (s == null) {
+			s = spare != null ? spare : new Search();
+			spare = null;
+			s.init(from);
+			searches.put(from, s);
+		}
+		return s.getCost(to);
+	}
+
+	/**
+	 * Dijkstra's search from one source node that can be continued later
+	 */
+	private class Search {
+		private double[] dist;
+		/** generation when the node was reached (distance set) */
+		private int[] reached;
+		/** generation when the node was settled (edges relaxed) */
+		private int[] settled;
+		private int generation;
+		/** reached but not yet settled nodes */
+		private NodeHeap unsettled;
+
+		public Search() {
+			this.dist = new double[INITIAL_CAPACITY];
+			this.reached = new int[INITIAL_CAPACITY];
+			this.settled = new int[INITIAL_CAPACITY];
+			this.generation = 0;
+			this.unsettled = new NodeHeap(INITIAL_CAPACITY);
+		}
+
+		/**
+		 * Starts a new search
+		 * @param source Address of the source node
+		 */
+		public void init(int source) {
+			if (generation == Integer.MAX_VALUE) {
+				Arrays.fill(reached, 0);
+				Arrays.fill(settled, 0);
+				generation = 0;
+			}
+			generation++;
+			unsettled.clear();
+			setDistance(source, 0);
+		}
+
+		public boolean isSettled(int node) {
+			return node < settled.length && settled[node] == generation;
+		}
+
+		/**
+		 * Continues the search until the given node is settled or there are
+		 * no more reachable nodes
+		 * @param to Address of the node
+		 * @return The node's distance from the source or
+		 * {@link MaxPropCostEngine#INFINITY} if it can't be reached
+		 */
+		public double getCost(int to) {
+			while (!isSettled(to)) {
+				if (unsettled.isEmpty()) {
+					return INFINITY;
+				}
+				int node = unsettled.poll();
+				settled[node] = generation;
+				relax(node);
+			}
+			return dist[to];
+		}
+
+		/**
+		 * Relaxes the neighbors of a node (updates the shortest distances)
+		 * @param node The node whose neighbors are relaxed
+		 */
+		private void relax(int node) {
+			MeetingProbabilitySet mps = node < sets.length ? sets[node] : null;
+			if (mps == null) {
+				return; // node's neighbors are not known
+			}
+
+			double nodeDist = dist[node];
+			for (int i=0, size=mps.size(); i<size; i++) {
+				int n = mps.getIndexAt(i);
+				if (isSettled(n)) {
+					continue;
+				}
+				double nDist = nodeDist + (1 - mps.getProbAt(i));
+				if (!isReached(n) || dist[n] > nDist) {
+					setDistance(n, nDist);
+				}
+			}
+		}
+
+		private boolean isReached(int node) {
+			return node < reached.length && reached[node] == generation;
+		}
+
+		private void setDistance(int node, double distance) {
+			if (node >= dist.length) {
+				int capacity = Math.max(node + 1, dist.length * 2);
+				dist = Arrays.copyOf(dist, capacity);
+				reached = Arrays.copyOf(reached, capacity);
+				settled = Arrays.copyOf(settled, capacity);
+			}
+			dist[node] = distance;
+			reached[node] = generation;
+			unsettled.update(node, distance);
+		}
+	}
+}
@@ -4,7 +4,6 @@
  */
 package routing.maxprop;
 
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -98,15 +97,14 @@ public class MaxPropDijkstra {
 	 */
 	private void relax(Integer node) {
 		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
+		MeetingProbabilitySet neighbors = this.probs.get(node);
 
-		if (!this.probs.containsKey(node)) {
+		if (neighbors == null) {
 			return; // node's neighbors are not known
 		}
 
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
-
-		for (Integer n : neighbors) {
+		for (int i=0; i<neighbors.size(); i++) {
+			Integer n = neighbors.getIndexAt(i);
 			if (visited.contains(n)) {
 				continue; // skip visited nodes
 			}
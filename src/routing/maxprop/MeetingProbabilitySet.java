@@ -4,7 +4,8 @@
  */
 package routing.maxprop;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,16 +16,33 @@ import static core.Constants.DEBUG;
 /**
  * Class for storing and manipulating the meeting probabilities for the MaxProp
  * router module.
+ * <P>The probabilities are stored in primitive arrays ordered by the node
+ * indexes. The arrays are shared copy-on-write: a replica (see
+ * {@link #replicate()}) refers to the same arrays as the original and the
+ * arrays are copied only when either of the sets is updated. Since the
+ * routers only update their own sets, all the routers that know the same
+ * version of a node's probabilities share one copy of them.</P>
  */
 public class MeetingProbabilitySet {
 	public static final int INFINITE_SET_SIZE = Integer.MAX_VALUE;
-	/** meeting probabilities (probability that the next node one meets is X) */
-	private Map<Integer, Double> probs;
+	/** Initial capacity of the probability arrays */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/** node indexes of the probabilities in ascending order */
+	private int[] indexes;
+	/** meeting probabilities (probability that the next node one meets is X)
+	 * in the same order as the indexes */
+	private double[] probs;
+	/** number of probabilities in the arrays */
+	private int size;
+	/** true if the arrays are shared with other sets and must be copied
+	 * before they are changed */
+	private boolean shared;
 	/** the time when this MPS was last updated */
 	private double lastUpdateTime;
 	/** the alpha parameter */
 	private double alpha;
-    private int maxSetSize;
+	private int maxSetSize;
 
 	/**
 	 * Constructor. Creates a probability set with empty node-probability
@@ -34,17 +52,33 @@ public class MeetingProbabilitySet {
 	 */
 	public MeetingProbabilitySet(int maxSetSize, double alpha) {
 		this.alpha = alpha;
-		this.probs = new HashMap<Integer, Double>();
-        if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
-	this.probs = new HashMap<Integer, Double>();
-	this.maxSetSize = INFINITE_SET_SIZE;
-        } else {
-	this.probs = new HashMap<Integer, Double>(maxSetSize);
-            this.maxSetSize = maxSetSize;
-        }
+		if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
+			this.maxSetSize = INFINITE_SET_SIZE;
+		} else {
+			this.maxSetSize = maxSetSize;
+		}
+		this.indexes = new int[INITIAL_CAPACITY];
+		this.probs = new double[INITIAL_CAPACITY];
+		this.size = 0;
+		this.shared = false;
 		this.lastUpdateTime = 0;
 	}
 
+	/**
+	 * Copy constructor. Creates a replica that shares the probability arrays
+	 * of the given set.
+	 * @param mps The set to replicate
+	 */
+	private MeetingProbabilitySet(MeetingProbabilitySet mps) {
+		this.alpha = mps.alpha;
+		this.maxSetSize = mps.maxSetSize;
+		this.indexes = mps.indexes;
+		this.probs = mps.probs;
+		this.size = mps.size;
+		this.shared = true;
+		this.lastUpdateTime = mps.lastUpdateTime;
+	}
+
 	/**
 	 * Constructor. Creates a probability set with empty node-probability
 	 * mapping and infinite set size
@@ -62,7 +96,7 @@ public class MeetingProbabilitySet {
 		this(INFINITE_SET_SIZE, alpha);
 		double prob = 1.0/initiallyKnownNodes.size();
 		for (Integer i : initiallyKnownNodes) {
-			this.probs.put(i, prob);
+			put(i, prob);
 		}
 	}
 
@@ -75,38 +109,37 @@ public class MeetingProbabilitySet {
 	 * @param index The node index to update the probability for
 	 */
 	public void updateMeetingProbFor(Integer index) {
-        Map.Entry<Integer, Double> smallestEntry = null;
-        double smallestValue = Double.MAX_VALUE;
+		int smallest = -1;
+		double smallestValue = Double.MAX_VALUE;
 
 		this.lastUpdateTime = SimClock.getTime();
 
-		if (probs.size() == 0) { // first entry
-			probs.put(index, 1.0);
+		if (size == 0) { // first entry
+			put(index, 1.0);
 			return;
 		}
 
 		double newValue = getProbFor(index) + alpha;
-		probs.put(index, newValue);
+		put(index, newValue);
 
 		/* now the sum of all entries is 1+alpha;
 		 * normalize to one by dividing all the entries by 1+alpha */
-		for (Map.Entry<Integer, Double> entry : probs.entrySet()) {
-			entry.setValue(entry.getValue() / (1+alpha));
-            if (entry.getValue() < smallestValue) {
-                smallestEntry = entry;
-                smallestValue = entry.getValue();
-            }
-
+		for (int i=0; i<size; i++) {
+			probs[i] = probs[i] / (1+alpha);
+			if (probs[i] < smallestValue) {
+				smallest = i;
+				smallestValue = probs[i];
+			}
 		}
 
-        if (probs.size() >= maxSetSize) {
-            if (DEBUG) core.Debug.p("Probsize: " + probs.size() + " dropping " +
-					probs.remove(smallestEntry.getKey()));
-        }
+		if (size >= maxSetSize) {
+			if (DEBUG) core.Debug.p("Probsize: " + size + " dropping " +
+					remove(smallest));
+		}
 	}
 
 	public void updateMeetingProbFor(Integer index, double iet)	{
-		probs.put(index, iet);
+		put(index, iet);
 	}
 
 	/**
@@ -115,8 +148,9 @@ public class MeetingProbabilitySet {
 	 * @return the current delivery probability value
 	 */
 	public double getProbFor(Integer index) {
-		if (probs.containsKey(index)) {
-			return probs.get(index);
+		int i = Arrays.binarySearch(indexes, 0, size, index);
+		if (i >= 0) {
+			return probs[i];
 		}
 		else {
 			/* the node with the given index has not been met */
@@ -125,11 +159,46 @@ public class MeetingProbabilitySet {
 	}
 
 	/**
-	 * Returns a reference to the probability map of this probability set
-	 * @return a reference to the probability map of this probability set
+	 * Returns the number of node probabilities in this set
+	 * @return the number of node probabilities in this set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the node index of a probability. Together with
+	 * {@link #getProbAt(int)} and {@link #size()} this can be used for going
+	 * through all the probabilities in the order of the node indexes.
+	 * @param i Index of the probability (0 - size-1)
+	 * @return The node index
+	 */
+	public int getIndexAt(int i) {
+		return this.indexes[i];
+	}
+
+	/**
+	 * Returns a probability by its index
+	 * @param i Index of the probability (0 - size-1)
+	 * @return The probability
+	 * @see #getIndexAt(int)
+	 */
+	public double getProbAt(int i) {
+		return this.probs[i];
+	}
+
+	/**
+	 * Returns a copy of the probabilities of this probability set as a map.
+	 * Changing the map doesn't change the set.
+	 * @return (node index, probability) mapping in the order of the node
+	 * indexes
 	 */
 	public Map<Integer, Double> getAllProbs() {
-		return this.probs;
+		Map<Integer, Double> map = new LinkedHashMap<Integer, Double>();
+		for (int i=0; i<size; i++) {
+			map.put(indexes[i], probs[i]);
+		}
+		return map;
 	}
 
 	/**
@@ -148,28 +217,76 @@ public class MeetingProbabilitySet {
 	}
 
 	/**
-	 * Returns a deep copy of the probability set
-	 * @return a deep copy of the probability set
+	 * Sets the probability of a node index
+	 * @param index The node index
+	 * @param value The probability
 	 */
-	public MeetingProbabilitySet replicate() {
-		MeetingProbabilitySet replica = new MeetingProbabilitySet(
-				this.maxSetSize, alpha);
+	private void put(int index, double value) {
+		int i = Arrays.binarySearch(indexes, 0, size, index);
+		if (i < 0) {
+			i = -i - 1;
+			copyOnWrite(size + 1);
+			System.arraycopy(indexes, i, indexes, i + 1, size - i);
+			System.arraycopy(probs, i, probs, i + 1, size - i);
+			indexes[i] = index;
+			size++;
+		}
+		else {
+			copyOnWrite(size);
+		}
+		probs[i] = value;
+	}
 
-		// do a deep copy
-		for (Map.Entry<Integer, Double> e : probs.entrySet()) {
-			replica.probs.put(e.getKey(), e.getValue().doubleValue());
+	/**
+	 * Removes a probability
+	 * @param i Index of the probability
+	 * @return The removed probability
+	 */
+	private double remove(int i) {
+		double value = probs[i];
+		copyOnWrite(size);
+		System.arraycopy(indexes, i + 1, indexes, i, size - i - 1);
+		System.arraycopy(probs, i + 1, probs, i, size - i - 1);
+		size--;
+		return value;
+	}
+
+	/**
+	 * Makes sure that the arrays are not shared and have room for the given
+	 * number of probabilities
+	 * @param capacity The required capacity
+	 */
+	private void copyOnWrite(int capacity) {
+		if (!shared && capacity <= indexes.length) {
+			return;
+		}
+		if (capacity > indexes.length) {
+			capacity = Math.max(capacity, indexes.length * 2);
+		} else {
+			capacity = indexes.length;
 		}
+		indexes = Arrays.copyOf(indexes, capacity);
+		probs = Arrays.copyOf(probs, capacity);
+		shared = false;
+	}
 
-		replica.lastUpdateTime = this.lastUpdateTime;
-		return replica;
+	/**
+	 * Returns a replica of the probability set. The replica shares the
+	 * probabilities with this set until either of them is updated, so
+	 * replicating takes constant time.
+	 * @return a replica of the probability set
+	 */
+	public MeetingProbabilitySet replicate() {
+		this.shared = true;
+		return new MeetingProbabilitySet(this);
 	}
 
 	/**
 	 * Returns a String presentation of the probabilities
 	 * @return a String presentation of the probabilities
 	 */
-    @Override
+	@Override
 	public String toString() {
-		return "probs: " +	this.probs.toString();
+		return "probs: " +	getAllProbs().toString();
 	}
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.maxprop;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of int nodes (host addresses) keyed by double
+ * values. The heap knows the position of every node in it, so a node's key
+ * can be decreased in O(log n) time without searching for the node first.
+ * Nodes with equal keys are ordered by their index. The heap can be reused
+ * for any number of searches by clearing it; the arrays grow when needed
+ * but are never allocated again for a new search.
+ */
+class NodeHeap {
+	/** Value of {@link #heapPos} for nodes that are not in the heap */
+	private static final int NOT_IN_HEAP = -1;
+
+	/** the nodes in heap order */
+	private int[] heap;
+	/** keys of the nodes (valid for the nodes in the heap) */
+	private double[] keys;
+	/** positions of the nodes in the heap or {@link #NOT_IN_HEAP} */
+	private int[] heapPos;
+	private int size;
+
+	/**
+	 * Creates a new empty heap
+	 * @param capacity Initial capacity (largest node index + 1)
+	 */
+	NodeHeap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.heap = new int[capacity];
+		this.keys = new double[capacity];
+		this.heapPos = new int[capacity];
+		Arrays.fill(heapPos, NOT_IN_HEAP);
+		this.size = 0;
+	}
+
+	/**
+	 * Removes all the nodes from the heap
+	 */
+	void clear() {
+		for (int i=0; i<size; i++) {
+			heapPos[heap[i]] = NOT_IN_HEAP;
+		}
+		size = 0;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds a node to the heap or moves a node that is already in the heap
+	 * to its new place. The new key must not be larger than the old key.
+	 * @param node The node
+	 * @param key The node's (new) key
+	 */
+	void update(int node, double key) {
+		if (node >= heapPos.length) {
+			grow(node + 1);
+		}
+		keys[node] = key;
+		if (heapPos[node] == NOT_IN_HEAP) {
+			heap[size] = node;
+			heapPos[node] = size;
+			size++;
+		}
+		siftUp(heapPos[node]);
+	}
+
+	/**
+	 * Removes and returns the node with the smallest key
+	 * @return The node
+	 */
+	int poll() {
+		int node = heap[0];
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		heapPos[node] = NOT_IN_HEAP;
+		return node;
+	}
+
+	private void grow(int capacity) {
+		int oldLength = heapPos.length;
+		capacity = Math.max(capacity, oldLength * 2);
+		heap = Arrays.copyOf(heap, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		heapPos = Arrays.copyOf(heapPos, capacity);
+		Arrays.fill(heapPos, oldLength, capacity, NOT_IN_HEAP);
+	}
+
+	private boolean isBefore(int a, int b) {
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapPos[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], node)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+}
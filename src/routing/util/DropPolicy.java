@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+
+import core.Message;
+
+/**
+ * <P>Buffer management policy that decides which message is dropped first
+ * when a router's buffer is full. The router informs the policy about all
+ * the messages added to and removed from its buffer and the policy keeps
+ * the messages in an {@link IndexedMessageHeap} ordered by the policy's
+ * priority value, so finding the next message to drop takes O(1) time and
+ * updating the policy O(log n) time.</P>
+ * <P>The policy is selected with the {@link #DROP_POLICY_S} setting. The
+ * supported policies are:
+ * <UL>
+ * <LI>{@value #FIFO} : the message that was received first (default)</LI>
+ * <LI>{@value #OLDEST_CREATED} : the message that was created first</LI>
+ * <LI>{@value #LARGEST_FIRST} : the largest message</LI>
+ * <LI>{@value #LEAST_TTL} : the message with the least TTL left</LI>
+ * <LI>{@value #MOFO} : the message that this router has forwarded most
+ * times ("MOst FOrwarded")</LI>
+ * </UL>
+ * Messages with equal priority are dropped in the order they were added to
+ * the buffer. New policies can be created by extending this class and
+ * overriding {@link #getPriority(Message)} (and possibly
+ * {@link #messageForwarded(Message)}).</P>
+ */
+public abstract class DropPolicy {
+	/** Drop policy -setting id ({@value}). String. One of {@link #FIFO},
+	 * {@link #OLDEST_CREATED}, {@link #LARGEST_FIRST}, {@link #LEAST_TTL},
+	 * or {@link #MOFO}. Default = {@link #FIFO}. */
+	public static final String DROP_POLICY_S = "dropPolicy";
+
+	/** Drop the first received message first -policy ({@value}) */
+	public static final String FIFO = "FIFO";
+	/** Drop the oldest message first -policy ({@value}) */
+	public static final String OLDEST_CREATED = "OLDEST_CREATED";
+	/** Drop the largest message first -policy ({@value}) */
+	public static final String LARGEST_FIRST = "LARGEST_FIRST";
+	/** Drop the message with the least TTL left first -policy ({@value}) */
+	public static final String LEAST_TTL = "LEAST_TTL";
+	/** Drop the most forwarded message first -policy ({@value}) */
+	public static final String MOFO = "MOFO";
+
+	/** the messages in the drop order */
+	protected IndexedMessageHeap heap;
+
+	/**
+	 * Constructor.
+	 */
+	public DropPolicy() {
+		this.heap = new IndexedMessageHeap();
+	}
+
+	/**
+	 * Creates a new drop policy object
+	 * @param name Name of the policy (e.g., {@link #FIFO})
+	 * @return The new policy or null if there's no policy with the given
+	 * name
+	 */
+	public static DropPolicy createPolicy(String name) {
+		if (name.equals(FIFO)) {
+			return new DropPolicy() {
+				protected double getPriority(Message m) {
+					return m.getReceiveTime();
+				}
+			};
+		} else if (name.equals(OLDEST_CREATED)) {
+			return new DropPolicy() {
+				protected double getPriority(Message m) {
+					return m.getCreationTime();
+				}
+			};
+		} else if (name.equals(LARGEST_FIRST)) {
+			return new DropPolicy() {
+				protected double getPriority(Message m) {
+					return -m.getSize();
+				}
+			};
+		} else if (name.equals(LEAST_TTL)) {
+			return new DropPolicy() {
+				protected double getPriority(Message m) {
+					return m.getExpiryTime();
+				}
+			};
+		} else if (name.equals(MOFO)) {
+			return new DropPolicy() {
+				protected double getPriority(Message m) {
+					return 0; /* not forwarded yet */
+				}
+
+				@Override
+				public void messageForwarded(Message m) {
+					double priority = heap.getPriority(m);
+					if (!Double.isNaN(priority)) {
+						heap.setPriority(m, priority - 1);
+					}
+				}
+			};
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the priority of a message that was just added to the buffer.
+	 * Messages with smaller priority values are dropped first. The
+	 * priority can be changed later using the {@link #heap}.
+	 * @param m The message
+	 * @return The message's priority
+	 */
+	protected abstract double getPriority(Message m);
+
+	/**
+	 * Should be called when a message is added to the router's buffer
+	 * @param m The message
+	 */
+	public void messageAdded(Message m) {
+		heap.add(m, getPriority(m));
+	}
+
+	/**
+	 * Should be called when a message is removed from the router's buffer
+	 * @param m The message
+	 */
+	public void messageRemoved(Message m) {
+		heap.remove(m);
+	}
+
+	/**
+	 * Should be called when the router has successfully sent a message to
+	 * another host. Does nothing by default.
+	 * @param m The message
+	 */
+	public void messageForwarded(Message m) { }
+
+	/**
+	 * Writes the drop order of the messages to a snapshot. Policies that
+	 * have more state than the {@link #heap} must override this and
+	 * {@link #readState(DataInput, Collection)}.
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		heap.writeState(out);
+	}
+
+	/**
+	 * Reads the state written by {@link #writeState(DataOutput)}
+	 * @param in Where the state is read from
+	 * @param messages The messages in the router's buffer
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in, Collection<Message> messages)
+			throws IOException {
+		heap.readState(in, messages);
+	}
+
+	/**
+	 * Returns the message that should be dropped next
+	 * @param excluded Messages that must not be dropped (e.g., messages that
+	 * are being sent) or null if all messages can be dropped
+	 * @return The message to drop or null if there are no messages that
+	 * could be dropped
+	 */
+	public Message getNextMessageToDrop(Collection<Message> excluded) {
+		return heap.peekExcluding(excluded);
+	}
+}
@@ -4,6 +4,9 @@
  */
 package routing.util;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
 import core.*;
@@ -118,11 +121,18 @@ public class EnergyModel implements ModuleCommunicationListener {
 			this.currentEnergy = range[0];
 		}
 		else {
-			if (rng == null) {
-				rng = new Random((int)(range[0] + range[1]));
+			Random r;
+			if (RandomStream.isEnabled()) {
+				r = RandomStream.nextStream(RandomStream.ENERGY_DOMAIN);
+			}
+			else {
+				if (rng == null) {
+					rng = new Random((int)(range[0] + range[1]));
+				}
+				r = rng;
 			}
 			this.currentEnergy = range[0] +
-				rng.nextDouble() * (range[1] - range[0]);
+				r.nextDouble() * (range[1] - range[0]);
 		}
 	}
 
@@ -197,6 +207,34 @@ public class EnergyModel implements ModuleCommunicationListener {
 		}
 	}
 
+	/**
+	 * Writes the state of the model to a snapshot. The energy value in the
+	 * host's {@link ModuleCommunicationBus} is written with the bus.
+	 * @param out Where the state is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(this.currentEnergy);
+		out.writeDouble(this.lastUpdate);
+		out.writeBoolean(this.comBus != null);
+	}
+
+	/**
+	 * Reads the state written by {@link #writeState(DataOutput)}
+	 * @param in Where the state is read from
+	 * @param comBus The communication bus of the model's host
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in, ModuleCommunicationBus comBus)
+			throws IOException {
+		this.currentEnergy = in.readDouble();
+		this.lastUpdate = in.readDouble();
+		if (in.readBoolean() && this.comBus == null) {
+			this.comBus = comBus;
+			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+		}
+	}
+
 	/**
 	 * Called by the combus if the energy value is changed
 	 * @param key The energy ID
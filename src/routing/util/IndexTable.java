@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+/**
+ * Hash table that maps primitive long keys to non-negative int indexes
+ * (e.g., the positions of the entries in the arrays of a message
+ * collection). The table uses open addressing with linear probing and
+ * removals move the following entries of the probe sequence backwards, so no
+ * tombstones are needed. Finding, adding and removing keys doesn't create
+ * any objects (except when the table has to be grown).
+ */
+public class IndexTable {
+	/** Initial size of the table (must be a power of two) */
+	private static final int INITIAL_TABLE_SIZE = 16;
+
+	/** keys of the slots */
+	private long[] keys;
+	/** indexes of the slots plus one (0 = empty slot) */
+	private int[] indexes;
+	private int size;
+
+	/**
+	 * Creates a new empty table
+	 */
+	public IndexTable() {
+		this.keys = new long[INITIAL_TABLE_SIZE];
+		this.indexes = new int[INITIAL_TABLE_SIZE];
+	}
+
+	/**
+	 * Returns the index of a key
+	 * @param key The key
+	 * @return The index or -1 if the key is not in the table
+	 */
+	public int get(long key) {
+		return indexes[findSlot(key)] - 1;
+	}
+
+	/**
+	 * Maps a key to an index. If the key is already in the table, its
+	 * index is replaced.
+	 * @param key The key
+	 * @param index The index (must not be negative)
+	 */
+	public void put(long key, int index) {
+		int slot = findSlot(key);
+		if (indexes[slot] != 0) {
+			indexes[slot] = index + 1;
+		} else {
+			add(slot, key, index);
+		}
+	}
+
+	/**
+	 * Maps a key to an index if the key is not in the table yet
+	 * @param key The key
+	 * @param index The index (must not be negative)
+	 * @return The key's old index or -1 if the key was added
+	 */
+	public int putIfAbsent(long key, int index) {
+		int slot = findSlot(key);
+		if (indexes[slot] != 0) {
+			return indexes[slot] - 1;
+		}
+		add(slot, key, index);
+		return -1;
+	}
+
+	/**
+	 * Removes a key from the table
+	 * @param key The key
+	 * @return The key's index or -1 if the key was not in the table
+	 */
+	public int remove(long key) {
+		int slot = findSlot(key);
+		int index = indexes[slot] - 1;
+		if (index >= 0) {
+			deleteSlot(slot);
+			size--;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of keys in the table
+	 * @return the number of keys in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Adds a key to an empty slot and grows the table if it gets more than
+	 * half full
+	 */
+	private void add(int slot, long key, int index) {
+		keys[slot] = key;
+		indexes[slot] = index + 1;
+		size++;
+		if (size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Returns the slot of the table where the key is or where it should be
+	 * added if it's not in the table
+	 * @param key The key
+	 * @return The slot's index
+	 */
+	private int findSlot(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (indexes[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Empties a slot of the table and moves the following entries of the
+	 * same probe sequence backwards so that no tombstones are needed
+	 * @param slot The slot to empty
+	 */
+	private void deleteSlot(int slot) {
+		int mask = keys.length - 1;
+		int hole = slot;
+		int next = slot;
+
+		while (true) {
+			next = (next + 1) & mask;
+			if (indexes[next] == 0) {
+				break;
+			}
+			int home = hash(keys[next]) & mask;
+			/* the entry can fill the hole if its home slot is not
+			 * (cyclically) between the hole and the entry */
+			boolean canMove = (hole <= next) ?
+					(home <= hole || home > next) :
+					(home <= hole && home > next);
+			if (canMove) {
+				keys[hole] = keys[next];
+				indexes[hole] = indexes[next];
+				hole = next;
+			}
+		}
+		indexes[hole] = 0;
+	}
+
+	/**
+	 * Creates a new table of the given size and adds all the keys to it
+	 * @param tableSize The new size (must be a power of two)
+	 */
+	private void rehash(int tableSize) {
+		long[] oldKeys = this.keys;
+		int[] oldIndexes = this.indexes;
+		this.keys = new long[tableSize];
+		this.indexes = new int[tableSize];
+		for (int i=0; i<oldKeys.length; i++) {
+			if (oldIndexes[i] != 0) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				indexes[slot] = oldIndexes[i];
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		int h = (int)(key ^ (key >>> 32)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import core.Message;
+import core.SimError;
+
+/**
+ * Binary min-heap of messages ordered by a priority value. Messages with
+ * the same priority are ordered by the order they were added to the heap.
+ * Messages are identified by their ID index (see {@link Message#getIdIndex()})
+ * so the heap can contain only one message with the same ID. The heap
+ * position of each message is kept in an {@link IndexTable} so messages can
+ * be removed and their priorities changed in O(log n) time.
+ */
+public class IndexedMessageHeap {
+	/** Initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Message[] heap;
+	private double[] priorities;
+	/** order numbers used for breaking ties of equal priorities */
+	private long[] order;
+	private int size;
+	private long nextOrder;
+
+	/** heap positions of the messages by their ID indexes */
+	private IndexTable positions;
+
+	/** compares the messages in the given heap positions */
+	private Comparator<Integer> positionComparator =
+		new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return isBefore(a, b) ? -1 : (isBefore(b, a) ? 1 : 0);
+			}
+		};
+
+	/**
+	 * Creates a new empty heap
+	 */
+	public IndexedMessageHeap() {
+		this.heap = new Message[INITIAL_CAPACITY];
+		this.priorities = new double[INITIAL_CAPACITY];
+		this.order = new long[INITIAL_CAPACITY];
+		this.positions = new IndexTable();
+	}
+
+	/**
+	 * Adds a message to the heap. If a message with the same ID is
+	 * already in the heap, it is replaced.
+	 * @param m The message to add
+	 * @param priority The message's priority (smallest is first)
+	 */
+	public void add(Message m, double priority) {
+		if (contains(m)) {
+			remove(m);
+		}
+		if (size == heap.length) {
+			int newCapacity = size * 2;
+			heap = Arrays.copyOf(heap, newCapacity);
+			priorities = Arrays.copyOf(priorities, newCapacity);
+			order = Arrays.copyOf(order, newCapacity);
+		}
+
+		int pos = size++;
+		heap[pos] = m;
+		priorities[pos] = priority;
+		order[pos] = nextOrder++;
+		positions.put(m.getIdIndex(), pos);
+		siftUp(pos);
+	}
+
+	/**
+	 * Removes the message with the same ID as the given message
+	 * @param m The message to remove
+	 * @return true if such message was in the heap, false if not
+	 */
+	public boolean remove(Message m) {
+		int pos = positions.remove(m.getIdIndex());
+		if (pos < 0) {
+			return false;
+		}
+
+		int last = --size;
+		if (pos != last) {
+			move(last, pos);
+			siftDown(pos);
+			siftUp(pos);
+		}
+		heap[last] = null;
+
+		return true;
+	}
+
+	/**
+	 * Changes the priority of the message with the same ID as the given
+	 * message. The order of the message among the messages with the same
+	 * priority doesn't change.
+	 * @param m The message
+	 * @param priority The new priority
+	 * @return true if the message was in the heap, false if not
+	 */
+	public boolean setPriority(Message m, double priority) {
+		int pos = positions.get(m.getIdIndex());
+		if (pos < 0) {
+			return false;
+		}
+
+		priorities[pos] = priority;
+		siftDown(pos);
+		siftUp(pos);
+
+		return true;
+	}
+
+	/**
+	 * Returns the priority of the message with the same ID as the given
+	 * message
+	 * @param m The message
+	 * @return The priority or NaN if the message is not in the heap
+	 */
+	public double getPriority(Message m) {
+		int pos = positions.get(m.getIdIndex());
+		return pos < 0 ? Double.NaN : priorities[pos];
+	}
+
+	/**
+	 * Returns true if a message with the same ID as the given message is in
+	 * the heap
+	 * @param m The message
+	 * @return true if the message is in the heap
+	 */
+	public boolean contains(Message m) {
+		return positions.get(m.getIdIndex()) >= 0;
+	}
+
+	/**
+	 * Returns the first message (the one with the smallest priority)
+	 * @return the first message or null if the heap is empty
+	 */
+	public Message peek() {
+		return size > 0 ? heap[0] : null;
+	}
+
+	/**
+	 * Returns the priority of the first message
+	 * @return the first message's priority or NaN if the heap is empty
+	 */
+	public double peekPriority() {
+		return size > 0 ? priorities[0] : Double.NaN;
+	}
+
+	/**
+	 * Returns the first message that doesn't have the same ID as any of
+	 * the excluded messages. The heap is not changed.
+	 * @param excluded The excluded messages (or null if none)
+	 * @return The first message that is not excluded or null if there are
+	 * no such messages
+	 */
+	public Message peekExcluding(Collection<Message> excluded) {
+		if (size == 0 || !isExcluded(heap[0], excluded)) {
+			return peek();
+		}
+
+		/* best-first search through the heap; the search stops at the first
+		 * message that is not excluded so only the excluded messages'
+		 * children are visited */
+		PriorityQueue<Integer> candidates = new PriorityQueue<Integer>(
+				excluded.size() * 2 + 1, positionComparator);
+		candidates.add(0);
+		while (!candidates.isEmpty()) {
+			int pos = candidates.poll();
+			if (!isExcluded(heap[pos], excluded)) {
+				return heap[pos];
+			}
+			for (int child = 2 * pos + 1; child <= 2 * pos + 2 &&
+					child < size; child++) {
+				candidates.add(child);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the number of messages in the heap
+	 * @return the number of messages in the heap
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Writes the heap to a snapshot (see {@link core.Snapshot}). The
+	 * messages are written as their ID indexes.
+	 * @param out Where the heap is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(nextOrder);
+		out.writeInt(size);
+		for (int i=0; i<size; i++) {
+			out.writeInt(heap[i].getIdIndex());
+			out.writeDouble(priorities[i]);
+			out.writeLong(order[i]);
+		}
+	}
+
+	/**
+	 * Reads the heap written by {@link #writeState(DataOutput)} to this
+	 * (empty) heap
+	 * @param in Where the heap is read from
+	 * @param messages The messages that the heap can contain
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in, Collection<Message> messages)
+			throws IOException {
+		Map<Integer, Message> byIdIndex = new HashMap<Integer, Message>();
+		for (Message m : messages) {
+			byIdIndex.put(m.getIdIndex(), m);
+		}
+
+		nextOrder = in.readLong();
+		size = in.readInt();
+		int capacity = Math.max(INITIAL_CAPACITY, size);
+		heap = new Message[capacity];
+		priorities = new double[capacity];
+		order = new long[capacity];
+		positions = new IndexTable();
+		for (int i=0; i<size; i++) {
+			Message m = byIdIndex.get(in.readInt());
+			if (m == null) {
+				throw new SimError("No message for heap position " + i);
+			}
+			heap[i] = m;
+			priorities[i] = in.readDouble();
+			order[i] = in.readLong();
+			positions.put(m.getIdIndex(), i);
+		}
+	}
+
+	private static boolean isExcluded(Message m,
+			Collection<Message> excluded) {
+		if (excluded == null) {
+			return false;
+		}
+		for (Message e : excluded) {
+			if (e.getIdIndex() == m.getIdIndex()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the message in heap position a should be before the
+	 * message in position b
+	 */
+	private boolean isBefore(int a, int b) {
+		if (priorities[a] != priorities[b]) {
+			return priorities[a] < priorities[b];
+		}
+		return order[a] < order[b];
+	}
+
+	private void siftUp(int pos) {
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isBefore(pos, parent)) {
+				break;
+			}
+			swap(pos, parent);
+			pos = parent;
+		}
+	}
+
+	private void siftDown(int pos) {
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(child + 1, child)) {
+				child++;
+			}
+			if (!isBefore(child, pos)) {
+				break;
+			}
+			swap(pos, child);
+			pos = child;
+		}
+	}
+
+	private void swap(int a, int b) {
+		Message m = heap[a];
+		double p = priorities[a];
+		long o = order[a];
+		move(b, a);
+		heap[b] = m;
+		priorities[b] = p;
+		order[b] = o;
+		positions.put(m.getIdIndex(), b);
+	}
+
+	/**
+	 * Moves the entry in heap position from to position to (overwriting
+	 * the entry in position to)
+	 */
+	private void move(int from, int to) {
+		heap[to] = heap[from];
+		priorities[to] = priorities[from];
+		order[to] = order[from];
+		positions.put(heap[to].getIdIndex(), to);
+	}
+}
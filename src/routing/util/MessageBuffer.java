@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Message buffer that maps primitive long keys to messages. The keys are
+ * usually message ID indexes (see {@link Message#getIdIndex()}) or, for
+ * buffers where the same message can be from different hosts, a combination
+ * of the ID index and the host's address (see
+ * {@link #getKey(int, DTNHost)}).
+ * <P>The key-message pairs are stored in dense arrays (in the order they were
+ * added, except that the last pair is moved to the place of a removed pair)
+ * and an {@link IndexTable} maps the keys to the pairs' indexes. Adding,
+ * finding and removing messages doesn't create any objects (except when the
+ * arrays have to be grown). The buffer also keeps count of the total size of
+ * its messages.</P>
+ */
+public class MessageBuffer {
+	/** Initial capacity of the dense arrays */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** indexes of the pairs in the dense arrays */
+	private IndexTable table;
+	private long[] keys;
+	private Message[] messages;
+	private int size;
+	/** sum of the sizes of the messages */
+	private long totalSize;
+	/** how many times the buffer has been modified (for iterators) */
+	private int modCount;
+
+	/**
+	 * Creates a new empty buffer
+	 */
+	public MessageBuffer() {
+		this.table = new IndexTable();
+		this.keys = new long[INITIAL_CAPACITY];
+		this.messages = new Message[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns a key for a message that is from a certain host. Keys are
+	 * different for different message ID and host combinations.
+	 * @param idIndex The message's ID index (see {@link Message#getIdIndex()})
+	 * @param from The host the message is from
+	 * @return The key
+	 */
+	public static long getKey(int idIndex, DTNHost from) {
+		return ((long)idIndex << 32) | (from.getAddress() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the message with the given key
+	 * @param key The key
+	 * @return The message or null if there's no message with the key
+	 */
+	public Message get(long key) {
+		int index = table.get(key);
+		return index >= 0 ? messages[index] : null;
+	}
+
+	/**
+	 * Returns true if the buffer contains a pair with the given key (even if
+	 * the key was mapped to null)
+	 * @param key The key
+	 * @return true if the buffer contains the key
+	 */
+	public boolean containsKey(long key) {
+		return table.get(key) >= 0;
+	}
+
+	/**
+	 * Adds a message with the given key to the buffer. If the key is
+	 * already in the buffer, the old message is replaced.
+	 * @param key The key
+	 * @param m The message (may be null)
+	 * @return The replaced message or null if there was none
+	 */
+	public Message put(long key, Message m) {
+		int index = table.putIfAbsent(key, size);
+		Message old = null;
+
+		if (index >= 0) {
+			old = messages[index];
+			messages[index] = m;
+			totalSize += sizeOf(m) - sizeOf(old);
+			return old;
+		}
+
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			messages = Arrays.copyOf(messages, size * 2);
+		}
+		keys[size] = key;
+		messages[size] = m;
+		size++;
+		totalSize += sizeOf(m);
+		modCount++;
+
+		return null;
+	}
+
+	/**
+	 * Removes the pair with the given key from the buffer
+	 * @param key The key
+	 * @return The removed message or null if there was no such key
+	 */
+	public Message remove(long key) {
+		int index = table.remove(key);
+		if (index < 0) {
+			return null;
+		}
+
+		Message removed = messages[index];
+
+		/* move the last pair to the place of the removed pair */
+		int last = size - 1;
+		if (index != last) {
+			keys[index] = keys[last];
+			messages[index] = messages[last];
+			table.put(keys[index], index);
+		}
+		messages[last] = null;
+		size--;
+		totalSize -= sizeOf(removed);
+		modCount++;
+
+		return removed;
+	}
+
+	/**
+	 * Returns the number of messages in the buffer
+	 * @return the number of messages in the buffer
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the key of the pair at an index. Together with {@link #size()}
+	 * this can be used for going through all the keys without creating
+	 * any objects. The order of the pairs is not defined and changes when
+	 * pairs are removed.
+	 * @param index The index (0 - size-1)
+	 * @return The key
+	 */
+	public long getKeyAt(int index) {
+		return this.keys[index];
+	}
+
+	/**
+	 * Returns the sum of the sizes of all the messages in the buffer
+	 * @return the total size of the messages (bytes)
+	 */
+	public long getTotalSize() {
+		return this.totalSize;
+	}
+
+	/**
+	 * Returns a view of the messages in the buffer. The view is backed by
+	 * the buffer, i.e., changes to the buffer are visible in the view. The
+	 * buffer must not be modified while iterating the view.
+	 * @return a view of the messages in the buffer
+	 */
+	public Collection<Message> values() {
+		return new AbstractCollection<Message>() {
+			@Override
+			public Iterator<Message> iterator() {
+				return new ValueIterator();
+			}
+
+			@Override
+			public int size() {
+				return MessageBuffer.this.size;
+			}
+		};
+	}
+
+	private static int sizeOf(Message m) {
+		return m == null ? 0 : m.getSize();
+	}
+
+	/**
+	 * Iterator over the messages of the dense message array
+	 */
+	private class ValueIterator implements Iterator<Message> {
+		private int next = 0;
+		private int expectedModCount = modCount;
+
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		public Message next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= size) {
+				throw new NoSuchElementException();
+			}
+			return messages[next++];
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import core.DTNHost;
+
+/**
+ * Table of probabilities, such as PRoPHET delivery predictabilities, that
+ * are indexed by host addresses (see {@link DTNHost#getAddress()}).
+ * <P>The values are stored in primitive arrays. While the table has only a
+ * few values, the addresses are kept sorted and found by binary search
+ * (sparse mode). When the values cover a large part of the addresses, the
+ * table switches to dense mode, where an array indexed by the address gives
+ * the value's index.</P>
+ * <P>Aging all the values ({@link #age(double)}) takes constant time: the
+ * table keeps a cumulative decay factor and, for every value, the factor at
+ * the time the value was set. The decay since then is applied when the
+ * value is read. Because of that, the values can differ from values that
+ * are multiplied one by one in the last bits of precision.</P>
+ */
+public class PredictabilityTable {
+	/** Initial capacity of the value arrays */
+	private static final int INITIAL_CAPACITY = 8;
+	/** Minimum number of values before the table can become dense */
+	private static final int MIN_DENSE_SIZE = 32;
+	/** Smallest cumulative decay factor before the values are rescaled */
+	private static final double MIN_DECAY = 1e-100;
+
+	/** addresses of the values (sorted if the table is sparse) */
+	private int[] addresses;
+	/** the values as they were set */
+	private double[] values;
+	/** the cumulative decay factor when each value was set */
+	private double[] decays;
+	private int size;
+	/** indexes of the values by address (-1 = no value), or null if the
+	 * table is sparse */
+	private int[] indexOf;
+	/** the cumulative decay factor of the table */
+	private double decay;
+
+	/**
+	 * Creates a new empty table
+	 */
+	public PredictabilityTable() {
+		this.addresses = new int[INITIAL_CAPACITY];
+		this.values = new double[INITIAL_CAPACITY];
+		this.decays = new double[INITIAL_CAPACITY];
+		this.size = 0;
+		this.indexOf = null;
+		this.decay = 1;
+	}
+
+	/**
+	 * Returns the number of values in the table
+	 * @return the number of values in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the table is in dense mode
+	 * @return true if the table is in dense mode
+	 */
+	public boolean isDense() {
+		return this.indexOf != null;
+	}
+
+	/**
+	 * Returns the value for an address or 0 if the table has no value for it
+	 * @param address The address
+	 * @return The (aged) value
+	 */
+	public double get(int address) {
+		int index = indexOf(address);
+		if (index < 0) {
+			return 0;
+		}
+		return getValueAt(index);
+	}
+
+	/**
+	 * Returns the address of the value at an index. Together with
+	 * {@link #getValueAt(int)} and {@link #size()} this can be used for
+	 * going through all the values. The order of the values is not defined
+	 * and changes when values are added.
+	 * @param index The index (0 - size-1)
+	 * @return The address
+	 */
+	public int getAddress(int index) {
+		return this.addresses[index];
+	}
+
+	/**
+	 * Returns the value at an index
+	 * @param index The index (0 - size-1)
+	 * @return The (aged) value
+	 * @see #getAddress(int)
+	 */
+	public double getValueAt(int index) {
+		double d = this.decays[index];
+		if (d == this.decay) {
+			return this.values[index];
+		}
+		return this.values[index] * (this.decay / d);
+	}
+
+	/**
+	 * Sets the value for an address
+	 * @param address The address
+	 * @param value The value
+	 */
+	public void set(int address, double value) {
+		int index = indexOf(address);
+		if (index < 0) {
+			index = insert(address, index);
+		}
+		this.values[index] = value;
+		this.decays[index] = this.decay;
+	}
+
+	/**
+	 * Multiplies all the values by a factor (e.g., ages them)
+	 * @param mult The factor (between 0 and 1)
+	 */
+	public void age(double mult) {
+		if (mult == 1) {
+			return;
+		}
+		this.decay *= mult;
+		if (this.decay < MIN_DECAY) {
+			rescale();
+		}
+	}
+
+	/**
+	 * Writes the table to a snapshot as it is (the values as they were set,
+	 * their decay factors and their order), so the values read back are
+	 * exactly the same
+	 * @param out Where the table is written to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(this.decay);
+		out.writeInt(this.indexOf == null ? -1 : this.indexOf.length);
+		out.writeInt(this.size);
+		for (int i=0; i<size; i++) {
+			out.writeInt(addresses[i]);
+			out.writeDouble(values[i]);
+			out.writeDouble(decays[i]);
+		}
+	}
+
+	/**
+	 * Reads the table written by {@link #writeState(DataOutput)}
+	 * @param in Where the table is read from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException {
+		this.decay = in.readDouble();
+		int denseLength = in.readInt();
+		this.size = in.readInt();
+		int capacity = Math.max(INITIAL_CAPACITY, size);
+		this.addresses = new int[capacity];
+		this.values = new double[capacity];
+		this.decays = new double[capacity];
+		for (int i=0; i<size; i++) {
+			addresses[i] = in.readInt();
+			values[i] = in.readDouble();
+			decays[i] = in.readDouble();
+		}
+
+		this.indexOf = null;
+		if (denseLength >= 0) {
+			indexOf = new int[denseLength];
+			Arrays.fill(indexOf, -1);
+			for (int i=0; i<size; i++) {
+				indexOf[addresses[i]] = i;
+			}
+		}
+	}
+
+	/**
+	 * Applies the decay to all the values and resets the decay factors so
+	 * that they don't underflow
+	 */
+	private void rescale() {
+		for (int i=0; i<size; i++) {
+			values[i] = getValueAt(i);
+			decays[i] = 1;
+		}
+		this.decay = 1;
+	}
+
+	/**
+	 * Returns the index of an address' value or, if the table is sparse and
+	 * has no value for the address, <CODE>-(insertion point) - 1</CODE>
+	 * (a negative value in any case if there is no value)
+	 * @param address The address
+	 * @return The index of the value
+	 */
+	private int indexOf(int address) {
+		if (this.indexOf != null) {
+			return address < indexOf.length ? indexOf[address] : -1;
+		}
+		return Arrays.binarySearch(this.addresses, 0, this.size, address);
+	}
+
+	/**
+	 * Adds a new address to the table
+	 * @param address The address
+	 * @param notFound The (negative) return value of {@link #indexOf(int)}
+	 * @return Index of the new address' value
+	 */
+	private int insert(int address, int notFound) {
+		if (size == addresses.length) {
+			int capacity = size * 2;
+			addresses = Arrays.copyOf(addresses, capacity);
+			values = Arrays.copyOf(values, capacity);
+			decays = Arrays.copyOf(decays, capacity);
+		}
+
+		if (indexOf != null) { /* dense: add to the end */
+			if (address >= indexOf.length) {
+				int oldLength = indexOf.length;
+				indexOf = Arrays.copyOf(indexOf,
+						Math.max(address + 1, oldLength * 2));
+				Arrays.fill(indexOf, oldLength, indexOf.length, -1);
+			}
+			indexOf[address] = size;
+			addresses[size] = address;
+			return size++;
+		}
+
+		/* sparse: keep the addresses in order */
+		int index = -notFound - 1;
+		System.arraycopy(addresses, index, addresses, index + 1, size - index);
+		System.arraycopy(values, index, values, index + 1, size - index);
+		System.arraycopy(decays, index, decays, index + 1, size - index);
+		addresses[index] = address;
+		size++;
+
+		int maxAddress = addresses[size - 1];
+		if (size >= MIN_DENSE_SIZE && size * 4 > maxAddress) {
+			makeDense(maxAddress);
+			return indexOf[address];
+		}
+		return index;
+	}
+
+	/**
+	 * Switches the table to dense mode
+	 * @param maxAddress The largest address in the table
+	 */
+	private void makeDense(int maxAddress) {
+		indexOf = new int[Math.max(maxAddress + 1, size * 2)];
+		Arrays.fill(indexOf, -1);
+		for (int i=0; i<size; i++) {
+			indexOf[addresses[i]] = i;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+
+import core.Message;
+
+/**
+ * Summary vector of the messages a router has already seen: the ID indexes
+ * (see {@link Message#getIdIndex()}) of the messages in one or more message
+ * buffers as a sorted array. Other routers can check from the summary which
+ * messages are new to the router before offering any messages to it.
+ * <P>The summary is exact (it has no false positives like, e.g., a Bloom
+ * filter would have), so a message that is not in the summary is never
+ * mistaken for a message that the router has seen. A summary is not
+ * updated when the buffers change; a new summary must be created
+ * instead.</P>
+ */
+public class SummaryVector {
+	/** the ID indexes in ascending order */
+	private int[] ids;
+
+	/**
+	 * Creates a summary of the messages in the given buffers. The keys of
+	 * the buffers must be message ID indexes.
+	 * @param buffers The buffers
+	 */
+	public SummaryVector(MessageBuffer... buffers) {
+		int total = 0;
+		for (MessageBuffer b : buffers) {
+			total += b.size();
+		}
+
+		int[] keys = new int[total];
+		int n = 0;
+		for (MessageBuffer b : buffers) {
+			for (int i=0, size=b.size(); i<size; i++) {
+				keys[n++] = (int)b.getKeyAt(i);
+			}
+		}
+		Arrays.sort(keys);
+
+		/* the same message may be in more than one buffer */
+		int size = 0;
+		for (int i=0; i<total; i++) {
+			if (size == 0 || keys[size - 1] != keys[i]) {
+				keys[size++] = keys[i];
+			}
+		}
+		this.ids = size == total ? keys : Arrays.copyOf(keys, size);
+	}
+
+	/**
+	 * Returns true if the summary contains the given message
+	 * @param m The message
+	 * @return true if a message with the same ID is in the summary
+	 */
+	public boolean contains(Message m) {
+		return contains(m.getIdIndex());
+	}
+
+	/**
+	 * Returns true if the summary contains a message ID index
+	 * @param idIndex The ID index
+	 * @return true if the ID index is in the summary
+	 */
+	public boolean contains(int idIndex) {
+		return Arrays.binarySearch(this.ids, idIndex) >= 0;
+	}
+
+	/**
+	 * Returns the number of messages in the summary
+	 * @return the number of messages in the summary
+	 */
+	public int size() {
+		return this.ids.length;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.AStarPathFinder;
+import movement.map.MapNode;
+import movement.map.PathCache;
+import core.Coord;
+
+/**
+ * Tests for AStarPathFinder with and without contraction hierarchies.
+ */
+public class AStarPathFinderTest extends TestCase {
+	private final MapNode n1 = newNode(0,0);
+	private final MapNode n2 = newNode(10,0);
+	private final MapNode n3 = newNode(20,0);
+	private final MapNode n4 = newNode(0,10);
+	private final MapNode n5 = newNode(10,10);
+	private final MapNode n6 = newNode(15,10);
+	private final MapNode n7 = newNode(20,10);
+	private final MapNode n8 = newNode(25,10);
+	/* one way street n8 -> n9 -> n4 */
+	private final MapNode n9 = newNode(0,20);
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		createTopology();
+	}
+
+	/**
+	 * Creates a topology (n4 and n5 are of type 2, others of type 1):
+	 *
+	 * n1-10-n2---10---n3
+	 * 10    10      / 10
+	 * n4-10-n5-5-n6-5-n7-5-n8
+	 * ^                    |
+	 * n9 &lt;----------------
+	 */
+	private void createTopology() {
+		connect(n1, n2);
+		connect(n1, n4);
+		connect(n2, n5);
+		connect(n2, n3);
+		connect(n3, n6);
+		connect(n3, n7);
+		connect(n4, n5);
+		connect(n5, n6);
+		connect(n6, n7);
+		connect(n7, n8);
+		n8.addNeighbor(n9);
+		n9.addNeighbor(n4);
+
+		for (MapNode n : new MapNode[] {n1, n2, n3, n6, n7, n8, n9}) {
+			n.addType(1);
+		}
+		n4.addType(2);
+		n5.addType(2);
+	}
+
+	private void connect(MapNode a, MapNode b) {
+		a.addNeighbor(b);
+		b.addNeighbor(a);
+	}
+
+	private MapNode newNode(double x, double y) {
+		return new MapNode(new Coord(x,y));
+	}
+
+	public void testPathFinding() {
+		checkPathFinding(new AStarPathFinder(null));
+	}
+
+	public void testContractionHierarchy() {
+		checkPathFinding(new AStarPathFinder(null, true));
+	}
+
+	public void testOkMapNodes() {
+		int[] ok = {1};
+		for (AStarPathFinder r : new AStarPathFinder[] {
+				new AStarPathFinder(ok), new AStarPathFinder(ok, true)}) {
+			checkPath(r.getShortestPath(n1, n6), n1, n2, n3, n6);
+			checkPath(r.getShortestPath(n8, n1), n8, n7, n3, n2, n1);
+			checkPath(r.getShortestPath(n1, n5)); // n5 is not OK
+		}
+	}
+
+	public void testPathCache() {
+		PathCache cache = new PathCache(100);
+		checkPathFinding(new AStarPathFinder(null, false, cache));
+		assertEquals(0, cache.getHits());
+		long misses = cache.getMisses();
+
+		/* the same paths again, from the cache */
+		checkPathFinding(new AStarPathFinder(null, false, cache));
+		assertEquals(misses, cache.getHits());
+		assertEquals(misses, cache.getMisses());
+
+		/* different type selections and search methods don't share paths */
+		AStarPathFinder r = new AStarPathFinder(new int[] {1}, false, cache);
+		checkPath(r.getShortestPath(n1, n6), n1, n2, n3, n6);
+		checkPath(r.getShortestPath(n1, n5));
+		checkPath(r.getShortestPath(n1, n5));
+		assertEquals(misses + 2, cache.getMisses());
+		r = new AStarPathFinder(null, true, cache);
+		checkPathFinding(r);
+		assertEquals(2 * misses + 2, cache.getMisses());
+	}
+
+	public void testPathCacheEviction() {
+		PathCache cache = new PathCache(1);
+		AStarPathFinder r = new AStarPathFinder(null, false, cache);
+
+		checkPath(r.getShortestPath(n1, n3), n1, n2, n3);
+		checkPath(r.getShortestPath(n1, n3), n1, n2, n3);
+		assertEquals(1, cache.getHits());
+		checkPath(r.getShortestPath(n5, n3), n5, n6, n3);
+		assertEquals(1, cache.getEvictions());
+		checkPath(r.getShortestPath(n1, n3), n1, n2, n3);
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	private void checkPathFinding(AStarPathFinder r) {
+		checkPath(r.getShortestPath(n1, n1), n1);
+		checkPath(r.getShortestPath(n1, n3), n1, n2, n3);
+		checkPath(r.getShortestPath(n5, n3), n5, n6, n3);
+		checkPath(r.getShortestPath(n3, n5), n3, n6, n5);
+		checkPath(r.getShortestPath(n4, n8), n4, n5, n6, n7, n8);
+		checkPath(r.getShortestPath(n4, n9), n4, n5, n6, n7, n8, n9);
+		checkPath(r.getShortestPath(n9, n8), n9, n4, n5, n6, n7, n8);
+
+		/* two paths of the same length */
+		List<MapNode> path = r.getShortestPath(n1, n6);
+		assertEquals(4, path.size());
+		assertEquals(n1, path.get(0));
+		assertEquals(n5, path.get(2));
+		assertEquals(n6, path.get(3));
+	}
+
+	private void checkPath(List<MapNode> path, MapNode ... nodes) {
+		assertEquals(nodes.length, path.size());
+
+		for (int i=0; i< nodes.length; i++) {
+			assertEquals((i+1)+"th node was wrong", nodes[i], path.get(i));
+		}
+	}
+}
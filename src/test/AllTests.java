@@ -24,14 +24,21 @@ public class AllTests {
 
 		//$JUnit-BEGIN$
 		suite.addTestSuite(WorldTest.class);
+		suite.addTestSuite(BulkMoverTest.class);
+		suite.addTestSuite(RandomStreamTest.class);
+		suite.addTestSuite(SnapshotTest.class);
+		suite.addTestSuite(WarmupMoverTest.class);
 		suite.addTestSuite(ConnectionTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
+		suite.addTestSuite(MappedPathMovementReaderTest.class);
 		suite.addTestSuite(WKTReaderTest.class);
 		suite.addTestSuite(WKTPointReaderTest.class);
 		suite.addTestSuite(MapNodeTest.class);
+		suite.addTestSuite(MapCacheFileTest.class);
 		suite.addTestSuite(MapBasedMovementTest.class);
 		suite.addTestSuite(CoordTest.class);
+		suite.addTestSuite(PathTest.class);
 		suite.addTestSuite(DistanceDelayReportTest.class);
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
 		suite.addTestSuite(MessageGraphvizReportTest.class);
@@ -40,16 +47,24 @@ public class AllTests {
 		suite.addTestSuite(TotalContactTimeReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
 		suite.addTestSuite(ProphetRouterTest.class);
+		suite.addTestSuite(PredictabilityTableTest.class);
 		suite.addTestSuite(SettingsTest.class);
 		suite.addTestSuite(DijkstraPathFinderTest.class);
+		suite.addTestSuite(AStarPathFinderTest.class);
 		suite.addTestSuite(PointsOfInterestTest.class);
 		suite.addTestSuite(ActivenessHandlerTest.class);
 		suite.addTestSuite(MaxPropDijkstraTest.class);
+		suite.addTestSuite(MaxPropCostEngineTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
+		suite.addTestSuite(OfferedMessagesTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(IndexedConnectivityGridTest.class);
+		suite.addTestSuite(KineticContactDetectorTest.class);
+		suite.addTestSuite(MessageBufferTest.class);
+		suite.addTestSuite(DropPolicyTest.class);
 		//$JUnit-END$
 		return suite;
 	}
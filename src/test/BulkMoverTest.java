@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import core.BulkMover;
+import core.Coord;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Tests for the bulk movement of hosts. The hosts moved in bulk must end
+ * up in exactly the same locations as the hosts moved one by one.
+ */
+public class BulkMoverTest extends TestCase {
+	private static final double UPDATE_INTERVAL = 0.1;
+	private static final int NROF_HOSTS = 5;
+
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		this.clock = SimClock.getInstance();
+	}
+
+	/**
+	 * Creates hosts that zigzag with different speeds and a stationary
+	 * host between them
+	 */
+	private List<DTNHost> createHosts() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts.add(utils.createHost(new ZigzagMovement(0.3 + i * 1.7),
+					null));
+			if (i == 2) {
+				hosts.add(utils.createHost(new Coord(5, 5)));
+			}
+		}
+		return hosts;
+	}
+
+	public void testBulkMoveMatchesMove() {
+		List<DTNHost> hosts = createHosts();
+		List<DTNHost> bulkHosts = createHosts();
+		BulkMover mover = new BulkMover(bulkHosts);
+		assertEquals(NROF_HOSTS, mover.getNrofHosts());
+
+		for (int i=0; i<1000; i++) {
+			if (i == 400) {
+				/* a location set from outside is used by the next move */
+				hosts.get(1).setLocation(new Coord(2, 3));
+				bulkHosts.get(1).setLocation(new Coord(2, 3));
+			}
+
+			for (DTNHost h : hosts) {
+				h.move(UPDATE_INTERVAL);
+			}
+			mover.moveBulk(UPDATE_INTERVAL);
+			mover.moveRest(bulkHosts, UPDATE_INTERVAL);
+			clock.advance(UPDATE_INTERVAL);
+
+			for (int j=0; j<hosts.size(); j++) {
+				Coord c1 = hosts.get(j).getLocation();
+				Coord c2 = bulkHosts.get(j).getLocation();
+				assertEquals("Host " + j + " at step " + i, c1.getX(),
+						c2.getX(), 0.0);
+				assertEquals("Host " + j + " at step " + i, c1.getY(),
+						c2.getY(), 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Movement model whose paths go back and forth between two waypoints
+	 * and that waits a while between the paths
+	 */
+	private static class ZigzagMovement extends MovementModel {
+		private double speed;
+		private int nrofPaths;
+
+		public ZigzagMovement(double speed) {
+			this.speed = speed;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(0, 0);
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(speed);
+			nrofPaths++;
+			p.addWaypoint(new Coord(0, 0));
+			p.addWaypoint(new Coord(10 + nrofPaths, 3));
+			p.addWaypoint(new Coord(0, 7 * nrofPaths));
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + 1.5;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public boolean isAlwaysActive() {
+			return true;
+		}
+
+		@Override
+		public boolean isBulkMovable() {
+			return true;
+		}
+
+		@Override
+		public ZigzagMovement replicate() {
+			return new ZigzagMovement(speed);
+		}
+	}
+}
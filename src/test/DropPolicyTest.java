@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.DropPolicy;
+import routing.util.IndexedMessageHeap;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the DropPolicy and IndexedMessageHeap classes
+ */
+public class DropPolicyTest extends TestCase {
+	private DTNHost h1, h2;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		TestUtils utils = new TestUtils(null, null, ts);
+		Message.reset();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+
+		h1 = utils.createHost(new Coord(0,0));
+		h2 = utils.createHost(new Coord(0,0));
+	}
+
+	private Message newMessage(String id, int size, double time, int ttl) {
+		clock.setTime(time);
+		Message m = new Message(h1, h2, id, size);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	public void testPolicies() {
+		Message m1 = newMessage("M1", 300, 10, 100);
+		Message m2 = newMessage("M2", 100, 20, 5);
+		Message m3 = newMessage("M3", 200, 30, 50);
+		m1.setReceiveTime(40);
+
+		assertDropOrder(DropPolicy.FIFO, m1, m2, m3, m2, m3, m1);
+		assertDropOrder(DropPolicy.OLDEST_CREATED, m1, m2, m3, m1, m2, m3);
+		assertDropOrder(DropPolicy.LARGEST_FIRST, m1, m2, m3, m1, m3, m2);
+		assertDropOrder(DropPolicy.LEAST_TTL, m1, m2, m3, m2, m3, m1);
+		assertNull(DropPolicy.createPolicy("foo"));
+	}
+
+	/**
+	 * Adds the first three messages to a new policy and checks that
+	 * they're dropped in the order of the last three messages
+	 */
+	private void assertDropOrder(String name, Message... msgs) {
+		DropPolicy p = DropPolicy.createPolicy(name);
+		for (int i=0; i<3; i++) {
+			p.messageAdded(msgs[i]);
+		}
+		for (int i=3; i<6; i++) {
+			assertSame(name, msgs[i], p.getNextMessageToDrop(null));
+			p.messageRemoved(msgs[i]);
+		}
+		assertNull(p.getNextMessageToDrop(null));
+	}
+
+	public void testMofo() {
+		DropPolicy p = DropPolicy.createPolicy(DropPolicy.MOFO);
+		Message m1 = newMessage("M1", 100, 0, 100);
+		Message m2 = newMessage("M2", 100, 0, 100);
+		p.messageAdded(m1);
+		p.messageAdded(m2);
+
+		assertSame(m1, p.getNextMessageToDrop(null)); /* tie -> added first */
+		p.messageForwarded(m2);
+		assertSame(m2, p.getNextMessageToDrop(null));
+		p.messageForwarded(m1);
+		p.messageForwarded(m1.replicate());
+		assertSame(m1, p.getNextMessageToDrop(null));
+	}
+
+	public void testExcluded() {
+		DropPolicy p = DropPolicy.createPolicy(DropPolicy.FIFO);
+		Message m1 = newMessage("M1", 100, 1, 100);
+		Message m2 = newMessage("M2", 100, 2, 100);
+		Message m3 = newMessage("M3", 100, 3, 100);
+		p.messageAdded(m3);
+		p.messageAdded(m1);
+		p.messageAdded(m2);
+
+		assertSame(m2, p.getNextMessageToDrop(Arrays.asList(m1)));
+		assertSame(m3, p.getNextMessageToDrop(Arrays.asList(m2,
+				m1.replicate())));
+		assertNull(p.getNextMessageToDrop(Arrays.asList(m1, m2, m3)));
+		assertSame(m1, p.getNextMessageToDrop(null));
+	}
+
+	public void testHeapOperations() {
+		Random rng = new Random(1);
+		IndexedMessageHeap heap = new IndexedMessageHeap();
+		List<Message> messages = new ArrayList<Message>();
+		List<Message> reference = new ArrayList<Message>();
+		double[] priorities = new double[300];
+
+		for (int i=0; i<priorities.length; i++) {
+			messages.add(newMessage("M" + i, 100, 0, 100));
+		}
+
+		for (int i=0; i<20000; i++) {
+			int index = rng.nextInt(messages.size());
+			Message m = messages.get(index);
+			int op = rng.nextInt(3);
+			if (op == 0 && !reference.contains(m)) {
+				priorities[index] = rng.nextInt(50);
+				heap.add(m, priorities[index]);
+				reference.add(m);
+			} else if (op == 1) {
+				assertEquals(reference.remove(m), heap.remove(m));
+			} else if (reference.contains(m)) {
+				priorities[index] = rng.nextInt(50);
+				heap.setPriority(m, priorities[index]);
+			}
+
+			assertEquals(reference.size(), heap.size());
+			if (reference.size() > 0) {
+				double min = Double.MAX_VALUE;
+				for (Message r : reference) {
+					min = Math.min(min, priorities[messages.indexOf(r)]);
+				}
+				assertEquals(min, heap.peekPriority());
+				assertEquals(min, priorities[messages.indexOf(heap.peek())]);
+			}
+		}
+	}
+}
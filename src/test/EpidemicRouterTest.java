@@ -321,6 +321,30 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 
+	/**
+	 * Tests that the summary vectors contain the carried and delivered
+	 * messages and are created again when those change
+	 */
+	public void testSummaryVector() {
+		Message m1 = new Message(h1,h2, msgId1, 1);
+		h1.createNewMessage(m1);
+		assertTrue(h1.getRouter().getSummaryVector().contains(m1));
+		assertFalse(h2.getRouter().getSummaryVector().contains(m1));
+		assertTrue(h2.getRouter().refusesSeenMessages());
+
+		h1.connect(h2);
+		updateAllNodes(); // starts transfer h1 -> h2
+		clock.advance(10);
+		updateAllNodes(); // msg delivered h1 -> h2
+		assertEquals(0, h2.getNrofMessages());
+		assertTrue(h2.getRouter().getSummaryVector().contains(m1));
+
+		Message m2 = new Message(h2,h3, msgId2, 1);
+		h2.createNewMessage(m2);
+		assertEquals(2, h2.getRouter().getSummaryVector().size());
+		assertTrue(h2.getRouter().getSummaryVector().contains(m2));
+	}
+
 	/**
 	 * Tests if the FIFO queue management works
 	 */
@@ -499,6 +523,61 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 
+	/**
+	 * Tests that messages are dropped exactly when their TTL runs out, also
+	 * while other messages are being sent
+	 */
+	public void testTtlExpiryWhileSending() {
+		Message m1 = new Message(h1,h3, msgId1, 1);
+		h1.createNewMessage(m1);
+		checkCreates(1);
+
+		clock.advance(TTL*60 - 3);
+
+		// start relaying a message that takes 5 seconds to transfer
+		Message m2 = new Message(h1,h3, msgId2, TRANSMIT_SPEED * 5);
+		h1.createNewMessage(m2);
+		checkCreates(1);
+		h1.connect(h2);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+
+		clock.advance(2);
+		updateAllNodes();
+		assertFalse(mc.next()); // one second of TTL left
+
+		clock.advance(1);
+		updateAllNodes();
+
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+
+		assertFalse(mc.next());
+		assertTrue(h1.getRouter().hasMessage(msgId2));
+	}
+
+	/**
+	 * Tests that messages are received until their TTL runs out, also when
+	 * less than a minute of TTL is left
+	 */
+	public void testTtlExpiryWhenReceiving() {
+		Message m1 = new Message(h1,h4, msgId1, 1);
+		h1.createNewMessage(m1);
+		checkCreates(1);
+
+		clock.advance(TTL*60 - 30);
+		assertEquals(MessageRouter.RCV_OK,
+				h2.getRouter().receiveMessage(m1.replicate(), h1));
+
+		clock.advance(30);
+		assertEquals(MessageRouter.DENIED_TTL,
+				h3.getRouter().receiveMessage(m1.replicate(), h1));
+	}
+
 	public void testResponse() {
 		Message m1 = new Message(h1,h3, msgId1, 1);
 		m1.setResponseSize(1);
@@ -8,6 +8,7 @@ import input.BinaryEventsReader;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
+import input.MappedEventsReader;
 import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
@@ -66,6 +67,17 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testPrefetchingEEQ() {
+		for (int preload = 1; preload <= 10; preload += 3) {
+			for (int prefetch = 1; prefetch <= 3; prefetch++) {
+				eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(),
+						preload, prefetch);
+				checkEeq(eeq, preload);
+				assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+			}
+		}
+	}
+
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest",
@@ -82,6 +94,55 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testMappedEEQ() throws Exception {
+		int preload = 3;
+		File tmpMappedFile = File.createTempFile("TempMappedTest",
+				MappedEventsReader.MAPPED_EXT);
+		tmpMappedFile.deleteOnExit();
+		assertEquals(msgTimes.length,
+				MappedEventsReader.convert(tempFile, tmpMappedFile));
+
+		eeq = new ExternalEventsQueue(tmpMappedFile.getAbsolutePath(),
+				preload);
+		checkEeq(eeq, preload);
+
+		/* mapped events must be equal to the ones parsed from text */
+		List<ExternalEvent> expected =
+			new StandardEventsReader(tempFile).readEvents(100);
+		List<ExternalEvent> events =
+			new MappedEventsReader(tmpMappedFile).readEvents(100);
+		assertEquals(expected.size(), events.size());
+		for (int i=0; i<events.size(); i++) {
+			assertEquals(expected.get(i).getClass(), events.get(i).getClass());
+			assertEquals(expected.get(i).toString(),
+					events.get(i).toString());
+		}
+	}
+
+	public void testMappedSeek() throws Exception {
+		File tmpMappedFile = File.createTempFile("TempMappedTest",
+				MappedEventsReader.MAPPED_EXT);
+		tmpMappedFile.deleteOnExit();
+		MappedEventsReader.convert(tempFile, tmpMappedFile);
+		MappedEventsReader r = new MappedEventsReader(tmpMappedFile);
+
+		r.seekTime(3000);
+		List<ExternalEvent> events = r.readEvents(2);
+		assertEquals(2, events.size());
+		assertEquals(3095.408, events.get(0).getTime());
+		assertEquals(3103.000, events.get(1).getTime());
+
+		r.seekTime(msgTimes[2]);
+		assertEquals(msgTimes[2], r.readEvents(1).get(0).getTime());
+
+		r.seekTime(0);
+		assertEquals(msgTimes.length, r.readEvents(100).size());
+
+		r.seekTime(msgTimes[msgTimes.length - 1] + 1);
+		assertEquals(0, r.readEvents(100).size());
+		r.close();
+	}
+
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
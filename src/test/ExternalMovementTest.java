@@ -77,6 +77,11 @@ public class ExternalMovementTest extends TestCase {
 	private SimClock clock;
 
 	protected void setUpUsing(String[] input) throws Exception {
+		setUpUsing(input, false);
+	}
+
+	protected void setUpUsing(String[] input, boolean segmentTables)
+			throws Exception {
 		super.setUp();
 		ExternalMovement.reset();
 		TestSettings ts = new TestSettings();
@@ -94,6 +99,8 @@ public class ExternalMovementTest extends TestCase {
 
 		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
 				ExternalMovement.MOVEMENT_FILE_S, outFile.getAbsolutePath());
+		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
+				ExternalMovement.SEGMENT_TABLES_S, "" + segmentTables);
 
 		MovementModel emProto = (MovementModel)
 			ts.createIntializedObject("movement.ExternalMovement");
@@ -125,6 +132,57 @@ public class ExternalMovementTest extends TestCase {
 		}
 	}
 
+	public void testSegmentTableMovement() throws Exception {
+		setUpUsing(INPUT, true);
+
+		assertEquals(c0, h3.getLocation());
+		assertFalse(h3.isMovementActive());
+
+		for (int i=0; i<INPUT_COORDS[0].length; i++) {
+			assertEquals((i+1) + ". coord of h1",
+					INPUT_COORDS[0][i], h1.getLocation());
+			assertEquals((i+1) + ". coord of h2",
+					INPUT_COORDS[1][i], h2.getLocation());
+
+			clock.advance(CLOCK_STEP);
+			moveAllHosts(CLOCK_STEP);
+		}
+	}
+
+	public void testSegmentTableInterpolation() throws Exception {
+		setUpUsing(INPUT, true);
+		ExternalMovement m1 = (ExternalMovement)h1.getMovement();
+
+		assertEquals(new Coord(15, 5), m1.getLocation(15));
+		assertEquals(new Coord(27.5, 30), m1.getLocation(45));
+		assertEquals(INPUT_COORDS[0][0], m1.getLocation(0));
+		assertEquals(new Coord(30, 50), m1.getLocation(1000));
+		assertNull(((ExternalMovement)h3.getMovement()).getLocation(15));
+
+		/* moving in small steps follows the interpolated trace */
+		clock.setTime(10);
+		for (int i=0; i<100; i++) {
+			h1.move(0.5);
+			clock.advance(0.5);
+			Coord expected = m1.getLocation(SimClock.getTime());
+			assertEquals("h1 at " + SimClock.getTime(), expected.getX(),
+					h1.getLocation().getX(), 0.00001);
+			assertEquals("h1 at " + SimClock.getTime(), expected.getY(),
+					h1.getLocation().getY(), 0.00001);
+		}
+	}
+
+	public void testSegmentTableStationary() throws Exception {
+		setUpUsing(STATIONARY_INPUT, true);
+
+		for (int i=0; i<3; i++) {
+			assertEquals(STATIONARY_INPUT_COORDS[0], h1.getLocation());
+			assertEquals(STATIONARY_INPUT_COORDS[1], h2.getLocation());
+			clock.advance(CLOCK_STEP);
+			moveAllHosts(CLOCK_STEP);
+		}
+	}
+
 	public void testStationary() throws Exception {
 		setUpUsing(STATIONARY_INPUT);
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.IndexedConnectivityGrid;
+
+import java.util.Collection;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests for the IndexedConnectivityGrid class
+ */
+public class IndexedConnectivityGridTest extends TestCase {
+	private IndexedConnectivityGrid grid;
+	private NetworkInterface n1, n2, n3;
+	private DTNHost h2, h3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		TestUtils utils = new TestUtils(null, null, ts);
+		IndexedConnectivityGrid.reset();
+
+		/* cell size: range 10 * default multiplier 5 = 50 */
+		grid = IndexedConnectivityGrid.IndexedConnectivityGridFactory(
+				1, 10);
+
+		DTNHost h1 = utils.createHost(new Coord(10,10));
+		h2 = utils.createHost(new Coord(20,20));
+		h3 = utils.createHost(new Coord(500,500));
+		n1 = h1.getInterfaces().get(0);
+		n2 = h2.getInterfaces().get(0);
+		n3 = h3.getInterfaces().get(0);
+		grid.addInterface(n1);
+		grid.addInterface(n2);
+		grid.addInterface(n3);
+	}
+
+	public void testNearInterfaces() {
+		Collection<NetworkInterface> near = grid.getNearInterfaces(n1);
+		assertEquals(2, near.size());
+		assertTrue(near.contains(n1));
+		assertTrue(near.contains(n2));
+		assertFalse(near.contains(n3));
+
+		assertEquals(1, grid.getNearInterfaces(n3).size());
+	}
+
+	public void testUpdateLocation() {
+		h3.setLocation(new Coord(60,15));
+		grid.updateLocation(n3);
+		assertTrue(grid.getNearInterfaces(n1).contains(n3));
+
+		/* moving out of the cell must not lose the remaining members */
+		h2.setLocation(new Coord(900,900));
+		grid.updateLocation(n2);
+		Collection<NetworkInterface> near = grid.getNearInterfaces(n1);
+		assertEquals(2, near.size());
+		assertTrue(near.contains(n3));
+		assertFalse(near.contains(n2));
+
+		h2.setLocation(new Coord(20,20));
+		grid.updateLocation(n2);
+		assertEquals(3, grid.getNearInterfaces(n1).size());
+	}
+
+	public void testAddInterfaceTwice() {
+		grid.addInterface(n2);
+		assertEquals(3, grid.getAllInterfaces().size());
+		assertEquals(2, grid.getNearInterfaces(n2).size());
+	}
+}
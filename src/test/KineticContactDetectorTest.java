@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import interfaces.DistanceCapacityInterface;
+import interfaces.KineticContactDetector;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the kinetic (event driven) contact detection. All hosts have
+ * a transmit range of 10 meters and host h0 stays at the origin.
+ */
+public class KineticContactDetectorTest extends TestCase {
+	private static final double RANGE = 10;
+
+	private TestUtils utils;
+	private SimClock clock;
+	private DTNHost h0;
+	private DTNHost h1;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		this.clock = SimClock.getInstance();
+
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		this.utils = new TestUtils(null, null, ts);
+		this.h0 = utils.createHost(new Coord(0, 0), "h0");
+	}
+
+	/**
+	 * Creates host h1 that follows the given paths one after another
+	 */
+	private void createMovingHost(Path... paths) {
+		this.h1 = utils.createHost(new ScriptedMovement(paths), "h1");
+		h0.move(0);
+		h1.move(0); // starts moving towards the first path's 2nd waypoint
+	}
+
+	private static Path path(double speed, double... coords) {
+		Path p = new Path(speed);
+		for (int i=0; i<coords.length; i+=2) {
+			p.addWaypoint(new Coord(coords[i], coords[i+1]));
+		}
+		return p;
+	}
+
+	/**
+	 * Predicts the events of an interval and processes them in time order
+	 * @return The events as "time up/down" strings
+	 */
+	private List<String> predict(KineticContactDetector kcd, double start,
+			double end) {
+		List<String> events = new ArrayList<String>();
+		kcd.predict(start, end);
+		while (kcd.nextEventsTime() != Double.MAX_VALUE) {
+			ExternalEvent ee = kcd.nextEvent();
+			ee.processEvent(null);
+			boolean up = h0.getConnections().size() > 0;
+			events.add(String.format(Locale.US, "%.3f %s", ee.getTime(),
+					up ? "up" : "down"));
+		}
+		assertEquals(Double.MAX_VALUE, kcd.nextEvent().getTime());
+		return events;
+	}
+
+	private KineticContactDetector createDetector() {
+		return new KineticContactDetector(utils.getAllHosts());
+	}
+
+	public void testApproaching() {
+		createMovingHost(path(1, 30,0, -30,0));
+		KineticContactDetector kcd = createDetector();
+
+		assertEquals(Arrays.asList("20.000 up"), predict(kcd, 0, 25));
+	}
+
+	public void testReceding() {
+		createMovingHost(path(1, 5,0, 30,0));
+		h0.connect(h1);
+		KineticContactDetector kcd = createDetector();
+
+		assertEquals(Arrays.asList("5.000 down"), predict(kcd, 0, 25));
+	}
+
+	public void testApproachingAndReceding() {
+		createMovingHost(path(2, 30,0, -30,0));
+		KineticContactDetector kcd = createDetector();
+
+		assertEquals(Arrays.asList("10.000 up", "20.000 down"),
+				predict(kcd, 0, 30));
+	}
+
+	public void testTangent() {
+		/* passes h0 exactly at the range -> no contact */
+		createMovingHost(path(1, -30,RANGE, 30,RANGE));
+		KineticContactDetector kcd = createDetector();
+
+		assertEquals(0, predict(kcd, 0, 60).size());
+	}
+
+	public void testNearlyTangent() {
+		/* passes h0 one meter inside the range */
+		createMovingHost(path(1, -30,RANGE-1, 30,RANGE-1));
+		KineticContactDetector kcd = createDetector();
+		double half = Math.sqrt(RANGE*RANGE - (RANGE-1)*(RANGE-1));
+
+		assertEquals(Arrays.asList(
+				String.format(Locale.US, "%.3f up", 30 - half),
+				String.format(Locale.US, "%.3f down", 30 + half)),
+				predict(kcd, 0, 60));
+	}
+
+	public void testWaypointChange() {
+		/* enters the range on the first segment, turns at (0,5) at 15 s,
+		 * and leaves the range at x = sqrt(75) on the second segment */
+		createMovingHost(path(1, 0,20, 0,5, 30,5));
+		KineticContactDetector kcd = createDetector();
+
+		assertEquals(Arrays.asList("10.000 up",
+				String.format(Locale.US, "%.3f down", 15 + Math.sqrt(75))),
+				predict(kcd, 0, 40));
+	}
+
+	public void testCorrectionAfterPathChange() {
+		/* the host is expected to stop at the end of the first path (at
+		 * 10 s, out of range) but it gets a new path towards h0 */
+		createMovingHost(path(1, 30,0, 20,0), path(1, 20,0, -30,0));
+		KineticContactDetector kcd = createDetector();
+
+		assertEquals(0, predict(kcd, 0, 25).size());
+		for (int i=0; i<25; i++) {
+			h0.move(1);
+			h1.move(1);
+			clock.advance(1);
+		}
+		assertEquals(5, h1.getLocation().getX(), 1e-9);
+		assertEquals(0, h0.getConnections().size());
+
+		/* in range at the start of the next interval -> corrected */
+		assertEquals(Arrays.asList("25.000 up", "40.000 down"),
+				predict(kcd, 25, 50));
+	}
+
+	public void testUnsupportedInterfaces() {
+		createMovingHost(path(1, 30,0, -30,0));
+		assertNull(KineticContactDetector.findUnsupported(
+				utils.getAllHosts()));
+
+		TestSettings ts = new TestSettings("kcd");
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(DistanceCapacityInterface.TRANSMIT_SPEEDS_S, "2,1");
+		assertTrue(new SimpleBroadcastInterface(ts).
+				isKineticContactsSupported());
+		/* speed depends on the distance */
+		assertFalse(new DistanceCapacityInterface(ts).
+				isKineticContactsSupported());
+
+		/* contacts are found only when scanning */
+		NetworkInterface scanning = new SimpleBroadcastInterface(ts);
+		TestSettings group = new TestSettings("kcdGroup");
+		group.putSetting(NetworkInterface.NET_SUB_NS + "." +
+				NetworkInterface.SCAN_INTERVAL_S, "5");
+		scanning.setGroupSettings(group);
+		assertFalse(scanning.isKineticContactsSupported());
+	}
+
+	/**
+	 * Movement model that returns the given paths one after another without
+	 * waiting and then stays still
+	 */
+	private static class ScriptedMovement extends MovementModel {
+		private Path[] paths;
+		private int next;
+
+		public ScriptedMovement(Path... paths) {
+			this.paths = paths;
+			this.next = 0;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return paths[0].getCoords().get(0).clone();
+		}
+
+		@Override
+		public Path getPath() {
+			return next < paths.length ? paths[next++] : null;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return next < paths.length ? SimClock.getTime() :
+				Double.MAX_VALUE;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public ScriptedMovement replicate() {
+			return new ScriptedMovement(paths);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.MapCacheFile;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import core.Coord;
+
+/**
+ * Tests for the binary map cache files
+ */
+public class MapCacheFileTest extends TestCase {
+	private static final String ROADS = "LINESTRING (1.0 1.0, 2.0 1.0, " +
+		"3.0 1.0, 8.0 1.0)\nLINESTRING (1.0 1.0, 1.0 3.0)\n" +
+		"LINESTRING (2.0 1.0, 2.0 0.0, 3.0 0.0, 3.0 1.0)";
+	private static final String PATHS = "LINESTRING (1.0 3.0, 2.0 3.0, " +
+		"3.0 3.0)";
+
+	private List<String> mapFiles;
+	private File cacheDir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.mapFiles = new ArrayList<String>();
+		mapFiles.add(createFile(ROADS).getPath());
+		mapFiles.add(createFile(PATHS).getPath());
+		this.cacheDir = createFile("").getParentFile();
+	}
+
+	private File createFile(String contents) throws Exception {
+		File f = File.createTempFile("mapCacheTest", ".wkt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		out.print(contents);
+		out.close();
+		return f;
+	}
+
+	private SimMap readWktMap() throws Exception {
+		WKTMapReader r = new WKTMapReader(true);
+		for (int i=0; i<mapFiles.size(); i++) {
+			r.addPaths(new File(mapFiles.get(i)), i+1);
+		}
+		SimMap map = r.getMap();
+		map.mirror();
+		Coord offset = map.getMinBound().clone();
+		map.translate(-offset.getX(), -offset.getY());
+		return map;
+	}
+
+	public void testWriteAndRead() throws Exception {
+		SimMap map = readWktMap();
+		byte[] hash = MapCacheFile.hash(mapFiles);
+		File cacheFile = MapCacheFile.getCacheFile(cacheDir, hash);
+		cacheFile.deleteOnExit();
+		MapCacheFile.write(cacheFile, map, hash);
+
+		SimMap cached = MapCacheFile.read(cacheFile, hash);
+		assertNotNull(cached);
+		assertEquals(map.getOffset(), cached.getOffset());
+		assertEquals(map.getMinBound(), cached.getMinBound());
+		assertEquals(map.getMaxBound(), cached.getMaxBound());
+		assertTrue(cached.isMirrored());
+
+		List<MapNode> nodes = map.getNodes();
+		List<MapNode> cachedNodes = cached.getNodes();
+		assertEquals(nodes.size(), cachedNodes.size());
+		for (int i=0; i<nodes.size(); i++) {
+			MapNode n = nodes.get(i);
+			MapNode c = cachedNodes.get(i);
+			assertEquals(n.getLocation(), c.getLocation());
+			assertEquals(n.isType(1), c.isType(1));
+			assertEquals(n.isType(2), c.isType(2));
+			assertEquals(n.getNeighbors().size(), c.getNeighbors().size());
+			for (int j=0; j<n.getNeighbors().size(); j++) {
+				assertEquals(nodes.indexOf(n.getNeighbors().get(j)),
+						cachedNodes.indexOf(c.getNeighbors().get(j)));
+			}
+			assertSame(c, cached.getNodeByCoord(c.getLocation().clone()));
+		}
+	}
+
+	public void testChangedMapFiles() throws Exception {
+		byte[] hash = MapCacheFile.hash(mapFiles);
+		File cacheFile = MapCacheFile.getCacheFile(cacheDir, hash);
+		cacheFile.deleteOnExit();
+		MapCacheFile.write(cacheFile, readWktMap(), hash);
+
+		/* different order of the files -> different node types */
+		List<String> reversed = new ArrayList<String>();
+		reversed.add(mapFiles.get(1));
+		reversed.add(mapFiles.get(0));
+		byte[] newHash = MapCacheFile.hash(reversed);
+		assertFalse(cacheFile.equals(MapCacheFile.getCacheFile(cacheDir,
+				newHash)));
+		assertNull(MapCacheFile.read(cacheFile, newHash));
+
+		/* changed contents */
+		PrintWriter out = new PrintWriter(mapFiles.get(1));
+		out.print(PATHS + "\nLINESTRING (3.0 3.0, 4.0 3.0)");
+		out.close();
+		assertNull(MapCacheFile.read(cacheFile, MapCacheFile.hash(mapFiles)));
+		assertNotNull(MapCacheFile.read(cacheFile, hash));
+	}
+
+	public void testCorruptFile() throws Exception {
+		byte[] hash = MapCacheFile.hash(mapFiles);
+		File cacheFile = MapCacheFile.getCacheFile(cacheDir, hash);
+		cacheFile.deleteOnExit();
+		MapCacheFile.write(cacheFile, readWktMap(), hash);
+		long length = cacheFile.length();
+
+		/* last neighbor index out of range */
+		RandomAccessFile f = new RandomAccessFile(cacheFile, "rw");
+		f.seek(length - 4);
+		f.writeInt(1000);
+		f.close();
+		assertNull(MapCacheFile.read(cacheFile, hash));
+
+		/* truncated, but still longer than the header */
+		f = new RandomAccessFile(cacheFile, "rw");
+		f.setLength(MapCacheFile.HEADER_SIZE + 8);
+		f.close();
+		assertNull(MapCacheFile.read(cacheFile, hash));
+
+		/* extra bytes in the end */
+		MapCacheFile.write(cacheFile, readWktMap(), hash);
+		f = new RandomAccessFile(cacheFile, "rw");
+		f.setLength(length + 4);
+		f.close();
+		assertNull(MapCacheFile.read(cacheFile, hash));
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalPathMovementReader;
+import input.MappedPathMovementReader;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.ExternalPathMovement;
+import movement.MovementModel;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Tests for the memory mapped path traces. The converted traces must give
+ * the same paths and movement as the text traces.
+ */
+public class MappedPathMovementReaderTest extends TestCase {
+	private static final String[] TRACE = {
+		"2 10 500 5 400 3 300",
+		"0 10,5,3 40,50,3 70,50,60 100,20,80",
+		"1 20,100,100",
+		"",
+		"1 60,100,100 90,130,140 120,160,100 150,100,100 200,120,90",
+		"0 150,30,30 180,60,90"
+	};
+	private static final String[] ACTIVITY = {
+		"0 10 400",
+		"1 10 80",
+		"1 100 400",
+		"2 10 20"
+	};
+
+	private File traceFile;
+	private File activityFile;
+	private File mappedFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		this.traceFile = createFile(".txt", TRACE);
+		this.activityFile = createFile(".txt", ACTIVITY);
+		this.mappedFile = createFile(MappedPathMovementReader.MAPPED_EXT,
+				new String[0]);
+		MappedPathMovementReader.convert(traceFile, activityFile, mappedFile);
+	}
+
+	private File createFile(String ext, String[] lines) throws Exception {
+		File f = File.createTempFile("mappedPathTest", ext);
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		for (String line : lines) {
+			out.println(line);
+		}
+		out.close();
+		return f;
+	}
+
+	public void testConvert() {
+		ExternalPathMovementReader text = ExternalPathMovementReader.
+			getInstance(traceFile.getPath(), activityFile.getPath());
+		MappedPathMovementReader mapped =
+			new MappedPathMovementReader(mappedFile);
+
+		assertEquals(2, mapped.getMaxID());
+		assertEquals(12, mapped.getNrofPoints());
+		assertEquals(text.getMinTime(), mapped.getMinTime());
+		assertEquals(text.getMaxY(), mapped.getMaxY());
+
+		for (int id=0; id<=2; id++) {
+			List<List<ExternalPathMovementReader.Entry>> paths =
+				text.getPaths(id);
+			assertEquals(paths.size(), mapped.getNrofPaths(id));
+			for (int i=0; i<paths.size(); i++) {
+				List<ExternalPathMovementReader.Entry> path = paths.get(i);
+				long first = mapped.getFirstPoint(id, i);
+				assertEquals(path.size(), mapped.getEndPoint(id, i) - first);
+				for (int j=0; j<path.size(); j++) {
+					assertEquals(path.get(j).time, mapped.getTime(first + j));
+					assertEquals(path.get(j).x, mapped.getX(first + j));
+					assertEquals(path.get(j).y, mapped.getY(first + j));
+				}
+			}
+
+			List<ExternalPathMovementReader.ActiveTime> active =
+				text.getActive(id);
+			assertEquals(active.size(), mapped.getNrofActiveTimes(id));
+			for (int i=0; i<active.size(); i++) {
+				assertEquals(active.get(i).start, mapped.getActiveStart(id, i));
+				assertEquals(active.get(i).end, mapped.getActiveEnd(id, i));
+			}
+		}
+
+		assertEquals(0, mapped.getNrofPaths(3));
+	}
+
+	private List<DTNHost> createHosts(MovementModel proto) {
+		DTNHost.reset(); // the node IDs of the trace are the addresses
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<3; i++) {
+			hosts.add(utils.createHost(proto, null));
+		}
+		return hosts;
+	}
+
+	public void testMovement() {
+		TestSettings s = new TestSettings();
+		s.putSetting(ExternalPathMovement.MOVEMENT_FILE_S, traceFile.getPath());
+		s.putSetting(ExternalPathMovement.ACTIVITY_FILE_S,
+				activityFile.getPath());
+		List<DTNHost> textHosts = createHosts(new ExternalPathMovement(s));
+
+		/* read long paths two waypoints at a time */
+		s.putSetting(ExternalPathMovement.MOVEMENT_FILE_S,
+				mappedFile.getPath());
+		s.putSetting(ExternalPathMovement.LOOK_AHEAD_S, "2");
+		List<DTNHost> mappedHosts = createHosts(new ExternalPathMovement(s));
+
+		SimClock clock = SimClock.getInstance();
+		for (int i=0; i<500; i++) {
+			for (int j=0; j<textHosts.size(); j++) {
+				DTNHost h1 = textHosts.get(j);
+				DTNHost h2 = mappedHosts.get(j);
+				assertEquals("Host " + j + " at " + SimClock.getTime(),
+						h1.getLocation(), h2.getLocation());
+				assertEquals(h1.isMovementActive(), h2.isMovementActive());
+				h1.move(1);
+				h2.move(1);
+			}
+			clock.advance(1);
+		}
+	}
+}
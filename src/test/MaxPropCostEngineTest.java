@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.maxprop.MaxPropCostEngine;
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Tests for the MaxProp cost engine. The engine must give exactly the same
+ * costs as {@link MaxPropDijkstra} also when the meeting probabilities
+ * change between the requests.
+ */
+public class MaxPropCostEngineTest extends TestCase {
+	private static final int NROF_NODES = 60;
+	private static final double INVALID_COST = Double.MAX_VALUE;
+
+	private MaxPropCostEngine engine;
+	private Map<Integer, MeetingProbabilitySet> mapping;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		engine = new MaxPropCostEngine();
+		mapping = new HashMap<Integer, MeetingProbabilitySet>();
+		rng = new Random(1);
+	}
+
+	private MeetingProbabilitySet set(int address) {
+		MeetingProbabilitySet mps = mapping.get(address);
+		if (mps == null) {
+			mps = new MeetingProbabilitySet();
+			mapping.put(address, mps);
+			engine.setProbs(address, mps);
+		}
+		return mps;
+	}
+
+	private void meet(int a, int b) {
+		set(a).updateMeetingProbFor(b);
+		engine.probsChanged(a);
+	}
+
+	public void testPath() {
+		meet(0, 1);
+		meet(1, 2);
+		meet(1, 3);
+		meet(3, 4);
+
+		assertEquals(0.0, engine.getCost(0, 0));
+		assertEquals(0.0, engine.getCost(0, 1));
+		assertEquals(0.5, engine.getCost(0, 2));
+		assertEquals(0.5, engine.getCost(0, 4));
+		assertEquals(INVALID_COST, engine.getCost(0, 5));
+		assertEquals(INVALID_COST, engine.getCost(2, 0));
+
+		/* a change of a settled node must be seen... */
+		meet(1, 2);
+		assertEquals(0.25, engine.getCost(0, 2));
+		assertEquals(0.75, engine.getCost(0, 3));
+
+		/* ...and so must the probabilities of a node that had none */
+		meet(4, 5);
+		assertEquals(0.75, engine.getCost(0, 5));
+
+		/* new set for a node that has been settled */
+		MeetingProbabilitySet mps = new MeetingProbabilitySet();
+		mps.updateMeetingProbFor(5);
+		engine.setProbs(1, mps);
+		assertEquals(0.0, engine.getCost(0, 5));
+		assertEquals(INVALID_COST, engine.getCost(0, 2));
+	}
+
+	public void testSameCostsAsDijkstra() {
+		MaxPropDijkstra dijkstra = new MaxPropDijkstra(mapping);
+		Set<Integer> all = new HashSet<Integer>();
+		for (int i=0; i<NROF_NODES; i++) {
+			all.add(i);
+		}
+
+		for (int round=0; round<200; round++) {
+			/* a few meetings between random nodes */
+			int nrofMeetings = rng.nextInt(3);
+			for (int i=0; i<nrofMeetings; i++) {
+				meet(rng.nextInt(NROF_NODES), rng.nextInt(NROF_NODES));
+			}
+
+			/* costs from a few sources so that the cached searches are
+			 * used and continued */
+			for (int i=0; i<3; i++) {
+				int from = rng.nextInt(NROF_NODES / 10);
+				Map<Integer, Double> expected = dijkstra.getCosts(from, all);
+				int to = rng.nextInt(NROF_NODES);
+				Double cost = expected.get(to);
+				assertEquals("Cost from " + from + " to " + to + " round " +
+						round, cost != null ? cost : INVALID_COST,
+						engine.getCost(from, to));
+			}
+		}
+	}
+}
@@ -74,6 +74,32 @@ public class MaxPropDijkstraTest extends TestCase {
 		assertEquals(0.125, mps.getProbFor(2));
 	}
 
+	/**
+	 * Tests that replicas share the probabilities but are not changed by
+	 * the updates of the original (or vice versa)
+	 */
+	public void testReplicate() {
+		MeetingProbabilitySet mps = mapping.get(0);
+		mps.updateMeetingProbFor(1);
+		mps.updateMeetingProbFor(2);
+		MeetingProbabilitySet replica = mps.replicate();
+		MeetingProbabilitySet replica2 = replica.replicate();
+
+		mps.updateMeetingProbFor(3);
+		assertEquals(3, mps.size());
+		assertEquals(0.25, mps.getProbFor(1));
+		assertEquals(0.5, mps.getProbFor(3));
+
+		assertEquals(2, replica.size());
+		assertEquals(0.5, replica.getProbFor(1));
+		assertEquals(0.0, replica.getProbFor(3));
+
+		replica2.updateMeetingProbFor(1);
+		assertEquals(0.75, replica2.getProbFor(1));
+		assertEquals(0.5, replica.getProbFor(1));
+		assertEquals(0.25, mps.getProbFor(1));
+	}
+
 	public void testPath() {
 		targets.add(1);
 		targets.add(2);
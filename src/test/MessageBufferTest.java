@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.util.MessageBuffer;
+import routing.util.SummaryVector;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+
+/**
+ * Tests for the MessageBuffer class
+ */
+public class MessageBufferTest extends TestCase {
+	private MessageBuffer buffer;
+	private DTNHost h1, h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		TestUtils utils = new TestUtils(null, null, ts);
+		Message.reset();
+
+		buffer = new MessageBuffer();
+		h1 = utils.createHost(new Coord(0,0));
+		h2 = utils.createHost(new Coord(0,0));
+	}
+
+	public void testPutGetRemove() {
+		Message m1 = new Message(h1, h2, "M1", 100);
+		Message m2 = new Message(h1, h2, "M2", 200);
+		buffer.put(m1.getIdIndex(), m1);
+		buffer.put(m2.getIdIndex(), m2);
+
+		assertEquals(2, buffer.size());
+		assertEquals(300, buffer.getTotalSize());
+		assertSame(m1, buffer.get(Message.getIdIndex("M1")));
+		assertSame(m2, buffer.get(Message.getIdIndex("M2")));
+		assertNull(buffer.get(Message.getIdIndex("M3")));
+
+		/* replicates have the same key */
+		Message rep = m1.replicate();
+		assertEquals(m1.getIdIndex(), rep.getIdIndex());
+		assertSame(m1, buffer.put(rep.getIdIndex(), rep));
+		assertEquals(2, buffer.size());
+
+		assertSame(rep, buffer.remove(m1.getIdIndex()));
+		assertNull(buffer.remove(m1.getIdIndex()));
+		assertEquals(1, buffer.size());
+		assertEquals(200, buffer.getTotalSize());
+		assertSame(m2, buffer.values().iterator().next());
+	}
+
+	public void testNullValues() {
+		buffer.put(5, null);
+		assertTrue(buffer.containsKey(5));
+		assertNull(buffer.get(5));
+		assertEquals(0, buffer.getTotalSize());
+		assertFalse(buffer.containsKey(6));
+	}
+
+	public void testHostKeys() {
+		Message m = new Message(h1, h2, "M1", 100);
+		Message rep = m.replicate();
+		buffer.put(MessageBuffer.getKey(m.getIdIndex(), h1), m);
+		buffer.put(MessageBuffer.getKey(rep.getIdIndex(), h2), rep);
+
+		assertEquals(2, buffer.size());
+		assertSame(m, buffer.get(MessageBuffer.getKey(m.getIdIndex(), h1)));
+		assertSame(rep, buffer.get(MessageBuffer.getKey(m.getIdIndex(), h2)));
+	}
+
+	public void testManyOperations() {
+		Random rng = new Random(1);
+		HashMap<Long, Message> reference = new HashMap<Long, Message>();
+		long totalSize = 0;
+
+		for (int i=0; i<20000; i++) {
+			long key = rng.nextInt(500);
+			if (rng.nextBoolean()) {
+				Message m = new Message(h1, h2, "M" + i, rng.nextInt(1000));
+				Message old = reference.put(key, m);
+				assertSame(old, buffer.put(key, m));
+				totalSize += m.getSize() - (old != null ? old.getSize() : 0);
+			} else {
+				Message old = reference.remove(key);
+				assertSame(old, buffer.remove(key));
+				totalSize -= (old != null ? old.getSize() : 0);
+			}
+			assertEquals(reference.size(), buffer.size());
+			assertEquals(totalSize, buffer.getTotalSize());
+		}
+
+		for (Long key : reference.keySet()) {
+			assertSame(reference.get(key), buffer.get(key));
+		}
+		Set<Message> values = new HashSet<Message>(buffer.values());
+		assertEquals(new HashSet<Message>(reference.values()), values);
+	}
+
+	public void testSummaryVector() {
+		Message m1 = new Message(h1, h2, "M1", 100);
+		Message m2 = new Message(h1, h2, "M2", 200);
+		Message m3 = new Message(h1, h2, "M3", 300);
+		MessageBuffer other = new MessageBuffer();
+		buffer.put(m2.getIdIndex(), m2);
+		buffer.put(m1.getIdIndex(), m1);
+		other.put(m2.getIdIndex(), null);
+
+		SummaryVector sv = new SummaryVector(buffer, other);
+		assertEquals(2, sv.size());
+		assertTrue(sv.contains(m1));
+		assertTrue(sv.contains(m2));
+		assertFalse(sv.contains(m3));
+
+		/* the summary doesn't change with the buffers */
+		buffer.put(m3.getIdIndex(), m3);
+		assertFalse(sv.contains(m3));
+		assertEquals(m3.getIdIndex(), buffer.getKeyAt(2));
+	}
+
+	public void testIdIndexRelease() {
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(new MessageChecker());
+		TestUtils utils = new TestUtils(null, ml, new TestSettings());
+		DTNHost h1 = utils.createHost(new Coord(0,0));
+		DTNHost h2 = utils.createHost(new Coord(0,0));
+
+		Message m1 = new Message(h1, h2, "M1", 100);
+		h1.createNewMessage(m1);
+		h2.createNewMessage(m1.replicate());
+		int index = Message.getIdIndex("M1");
+		assertEquals(m1.getIdIndex(), index);
+
+		/* the ID is known as long as some router has the message */
+		h1.deleteMessage("M1", false);
+		assertEquals(index, Message.getIdIndex("M1"));
+		h2.deleteMessage("M1", false);
+		assertEquals(-1, Message.getIdIndex("M1"));
+
+		/* a buffered copy makes the ID known again with the same index */
+		h1.createNewMessage(m1.replicate());
+		assertEquals(index, Message.getIdIndex("M1"));
+		h1.deleteMessage("M1", false);
+
+		/* released indexes are not given to new IDs */
+		Message m2 = new Message(h1, h2, "M2", 100);
+		assertTrue(m2.getIdIndex() > index);
+		assertEquals(m2.getIdIndex(), Message.getIdIndex("M2"));
+	}
+}
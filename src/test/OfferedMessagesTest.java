@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import routing.MaxPropRouter;
+import routing.MessageRouter;
+import util.Tuple;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+import core.SimScenario;
+
+/**
+ * Tests for the cached messages that active routers offer to the hosts they
+ * are connected to. Uses the MaxProp router, which doesn't offer messages
+ * to the hosts they have already passed.
+ */
+public class OfferedMessagesTest extends AbstractRouterTest {
+	private static final int NROF_HOSTS = 7;
+	private OfferRouter r1;
+
+	protected void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(SimScenario.SCENARIO_NS + "." +
+				SimScenario.NROF_GROUPS_S, "1");
+		ts.putSetting(SimScenario.GROUP_NS + "." +
+				core.SimScenario.NROF_HOSTS_S, "" + NROF_HOSTS);
+		setRouterProto(new OfferRouter(ts));
+		super.setUp();
+
+		r1 = (OfferRouter)h1.getRouter();
+	}
+
+	public void testOffersAreCached() {
+		Message m1 = createMessage(h1, h3, msgId1);
+		Message m2 = createMessage(h1, h4, msgId2);
+		h1.connect(h2);
+		Connection con = getConnection(h1, h2);
+
+		List<Message> offered = checkOffers(con, m1, m2);
+		int checks = r1.nrofOfferableChecks;
+		assertSame(offered, r1.getOfferedMessages(con));
+		assertEquals(checks, r1.nrofOfferableChecks);
+	}
+
+	public void testOwnBufferChanges() {
+		Message m1 = createMessage(h1, h3, msgId1);
+		h1.connect(h2);
+		Connection con = getConnection(h1, h2);
+		checkOffers(con, m1);
+
+		int version = r1.getBufferVersion();
+		Message m2 = createMessage(h1, h4, msgId2);
+		assertTrue(version != r1.getBufferVersion());
+		checkOffers(con, m1, m2);
+
+		version = r1.getBufferVersion();
+		h1.deleteMessage(msgId1, true);
+		assertTrue(version != r1.getBufferVersion());
+		checkOffers(con, m2);
+	}
+
+	public void testPeerBufferChanges() {
+		Message m1 = createMessage(h1, h3, msgId1);
+		Message m2 = createMessage(h1, h4, msgId2);
+		h1.connect(h2);
+		Connection con = getConnection(h1, h2);
+		checkOffers(con, m1, m2);
+
+		/* the peer gets a message with the same ID -> not offered */
+		int version = h2.getRouter().getBufferVersion();
+		createMessage(h2, h5, msgId1);
+		assertTrue(version != h2.getRouter().getBufferVersion());
+		checkOffers(con, m2);
+
+		version = h2.getRouter().getBufferVersion();
+		h2.deleteMessage(msgId1, false);
+		assertTrue(version != h2.getRouter().getBufferVersion());
+		checkOffers(con, m1, m2);
+	}
+
+	public void testPassedHostsNotOffered() {
+		Message m1 = createMessage(h1, h4, msgId1);
+		Message m2 = new Message(h1, h5, msgId2, 10);
+		m2.addNodeOnPath(h2);
+		h1.createNewMessage(m2);
+		h1.connect(h2);
+		h1.connect(h3);
+
+		checkOffers(getConnection(h1, h2), m1);
+		checkOffers(getConnection(h1, h3), m1, m2);
+	}
+
+	public void testClosedConnectionsPruned() {
+		createMessage(h1, h4, msgId1);
+		h1.connect(h2);
+		Connection closed = getConnection(h1, h2);
+		r1.getOfferedMessages(closed);
+
+		disconnect(h1);
+		assertFalse(closed.isUp());
+		h1.connect(h3);
+		Connection open = getConnection(h1, h3);
+		r1.getOfferedMessages(open); // prunes the closed connection's offers
+
+		/* the open connection's offers are still cached */
+		int checks = r1.nrofOfferableChecks;
+		r1.getOfferedMessages(open);
+		assertEquals(checks, r1.nrofOfferableChecks);
+
+		/* but the closed connection's offers have to be created again */
+		r1.getOfferedMessages(closed);
+		assertEquals(checks + 1, r1.nrofOfferableChecks);
+	}
+
+	public void testMessagesForConnected() {
+		createMessage(h1, h2, msgId1);
+		createMessage(h1, h3, msgId2);
+		createMessage(h1, h5, msgId3);
+		h1.connect(h2);
+		h1.connect(h3);
+		checkMessagesForConnected(2);
+
+		/* the returned list is the cache itself */
+		try {
+			r1.getMessagesForConnected().clear();
+			fail("The cached message-connection pairs were modified");
+		} catch (UnsupportedOperationException e) {
+			// ok
+		}
+		checkMessagesForConnected(2);
+
+		createMessage(h1, h3, msgId4);
+		checkMessagesForConnected(3);
+
+		h1.deleteMessage(msgId2, true);
+		checkMessagesForConnected(2);
+
+		disconnect(h3);
+		checkMessagesForConnected(1);
+
+		h1.connect(h5);
+		checkMessagesForConnected(2);
+	}
+
+	private Message createMessage(DTNHost from, DTNHost to, String id) {
+		Message m = new Message(from, to, id, 10);
+		from.createNewMessage(m);
+		return m;
+	}
+
+	private Connection getConnection(DTNHost from, DTNHost to) {
+		for (Connection con : from.getConnections()) {
+			if (con.getOtherNode(from) == to) {
+				return con;
+			}
+		}
+		fail("No connection from " + from + " to " + to);
+		return null;
+	}
+
+	/**
+	 * Checks that the (possibly cached) offered messages of h1's router are
+	 * the expected ones and the same, and in the same order, as the ones
+	 * found without the cache
+	 */
+	private List<Message> checkOffers(Connection con, Message... expected) {
+		List<Message> offered = r1.getOfferedMessages(con);
+
+		DTNHost other = con.getOtherNode(h1);
+		List<Message> uncached = new ArrayList<Message>();
+		for (Message m : h1.getMessageCollection()) {
+			if (!other.getRouter().hasMessage(m.getId()) &&
+					!m.getHops().contains(other)) {
+				uncached.add(m);
+			}
+		}
+
+		assertEquals(uncached, offered);
+		assertEquals(expected.length, offered.size());
+		HashSet<Message> expectedSet = new HashSet<Message>();
+		Collections.addAll(expectedSet, expected);
+		assertEquals(expectedSet, new HashSet<Message>(offered));
+		return offered;
+	}
+
+	/**
+	 * Checks that the (possibly cached) message-connection pairs of h1's
+	 * router are the same as the ones found without the cache
+	 */
+	private void checkMessagesForConnected(int expectedSize) {
+		List<String> pairs = new ArrayList<String>();
+		for (Tuple<Message, Connection> t : r1.getMessagesForConnected()) {
+			pairs.add(t.getKey().getId() + "->" +
+					t.getValue().getOtherNode(h1));
+		}
+
+		List<String> uncached = new ArrayList<String>();
+		for (Message m : h1.getMessageCollection()) {
+			for (Connection con : h1.getConnections()) {
+				if (m.getTo() == con.getOtherNode(h1)) {
+					uncached.add(m.getId() + "->" + con.getOtherNode(h1));
+				}
+			}
+		}
+
+		assertEquals(uncached, pairs);
+		assertEquals(expectedSize, pairs.size());
+	}
+
+	/**
+	 * MaxProp router that gives access to the offered messages and counts
+	 * the offerability checks
+	 */
+	private static class OfferRouter extends MaxPropRouter {
+		private int nrofOfferableChecks;
+
+		public OfferRouter(Settings s) {
+			super(s);
+		}
+
+		protected OfferRouter(OfferRouter r) {
+			super(r);
+		}
+
+		@Override
+		public List<Message> getOfferedMessages(Connection con) {
+			return super.getOfferedMessages(con);
+		}
+
+		@Override
+		public List<Tuple<Message, Connection>> getMessagesForConnected() {
+			return super.getMessagesForConnected();
+		}
+
+		@Override
+		protected boolean isOfferable(Message m, DTNHost other) {
+			nrofOfferableChecks++;
+			return super.isOfferable(m, other);
+		}
+
+		@Override
+		public MessageRouter replicate() {
+			return new OfferRouter(this);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.Path;
+import core.Coord;
+
+/**
+ * Tests for the Path class
+ */
+public class PathTest extends TestCase {
+
+	public void testWaypointCursor() {
+		Path p = new Path(2.0);
+		Coord c = new Coord(1,2);
+		p.addWaypoint(c);
+		c.setLocation(3,4); // the path has a copy of the values
+		p.addWaypoint(c);
+		for (int i=0; i<20; i++) {
+			p.addWaypoint(i, -i);
+		}
+
+		assertEquals(22, p.getNrofWaypointsLeft());
+		assertEquals(3.0, p.peekX(1));
+		assertEquals(new Coord(3,4), p.peekWaypoint(1));
+		assertNull(p.peekWaypoint(22));
+
+		p.nextWaypoint();
+		assertEquals(1.0, p.getWaypointX());
+		assertEquals(2.0, p.getWaypointY());
+		assertEquals(2.0, p.getSpeed());
+		assertEquals(new Coord(3,4), p.getNextWaypoint());
+		assertEquals(20, p.getNrofWaypointsLeft());
+
+		for (int i=0; i<20; i++) {
+			assertTrue(p.hasNext());
+			p.nextWaypoint();
+			assertEquals((double)i, p.getWaypointX());
+			assertEquals((double)-i, p.getWaypointY());
+		}
+		assertFalse(p.hasNext());
+
+		List<Coord> coords = p.getCoords();
+		assertEquals(22, coords.size());
+		assertEquals(new Coord(1,2), coords.get(0));
+		assertEquals(new Coord(19,-19), coords.get(21));
+	}
+
+	public void testSpeeds() {
+		Path p = new Path();
+		for (int i=0; i<10; i++) {
+			p.addWaypoint(new Coord(i,0), i + 0.5);
+		}
+
+		Path copy = new Path(p);
+		for (int i=0; i<10; i++) {
+			p.nextWaypoint();
+			assertEquals(i + 0.5, p.getSpeed());
+		}
+		assertEquals(10, copy.getNrofWaypointsLeft());
+		assertEquals(10, copy.getSpeeds().size());
+		copy.getNextWaypoint();
+		assertEquals(0.5, copy.getSpeed());
+	}
+}
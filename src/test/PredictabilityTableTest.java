@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.PredictabilityTable;
+
+/**
+ * Tests for the PredictabilityTable class
+ */
+public class PredictabilityTableTest extends TestCase {
+	private static final double DELTA = 1e-12;
+
+	private PredictabilityTable table;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		table = new PredictabilityTable();
+	}
+
+	public void testSetGet() {
+		assertEquals(0.0, table.get(5));
+		table.set(5, 0.5);
+		table.set(2, 0.25);
+		table.set(5, 0.75);
+
+		assertEquals(2, table.size());
+		assertEquals(0.75, table.get(5));
+		assertEquals(0.25, table.get(2));
+		assertEquals(0.0, table.get(3));
+		assertEquals(0.0, table.get(1000));
+		assertFalse(table.isDense());
+	}
+
+	public void testAging() {
+		table.set(1, 0.5);
+		table.age(0.5);
+		table.set(2, 0.5);
+		table.age(0.5);
+
+		assertEquals(0.125, table.get(1), DELTA);
+		assertEquals(0.25, table.get(2), DELTA);
+
+		/* the decay factors must not underflow */
+		for (int i=0; i<1000; i++) {
+			table.set(3, 1.0);
+			table.age(0.1);
+		}
+		assertEquals(0.1, table.get(3), DELTA);
+		assertEquals(0.0, table.get(1));
+	}
+
+	public void testSparseAndDense() {
+		Map<Integer, Double> expected = new HashMap<Integer, Double>();
+		Random rng = new Random(1);
+
+		for (int i=0; i<2000; i++) {
+			int address = rng.nextInt(500);
+			double value = rng.nextDouble();
+			table.set(address, value);
+			expected.put(address, value);
+			if (i % 100 == 0) {
+				table.age(0.99);
+				for (Map.Entry<Integer, Double> e : expected.entrySet()) {
+					e.setValue(e.getValue() * 0.99);
+				}
+			}
+		}
+
+		assertTrue(table.isDense());
+		assertEquals(expected.size(), table.size());
+		for (int i=0; i<table.size(); i++) {
+			int address = table.getAddress(i);
+			assertEquals(expected.get(address), table.getValueAt(i), DELTA);
+			assertEquals(expected.get(address), table.get(address), DELTA);
+		}
+	}
+}
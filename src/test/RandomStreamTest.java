@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import core.DTNHost;
+import core.RandomStream;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests for the per entity random number streams
+ */
+public class RandomStreamTest extends TestCase {
+	private static final String STREAMS_S = World.OPTIMIZATION_SETTINGS_NS +
+		"." + RandomStream.RNG_STREAMS_S;
+
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		this.ts = new TestSettings();
+		ts.putSetting(STREAMS_S, "true");
+		RandomStream.reset();
+		MovementModel.reset();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		ts.putSetting(STREAMS_S, "false");
+		RandomStream.reset();
+	}
+
+	public void testStreams() {
+		assertTrue(RandomStream.isEnabled());
+		RandomStream r1 = RandomStream.getStream(1, 5);
+		RandomStream r2 = RandomStream.getStream(1, 5);
+		RandomStream r3 = RandomStream.getStream(1, 6);
+		RandomStream r4 = RandomStream.getStream(2, 5);
+
+		for (int i=0; i<100; i++) {
+			long l = r1.nextLong();
+			assertEquals(l, r2.nextLong());
+			assertFalse(l == r3.nextLong());
+			assertFalse(l == r4.nextLong());
+		}
+
+		RandomStream.reset();
+		RandomStream next = RandomStream.nextStream(1);
+		assertEquals(RandomStream.getStream(1, 0).nextLong(), next.nextLong());
+		next = RandomStream.nextStream(1);
+		assertEquals(RandomStream.getStream(1, 1).nextLong(), next.nextLong());
+
+		RandomStream s1 = r1.split(0);
+		RandomStream s2 = r1.split(1);
+		assertFalse(s1.nextLong() == s2.nextLong());
+		assertEquals(r2.split(0).nextLong(), r1.split(0).nextLong());
+	}
+
+	public void testSetSeed() {
+		RandomStream r1 = RandomStream.getStream(1, 0);
+		RandomStream r2 = RandomStream.getStream(1, 1);
+
+		r1.setSeed(10);
+		double d = r1.nextDouble();
+		int i = r1.nextInt(1000);
+		r1.nextGaussian();
+
+		r1.setSeed(10);
+		assertEquals(d, r1.nextDouble());
+		assertEquals(i, r1.nextInt(1000));
+
+		r2.setSeed(10);
+		assertFalse(d == r2.nextDouble());
+	}
+
+	public void testDistribution() {
+		RandomStream r = RandomStream.getStream(3, 0);
+		int n = 100000;
+		double sum = 0;
+		int[] counts = new int[10];
+		for (int i=0; i<n; i++) {
+			double d = r.nextDouble();
+			assertTrue(d >= 0 && d < 1);
+			sum += d;
+			counts[r.nextInt(10)]++;
+		}
+		assertEquals(0.5, sum / n, 0.01);
+		for (int c : counts) {
+			assertEquals(n / 10, c, n / 100);
+		}
+	}
+
+	private List<DTNHost> createHosts(int nrofHosts) {
+		RandomStream.reset();
+		MovementModel proto = new RandomWaypoint(ts);
+		TestUtils utils = new TestUtils(null, null, ts);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<nrofHosts; i++) {
+			hosts.add(utils.createHost(proto, null));
+		}
+		return hosts;
+	}
+
+	public void testMovementIndependentOfOrder() {
+		List<DTNHost> hosts = createHosts(5);
+		List<DTNHost> reversed = createHosts(5);
+		SimClock clock = SimClock.getInstance();
+
+		for (int i=0; i<2000; i++) {
+			for (int j=0; j<hosts.size(); j++) {
+				hosts.get(j).move(1);
+				reversed.get(hosts.size() - j - 1).move(1);
+			}
+			clock.advance(1);
+
+			for (int j=0; j<hosts.size(); j++) {
+				assertEquals("Host " + j + " at " + SimClock.getTime(),
+						hosts.get(j).getLocation(),
+						reversed.get(j).getLocation());
+			}
+		}
+	}
+}
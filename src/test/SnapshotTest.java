@@ -0,0 +1,361 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.MessageEventGenerator;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWalk;
+import movement.RandomWaypoint;
+import report.MessageStatsReport;
+import report.Report;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SettingsError;
+import core.SimClock;
+import core.SimScenario;
+import core.Snapshot;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests for the movement state snapshots and checkpoints. A world that
+ * reads a snapshot must continue moving (and, with checkpoints, routing)
+ * exactly like the world that wrote it.
+ */
+public class SnapshotTest extends TestCase {
+	private static final int NROF_HOSTS = 4;
+	private static final double UPDATE_INTERVAL = 0.5;
+	private static final int NROF_STEPS = 1000;
+
+	private TestSettings ts;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "3");
+		ts.putSetting("Group." + MovementModel.SPEED, "1,5");
+		ts.putSetting("Group." + MovementModel.WAIT_TIME, "0,20");
+		this.clock = SimClock.getInstance();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		/* don't leak the RNG seed and the moved hosts to other tests */
+		this.ts = new TestSettings();
+		MovementModel.reset();
+		DTNHost.reset();
+		SimClock.reset();
+		ConnectivityGrid.reset();
+		Message.reset();
+	}
+
+	/**
+	 * Creates a new simulation with hosts that use RandomWaypoint and
+	 * RandomWalk movement models
+	 */
+	private World createWorld(int nrofHosts) {
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+		TestSettings s = new TestSettings("Group");
+		MovementModel rwp = new RandomWaypoint(s);
+		MovementModel walk = new RandomWalk(s);
+		TestUtils utils = new TestUtils(null, null, ts);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<nrofHosts; i++) {
+			hosts.add(utils.createHost(i % 2 == 0 ? rwp : walk, null));
+		}
+
+		return new World(hosts, 1000, 1000, UPDATE_INTERVAL,
+				new ArrayList<UpdateListener>(), false,
+				new ArrayList<EventQueue>());
+	}
+
+	/**
+	 * Creates a new simulation with hosts that move, connect using
+	 * SimpleBroadcastInterfaces, route messages using EpidemicRouters with
+	 * small buffers and get messages from a message event generator
+	 * @param ml Listener for the messages
+	 */
+	private World createNetworkWorld(int nrofHosts, MessageListener ml) {
+		putSetting("Group." + MessageRouter.B_SIZE_S, "5k");
+		putSetting("Group." + MessageRouter.MSG_TTL_S, "5");
+		putSetting("net." + NetworkInterface.TRANSMIT_RANGE_S, "100");
+		putSetting("net." + NetworkInterface.TRANSMIT_SPEED_S, "250");
+		putSetting("Events." + MessageEventGenerator.MESSAGE_SIZE_S,
+				"500,1000");
+		putSetting("Events." + MessageEventGenerator.MESSAGE_INTERVAL_S,
+				"1,5");
+		putSetting("Events." + MessageEventGenerator.HOST_RANGE_S,
+				"0," + nrofHosts);
+		putSetting("Events." + MessageEventGenerator.MESSAGE_ID_PREFIX_S,
+				"M");
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+		ConnectivityGrid.reset();
+		Message.reset();
+
+		MovementModel rwp = new RandomWaypoint(new TestSettings("Group"));
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new SimpleBroadcastInterface(new TestSettings("net")));
+		MessageRouter router = new EpidemicRouter(new TestSettings("Group"));
+		List<MessageListener> mls = new ArrayList<MessageListener>();
+		mls.add(ml);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<nrofHosts; i++) {
+			hosts.add(new DTNHost(mls, null, "h", li,
+					new ModuleCommunicationBus(), rwp, router));
+		}
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(new MessageEventGenerator(new TestSettings("Events")));
+
+		return new World(hosts, 1000, 1000, UPDATE_INTERVAL,
+				new ArrayList<UpdateListener>(), true, queues);
+	}
+
+	/**
+	 * Puts a setting without a namespace (creating hosts sets the
+	 * namespace of the test settings)
+	 */
+	private void putSetting(String key, String value) {
+		ts.setNameSpace(null);
+		ts.putSetting(key, value);
+	}
+
+	private void move(World world, int nrofSteps) {
+		for (int i=0; i<nrofSteps; i++) {
+			for (DTNHost h : world.getHosts()) {
+				h.move(UPDATE_INTERVAL);
+			}
+			clock.advance(UPDATE_INTERVAL);
+		}
+	}
+
+	private byte[] write(World world) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		Snapshot.write(world, out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private void read(World world, byte[] snapshot) throws Exception {
+		Snapshot.read(world, new DataInputStream(
+				new ByteArrayInputStream(snapshot)));
+	}
+
+	public void testRestore() throws Exception {
+		World world = createWorld(NROF_HOSTS);
+		move(world, NROF_STEPS);
+		byte[] snapshot = write(world);
+		double snapshotTime = SimClock.getTime();
+
+		move(world, NROF_STEPS);
+		List<Coord> expected = new ArrayList<Coord>();
+		for (DTNHost h : world.getHosts()) {
+			expected.add(h.getLocation().clone());
+		}
+
+		World restored = createWorld(NROF_HOSTS);
+		read(restored, snapshot);
+		assertEquals(snapshotTime, SimClock.getTime());
+		move(restored, NROF_STEPS);
+
+		for (int i=0; i<NROF_HOSTS; i++) {
+			assertEquals("Host " + i, expected.get(i),
+					restored.getHosts().get(i).getLocation());
+		}
+	}
+
+	public void testCheckpoint() throws Exception {
+		final int nrofHosts = 20;
+		MessageChecker mc = new MessageChecker();
+		World world = createNetworkWorld(nrofHosts, mc);
+		for (int i=0; i<NROF_STEPS; i++) {
+			world.update();
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		Snapshot.writeCheckpoint(world, out);
+		out.close();
+		double checkpointTime = SimClock.getTime();
+
+		mc.reset();
+		List<String> expected = runAndRecord(world, mc);
+		List<String> expectedBuffers = getBuffers(world);
+		assertTrue("No messages were transferred", expected.size() > 100);
+
+		MessageChecker restoredMc = new MessageChecker();
+		World restored = createNetworkWorld(nrofHosts, restoredMc);
+		read(restored, bytes.toByteArray());
+		assertEquals(checkpointTime, SimClock.getTime());
+
+		assertEquals(expected, runAndRecord(restored, restoredMc));
+		assertEquals(expectedBuffers, getBuffers(restored));
+	}
+
+	public void testCheckpointReport() throws Exception {
+		final int nrofHosts = 20;
+		File outFile = File.createTempFile("snapshottest", ".tmp");
+		outFile.deleteOnExit();
+		MessageStatsReport report = createReport(outFile);
+		World world = createNetworkWorld(nrofHosts, report);
+		world.setReports(Collections.<Report>singletonList(report));
+		for (int i=0; i<NROF_STEPS; i++) {
+			world.update();
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		Snapshot.writeCheckpoint(world, out);
+		out.close();
+
+		for (int i=0; i<NROF_STEPS; i++) {
+			world.update();
+		}
+		report.done();
+		List<String> expected = readLines(outFile);
+		assertFalse("No messages were delivered",
+				expected.contains("delivered: 0"));
+
+		MessageStatsReport restoredReport = createReport(outFile);
+		World restored = createNetworkWorld(nrofHosts, restoredReport);
+		restored.setReports(
+				Collections.<Report>singletonList(restoredReport));
+		read(restored, bytes.toByteArray());
+		for (int i=0; i<NROF_STEPS; i++) {
+			restored.update();
+		}
+		restoredReport.done();
+
+		assertEquals(expected, readLines(outFile));
+	}
+
+	private List<String> readLines(File file) throws Exception {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			for (String line; (line = reader.readLine()) != null; ) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	/**
+	 * Creates a message stats report that writes to the given file
+	 */
+	private MessageStatsReport createReport(File outFile) {
+		putSetting("MessageStatsReport." + Report.OUTPUT_SETTING,
+				outFile.getAbsolutePath());
+		return new MessageStatsReport();
+	}
+
+	/**
+	 * Updates the world and returns the message events that happened
+	 */
+	private List<String> runAndRecord(World world, MessageChecker mc) {
+		List<String> events = new ArrayList<String>();
+		for (int i=0; i<NROF_STEPS; i++) {
+			world.update();
+			while (mc.next()) {
+				events.add(SimClock.getTime() + " " + mc.getLastType() + " " +
+						mc.getLastMsg().getId() + " " + mc.getLastFrom() +
+						" " + mc.getLastTo());
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Returns the IDs of the messages in the hosts' buffers (in the
+	 * buffers' order)
+	 */
+	private List<String> getBuffers(World world) {
+		List<String> buffers = new ArrayList<String>();
+		for (DTNHost h : world.getHosts()) {
+			StringBuilder ids = new StringBuilder(h + ":");
+			for (Message m : h.getMessageCollection()) {
+				ids.append(' ').append(m.getId());
+			}
+			buffers.add(ids.toString());
+		}
+		return buffers;
+	}
+
+	public void testMismatch() throws Exception {
+		World world = createWorld(NROF_HOSTS);
+		byte[] snapshot = write(world);
+
+		try {
+			read(createWorld(NROF_HOSTS + 1), snapshot);
+			fail("Snapshot of different number of hosts was accepted");
+		} catch (SettingsError e) {
+			// ok
+		}
+	}
+
+	public void testSettingsMismatch() throws Exception {
+		World world = createWorld(NROF_HOSTS);
+		byte[] snapshot = write(world);
+
+		putSetting("Group." + MovementModel.SPEED, "1,6");
+		try {
+			read(createWorld(NROF_HOSTS), snapshot);
+			fail("Snapshot of different speed settings was accepted");
+		} catch (SettingsError e) {
+			// ok
+		}
+
+		/* settings that don't affect the movement can differ */
+		putSetting("Group." + MovementModel.SPEED, "1,5");
+		putSetting("Group." + SimScenario.ROUTER_S, "EpidemicRouter");
+		putSetting("Group." + MessageRouter.B_SIZE_S, "5M");
+		read(createWorld(NROF_HOSTS), snapshot);
+	}
+
+	public void testWarmupMismatch() throws Exception {
+		putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WARMUP, "100");
+		World world = createWorld(NROF_HOSTS);
+		byte[] snapshot = write(world);
+		read(createWorld(NROF_HOSTS), snapshot);
+
+		putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WARMUP, "200");
+		try {
+			read(createWorld(NROF_HOSTS), snapshot);
+			fail("Snapshot of different warm-up time was accepted");
+		} catch (SettingsError e) {
+			// ok
+		}
+	}
+}
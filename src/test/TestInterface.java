@@ -27,6 +27,11 @@ public class TestInterface extends NetworkInterface {
 		return new TestInterface(this);
 	}
 
+	@Override
+	public boolean isKineticContactsSupported() {
+		return isAlwaysScanning();
+	}
+
 	/**
 	 * Gives the currentTransmit Speed
 	 */
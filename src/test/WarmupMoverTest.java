@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.SimClock;
+import core.WarmupMover;
+
+/**
+ * Tests for the event driven movement model warm-up
+ */
+public class WarmupMoverTest extends TestCase {
+	private SimClock clock;
+	private int nrofDestinations;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		this.clock = SimClock.getInstance();
+		this.nrofDestinations = 0;
+	}
+
+	/**
+	 * Creates a host (at the current sim time) whose movement listener counts the new destinations
+	 */
+	private DTNHost createHost(double waitTime) {
+		List<MovementListener> listeners = new ArrayList<MovementListener>();
+		listeners.add(new MovementListener() {
+			public void newDestination(DTNHost host, Coord destination,
+					double speed) {
+				nrofDestinations++;
+			}
+			public void initialLocation(DTNHost host, Coord location) {}
+		});
+
+		return new DTNHost(null, listeners, "h",
+				new ArrayList<NetworkInterface>(),
+				new ModuleCommunicationBus(), new StepMovement(waitTime),
+				new PassiveRouter(new TestSettings()));
+	}
+
+	private void warmup(DTNHost host) {
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(host);
+		new WarmupMover(hosts, 0.1).warmup();
+	}
+
+	public void testWarmup() {
+		clock.setTime(-1005);
+		DTNHost host = createHost(0);
+		warmup(host);
+
+		assertEquals(0.0, SimClock.getTime());
+		assertEquals(1005, host.getLocation().getX(), 1e-9);
+		assertEquals(0, host.getLocation().getY(), 1e-9);
+		assertEquals(0, nrofDestinations);
+	}
+
+	public void testWaitTimes() {
+		/* paths of 10 s start 5 s after the previous one ended, i.e., at
+		 * -92, -77, ..., -2 */
+		clock.setTime(-97);
+		DTNHost host = createHost(5);
+		warmup(host);
+
+		assertEquals(62, host.getLocation().getX(), 1e-9);
+		assertEquals(0, nrofDestinations);
+
+		/* listeners are informed again after the warm-up */
+		for (int i=0; i<20; i++) {
+			host.move(1);
+			clock.advance(1);
+		}
+		assertEquals(78, host.getLocation().getX(), 1e-9);
+		assertTrue(nrofDestinations > 0);
+	}
+
+	/**
+	 * Movement model whose paths move the host 10 meters along the x-axis
+	 * at 1 m/s and that waits the given time between the paths
+	 */
+	private static class StepMovement extends MovementModel {
+		private double waitTime;
+		private Coord lastLocation;
+
+		public StepMovement(double waitTime) {
+			this.waitTime = waitTime;
+			this.lastLocation = new Coord(0, 0);
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return lastLocation.clone();
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(1);
+			p.addWaypoint(lastLocation.clone());
+			lastLocation.translate(10, 0);
+			p.addWaypoint(lastLocation.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + waitTime;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public boolean isAlwaysActive() {
+			return true;
+		}
+
+		@Override
+		public StepMovement replicate() {
+			return new StepMovement(waitTime);
+		}
+	}
+}
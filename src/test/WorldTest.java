@@ -5,11 +5,17 @@
 package test;
 
 import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import routing.PassiveRouter;
+import core.ConnectionListener;
 import core.DTNHost;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
@@ -59,6 +65,16 @@ public class WorldTest extends TestCase {
 				ts.getExternalEvents() );
 	}
 
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		/* restore the default settings for the other tests */
+		new TestSettings();
+		MovementModel.reset();
+		DTNHost.reset();
+		ConnectivityGrid.reset();
+		SimClock.reset();
+	}
+
 	public void testUpdate() {
 		double endTime = 1000;
 		int nrofRounds = (int)(endTime/upInterval);
@@ -74,6 +90,102 @@ public class WorldTest extends TestCase {
 		assertNrofUpdates(nrofRounds);
 	}
 
+	public void testParallelUpdate() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.PARALLEL_UPDATE_S, "true");
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.PARALLEL_THREADS_S, "4");
+		TestScenario scen = new TestScenario();
+		world = new World(scen.getHosts(), scen.getWorldSizeX(),
+				scen.getWorldSizeY(), scen.getUpdateInterval(),
+				scen.getUpdateListeners(), scen.simulateConnections(),
+				scen.getExternalEvents());
+
+		world.scheduleUpdate(0.25);
+		for (int i=0; i<10; i++) {
+			world.update();
+		}
+
+		assertEquals(1.0, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(11);
+		world.done();
+
+		/* the connections must come up and go down exactly in the same
+		 * order as in a serial update */
+		List<String> serial = runConnections(false);
+		List<String> parallel = runConnections(true);
+		assertTrue(serial.size() > 0);
+		assertEquals(serial, parallel);
+	}
+
+	/**
+	 * Runs a world with moving hosts that use SimpleBroadcastInterfaces
+	 * and returns the connection events in the order they happened
+	 * @param parallel Should the parallel update be used
+	 * @return The connection events
+	 */
+	private List<String> runConnections(boolean parallel) {
+		final List<String> events = new ArrayList<String>();
+		ConnectionListener cl = new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				events.add(SimClock.getTime() + " " + host1 + " " + host2 +
+						" up");
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				events.add(SimClock.getTime() + " " + host1 + " " + host2 +
+						" down");
+			}
+		};
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.PARALLEL_UPDATE_S, "" + parallel);
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.PARALLEL_THREADS_S, "4");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "200,200");
+		ts.putSetting("Group." + MovementModel.SPEED, "1,5");
+		ts.putSetting("Group." + MovementModel.WAIT_TIME, "0,10");
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_SPEED_S, "1");
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+		ConnectivityGrid.reset();
+
+		MovementModel mm = new RandomWaypoint(new TestSettings("Group"));
+		NetworkInterface ni = new SimpleBroadcastInterface(
+				new TestSettings(TestUtils.IFACE_NS));
+		List<ConnectionListener> cls = new ArrayList<ConnectionListener>();
+		cls.add(cl);
+		ni.setClisteners(cls);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<40; i++) {
+			ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+			DTNHost h = new DTNHost(null, null, "h", li, comBus, mm,
+					new PassiveRouter(ts));
+			if (i % 2 == 0) { /* scan rounds must stay the same too */
+				comBus.updateProperty(NetworkInterface.SCAN_INTERVAL_ID, 0.5);
+			}
+			hosts.add(h);
+		}
+
+		World w = new World(hosts, 200, 200, upInterval,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+		for (int i=0; i<1000; i++) {
+			w.update();
+		}
+		w.done();
+
+		return events;
+	}
+
 	private void assertNrofUpdates(int nrof) {
 		for (TestDTNHost h : testHosts) {
 			assertEquals(nrof, h.nrofUpdate);
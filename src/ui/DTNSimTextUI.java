@@ -14,6 +14,22 @@ public class DTNSimTextUI extends DTNSimUI {
 	private long startTime; // simulation start time
 	/** How often the UI view is updated (milliseconds) */
 	public static final long UI_UP_INTERVAL = 60000;
+	private boolean printProgress;
+
+	/**
+	 * Constructor.
+	 */
+	public DTNSimTextUI() {
+		this(true);
+	}
+
+	/**
+	 * Constructor.
+	 * @param printProgress If false, nothing is printed during the simulation
+	 */
+	public DTNSimTextUI(boolean printProgress) {
+		this.printProgress = printProgress;
+	}
 
 	protected void runSim() {
 		double simTime = SimClock.getTime();
@@ -68,6 +84,9 @@ public class DTNSimTextUI extends DTNSimUI {
 	}
 
 	private void print(String txt) {
+		if (!printProgress) {
+			return;
+		}
 		System.out.println(txt);
 	}
 
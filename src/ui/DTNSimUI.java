@@ -4,11 +4,13 @@
  */
 package ui;
 
+import java.io.File;
 import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
 import core.ConnectionListener;
+import core.DTNSim;
 import core.MessageListener;
 import core.MovementListener;
 import core.Settings;
@@ -16,6 +18,7 @@ import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.SimScenario;
+import core.Snapshot;
 import core.UpdateListener;
 import core.World;
 
@@ -41,7 +44,37 @@ public abstract class DTNSimUI {
 	 * before starting the real simulation.
 	 */
 	public static final String MM_WARMUP_S =
-		movement.MovementModel.MOVEMENT_MODEL_NS + ".warmup";
+		movement.MovementModel.MOVEMENT_MODEL_NS + "." +
+		movement.MovementModel.WARMUP;
+	/**
+	 * Movement model warmup snapshot file -setting id ({@value}). If the
+	 * file exists, the state after the warmup is read from it instead of
+	 * running the warmup; otherwise the state is written to it after the
+	 * warmup. See {@link Snapshot}.
+	 */
+	public static final String MM_WARMUP_SNAPSHOT_S =
+		movement.MovementModel.MOVEMENT_MODEL_NS + "." +
+		Snapshot.WARMUP_SNAPSHOT_S;
+	/**
+	 * Checkpoint file -setting id ({@value}). See
+	 * {@link Snapshot#CHECKPOINT_FILE_S}.
+	 */
+	public static final String CHECKPOINT_FILE_S = Snapshot.CHECKPOINT_NS +
+		"." + Snapshot.CHECKPOINT_FILE_S;
+	/**
+	 * Resume from checkpoint -setting id ({@value}). If true, the simulation
+	 * resumes from the checkpoint in the {@link #CHECKPOINT_FILE_S} instead
+	 * of starting from the beginning. See
+	 * {@link Snapshot#CHECKPOINT_RESUME_S}.
+	 */
+	public static final String CHECKPOINT_RESUME_S = Snapshot.CHECKPOINT_NS +
+		"." + Snapshot.CHECKPOINT_RESUME_S;
+	/**
+	 * Checkpoint interval -setting id ({@value}). See
+	 * {@link Snapshot#CHECKPOINT_INTERVAL_S}.
+	 */
+	public static final String CHECKPOINT_INTERVAL_S = Snapshot.CHECKPOINT_NS +
+		"." + Snapshot.CHECKPOINT_INTERVAL_S;
 
 	/** report class' package name */
 	private static final String REPORT_PAC = "report.";
@@ -111,17 +144,45 @@ public abstract class DTNSimUI {
 			}
 
 			this.world = this.scen.getWorld();
-			world.warmupMovementModel(warmupTime);
+			this.world.setReports(this.reports);
+			boolean resume = settings.getBoolean(CHECKPOINT_RESUME_S, false);
+			if (resume || settings.contains(CHECKPOINT_INTERVAL_S)) {
+				Snapshot.checkCheckpointSupport(world);
+			}
+
+			if (resume) {
+				File checkpoint = new File(settings.valueFillString(
+						settings.getSetting(CHECKPOINT_FILE_S)));
+				if (!checkpoint.exists()) {
+					throw new SettingsError("Can't resume: checkpoint file " +
+							checkpoint + " doesn't exist");
+				}
+				Snapshot.read(world, checkpoint);
+			}
+			else if (settings.contains(MM_WARMUP_SNAPSHOT_S)) {
+				File snapshot = new File(settings.valueFillString(
+						settings.getSetting(MM_WARMUP_SNAPSHOT_S)));
+				if (snapshot.exists()) {
+					Snapshot.read(world, snapshot);
+				}
+				else {
+					world.warmupMovementModel(warmupTime);
+					Snapshot.write(world, snapshot);
+				}
+			}
+			else {
+				world.warmupMovementModel(warmupTime);
+			}
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
 			System.err.println(se.getMessage());
-			System.exit(-1);
+			DTNSim.abort(se);
 		}
 		catch (SimError er) {
 			System.err.println("Can't start: " + er.getMessage());
 			System.err.println("Caught at " + er.getStackTrace()[0]);
-			System.exit(-1);
+			DTNSim.abort(er);
 		}
 	}
 
@@ -129,6 +190,9 @@ public abstract class DTNSimUI {
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
 	public void done() {
+		if (this.world != null) {
+			this.world.done();
+		}
 		for (Report r : this.reports) {
 			r.done();
 		}